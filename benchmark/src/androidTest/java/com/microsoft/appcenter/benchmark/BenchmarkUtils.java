@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.benchmark;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.microsoft.appcenter.analytics.ingestion.models.EventLog;
+import com.microsoft.appcenter.analytics.ingestion.models.json.EventLogFactory;
+import com.microsoft.appcenter.analytics.ingestion.models.one.CommonSchemaEventLog;
+import com.microsoft.appcenter.analytics.ingestion.models.one.json.CommonSchemaEventLogFactory;
+import com.microsoft.appcenter.crashes.ingestion.models.ErrorAttachmentLog;
+import com.microsoft.appcenter.crashes.ingestion.models.ManagedErrorLog;
+import com.microsoft.appcenter.crashes.ingestion.models.json.ErrorAttachmentLogFactory;
+import com.microsoft.appcenter.crashes.ingestion.models.json.ManagedErrorLogFactory;
+import com.microsoft.appcenter.crashes.utils.ErrorLogHelper;
+import com.microsoft.appcenter.ingestion.models.Device;
+import com.microsoft.appcenter.ingestion.models.json.DefaultLogSerializer;
+import com.microsoft.appcenter.ingestion.models.json.LogSerializer;
+import com.microsoft.appcenter.ingestion.models.one.CommonSchemaLog;
+import com.microsoft.appcenter.ingestion.models.properties.BooleanTypedProperty;
+import com.microsoft.appcenter.ingestion.models.properties.DateTimeTypedProperty;
+import com.microsoft.appcenter.ingestion.models.properties.DoubleTypedProperty;
+import com.microsoft.appcenter.ingestion.models.properties.LongTypedProperty;
+import com.microsoft.appcenter.ingestion.models.properties.StringTypedProperty;
+import com.microsoft.appcenter.ingestion.models.properties.TypedProperty;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Representative logs shared by benchmarks, similar in shape to what applications send.
+ */
+final class BenchmarkUtils {
+
+    /**
+     * Transmission target token used for Common Schema logs.
+     */
+    static final String TARGET_TOKEN = "4dacd24d0b1b42db9894926d0db2f4c7-39311d37-fb55-479c-b7b6-9893b53d0186-7034";
+
+    /**
+     * Number of properties in generated event logs.
+     */
+    private static final int PROPERTY_COUNT = 10;
+
+    private BenchmarkUtils() {
+    }
+
+    @NonNull
+    static LogSerializer createLogSerializer() {
+        LogSerializer logSerializer = new DefaultLogSerializer();
+        logSerializer.addLogFactory(EventLog.TYPE, new EventLogFactory());
+        logSerializer.addLogFactory(CommonSchemaEventLog.TYPE, new CommonSchemaEventLogFactory());
+        logSerializer.addLogFactory(ManagedErrorLog.TYPE, ManagedErrorLogFactory.getInstance());
+        logSerializer.addLogFactory(ErrorAttachmentLog.TYPE, ErrorAttachmentLogFactory.getInstance());
+        return logSerializer;
+    }
+
+    @NonNull
+    static Device generateDevice() {
+        Device device = new Device();
+        device.setSdkName("appcenter.android");
+        device.setSdkVersion("4.4.4");
+        device.setModel("Pixel 4");
+        device.setOemName("Google");
+        device.setOsName("Android");
+        device.setOsVersion("11");
+        device.setOsBuild("RQ3A.210805.001.A1");
+        device.setOsApiLevel(30);
+        device.setLocale("en_US");
+        device.setTimeZoneOffset(-420);
+        device.setScreenSize("1080x2280");
+        device.setAppVersion("1.0.0");
+        device.setAppBuild("42");
+        device.setAppNamespace("com.microsoft.appcenter.benchmark");
+        return device;
+    }
+
+    @NonNull
+    static List<TypedProperty> generateTypedProperties() {
+        List<TypedProperty> properties = new ArrayList<>();
+        for (int i = 0; i < PROPERTY_COUNT; i += 5) {
+            StringTypedProperty stringProperty = new StringTypedProperty();
+            stringProperty.setName("string" + i);
+            stringProperty.setValue("value" + i);
+            properties.add(stringProperty);
+            LongTypedProperty longProperty = new LongTypedProperty();
+            longProperty.setName("long" + i);
+            longProperty.setValue(i);
+            properties.add(longProperty);
+            DoubleTypedProperty doubleProperty = new DoubleTypedProperty();
+            doubleProperty.setName("double" + i);
+            doubleProperty.setValue(i / 3.0);
+            properties.add(doubleProperty);
+            BooleanTypedProperty booleanProperty = new BooleanTypedProperty();
+            booleanProperty.setName("boolean" + i);
+            booleanProperty.setValue(i % 2 == 0);
+            properties.add(booleanProperty);
+            DateTimeTypedProperty dateTimeProperty = new DateTimeTypedProperty();
+            dateTimeProperty.setName("nested.date" + i);
+            dateTimeProperty.setValue(new Date());
+            properties.add(dateTimeProperty);
+        }
+        return properties;
+    }
+
+    @NonNull
+    static EventLog generateEventLog() {
+        EventLog log = new EventLog();
+        log.setId(UUID.randomUUID());
+        log.setSid(UUID.randomUUID());
+        log.setTimestamp(new Date());
+        log.setDevice(generateDevice());
+        log.setName("benchmarkEvent");
+        Map<String, String> properties = new HashMap<>();
+        for (int i = 0; i < PROPERTY_COUNT; i++) {
+            properties.put("key" + i, "value" + i);
+        }
+        log.setProperties(properties);
+        log.setTypedProperties(generateTypedProperties());
+        return log;
+    }
+
+    @NonNull
+    static CommonSchemaLog generateCommonSchemaLog() {
+        EventLog log = generateEventLog();
+        log.addTransmissionTarget(TARGET_TOKEN);
+        return new EventLogFactory().toCommonSchemaLogs(log).iterator().next();
+    }
+
+    @NonNull
+    static ManagedErrorLog generateManagedErrorLog(@NonNull Context context) {
+        Thread thread = Thread.currentThread();
+        Map<Thread, StackTraceElement[]> stackTraces = Collections.singletonMap(thread, thread.getStackTrace());
+        ManagedErrorLog log = ErrorLogHelper.createErrorLog(context, thread, new IllegalStateException("Benchmark"), stackTraces, System.currentTimeMillis());
+        log.setSid(UUID.randomUUID());
+        log.setDevice(generateDevice());
+        return log;
+    }
+
+    @NonNull
+    static ErrorAttachmentLog generateErrorAttachmentLog() {
+        ErrorAttachmentLog log = ErrorAttachmentLog.attachmentWithBinary(new byte[4096], "attachment.bin", "application/octet-stream");
+        log.setId(UUID.randomUUID());
+        log.setErrorId(UUID.randomUUID());
+        log.setSid(UUID.randomUUID());
+        log.setTimestamp(new Date());
+        log.setDevice(generateDevice());
+        return log;
+    }
+}
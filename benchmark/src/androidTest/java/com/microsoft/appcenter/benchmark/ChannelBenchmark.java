@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.benchmark;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.internal.runner.junit4.AndroidJUnit4ClassRunner;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.microsoft.appcenter.Flags;
+import com.microsoft.appcenter.channel.DefaultChannel;
+import com.microsoft.appcenter.http.HttpClient;
+import com.microsoft.appcenter.http.ServiceCall;
+import com.microsoft.appcenter.http.ServiceCallback;
+import com.microsoft.appcenter.ingestion.models.Log;
+import com.microsoft.appcenter.utils.storage.SharedPreferencesManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Throughput of logs enqueued by services.
+ */
+@RunWith(AndroidJUnit4ClassRunner.class)
+public class ChannelBenchmark {
+
+    private static final String GROUP = "benchmark";
+
+    /**
+     * Logs stored between channel cleanups, to keep the database size stable.
+     */
+    private static final int MAX_STORED_LOGS = 1000;
+
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private DefaultChannel mChannel;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        SharedPreferencesManager.initialize(context);
+
+        /* Calls never complete so that only the cost of preparing batches is measured. */
+        HttpClient httpClient = new HttpClient() {
+
+            @Override
+            public ServiceCall callAsync(String url, String method, Map<String, String> headers, CallTemplate callTemplate, ServiceCallback serviceCallback) {
+                return new ServiceCall() {
+
+                    @Override
+                    public void cancel() {
+                    }
+                };
+            }
+
+            @Override
+            public void reopen() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        mChannel = new DefaultChannel(context, UUID.randomUUID().toString(), BenchmarkUtils.createLogSerializer(), httpClient, new Handler(Looper.getMainLooper()));
+        mChannel.addGroup(GROUP, 50, 60 * 60 * 1000, 3, null, null);
+        mChannel.clear(GROUP);
+    }
+
+    @After
+    public void tearDown() {
+        mChannel.clear(GROUP);
+        mChannel.shutdown();
+    }
+
+    @Test
+    public void enqueue() {
+        Log log = BenchmarkUtils.generateEventLog();
+        BenchmarkState state = mBenchmarkRule.getState();
+        int count = 0;
+        while (state.keepRunning()) {
+            mChannel.enqueue(log, GROUP, Flags.DEFAULTS);
+            if (++count == MAX_STORED_LOGS) {
+                state.pauseTiming();
+                mChannel.clear(GROUP);
+                count = 0;
+                state.resumeTiming();
+            }
+        }
+    }
+}
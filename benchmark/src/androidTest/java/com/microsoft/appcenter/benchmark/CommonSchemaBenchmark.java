@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.benchmark;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.internal.runner.junit4.AndroidJUnit4ClassRunner;
+
+import com.microsoft.appcenter.analytics.ingestion.models.EventLog;
+import com.microsoft.appcenter.analytics.ingestion.models.one.CommonSchemaEventLog;
+import com.microsoft.appcenter.ingestion.models.json.LogSerializer;
+import com.microsoft.appcenter.ingestion.models.one.CommonSchemaDataUtils;
+import com.microsoft.appcenter.ingestion.models.properties.TypedProperty;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+/**
+ * Conversion of event logs to Common Schema logs.
+ */
+@RunWith(AndroidJUnit4ClassRunner.class)
+public class CommonSchemaBenchmark {
+
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    @Test
+    public void addCommonSchemaData() {
+        List<TypedProperty> properties = BenchmarkUtils.generateTypedProperties();
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            CommonSchemaDataUtils.addCommonSchemaData(properties, new CommonSchemaEventLog());
+        }
+    }
+
+    @Test
+    public void toCommonSchemaLog() {
+        LogSerializer logSerializer = BenchmarkUtils.createLogSerializer();
+        EventLog log = BenchmarkUtils.generateEventLog();
+        log.addTransmissionTarget(BenchmarkUtils.TARGET_TOKEN);
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            logSerializer.toCommonSchemaLog(log);
+        }
+    }
+}
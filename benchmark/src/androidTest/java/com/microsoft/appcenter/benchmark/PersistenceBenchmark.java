@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.benchmark;
+
+import android.content.Context;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.internal.runner.junit4.AndroidJUnit4ClassRunner;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.microsoft.appcenter.Flags;
+import com.microsoft.appcenter.ingestion.models.Log;
+import com.microsoft.appcenter.persistence.DatabasePersistence;
+import com.microsoft.appcenter.persistence.Persistence;
+import com.microsoft.appcenter.utils.storage.SharedPreferencesManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Log storage and batch fetch latency.
+ */
+@RunWith(AndroidJUnit4ClassRunner.class)
+public class PersistenceBenchmark {
+
+    private static final String GROUP = "benchmark";
+
+    /**
+     * Same as the default number of logs per batch of analytics.
+     */
+    private static final int BATCH_SIZE = 50;
+
+    /**
+     * Logs stored between database cleanups, to keep the database size stable.
+     */
+    private static final int MAX_STORED_LOGS = 1000;
+
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private Context mContext;
+
+    private DatabasePersistence mPersistence;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        SharedPreferencesManager.initialize(mContext);
+        mPersistence = new DatabasePersistence(mContext);
+        mPersistence.setLogSerializer(BenchmarkUtils.createLogSerializer());
+        mPersistence.deleteLogs(GROUP);
+    }
+
+    @After
+    public void tearDown() {
+        mPersistence.deleteLogs(GROUP);
+        mPersistence.close();
+    }
+
+    @Test
+    public void putLog() throws Persistence.PersistenceException {
+        Log log = BenchmarkUtils.generateEventLog();
+        BenchmarkState state = mBenchmarkRule.getState();
+        int count = 0;
+        while (state.keepRunning()) {
+            mPersistence.putLog(log, GROUP, Flags.NORMAL);
+            if (++count == MAX_STORED_LOGS) {
+                state.pauseTiming();
+                mPersistence.deleteLogs(GROUP);
+                count = 0;
+                state.resumeTiming();
+            }
+        }
+    }
+
+    @Test
+    public void getLogs() throws Persistence.PersistenceException {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            mPersistence.putLog(BenchmarkUtils.generateEventLog(), GROUP, Flags.NORMAL);
+        }
+        List<Log> logs = new ArrayList<>(BATCH_SIZE);
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            mPersistence.getLogs(GROUP, Collections.<String>emptyList(), BATCH_SIZE, logs);
+
+            /* Release the batch so that the same logs are fetched again. */
+            state.pauseTiming();
+            logs.clear();
+            mPersistence.clearPendingLogState();
+            state.resumeTiming();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.benchmark;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.internal.runner.junit4.AndroidJUnit4ClassRunner;
+
+import com.microsoft.appcenter.ingestion.models.Log;
+import com.microsoft.appcenter.ingestion.models.LogContainer;
+import com.microsoft.appcenter.ingestion.models.json.LogSerializer;
+
+import org.json.JSONException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cost of building request bodies for a batch, the same way the HTTP client does.
+ */
+@RunWith(AndroidJUnit4ClassRunner.class)
+public class RequestBenchmark {
+
+    private static final int BATCH_SIZE = 50;
+
+    private static final String CHARSET_NAME = "UTF-8";
+
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private LogSerializer mLogSerializer;
+
+    private LogContainer mLogContainer;
+
+    @Before
+    public void setUp() {
+        mLogSerializer = BenchmarkUtils.createLogSerializer();
+        List<Log> logs = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            logs.add(BenchmarkUtils.generateEventLog());
+        }
+        mLogContainer = new LogContainer();
+        mLogContainer.setLogs(logs);
+    }
+
+    @Test
+    public void buildRequest() throws JSONException, IOException {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            mLogSerializer.serializeContainer(mLogContainer).getBytes(CHARSET_NAME);
+        }
+    }
+
+    @Test
+    public void buildCompressedRequest() throws JSONException, IOException {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Writer writer = new OutputStreamWriter(new GZIPOutputStream(out), CHARSET_NAME);
+            mLogSerializer.serializeContainer(mLogContainer, writer);
+            writer.close();
+        }
+    }
+}
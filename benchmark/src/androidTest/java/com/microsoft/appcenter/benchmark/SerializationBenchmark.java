@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.benchmark;
+
+import android.content.Context;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.internal.runner.junit4.AndroidJUnit4ClassRunner;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.microsoft.appcenter.ingestion.models.Log;
+import com.microsoft.appcenter.ingestion.models.json.LogSerializer;
+
+import org.json.JSONException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Serialization and deserialization cost per log type.
+ */
+@RunWith(AndroidJUnit4ClassRunner.class)
+public class SerializationBenchmark {
+
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private LogSerializer mLogSerializer;
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mLogSerializer = BenchmarkUtils.createLogSerializer();
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+    }
+
+    private void serialize(Log log) throws JSONException {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            mLogSerializer.serializeLog(log);
+        }
+    }
+
+    private void deserialize(Log log) throws JSONException {
+        String json = mLogSerializer.serializeLog(log);
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            mLogSerializer.deserializeLog(json, null);
+        }
+    }
+
+    @Test
+    public void serializeEventLog() throws JSONException {
+        serialize(BenchmarkUtils.generateEventLog());
+    }
+
+    @Test
+    public void deserializeEventLog() throws JSONException {
+        deserialize(BenchmarkUtils.generateEventLog());
+    }
+
+    @Test
+    public void serializeManagedErrorLog() throws JSONException {
+        serialize(BenchmarkUtils.generateManagedErrorLog(mContext));
+    }
+
+    @Test
+    public void deserializeManagedErrorLog() throws JSONException {
+        deserialize(BenchmarkUtils.generateManagedErrorLog(mContext));
+    }
+
+    @Test
+    public void serializeCommonSchemaLog() throws JSONException {
+        serialize(BenchmarkUtils.generateCommonSchemaLog());
+    }
+
+    @Test
+    public void deserializeCommonSchemaLog() throws JSONException {
+        deserialize(BenchmarkUtils.generateCommonSchemaLog());
+    }
+
+    @Test
+    public void serializeErrorAttachmentLog() throws JSONException {
+        serialize(BenchmarkUtils.generateErrorAttachmentLog());
+    }
+
+    @Test
+    public void deserializeErrorAttachmentLog() throws JSONException {
+        deserialize(BenchmarkUtils.generateErrorAttachmentLog());
+    }
+}
@@ -18,6 +18,7 @@ import com.microsoft.appcenter.Constants;
 import com.microsoft.appcenter.Flags;
 import com.microsoft.appcenter.analytics.channel.AnalyticsListener;
 import com.microsoft.appcenter.analytics.channel.AnalyticsValidator;
+import com.microsoft.appcenter.analytics.channel.EventRingBuffer;
 import com.microsoft.appcenter.analytics.channel.SessionTracker;
 import com.microsoft.appcenter.analytics.ingestion.models.EventLog;
 import com.microsoft.appcenter.analytics.ingestion.models.PageLog;
@@ -30,9 +31,11 @@ import com.microsoft.appcenter.analytics.ingestion.models.one.json.CommonSchemaE
 import com.microsoft.appcenter.channel.Channel;
 import com.microsoft.appcenter.ingestion.models.Log;
 import com.microsoft.appcenter.ingestion.models.json.LogFactory;
+import com.microsoft.appcenter.ingestion.models.one.CompiledCommonSchemaData;
 import com.microsoft.appcenter.ingestion.models.properties.StringTypedProperty;
 import com.microsoft.appcenter.ingestion.models.properties.TypedProperty;
 import com.microsoft.appcenter.utils.AppCenterLog;
+import com.microsoft.appcenter.utils.IdGenerator;
 import com.microsoft.appcenter.utils.async.AppCenterFuture;
 import com.microsoft.appcenter.utils.async.DefaultAppCenterFuture;
 import com.microsoft.appcenter.utils.context.UserIdContext;
@@ -43,8 +46,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Analytics service.
@@ -150,6 +153,38 @@ public class Analytics extends AbstractAppCenterService {
      */
     private long mTransmissionInterval;
 
+    /**
+     * Buffer of events waiting to be enqueued by the looper, null if each event is posted to the looper.
+     */
+    private volatile EventRingBuffer<TrackedEvent> mEventBuffer;
+
+    /**
+     * Is draining the event buffer scheduled.
+     */
+    private final AtomicBoolean mEventDrainScheduled = new AtomicBoolean();
+
+    /**
+     * Runnable that enqueues buffered events.
+     */
+    private final Runnable mEventDrainRunnable = new Runnable() {
+
+        @Override
+        public void run() {
+            drainEvents(true);
+        }
+    };
+
+    /**
+     * Runnable that discards buffered events when disabled.
+     */
+    private final Runnable mEventDiscardRunnable = new Runnable() {
+
+        @Override
+        public void run() {
+            drainEvents(false);
+        }
+    };
+
     /**
      * Automatic page tracking flag.
      * TODO the backend does not support pages yet so the default value would be true after the service becomes public.
@@ -225,6 +260,20 @@ public class Analytics extends AbstractAppCenterService {
         return getInstance().setInstanceTransmissionInterval(seconds);
     }
 
+    /**
+     * Publish events to a bounded lock-free buffer drained in batches by the background thread,
+     * instead of posting each event to the background thread. This reduces contention when
+     * multiple threads track events at the same time.
+     * Should be called before the service is started.
+     *
+     * @param capacity       maximum number of events waiting to be processed.
+     * @param overflowPolicy what to do when tracking an event while the buffer is full.
+     * @return <code>true</code> if the buffer is set, <code>false</code> otherwise.
+     */
+    public static boolean setEventBuffer(int capacity, @NonNull EventRingBuffer.OverflowPolicy overflowPolicy) {
+        return getInstance().setInstanceEventBuffer(capacity, overflowPolicy);
+    }
+
     /**
      * Pauses log transmission. This API cannot be used if the service is disabled.
      * Transmission is resumed:
@@ -360,7 +409,7 @@ public class Analytics extends AbstractAppCenterService {
      * @param properties Optional properties.
      */
     public static void trackEvent(String name, Map<String, String> properties) {
-        getInstance().trackEventAsync(name, convertProperties(properties), null, Flags.DEFAULTS);
+        getInstance().trackInstanceEvent(name, convertProperties(properties), null, null, Flags.DEFAULTS);
     }
 
     /**
@@ -410,7 +459,7 @@ public class Analytics extends AbstractAppCenterService {
      *                   {@link Flags#CRITICAL} flag.
      */
     public static void trackEvent(String name, Map<String, String> properties, int flags) {
-        getInstance().trackEventAsync(name, convertProperties(properties), null, flags);
+        getInstance().trackInstanceEvent(name, convertProperties(properties), null, null, flags);
     }
 
     /**
@@ -488,7 +537,49 @@ public class Analytics extends AbstractAppCenterService {
      * Internal method redirection for trackEvent.
      */
     static void trackEvent(String name, EventProperties properties, AnalyticsTransmissionTarget transmissionTarget, int flags) {
-        getInstance().trackEventAsync(name, convertProperties(properties), transmissionTarget, flags);
+        getInstance().trackInstanceEvent(name, convertProperties(properties), null, transmissionTarget, flags);
+    }
+
+    /**
+     * Track a custom event with name and prepared properties.
+     * <p>
+     * Properties are validated when prepared, see {@link #trackEvent(String, EventProperties)} for validation rules.
+     * Reusing prepared properties avoids validating and converting them for each event.
+     *
+     * @param name       An event name.
+     * @param properties Optional prepared properties.
+     */
+    public static void trackEvent(String name, PreparedEventProperties properties) {
+        trackEvent(name, properties, Flags.DEFAULTS);
+    }
+
+    /**
+     * Track a custom event with name and prepared properties.
+     * <p>
+     * Properties are validated when prepared, see {@link #trackEvent(String, EventProperties, int)} for validation rules.
+     * Reusing prepared properties avoids validating and converting them for each event.
+     *
+     * @param name       An event name.
+     * @param properties Optional prepared properties.
+     * @param flags      Optional flags. Events tracked with the {@link Flags#CRITICAL}
+     *                   flag will take precedence over all other events in storage.
+     *                   An event tracked with this option will only be dropped
+     *                   if storage must make room for a newer event that is also marked with the
+     *                   {@link Flags#CRITICAL} flag.
+     */
+    public static void trackEvent(String name, PreparedEventProperties properties, int flags) {
+        trackPreparedEvent(name, properties, null, flags);
+    }
+
+    /**
+     * Internal method redirection for trackEvent with prepared properties.
+     */
+    static void trackPreparedEvent(String name, PreparedEventProperties properties, AnalyticsTransmissionTarget transmissionTarget, int flags) {
+        if (properties == null) {
+            getInstance().trackInstanceEvent(name, null, null, transmissionTarget, flags);
+        } else {
+            getInstance().trackInstanceEvent(name, properties.getProperties(), properties.getCommonSchemaData(), transmissionTarget, flags);
+        }
     }
 
     /**
@@ -684,7 +775,12 @@ public class Analytics extends AbstractAppCenterService {
 
     @Override
     protected Channel.GroupListener getChannelListener() {
-        return new Channel.GroupListener() {
+        return new Channel.ConditionalGroupListener() {
+
+            @Override
+            public boolean needsLogs() {
+                return mAnalyticsListener != null;
+            }
 
             @Override
             public void onBeforeSending(Log log) {
@@ -838,46 +934,126 @@ public class Analytics extends AbstractAppCenterService {
         mSessionTracker.startSession();
     }
 
+    /**
+     * Send an event, without locking through the event buffer if one is set.
+     *
+     * @param name               event name.
+     * @param properties         optional properties.
+     * @param commonSchemaData   properties already validated and compiled, if prepared.
+     * @param transmissionTarget optional target.
+     * @param flags              optional flags.
+     */
+    private void trackInstanceEvent(String name, List<TypedProperty> properties, CompiledCommonSchemaData commonSchemaData, AnalyticsTransmissionTarget transmissionTarget, int flags) {
+
+        /* The event buffer can only be set before start, so it does not change once events are tracked. */
+        EventRingBuffer<TrackedEvent> eventBuffer = mEventBuffer;
+        if (eventBuffer != null) {
+            publishEvent(eventBuffer, name, properties, commonSchemaData, transmissionTarget, flags);
+        } else {
+            trackEventAsync(name, properties, commonSchemaData, transmissionTarget, flags);
+        }
+    }
+
+    /**
+     * Publish an event to the event buffer, draining it in background.
+     * This is not synchronized so that concurrent threads do not contend when tracking events.
+     *
+     * @param eventBuffer        event buffer.
+     * @param name               event name.
+     * @param properties         optional properties.
+     * @param commonSchemaData   properties already validated and compiled, if prepared.
+     * @param transmissionTarget optional target.
+     * @param flags              optional flags.
+     */
+    private void publishEvent(EventRingBuffer<TrackedEvent> eventBuffer, String name, List<TypedProperty> properties, CompiledCommonSchemaData commonSchemaData, AnalyticsTransmissionTarget transmissionTarget, int flags) {
+        String userId = UserIdContext.getInstance().getUserId();
+        if (eventBuffer.publish(new TrackedEvent(name, properties, commonSchemaData, transmissionTarget, flags, userId)) && mEventDrainScheduled.compareAndSet(false, true)) {
+            scheduleEventDrain();
+        }
+    }
+
     /**
      * Send an event.
      *
      * @param name               event name.
      * @param properties         optional properties.
+     * @param commonSchemaData   properties already validated and compiled, if prepared.
      * @param transmissionTarget optional target.
      * @param flags              optional flags.
      */
-    private synchronized void trackEventAsync(final String name, final List<TypedProperty> properties, final AnalyticsTransmissionTarget transmissionTarget, final int flags) {
+    private synchronized void trackEventAsync(final String name, final List<TypedProperty> properties, final CompiledCommonSchemaData commonSchemaData, final AnalyticsTransmissionTarget transmissionTarget, final int flags) {
         final String userId = UserIdContext.getInstance().getUserId();
         post(new Runnable() {
 
             @Override
             public void run() {
-                AnalyticsTransmissionTarget aTransmissionTarget = (transmissionTarget == null) ? mDefaultTransmissionTarget : transmissionTarget;
-                EventLog eventLog = new EventLog();
-                if (aTransmissionTarget != null) {
-                    if (aTransmissionTarget.isEnabled()) {
-                        eventLog.addTransmissionTarget(aTransmissionTarget.getTransmissionTargetToken());
-                        eventLog.setTag(aTransmissionTarget);
-                        if (aTransmissionTarget == mDefaultTransmissionTarget) {
-                            eventLog.setUserId(userId);
-                        }
-                    } else {
-                        AppCenterLog.error(LOG_TAG, "This transmission target is disabled.");
-                        return;
-                    }
-                } else if (!mStartedFromApp) {
-                    AppCenterLog.error(LOG_TAG, "Cannot track event using Analytics.trackEvent if not started from app, please start from the application or use Analytics.getTransmissionTarget.");
-                    return;
+                trackEventInBackground(name, properties, commonSchemaData, transmissionTarget, flags, userId);
+            }
+        });
+    }
+
+    /**
+     * Enqueue an event log, in background.
+     */
+    @WorkerThread
+    private void trackEventInBackground(String name, List<TypedProperty> properties, CompiledCommonSchemaData commonSchemaData, AnalyticsTransmissionTarget transmissionTarget, int flags, String userId) {
+        AnalyticsTransmissionTarget aTransmissionTarget = (transmissionTarget == null) ? mDefaultTransmissionTarget : transmissionTarget;
+        EventLog eventLog = new EventLog();
+        if (aTransmissionTarget != null) {
+            if (aTransmissionTarget.isEnabled()) {
+                eventLog.addTransmissionTarget(aTransmissionTarget.getTransmissionTargetToken());
+                eventLog.setTag(aTransmissionTarget);
+                if (aTransmissionTarget == mDefaultTransmissionTarget) {
+                    eventLog.setUserId(userId);
                 }
-                eventLog.setId(UUID.randomUUID());
-                eventLog.setName(name);
-                eventLog.setTypedProperties(properties);
+            } else {
+                AppCenterLog.error(LOG_TAG, "This transmission target is disabled.");
+                return;
+            }
+        } else if (!mStartedFromApp) {
+            AppCenterLog.error(LOG_TAG, "Cannot track event using Analytics.trackEvent if not started from app, please start from the application or use Analytics.getTransmissionTarget.");
+            return;
+        }
+        eventLog.setId(IdGenerator.generateId());
+        eventLog.setName(name);
+        eventLog.setTypedProperties(properties);
+        eventLog.setCommonSchemaData(commonSchemaData);
+
+        /* Filter and validate flags. For now we support only persistence. */
+        int filteredFlags = Flags.getPersistenceFlag(flags, true);
+        mChannel.enqueue(eventLog, filteredFlags == Flags.CRITICAL ? ANALYTICS_CRITICAL_GROUP : ANALYTICS_GROUP, filteredFlags);
+    }
 
-                /* Filter and validate flags. For now we support only persistence. */
-                int filteredFlags = Flags.getPersistenceFlag(flags, true);
-                mChannel.enqueue(eventLog, filteredFlags == Flags.CRITICAL ? ANALYTICS_CRITICAL_GROUP : ANALYTICS_GROUP, filteredFlags);
+    /**
+     * Post draining the event buffer, or discard events if the service is not started.
+     */
+    private void scheduleEventDrain() {
+        if (!post(mEventDrainRunnable, mEventDiscardRunnable, mEventDiscardRunnable)) {
+            drainEvents(false);
+        }
+    }
+
+    /**
+     * Take buffered events and enqueue them, or discard them.
+     * At most one buffer capacity is processed per call so that other commands are not delayed
+     * by threads publishing continuously.
+     *
+     * @param track true to enqueue events, false to discard them.
+     */
+    private void drainEvents(boolean track) {
+        EventRingBuffer<TrackedEvent> eventBuffer = mEventBuffer;
+        mEventDrainScheduled.set(false);
+        TrackedEvent event;
+        for (int i = eventBuffer.getCapacity(); i > 0 && (event = eventBuffer.poll()) != null; i--) {
+            if (track) {
+                trackEventInBackground(event.mName, event.mProperties, event.mCommonSchemaData, event.mTransmissionTarget, event.mFlags, event.mUserId);
             }
-        });
+        }
+
+        /* Continue later if events are left. */
+        if (!eventBuffer.isEmpty() && mEventDrainScheduled.compareAndSet(false, true)) {
+            scheduleEventDrain();
+        }
     }
 
     /**
@@ -983,6 +1159,22 @@ public class Analytics extends AbstractAppCenterService {
         return true;
     }
 
+    /**
+     * Implements {@link #setEventBuffer(int, EventRingBuffer.OverflowPolicy)}.
+     */
+    private synchronized boolean setInstanceEventBuffer(int capacity, EventRingBuffer.OverflowPolicy overflowPolicy) {
+        if (mChannel != null) {
+            AppCenterLog.error(LOG_TAG, "Event buffer should be set before the service is started.");
+            return false;
+        }
+        if (capacity <= 0) {
+            AppCenterLog.error(LOG_TAG, "The event buffer capacity is invalid: " + capacity);
+            return false;
+        }
+        mEventBuffer = new EventRingBuffer<>(capacity, overflowPolicy);
+        return true;
+    }
+
     /**
      * Post a command.
      *
@@ -1025,4 +1217,31 @@ public class Analytics extends AbstractAppCenterService {
     String getEnabledPreferenceKeyPrefix() {
         return getEnabledPreferenceKey() + "/";
     }
+
+    /**
+     * Event waiting in the event buffer.
+     */
+    private static class TrackedEvent {
+
+        private final String mName;
+
+        private final List<TypedProperty> mProperties;
+
+        private final CompiledCommonSchemaData mCommonSchemaData;
+
+        private final AnalyticsTransmissionTarget mTransmissionTarget;
+
+        private final int mFlags;
+
+        private final String mUserId;
+
+        TrackedEvent(String name, List<TypedProperty> properties, CompiledCommonSchemaData commonSchemaData, AnalyticsTransmissionTarget transmissionTarget, int flags, String userId) {
+            mName = name;
+            mProperties = properties;
+            mCommonSchemaData = commonSchemaData;
+            mTransmissionTarget = transmissionTarget;
+            mFlags = flags;
+            mUserId = userId;
+        }
+    }
 }
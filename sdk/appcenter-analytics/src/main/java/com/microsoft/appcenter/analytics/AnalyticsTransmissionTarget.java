@@ -251,11 +251,9 @@ public class AnalyticsTransmissionTarget {
      */
     public void trackEvent(String name, EventProperties properties, int flags) {
 
-        /* Merge common properties. More specific target wins conflicts. */
+        /* Merge common properties, already resolved from all levels. */
         EventProperties mergedProperties = new EventProperties();
-        for (AnalyticsTransmissionTarget target = this; target != null; target = target.mParentTarget) {
-            target.getPropertyConfigurator().mergeEventProperties(mergedProperties);
-        }
+        mergedProperties.getProperties().putAll(getPropertyConfigurator().getSnapshot().getEventProperties());
 
         /* Override with parameter. */
         if (properties != null) {
@@ -274,6 +272,45 @@ public class AnalyticsTransmissionTarget {
         Analytics.trackEvent(name, mergedProperties, this, flags);
     }
 
+    /**
+     * Track a custom event with name and prepared properties.
+     * <p>
+     * Properties are validated when prepared, see {@link #trackEvent(String, EventProperties)} for validation rules.
+     * Prepared properties are used as is if no common event properties are set on this target
+     * or its parents, otherwise they are merged as with {@link #trackEvent(String, EventProperties)}.
+     *
+     * @param name       An event name.
+     * @param properties Optional prepared properties.
+     */
+    public void trackEvent(String name, PreparedEventProperties properties) {
+        trackEvent(name, properties, Flags.DEFAULTS);
+    }
+
+    /**
+     * Track a custom event with name and prepared properties.
+     * <p>
+     * Properties are validated when prepared, see {@link #trackEvent(String, EventProperties, int)} for validation rules.
+     * Prepared properties are used as is if no common event properties are set on this target
+     * or its parents, otherwise they are merged as with {@link #trackEvent(String, EventProperties, int)}.
+     *
+     * @param name       An event name.
+     * @param properties Optional prepared properties.
+     * @param flags      Optional flags. Events tracked with the {@link Flags#CRITICAL}
+     *                   flag will take precedence over all other events in storage.
+     *                   An event tracked with this option will only be dropped
+     *                   if storage must make room for a newer event that is also marked with the
+     *                   {@link Flags#CRITICAL} flag.
+     */
+    public void trackEvent(String name, PreparedEventProperties properties, int flags) {
+
+        /* Common properties can change between events so they cannot be prepared. */
+        if (!getPropertyConfigurator().getSnapshot().getEventProperties().isEmpty()) {
+            trackEvent(name, properties == null ? null : properties.toEventProperties(), flags);
+            return;
+        }
+        Analytics.trackPreparedEvent(name, properties, this, flags);
+    }
+
     /**
      * Create a new transmission target based on the properties of the current target.
      *
@@ -137,6 +137,16 @@ public class EventProperties {
         return this;
     }
 
+    /**
+     * Validate a snapshot of these properties once to track many events with them.
+     * Later changes to this instance do not affect the returned properties.
+     *
+     * @return prepared properties.
+     */
+    public PreparedEventProperties prepare() {
+        return new PreparedEventProperties(this);
+    }
+
     /**
      * Common validation for both AppCenter and One Collector, specific validation happens later.
      */
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.analytics;
+
+import androidx.annotation.NonNull;
+
+import com.microsoft.appcenter.analytics.channel.AnalyticsValidator;
+import com.microsoft.appcenter.ingestion.models.one.CommonSchemaDataUtils;
+import com.microsoft.appcenter.ingestion.models.one.CompiledCommonSchemaData;
+import com.microsoft.appcenter.ingestion.models.properties.TypedProperty;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable event properties, validated and prepared once to track many events with the same properties.
+ * Use {@link EventProperties#prepare()} to create an instance.
+ * <p>
+ * Properties are validated, and truncated if needed, when prepared rather than for each event.
+ */
+public final class PreparedEventProperties {
+
+    /**
+     * Validated properties.
+     */
+    private final List<TypedProperty> mProperties;
+
+    /**
+     * Properties compiled for transmission targets.
+     */
+    private final CompiledCommonSchemaData mCommonSchemaData;
+
+    /**
+     * Init.
+     *
+     * @param properties properties to copy.
+     */
+    PreparedEventProperties(@NonNull EventProperties properties) {
+        List<TypedProperty> validatedProperties = new ArrayList<>(properties.getProperties().values());
+        AnalyticsValidator.validateProperties(validatedProperties);
+        mProperties = Collections.unmodifiableList(validatedProperties);
+        mCommonSchemaData = CommonSchemaDataUtils.compile(mProperties);
+    }
+
+    List<TypedProperty> getProperties() {
+        return mProperties;
+    }
+
+    CompiledCommonSchemaData getCommonSchemaData() {
+        return mCommonSchemaData;
+    }
+
+    /**
+     * Get a mutable copy.
+     *
+     * @return new event properties with the validated properties.
+     */
+    EventProperties toEventProperties() {
+        EventProperties eventProperties = new EventProperties();
+        for (TypedProperty property : mProperties) {
+            eventProperties.getProperties().put(property.getName(), property);
+        }
+        return eventProperties;
+    }
+}
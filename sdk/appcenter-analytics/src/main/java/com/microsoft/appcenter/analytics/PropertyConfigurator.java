@@ -19,7 +19,9 @@ import com.microsoft.appcenter.ingestion.models.properties.TypedProperty;
 import com.microsoft.appcenter.utils.context.UserIdContext;
 
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.microsoft.appcenter.Constants.COMMON_SCHEMA_PREFIX_SEPARATOR;
 
@@ -33,6 +35,12 @@ public class PropertyConfigurator extends AbstractChannelListener {
      */
     private static final String ANDROID_DEVICE_ID_PREFIX = "a" + COMMON_SCHEMA_PREFIX_SEPARATOR;
 
+    /**
+     * Version of all property configurators, incremented on any change as it can affect
+     * the snapshots of all descendant targets.
+     */
+    private static final AtomicLong sVersion = new AtomicLong();
+
     /**
      * App name to override common schema part A 'app.name'.
      */
@@ -68,6 +76,11 @@ public class PropertyConfigurator extends AbstractChannelListener {
      */
     private final EventProperties mEventProperties = new EventProperties();
 
+    /**
+     * Properties of this target resolved with its parents, null until first needed.
+     */
+    private volatile PropertySnapshot mSnapshot;
+
     /**
      * Create a new property configurator.
      *
@@ -90,56 +103,19 @@ public class PropertyConfigurator extends AbstractChannelListener {
             UserExtension user = ((CommonSchemaLog) log).getExt().getUser();
             DeviceExtension device = ((CommonSchemaLog) log).getExt().getDevice();
 
-            /* Override app name if not null, else use the name of the nearest parent. */
-            if (mAppName != null) {
-                app.setName(mAppName);
-            } else {
-                for (AnalyticsTransmissionTarget target = mTransmissionTarget.mParentTarget; target != null; target = target.mParentTarget) {
-                    String parentAppName = target.getPropertyConfigurator().getAppName();
-                    if (parentAppName != null) {
-                        app.setName(parentAppName);
-                        break;
-                    }
-                }
+            /* Override with values of this target, else of the nearest parent. */
+            PropertySnapshot snapshot = getSnapshot();
+            if (snapshot.getAppName() != null) {
+                app.setName(snapshot.getAppName());
             }
-
-            /* Override app version if not null, else use the version of the nearest parent. */
-            if (mAppVersion != null) {
-                app.setVer(mAppVersion);
-            } else {
-                for (AnalyticsTransmissionTarget target = mTransmissionTarget.mParentTarget; target != null; target = target.mParentTarget) {
-                    String parentAppVersion = target.getPropertyConfigurator().getAppVersion();
-                    if (parentAppVersion != null) {
-                        app.setVer(parentAppVersion);
-                        break;
-                    }
-                }
+            if (snapshot.getAppVersion() != null) {
+                app.setVer(snapshot.getAppVersion());
             }
-
-            /* Override app locale if not null, else use the locale of the nearest parent. */
-            if (mAppLocale != null) {
-                app.setLocale(mAppLocale);
-            } else {
-                for (AnalyticsTransmissionTarget target = mTransmissionTarget.mParentTarget; target != null; target = target.mParentTarget) {
-                    String parentAppLocale = target.getPropertyConfigurator().getAppLocale();
-                    if (parentAppLocale != null) {
-                        app.setLocale(parentAppLocale);
-                        break;
-                    }
-                }
+            if (snapshot.getAppLocale() != null) {
+                app.setLocale(snapshot.getAppLocale());
             }
-
-            /* Override userId if not null, else use the userId of the nearest parent. */
-            if (mUserId != null) {
-                user.setLocalId(mUserId);
-            } else {
-                for (AnalyticsTransmissionTarget target = mTransmissionTarget.mParentTarget; target != null; target = target.mParentTarget) {
-                    String parentUserId = target.getPropertyConfigurator().getUserId();
-                    if (parentUserId != null) {
-                        user.setLocalId(parentUserId);
-                        break;
-                    }
-                }
+            if (snapshot.getUserId() != null) {
+                user.setLocalId(snapshot.getUserId());
             }
 
             /* Fill out the device id if it has been collected. */
@@ -164,15 +140,6 @@ public class PropertyConfigurator extends AbstractChannelListener {
                 mTransmissionTarget.isEnabled();
     }
 
-    /**
-     * Get app name.
-     *
-     * @return App name.
-     */
-    private String getAppName() {
-        return mAppName;
-    }
-
     /**
      * Override common schema Part A property App.Name.
      *
@@ -184,19 +151,11 @@ public class PropertyConfigurator extends AbstractChannelListener {
             @Override
             public void run() {
                 mAppName = appName;
+                onPropertiesChanged();
             }
         });
     }
 
-    /**
-     * Get app version.
-     *
-     * @return App version.
-     */
-    private String getAppVersion() {
-        return mAppVersion;
-    }
-
     /**
      * Override common schema Part A property App.Version.
      *
@@ -208,19 +167,11 @@ public class PropertyConfigurator extends AbstractChannelListener {
             @Override
             public void run() {
                 mAppVersion = appVersion;
+                onPropertiesChanged();
             }
         });
     }
 
-    /**
-     * Get app locale.
-     *
-     * @return App locale.
-     */
-    private String getAppLocale() {
-        return mAppLocale;
-    }
-
     /**
      * Override common schema Part A property App.Locale.
      *
@@ -232,19 +183,11 @@ public class PropertyConfigurator extends AbstractChannelListener {
             @Override
             public void run() {
                 mAppLocale = appLocale;
+                onPropertiesChanged();
             }
         });
     }
 
-    /**
-     * Get user id.
-     *
-     * @return user id.
-     */
-    private String getUserId() {
-        return mUserId;
-    }
-
     /**
      * Set the user identifier.
      * The user identifier needs to start with the c: prefix or must not have a prefix.
@@ -260,6 +203,7 @@ public class PropertyConfigurator extends AbstractChannelListener {
                 @Override
                 public void run() {
                     mUserId = UserIdContext.getPrefixedUserId(userId);
+                    onPropertiesChanged();
                 }
             });
         }
@@ -274,6 +218,7 @@ public class PropertyConfigurator extends AbstractChannelListener {
      */
     public synchronized void setEventProperty(String key, boolean value) {
         mEventProperties.set(key, value);
+        onPropertiesChanged();
     }
 
     /**
@@ -285,6 +230,7 @@ public class PropertyConfigurator extends AbstractChannelListener {
      */
     public synchronized void setEventProperty(String key, Date value) {
         mEventProperties.set(key, value);
+        onPropertiesChanged();
     }
 
     /**
@@ -296,6 +242,7 @@ public class PropertyConfigurator extends AbstractChannelListener {
      */
     public synchronized void setEventProperty(String key, double value) {
         mEventProperties.set(key, value);
+        onPropertiesChanged();
     }
 
     /**
@@ -307,6 +254,7 @@ public class PropertyConfigurator extends AbstractChannelListener {
      */
     public synchronized void setEventProperty(String key, long value) {
         mEventProperties.set(key, value);
+        onPropertiesChanged();
     }
 
     /**
@@ -318,6 +266,7 @@ public class PropertyConfigurator extends AbstractChannelListener {
      */
     public synchronized void setEventProperty(String key, String value) {
         mEventProperties.set(key, value);
+        onPropertiesChanged();
     }
 
     /**
@@ -327,6 +276,7 @@ public class PropertyConfigurator extends AbstractChannelListener {
      */
     public synchronized void removeEventProperty(String key) {
         mEventProperties.getProperties().remove(key);
+        onPropertiesChanged();
     }
 
     /**
@@ -343,16 +293,49 @@ public class PropertyConfigurator extends AbstractChannelListener {
         });
     }
 
-    /*
-     * Extracted method to synchronize on each level at once while reading properties.
-     * Nesting synchronize between parent/child could lead to deadlocks.
+    /**
+     * Get properties of this target resolved with its parents, rebuilt only if a property
+     * configurator changed since the last call.
+     *
+     * @return snapshot of the properties.
      */
-    synchronized void mergeEventProperties(EventProperties mergedProperties) {
-        for (Map.Entry<String, TypedProperty> property : mEventProperties.getProperties().entrySet()) {
-            String key = property.getKey();
-            if (!mergedProperties.getProperties().containsKey(key)) {
-                mergedProperties.getProperties().put(key, property.getValue());
-            }
+    PropertySnapshot getSnapshot() {
+
+        /* Read version before properties so that a concurrent change makes the snapshot outdated. */
+        long version = sVersion.get();
+        PropertySnapshot snapshot = mSnapshot;
+        if (snapshot != null && snapshot.getVersion() == version) {
+            return snapshot;
+        }
+        AnalyticsTransmissionTarget parentTarget = mTransmissionTarget.mParentTarget;
+        PropertySnapshot parentSnapshot = parentTarget != null ? parentTarget.getPropertyConfigurator().getSnapshot() : null;
+        Map<String, TypedProperty> eventProperties = new HashMap<>();
+        if (parentSnapshot != null) {
+            eventProperties.putAll(parentSnapshot.getEventProperties());
         }
+
+        /* Synchronize on each level at once, nesting synchronize between parent/child could lead to deadlocks. */
+        synchronized (this) {
+            eventProperties.putAll(mEventProperties.getProperties());
+        }
+        snapshot = new PropertySnapshot(version,
+                inherit(mAppName, parentSnapshot != null ? parentSnapshot.getAppName() : null),
+                inherit(mAppVersion, parentSnapshot != null ? parentSnapshot.getAppVersion() : null),
+                inherit(mAppLocale, parentSnapshot != null ? parentSnapshot.getAppLocale() : null),
+                inherit(mUserId, parentSnapshot != null ? parentSnapshot.getUserId() : null),
+                eventProperties);
+        mSnapshot = snapshot;
+        return snapshot;
+    }
+
+    private static String inherit(String value, String parentValue) {
+        return value != null ? value : parentValue;
+    }
+
+    /**
+     * Make snapshots outdated after a change, must be called once the change is done.
+     */
+    private static void onPropertiesChanged() {
+        sVersion.incrementAndGet();
     }
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.analytics;
+
+import com.microsoft.appcenter.ingestion.models.properties.TypedProperty;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Properties of a transmission target resolved with the ones inherited from its parents,
+ * at a given version of the property configurators.
+ */
+final class PropertySnapshot {
+
+    /**
+     * Configurators version at which the snapshot was taken.
+     */
+    private final long mVersion;
+
+    /**
+     * App name of the nearest target that sets it.
+     */
+    private final String mAppName;
+
+    /**
+     * App version of the nearest target that sets it.
+     */
+    private final String mAppVersion;
+
+    /**
+     * App locale of the nearest target that sets it.
+     */
+    private final String mAppLocale;
+
+    /**
+     * User identifier of the nearest target that sets it.
+     */
+    private final String mUserId;
+
+    /**
+     * Common event properties merged from all levels, more specific target wins conflicts.
+     */
+    private final Map<String, TypedProperty> mEventProperties;
+
+    PropertySnapshot(long version, String appName, String appVersion, String appLocale, String userId, Map<String, TypedProperty> eventProperties) {
+        mVersion = version;
+        mAppName = appName;
+        mAppVersion = appVersion;
+        mAppLocale = appLocale;
+        mUserId = userId;
+        mEventProperties = Collections.unmodifiableMap(eventProperties);
+    }
+
+    long getVersion() {
+        return mVersion;
+    }
+
+    String getAppName() {
+        return mAppName;
+    }
+
+    String getAppVersion() {
+        return mAppVersion;
+    }
+
+    String getAppLocale() {
+        return mAppLocale;
+    }
+
+    String getUserId() {
+        return mUserId;
+    }
+
+    Map<String, TypedProperty> getEventProperties() {
+        return mEventProperties;
+    }
+}
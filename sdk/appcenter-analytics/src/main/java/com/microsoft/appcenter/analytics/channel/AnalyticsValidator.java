@@ -76,7 +76,11 @@ public class AnalyticsValidator extends AbstractChannelListener {
         if (name == null) {
             return false;
         }
-        validateProperties(log.getTypedProperties());
+
+        /* Prepared properties are validated once when prepared. */
+        if (log.getCommonSchemaData() == null) {
+            validateProperties(log.getTypedProperties());
+        }
         log.setName(name);
         return true;
     }
@@ -150,9 +154,9 @@ public class AnalyticsValidator extends AbstractChannelListener {
     /**
      * Validates typed properties.
      *
-     * @param properties Typed properties collection to validate.
+     * @param properties Typed properties collection to validate, modified in place.
      */
-    private static void validateProperties(List<TypedProperty> properties) {
+    public static void validateProperties(List<TypedProperty> properties) {
         if (properties == null) {
             return;
         }
@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.analytics.channel;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import com.microsoft.appcenter.utils.metrics.SdkMetrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded lock-free queue where application threads publish events, drained by the App Center looper.
+ * Each slot has a sequence number telling whether it is ready to be written or read for a given position,
+ * so producers and consumers only compete with a compare-and-set on the tail or head position.
+ *
+ * @param <E> element type.
+ */
+public class EventRingBuffer<E> {
+
+    /**
+     * What to do when publishing an element while the buffer is full.
+     */
+    public enum OverflowPolicy {
+
+        /**
+         * Drop the oldest element to make room for the new one.
+         */
+        DROP_OLDEST,
+
+        /**
+         * Drop the new element.
+         */
+        DROP_NEW,
+
+        /**
+         * Wait for room, up to {@link #MAX_BLOCK_TIME} then drop the new element.
+         */
+        BLOCK
+    }
+
+    /**
+     * Maximum time in nanoseconds a publisher waits for room with {@link OverflowPolicy#BLOCK}.
+     * Waiting is bounded as the looper could itself be publishing.
+     */
+    @VisibleForTesting
+    static final long MAX_BLOCK_TIME = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Time in nanoseconds between attempts to publish with {@link OverflowPolicy#BLOCK}.
+     */
+    private static final long BLOCK_RETRY_INTERVAL = TimeUnit.MICROSECONDS.toNanos(100);
+
+    /**
+     * Slot index mask, capacity is a power of 2.
+     */
+    private final int mMask;
+
+    /**
+     * Elements.
+     */
+    private final AtomicReferenceArray<E> mElements;
+
+    /**
+     * Sequence per slot: equals position when writable, position + 1 when readable.
+     */
+    private final AtomicLongArray mSequences;
+
+    /**
+     * Next position to write.
+     */
+    private final AtomicLong mTail = new AtomicLong();
+
+    /**
+     * Next position to read.
+     */
+    private final AtomicLong mHead = new AtomicLong();
+
+    /**
+     * Number of dropped elements.
+     */
+    private final AtomicLong mDroppedCount = new AtomicLong();
+
+    /**
+     * Overflow policy.
+     */
+    private final OverflowPolicy mOverflowPolicy;
+
+    /**
+     * Init.
+     *
+     * @param capacity       maximum number of elements, rounded up to a power of 2.
+     * @param overflowPolicy what to do when full.
+     */
+    public EventRingBuffer(int capacity, @NonNull OverflowPolicy overflowPolicy) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        mMask = size - 1;
+        mElements = new AtomicReferenceArray<>(size);
+        mSequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            mSequences.set(i, i);
+        }
+        mOverflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Get capacity.
+     *
+     * @return maximum number of elements.
+     */
+    public int getCapacity() {
+        return mMask + 1;
+    }
+
+    /**
+     * Get number of elements dropped because the buffer was full.
+     *
+     * @return number of dropped elements.
+     */
+    public long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+
+    /**
+     * Check if there is an element to read. The result can be outdated as soon as returned
+     * if other threads use the buffer.
+     *
+     * @return true if empty.
+     */
+    public boolean isEmpty() {
+        long position = mHead.get();
+        return mSequences.get((int) position & mMask) - (position + 1) < 0;
+    }
+
+    /**
+     * Publish an element, applying the overflow policy if the buffer is full.
+     * Can be called from any thread.
+     *
+     * @param element element to publish.
+     * @return true if published, false if the element was dropped.
+     */
+    public boolean publish(@NonNull E element) {
+        if (offer(element)) {
+            return true;
+        }
+        switch (mOverflowPolicy) {
+            case DROP_OLDEST:
+                do {
+                    if (poll() != null) {
+                        onDropped();
+                    }
+                } while (!offer(element));
+                return true;
+
+            case BLOCK:
+                long deadline = System.nanoTime() + MAX_BLOCK_TIME;
+                do {
+                    if (System.nanoTime() - deadline >= 0) {
+                        onDropped();
+                        return false;
+                    }
+                    LockSupport.parkNanos(BLOCK_RETRY_INTERVAL);
+                } while (!offer(element));
+                return true;
+
+            default:
+                onDropped();
+                return false;
+        }
+    }
+
+    /**
+     * Take the oldest element.
+     *
+     * @return oldest element or null if empty.
+     */
+    public E poll() {
+        long position = mHead.get();
+        while (true) {
+            int index = (int) position & mMask;
+            long difference = mSequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (mHead.compareAndSet(position, position + 1)) {
+                    E element = mElements.get(index);
+                    mElements.set(index, null);
+                    mSequences.set(index, position + mMask + 1);
+                    return element;
+                }
+                position = mHead.get();
+            } else if (difference < 0) {
+
+                /* Not written yet. */
+                return null;
+            } else {
+
+                /* Read by another thread, retry with new head. */
+                position = mHead.get();
+            }
+        }
+    }
+
+    private boolean offer(E element) {
+        long position = mTail.get();
+        while (true) {
+            int index = (int) position & mMask;
+            long difference = mSequences.get(index) - position;
+            if (difference == 0) {
+                if (mTail.compareAndSet(position, position + 1)) {
+                    mElements.set(index, element);
+                    mSequences.set(index, position + 1);
+                    return true;
+                }
+                position = mTail.get();
+            } else if (difference < 0) {
+
+                /* Slot not read yet since last lap: full. */
+                return false;
+            } else {
+
+                /* Written by another thread, retry with new tail. */
+                position = mTail.get();
+            }
+        }
+    }
+
+    private void onDropped() {
+        mDroppedCount.incrementAndGet();
+        SdkMetrics.increment(SdkMetrics.Counter.EVENTS_DROPPED);
+    }
+}
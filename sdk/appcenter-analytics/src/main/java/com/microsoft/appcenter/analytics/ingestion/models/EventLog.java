@@ -6,6 +6,7 @@
 package com.microsoft.appcenter.analytics.ingestion.models;
 
 import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
+import com.microsoft.appcenter.ingestion.models.one.CompiledCommonSchemaData;
 import com.microsoft.appcenter.ingestion.models.properties.TypedProperty;
 import com.microsoft.appcenter.ingestion.models.properties.TypedPropertyUtils;
 
@@ -36,6 +37,12 @@ public class EventLog extends LogWithNameAndProperties {
      */
     private List<TypedProperty> typedProperties;
 
+    /**
+     * Typed properties already validated and compiled for common schema, set when tracked
+     * with prepared properties. Not serialized.
+     */
+    private CompiledCommonSchemaData commonSchemaData;
+
     @Override
     public String getType() {
         return TYPE;
@@ -78,6 +85,25 @@ public class EventLog extends LogWithNameAndProperties {
         this.typedProperties = typedProperties;
     }
 
+    /**
+     * Get the commonSchemaData value.
+     *
+     * @return the commonSchemaData value, null if typed properties were not prepared.
+     */
+    public CompiledCommonSchemaData getCommonSchemaData() {
+        return commonSchemaData;
+    }
+
+    /**
+     * Set the commonSchemaData value.
+     *
+     * @param commonSchemaData the commonSchemaData value to set, must be compiled from the typed properties
+     *                         after validation.
+     */
+    public void setCommonSchemaData(CompiledCommonSchemaData commonSchemaData) {
+        this.commonSchemaData = commonSchemaData;
+    }
+
     @Override
     public void read(JSONObject object) throws JSONException {
         super.read(object);
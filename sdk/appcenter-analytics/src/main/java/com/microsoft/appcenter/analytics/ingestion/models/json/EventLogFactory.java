@@ -11,6 +11,7 @@ import com.microsoft.appcenter.ingestion.models.Log;
 import com.microsoft.appcenter.ingestion.models.json.AbstractLogFactory;
 import com.microsoft.appcenter.ingestion.models.one.CommonSchemaDataUtils;
 import com.microsoft.appcenter.ingestion.models.one.CommonSchemaLog;
+import com.microsoft.appcenter.ingestion.models.one.CompiledCommonSchemaData;
 import com.microsoft.appcenter.ingestion.models.one.PartAUtils;
 
 import java.util.Collection;
@@ -26,20 +27,26 @@ public class EventLogFactory extends AbstractLogFactory {
     @Override
     public Collection<CommonSchemaLog> toCommonSchemaLogs(Log log) {
         Collection<CommonSchemaLog> commonSchemaLogs = new LinkedList<>();
+        EventLog eventLog = (EventLog) log;
+
+        /* Compile properties once for all targets, unless they were prepared. */
+        CompiledCommonSchemaData commonSchemaData = eventLog.getCommonSchemaData();
+        if (commonSchemaData == null) {
+            commonSchemaData = CommonSchemaDataUtils.compile(eventLog.getTypedProperties());
+        }
         for (String transmissionTarget : log.getTransmissionTargetTokens()) {
 
             /* Part A common fields. */
             CommonSchemaEventLog commonSchemaEventLog = new CommonSchemaEventLog();
 
             /* Event name goes to Part A. */
-            EventLog eventLog = (EventLog) log;
             PartAUtils.setName(commonSchemaEventLog, eventLog.getName());
 
             /* Add common Part A fields. */
             PartAUtils.addPartAFromLog(log, commonSchemaEventLog, transmissionTarget);
 
             /* Part B, C and Part A metadata. */
-            CommonSchemaDataUtils.addCommonSchemaData(eventLog.getTypedProperties(), commonSchemaEventLog);
+            CommonSchemaDataUtils.addCommonSchemaData(commonSchemaData, commonSchemaEventLog);
             commonSchemaLogs.add(commonSchemaEventLog);
 
             /* Copy tag. */
@@ -11,6 +11,7 @@ import com.microsoft.appcenter.AppCenter;
 import com.microsoft.appcenter.Flags;
 import com.microsoft.appcenter.analytics.channel.AnalyticsListener;
 import com.microsoft.appcenter.analytics.channel.AnalyticsValidator;
+import com.microsoft.appcenter.analytics.channel.EventRingBuffer;
 import com.microsoft.appcenter.analytics.channel.SessionTracker;
 import com.microsoft.appcenter.analytics.ingestion.models.EventLog;
 import com.microsoft.appcenter.analytics.ingestion.models.PageLog;
@@ -58,10 +59,12 @@ import static com.microsoft.appcenter.analytics.Analytics.ANALYTICS_CRITICAL_GRO
 import static com.microsoft.appcenter.analytics.Analytics.ANALYTICS_GROUP;
 import static com.microsoft.appcenter.analytics.Analytics.MAXIMUM_TRANSMISSION_INTERVAL_IN_SECONDS;
 import static com.microsoft.appcenter.analytics.Analytics.MINIMUM_TRANSMISSION_INTERVAL_IN_SECONDS;
+import static com.microsoft.appcenter.test.TestUtils.generateString;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
@@ -349,6 +352,40 @@ public class AnalyticsTest extends AbstractAnalyticsTest {
         assertEquals(booleanTypedProperty, argumentCaptor.getValue().getTypedProperties().get(4));
     }
 
+    @Test
+    public void trackEventFromAppWithPreparedProperties() {
+        Analytics analytics = Analytics.getInstance();
+        Channel channel = mock(Channel.class);
+        ArgumentCaptor<EventLog> argumentCaptor = ArgumentCaptor.forClass(EventLog.class);
+        analytics.onStarting(mAppCenterHandler);
+        analytics.onStarted(mock(Context.class), channel, "", null, true);
+
+        /* Properties are validated (value truncated to 125) when prepared and not affected by later changes. */
+        EventProperties eventProperties = new EventProperties();
+        eventProperties.set("n0", generateString(126, '*'));
+        PreparedEventProperties preparedProperties = eventProperties.prepare();
+        eventProperties.set("n1", "value");
+        StringTypedProperty stringTypedProperty = new StringTypedProperty();
+        stringTypedProperty.setName("n0");
+        stringTypedProperty.setValue(generateString(125, '*'));
+        assertEquals(Collections.<TypedProperty>singletonList(stringTypedProperty), preparedProperties.getProperties());
+        assertNotNull(preparedProperties.getCommonSchemaData());
+
+        /* Same properties are used for each event. */
+        Analytics.trackEvent("eventName", preparedProperties);
+        Analytics.trackEvent("eventName", preparedProperties, CRITICAL);
+        Analytics.trackEvent("eventName", (PreparedEventProperties) null);
+        verify(channel).enqueue(any(EventLog.class), anyString(), eq(CRITICAL));
+        verify(channel, times(3)).enqueue(argumentCaptor.capture(), anyString(), anyInt());
+        for (EventLog eventLog : argumentCaptor.getAllValues().subList(0, 2)) {
+            assertSame(preparedProperties.getProperties(), eventLog.getTypedProperties());
+            assertSame(preparedProperties.getCommonSchemaData(), eventLog.getCommonSchemaData());
+        }
+        EventLog eventLog = argumentCaptor.getAllValues().get(2);
+        assertNull(eventLog.getTypedProperties());
+        assertNull(eventLog.getCommonSchemaData());
+    }
+
     @Test
     public void trackEventWithNormalPersistenceFlag() {
         Analytics analytics = Analytics.getInstance();
@@ -844,6 +881,17 @@ public class AnalyticsTest extends AbstractAnalyticsTest {
         verify(analyticsListener, never()).onSendingFailed(any(EventLog.class), any(Exception.class));
     }
 
+    @Test
+    public void channelListenerNeedsLogsOnlyWithAnalyticsListener() {
+        Channel.ConditionalGroupListener listener = (Channel.ConditionalGroupListener) Analytics.getInstance().getChannelListener();
+        Analytics.setListener(null);
+        assertFalse(listener.needsLogs());
+        Analytics.setListener(mock(AnalyticsListener.class));
+        assertTrue(listener.needsLogs());
+        Analytics.setListener(null);
+        assertFalse(listener.needsLogs());
+    }
+
     @Test
     public void appOnlyFeatures() {
 
@@ -952,6 +1000,57 @@ public class AnalyticsTest extends AbstractAnalyticsTest {
         assertFalse(result);
     }
 
+    @Test
+    public void trackEventWithEventBuffer() {
+        assertTrue(Analytics.setEventBuffer(4, EventRingBuffer.OverflowPolicy.DROP_NEW));
+        Analytics analytics = Analytics.getInstance();
+        Channel channel = mock(Channel.class);
+        ArgumentCaptor<EventLog> argumentCaptor = ArgumentCaptor.forClass(EventLog.class);
+        analytics.onStarting(mAppCenterHandler);
+        analytics.onStarted(mock(Context.class), channel, "", null, true);
+
+        /* Events are enqueued in order. */
+        Analytics.trackEvent("event1");
+        Analytics.trackEvent("event2", (Map<String, String>) null, CRITICAL);
+        verify(channel).enqueue(argumentCaptor.capture(), eq(ANALYTICS_GROUP), eq(DEFAULTS));
+        verify(channel).enqueue(argumentCaptor.capture(), eq(ANALYTICS_CRITICAL_GROUP), eq(CRITICAL));
+        assertEquals("event1", argumentCaptor.getAllValues().get(0).getName());
+        assertEquals("event2", argumentCaptor.getAllValues().get(1).getName());
+
+        /* Events tracked while disabled are discarded. */
+        Analytics.setEnabled(false);
+        Analytics.trackEvent("event3");
+        Analytics.setEnabled(true);
+        Analytics.trackEvent("event4");
+        verify(channel, times(3)).enqueue(argumentCaptor.capture(), anyString(), anyInt());
+        assertEquals("event4", argumentCaptor.getValue().getName());
+    }
+
+    @Test
+    public void trackEventWithEventBufferBeforeStart() {
+        assertTrue(Analytics.setEventBuffer(4, EventRingBuffer.OverflowPolicy.DROP_NEW));
+        Analytics.trackEvent("event1");
+
+        /* Event tracked before start is discarded. */
+        Analytics analytics = Analytics.getInstance();
+        Channel channel = mock(Channel.class);
+        ArgumentCaptor<EventLog> argumentCaptor = ArgumentCaptor.forClass(EventLog.class);
+        analytics.onStarting(mAppCenterHandler);
+        analytics.onStarted(mock(Context.class), channel, "", null, true);
+        Analytics.trackEvent("event2");
+        verify(channel).enqueue(argumentCaptor.capture(), anyString(), anyInt());
+        assertEquals("event2", argumentCaptor.getValue().getName());
+    }
+
+    @Test
+    public void unableToSetInvalidEventBuffer() {
+        assertFalse(Analytics.setEventBuffer(0, EventRingBuffer.OverflowPolicy.BLOCK));
+        Analytics analytics = Analytics.getInstance();
+        analytics.onStarting(mAppCenterHandler);
+        analytics.onStarted(mock(Context.class), mock(Channel.class), null, null, false);
+        assertFalse(Analytics.setEventBuffer(16, EventRingBuffer.OverflowPolicy.BLOCK));
+    }
+
     /**
      * Activity with page name automatically resolving to "My" (no "Activity" suffix).
      */
@@ -48,6 +48,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
@@ -55,6 +56,7 @@ import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.notNull;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -353,6 +355,37 @@ public class PropertyConfiguratorTest extends AbstractAnalyticsTest {
         assertEquals("c:alice", log.getExt().getUser().getLocalId());
     }
 
+    @Test
+    public void snapshotRebuiltOnlyAfterChange() {
+        AnalyticsTransmissionTarget parent = Analytics.getTransmissionTarget("parent");
+        AnalyticsTransmissionTarget child = parent.getTransmissionTarget("child");
+        parent.getPropertyConfigurator().setAppName("parentName");
+        parent.getPropertyConfigurator().setEventProperty("a", "parent");
+        parent.getPropertyConfigurator().setEventProperty("b", "parent");
+        child.getPropertyConfigurator().setEventProperty("a", "child");
+
+        /* Snapshot is resolved with parent and reused. */
+        PropertySnapshot snapshot = child.getPropertyConfigurator().getSnapshot();
+        assertSame(snapshot, child.getPropertyConfigurator().getSnapshot());
+        assertEquals("parentName", snapshot.getAppName());
+        assertNull(snapshot.getAppVersion());
+        assertEquals(typedProperty("a", "child"), snapshot.getEventProperties().get("a"));
+        assertEquals(typedProperty("b", "parent"), snapshot.getEventProperties().get("b"));
+
+        /* A change on the parent is visible in the child snapshot. */
+        parent.getPropertyConfigurator().setAppName("newName");
+        parent.getPropertyConfigurator().removeEventProperty("b");
+        PropertySnapshot newSnapshot = child.getPropertyConfigurator().getSnapshot();
+        assertNotSame(snapshot, newSnapshot);
+        assertEquals("newName", newSnapshot.getAppName());
+        assertEquals(1, newSnapshot.getEventProperties().size());
+        assertSame(newSnapshot, child.getPropertyConfigurator().getSnapshot());
+
+        /* Previous snapshot is not modified. */
+        assertEquals("parentName", snapshot.getAppName());
+        assertEquals(2, snapshot.getEventProperties().size());
+    }
+
     @Test
     public void checkGrandParentNotOverriddenByDescendants() {
         CommonSchemaLog log = new CommonSchemaEventLog();
@@ -453,6 +486,35 @@ public class PropertyConfiguratorTest extends AbstractAnalyticsTest {
         assertEquals(typedProperties, log.getTypedProperties());
     }
 
+    @Test
+    public void trackPreparedPropertiesWithCommonEventProperties() {
+
+        /* Prepare properties then add common properties to parent target. */
+        AnalyticsTransmissionTarget parent = Analytics.getTransmissionTarget("parent");
+        AnalyticsTransmissionTarget target = parent.getTransmissionTarget("test");
+        PreparedEventProperties preparedProperties = new EventProperties().set("key", "value").prepare();
+        target.trackEvent("eventName", preparedProperties);
+        parent.getPropertyConfigurator().setEventProperty("common", "parent");
+        target.trackEvent("eventName", preparedProperties);
+        target.trackEvent("eventName", (PreparedEventProperties) null);
+
+        /* Prepared properties are used as is without common properties. */
+        ArgumentCaptor<EventLog> eventLogArg = ArgumentCaptor.forClass(EventLog.class);
+        verify(mChannel, times(3)).enqueue(eventLogArg.capture(), anyString(), eq(DEFAULTS));
+        EventLog log = eventLogArg.getAllValues().get(0);
+        assertSame(preparedProperties.getProperties(), log.getTypedProperties());
+        assertSame(preparedProperties.getCommonSchemaData(), log.getCommonSchemaData());
+
+        /* Then merged with common properties. */
+        log = eventLogArg.getAllValues().get(1);
+        assertNull(log.getCommonSchemaData());
+        assertEquals(2, log.getTypedProperties().size());
+        assertTrue(log.getTypedProperties().contains(typedProperty("key", "value")));
+        assertTrue(log.getTypedProperties().contains(typedProperty("common", "parent")));
+        log = eventLogArg.getAllValues().get(2);
+        assertEquals(Collections.singletonList(typedProperty("common", "parent")), log.getTypedProperties());
+    }
+
     @Test
     public void setCommonEventPropertiesWithNullMapProperties() {
 
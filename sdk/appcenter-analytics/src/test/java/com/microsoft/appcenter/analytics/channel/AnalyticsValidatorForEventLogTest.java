@@ -6,6 +6,7 @@
 package com.microsoft.appcenter.analytics.channel;
 
 import com.microsoft.appcenter.analytics.ingestion.models.EventLog;
+import com.microsoft.appcenter.ingestion.models.one.CommonSchemaDataUtils;
 import com.microsoft.appcenter.ingestion.models.properties.BooleanTypedProperty;
 import com.microsoft.appcenter.ingestion.models.properties.DateTimeTypedProperty;
 import com.microsoft.appcenter.ingestion.models.properties.DoubleTypedProperty;
@@ -248,4 +249,18 @@ public class AnalyticsValidatorForEventLogTest {
         assertEquals("name", booleanProperty.getName());
         assertTrue(booleanProperty.getValue());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void preparedPropertiesAreNotValidatedAgain() {
+        mEventLog.setName("eventName");
+        StringTypedProperty property = new StringTypedProperty();
+        property.setName(generateString(MAX_PROPERTY_ITEM_LENGTH + 1, '*'));
+        property.setValue("value");
+        List<TypedProperty> properties = Collections.<TypedProperty>singletonList(property);
+        mEventLog.setTypedProperties(properties);
+        mEventLog.setCommonSchemaData(CommonSchemaDataUtils.compile(properties));
+        assertFalse(mAnalyticsValidator.shouldFilter(mEventLog));
+        assertSame(properties, mEventLog.getTypedProperties());
+        assertSame(property, mEventLog.getTypedProperties().get(0));
+    }
+}
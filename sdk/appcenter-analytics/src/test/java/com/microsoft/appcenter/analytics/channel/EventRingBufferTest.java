@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.analytics.channel;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EventRingBufferTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidCapacity() {
+        new EventRingBuffer<>(0, EventRingBuffer.OverflowPolicy.DROP_NEW);
+    }
+
+    @Test
+    public void capacityIsRoundedUp() {
+        assertEquals(1, new EventRingBuffer<>(1, EventRingBuffer.OverflowPolicy.DROP_NEW).getCapacity());
+        assertEquals(4, new EventRingBuffer<>(3, EventRingBuffer.OverflowPolicy.DROP_NEW).getCapacity());
+        assertEquals(4, new EventRingBuffer<>(4, EventRingBuffer.OverflowPolicy.DROP_NEW).getCapacity());
+    }
+
+    @Test
+    public void fifoAcrossLaps() {
+        EventRingBuffer<Integer> buffer = new EventRingBuffer<>(2, EventRingBuffer.OverflowPolicy.DROP_NEW);
+        assertTrue(buffer.isEmpty());
+        assertNull(buffer.poll());
+        for (int i = 0; i < 10; i++) {
+            assertTrue(buffer.publish(2 * i));
+            assertTrue(buffer.publish(2 * i + 1));
+            assertFalse(buffer.isEmpty());
+            assertEquals(2 * i, (int) buffer.poll());
+            assertEquals(2 * i + 1, (int) buffer.poll());
+            assertTrue(buffer.isEmpty());
+        }
+        assertEquals(0, buffer.getDroppedCount());
+    }
+
+    @Test
+    public void dropNew() {
+        EventRingBuffer<Integer> buffer = new EventRingBuffer<>(2, EventRingBuffer.OverflowPolicy.DROP_NEW);
+        assertTrue(buffer.publish(1));
+        assertTrue(buffer.publish(2));
+        assertFalse(buffer.publish(3));
+        assertEquals(1, buffer.getDroppedCount());
+        assertEquals(1, (int) buffer.poll());
+        assertEquals(2, (int) buffer.poll());
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    public void dropOldest() {
+        EventRingBuffer<Integer> buffer = new EventRingBuffer<>(2, EventRingBuffer.OverflowPolicy.DROP_OLDEST);
+        assertTrue(buffer.publish(1));
+        assertTrue(buffer.publish(2));
+        assertTrue(buffer.publish(3));
+        assertEquals(1, buffer.getDroppedCount());
+        assertEquals(2, (int) buffer.poll());
+        assertEquals(3, (int) buffer.poll());
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    public void blockUntilPolled() throws InterruptedException {
+        final EventRingBuffer<Integer> buffer = new EventRingBuffer<>(1, EventRingBuffer.OverflowPolicy.BLOCK);
+        assertTrue(buffer.publish(1));
+        Thread consumer = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException ignored) {
+                }
+                buffer.poll();
+            }
+        };
+        consumer.start();
+        assertTrue(buffer.publish(2));
+        consumer.join();
+        assertEquals(2, (int) buffer.poll());
+        assertEquals(0, buffer.getDroppedCount());
+    }
+
+    @Test
+    public void blockTimesOut() {
+        EventRingBuffer<Integer> buffer = new EventRingBuffer<>(1, EventRingBuffer.OverflowPolicy.BLOCK);
+        assertTrue(buffer.publish(1));
+        long startTime = System.nanoTime();
+        assertFalse(buffer.publish(2));
+        assertTrue(System.nanoTime() - startTime >= EventRingBuffer.MAX_BLOCK_TIME);
+        assertEquals(1, buffer.getDroppedCount());
+        assertEquals(1, (int) buffer.poll());
+    }
+
+    @Test
+    public void concurrentProducers() throws InterruptedException {
+        final int producerCount = 4;
+        final int eventCount = 10000;
+        final EventRingBuffer<Integer> buffer = new EventRingBuffer<>(64, EventRingBuffer.OverflowPolicy.BLOCK);
+        final CountDownLatch latch = new CountDownLatch(producerCount);
+        List<Thread> producers = new ArrayList<>();
+        for (int i = 0; i < producerCount; i++) {
+            final int producer = i;
+            Thread thread = new Thread() {
+
+                @Override
+                public void run() {
+                    for (int j = 0; j < eventCount; j++) {
+                        buffer.publish(producer * eventCount + j);
+                    }
+                    latch.countDown();
+                }
+            };
+            producers.add(thread);
+            thread.start();
+        }
+
+        /* Every event is received exactly once. */
+        Set<Integer> received = new HashSet<>();
+        while (latch.getCount() > 0 || !buffer.isEmpty()) {
+            Integer event = buffer.poll();
+            if (event != null) {
+                assertTrue(received.add(event));
+            }
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertEquals(producerCount * eventCount, received.size());
+        assertEquals(0, buffer.getDroppedCount());
+    }
+}
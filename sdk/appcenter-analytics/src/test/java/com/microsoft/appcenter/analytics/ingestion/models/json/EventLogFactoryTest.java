@@ -9,6 +9,7 @@ import com.microsoft.appcenter.analytics.ingestion.models.EventLog;
 import com.microsoft.appcenter.analytics.ingestion.models.one.json.CommonSchemaEventLogFactory;
 import com.microsoft.appcenter.ingestion.models.one.CommonSchemaDataUtils;
 import com.microsoft.appcenter.ingestion.models.one.CommonSchemaLog;
+import com.microsoft.appcenter.ingestion.models.one.CompiledCommonSchemaData;
 import com.microsoft.appcenter.ingestion.models.one.PartAUtils;
 import com.microsoft.appcenter.ingestion.models.properties.StringTypedProperty;
 import com.microsoft.appcenter.ingestion.models.properties.TypedProperty;
@@ -27,12 +28,16 @@ import java.util.Map;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.notNull;
 import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
+import static org.powermock.api.mockito.PowerMockito.mock;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
 import static org.powermock.api.mockito.PowerMockito.verifyStatic;
+import static org.powermock.api.mockito.PowerMockito.when;
 
 @RunWith(PowerMockRunner.class)
 public class EventLogFactoryTest {
@@ -56,12 +61,13 @@ public class EventLogFactoryTest {
     }
 
     @Test
-    @PrepareForTest({PartAUtils.class, CommonSchemaDataUtils.class})
+    @PrepareForTest({PartAUtils.class, CommonSchemaDataUtils.class, CompiledCommonSchemaData.class})
     public void convertEventWithoutProperties() {
 
         /* Mock utilities. */
         mockStatic(PartAUtils.class);
         mockStatic(CommonSchemaDataUtils.class);
+        CompiledCommonSchemaData compiled = mock(CompiledCommonSchemaData.class);
 
         /* Create event log. */
         EventLog log = new EventLog();
@@ -79,6 +85,7 @@ public class EventLogFactoryTest {
         stringTypedProperty.setValue("b");
         properties.add(stringTypedProperty);
         log.setTypedProperties(properties);
+        when(CommonSchemaDataUtils.compile(properties)).thenReturn(compiled);
 
         /* With 2 targets. */
         log.addTransmissionTarget("t1");
@@ -112,8 +119,31 @@ public class EventLogFactoryTest {
         verifyStatic();
         PartAUtils.addPartAFromLog(eq(log), notNull(CommonSchemaLog.class), eq("t2"));
 
-        /* Check data was added with typed properties (and thus not old ones). */
+        /* Check typed properties (and thus not old ones) were compiled once and added to each log. */
+        verifyStatic();
+        CommonSchemaDataUtils.compile(properties);
         verifyStatic(times(2));
-        CommonSchemaDataUtils.addCommonSchemaData(eq(properties), notNull(CommonSchemaLog.class));
+        CommonSchemaDataUtils.addCommonSchemaData(same(compiled), notNull(CommonSchemaLog.class));
+    }
+
+    @Test
+    @PrepareForTest({PartAUtils.class, CommonSchemaDataUtils.class, CompiledCommonSchemaData.class})
+    public void convertEventWithPreparedProperties() {
+        mockStatic(PartAUtils.class);
+        mockStatic(CommonSchemaDataUtils.class);
+        CompiledCommonSchemaData compiled = mock(CompiledCommonSchemaData.class);
+        EventLog log = new EventLog();
+        log.setName("test");
+        log.setTypedProperties(new ArrayList<TypedProperty>());
+        log.setCommonSchemaData(compiled);
+        log.addTransmissionTarget("t1");
+        Collection<CommonSchemaLog> convertedLogs = new EventLogFactory().toCommonSchemaLogs(log);
+        assertEquals(1, convertedLogs.size());
+
+        /* Prepared properties are not compiled again. */
+        verifyStatic(never());
+        CommonSchemaDataUtils.compile(anyListOf(TypedProperty.class));
+        verifyStatic();
+        CommonSchemaDataUtils.addCommonSchemaData(same(compiled), notNull(CommonSchemaLog.class));
     }
 }
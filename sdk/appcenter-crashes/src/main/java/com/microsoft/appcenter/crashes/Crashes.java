@@ -38,6 +38,7 @@ import com.microsoft.appcenter.ingestion.models.json.LogSerializer;
 import com.microsoft.appcenter.utils.AppCenterLog;
 import com.microsoft.appcenter.utils.DeviceInfoHelper;
 import com.microsoft.appcenter.utils.HandlerUtils;
+import com.microsoft.appcenter.utils.IdGenerator;
 import com.microsoft.appcenter.utils.async.AppCenterFuture;
 import com.microsoft.appcenter.utils.async.DefaultAppCenterFuture;
 import com.microsoft.appcenter.utils.context.SessionContext;
@@ -637,7 +638,7 @@ public class Crashes extends AbstractAppCenterService {
 
         /* Snapshot userId as early as possible. */
         final String userId = UserIdContext.getInstance().getUserId();
-        final UUID errorId = UUID.randomUUID();
+        final UUID errorId = IdGenerator.generateId();
         final Map<String, String> validatedProperties = ErrorLogHelper.validateProperties(properties, "HandledError");
         post(new Runnable() {
 
@@ -1074,7 +1075,7 @@ public class Crashes extends AbstractAppCenterService {
         } else {
             for (ErrorAttachmentLog attachment : attachments) {
                 if (attachment != null) {
-                    attachment.setId(UUID.randomUUID());
+                    attachment.setId(IdGenerator.generateId());
                     attachment.setErrorId(errorId);
                     if (!attachment.isValid()) {
                         AppCenterLog.error(LOG_TAG, "Not all required fields are present in ErrorAttachmentLog.");
@@ -299,7 +299,8 @@ public abstract class AbstractErrorLog extends AbstractLog {
         JSONUtils.write(writer, ERROR_THREAD_ID, getErrorThreadId());
         JSONUtils.write(writer, ERROR_THREAD_NAME, getErrorThreadName());
         JSONUtils.write(writer, FATAL, getFatal());
-        JSONUtils.write(writer, APP_LAUNCH_TIMESTAMP, JSONDateUtils.toString(getAppLaunchTimestamp()));
+        writer.key(APP_LAUNCH_TIMESTAMP);
+        JSONDateUtils.write(writer, getAppLaunchTimestamp());
         JSONUtils.write(writer, ARCHITECTURE, getArchitecture());
     }
 
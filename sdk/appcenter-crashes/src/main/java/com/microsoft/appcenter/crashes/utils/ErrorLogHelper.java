@@ -25,6 +25,7 @@ import com.microsoft.appcenter.ingestion.models.Device;
 import com.microsoft.appcenter.ingestion.models.Log;
 import com.microsoft.appcenter.utils.AppCenterLog;
 import com.microsoft.appcenter.utils.DeviceInfoHelper;
+import com.microsoft.appcenter.utils.IdGenerator;
 import com.microsoft.appcenter.utils.context.UserIdContext;
 import com.microsoft.appcenter.utils.storage.FileManager;
 
@@ -161,7 +162,7 @@ public class ErrorLogHelper {
 
         /* Build error log with a unique identifier. */
         ManagedErrorLog errorLog = new ManagedErrorLog();
-        errorLog.setId(UUID.randomUUID());
+        errorLog.setId(IdGenerator.generateId());
 
         /* Set current time. Will be correlated to session after restart. */
         errorLog.setTimestamp(new Date());
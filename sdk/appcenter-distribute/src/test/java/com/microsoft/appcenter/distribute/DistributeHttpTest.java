@@ -57,6 +57,7 @@ public class DistributeHttpTest extends AbstractDistributeTest {
         headers.put("Another-Header", "Another-Value");
         HttpClient.CallTemplate callTemplate = getCallTemplate(appSecret, apiToken);
         when(AppCenterLog.getLogLevel()).thenReturn(Log.VERBOSE);
+        when(AppCenterLog.isVerboseEnabled()).thenReturn(true);
         mockStatic(AppCenterLog.class);
 
         /* Put api token to header. */
@@ -92,6 +93,7 @@ public class DistributeHttpTest extends AbstractDistributeTest {
         Map<String, String> headers = new HashMap<>();
         HttpClient.CallTemplate callTemplate = getCallTemplate(appSecret, null);
         when(AppCenterLog.getLogLevel()).thenReturn(Log.VERBOSE);
+        when(AppCenterLog.isVerboseEnabled()).thenReturn(true);
         mockStatic(AppCenterLog.class);
 
         /* Call onBeforeCalling with parameters. */
@@ -6,15 +6,37 @@
 package com.microsoft.appcenter.ingestion.models.json;
 
 import org.json.JSONException;
+import org.json.JSONStringer;
 import org.junit.Test;
 
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 @SuppressWarnings("unused")
 public class JSONDateUtilsAndroidTest {
 
+    private static DateFormat getSimpleDateFormat() {
+        DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return dateFormat;
+    }
+
+    private static void checkSameAsSimpleDateFormat(DateFormat dateFormat, long time) throws Exception {
+        Date date = new Date(time);
+        String expected = dateFormat.format(date);
+        String dateString = JSONDateUtils.toString(date);
+        assertEquals(expected, dateString);
+        assertEquals(dateFormat.parse(expected), JSONDateUtils.toDate(dateString));
+    }
+
     @Test
     public void utilsCoverage() {
         new JSONDateUtils();
@@ -30,6 +52,49 @@ public class JSONDateUtilsAndroidTest {
         assertEquals(date, dateParsed);
     }
 
+    @Test
+    public void sameAsSimpleDateFormat() throws Exception {
+        DateFormat dateFormat = getSimpleDateFormat();
+
+        /* Range limits, epoch, leap days and years out of range. */
+        long[] times = {
+                JSONDateUtils.MIN_TIME - 1, JSONDateUtils.MIN_TIME, -1, 0, 951782400000L, 951868799999L,
+                4107542400000L, JSONDateUtils.MAX_TIME - 1, JSONDateUtils.MAX_TIME, -62135596800001L
+        };
+        for (long time : times) {
+            checkSameAsSimpleDateFormat(dateFormat, time);
+        }
+
+        /* Random dates in and around the range formatted by hand. */
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            checkSameAsSimpleDateFormat(dateFormat, random.nextLong() % (2 * JSONDateUtils.MAX_TIME));
+        }
+    }
+
+    @Test
+    public void parseLenientDates() throws Exception {
+        DateFormat dateFormat = getSimpleDateFormat();
+        String[] dates = {
+                "2017-13-01T00:00:00.000Z", "2017-02-29T00:00:00.000Z", "2016-02-29T23:59:60.000Z",
+                "2017-07-07T17:43:56.12Z", "2017-07-07T17:43:56.123Zsuffix", "1200-01-01T00:00:00.000Z"
+        };
+        for (String date : dates) {
+            assertEquals(Long.MIN_VALUE, JSONDateUtils.parse(date));
+            assertEquals(dateFormat.parse(date), JSONDateUtils.toDate(date));
+        }
+    }
+
+    @Test
+    public void formatInBuffer() {
+        char[] buffer = new char[JSONDateUtils.LENGTH];
+        assertTrue(JSONDateUtils.format(1499449436123L, buffer));
+        assertEquals("2017-07-07T17:43:56.123Z", new String(buffer));
+        assertFalse(JSONDateUtils.format(JSONDateUtils.MAX_TIME, buffer));
+        assertEquals(1499449436123L, JSONDateUtils.parse(new StringBuilder("2017-07-07T17:43:56.123Z")));
+        assertEquals(Long.MIN_VALUE, JSONDateUtils.parse("2017-07-07T17:4a:56.123Z"));
+    }
+
     @SuppressWarnings("ResultOfMethodCallIgnored")
     @Test(expected = JSONException.class)
     public void formatNullDate() throws JSONException {
@@ -41,6 +106,11 @@ public class JSONDateUtilsAndroidTest {
         JSONDateUtils.toDate(null);
     }
 
+    @Test(expected = JSONException.class)
+    public void writeNullDate() throws JSONException {
+        JSONDateUtils.write(new JSONStringer(), null);
+    }
+
     @Test(expected = JSONException.class)
     public void parseInvalidDate() throws JSONException {
         JSONDateUtils.toDate("Fri Jul 07 17:43:56 PDT 2017");
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.ingestion.models.json;
+
+import com.microsoft.appcenter.AndroidTestUtils;
+import com.microsoft.appcenter.ingestion.models.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+@SuppressWarnings("unused")
+public class JSONStreamReaderAndroidTest {
+
+    private static final String JSON = "{\"string\":\"quote\\\" slash\\/ unicode\\u00e9\"," +
+            "\"int\":1,\"long\":9223372036854775807,\"double\":1.5,\"exponent\":1e3,\"bigInteger\":92233720368547758070," +
+            "\"boolean\":true,\"null\":null,\"array\":[1,\"a\",[],{}],\"object\":{\"nested\":{\"value\":false}}}";
+
+    @Test
+    public void sameResultAsJSONObject() throws JSONException {
+        JSONObject expected = new JSONObject(JSON);
+        JSONObject actual = JSONStreamReader.readObject(new StringReader(JSON));
+        assertEquals(expected.toString(), actual.toString());
+        assertEquals(expected.get("int").getClass(), actual.get("int").getClass());
+        assertEquals(expected.get("long").getClass(), actual.get("long").getClass());
+        assertEquals(expected.get("double").getClass(), actual.get("double").getClass());
+        assertEquals(expected.get("exponent").getClass(), actual.get("exponent").getClass());
+        assertEquals(expected.get("bigInteger").getClass(), actual.get("bigInteger").getClass());
+        assertSame(JSONObject.NULL, actual.get("null"));
+    }
+
+    @Test
+    public void sameLogAsDefaultSerializer() throws JSONException {
+        MockLog log = AndroidTestUtils.generateMockLog();
+        LogSerializer serializer = new DefaultLogSerializer();
+        serializer.addLogFactory(MockLog.MOCK_LOG_TYPE, new MockLogFactory());
+        String payload = serializer.serializeLog(log);
+        Log actual = serializer.deserializeLog(new StringReader(payload), null);
+        assertEquals(log, actual);
+        assertEquals(serializer.deserializeLog(payload, MockLog.MOCK_LOG_TYPE), serializer.deserializeLog(new StringReader(payload), MockLog.MOCK_LOG_TYPE));
+    }
+
+    @Test(expected = JSONException.class)
+    public void notAnObject() throws JSONException {
+        JSONStreamReader.readObject(new StringReader("[]"));
+    }
+
+    @Test(expected = JSONException.class)
+    public void malformed() throws JSONException {
+        JSONStreamReader.readObject(new StringReader("{\"a\":}"));
+    }
+
+    @Test(expected = JSONException.class)
+    public void contentAfterObject() throws JSONException {
+        JSONStreamReader.readObject(new StringReader("{}{}"));
+    }
+
+    @Test(expected = JSONException.class)
+    public void nestingTooDeep() throws JSONException {
+        StringBuilder json = new StringBuilder();
+        for (int i = 0; i < 65; i++) {
+            json.append("{\"a\":");
+        }
+        json.append("1");
+        for (int i = 0; i < 65; i++) {
+            json.append('}');
+        }
+        JSONStreamReader.readObject(new StringReader(json.toString()));
+    }
+
+    @Test
+    public void ioException() {
+        final IOException ioException = new IOException("mock");
+        try {
+            JSONStreamReader.readObject(new Reader() {
+
+                @Override
+                public int read(char[] buffer, int offset, int count) throws IOException {
+                    throw ioException;
+                }
+
+                @Override
+                public void close() {
+                }
+            });
+            fail();
+        } catch (JSONException e) {
+            assertSame(ioException, e.getCause());
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.ingestion.models.json;
+
+import com.microsoft.appcenter.AndroidTestUtils;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONStringer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+@SuppressWarnings("unused")
+public class JSONStreamWriterAndroidTest {
+
+    private static void write(JSONStringer writer) throws JSONException {
+        writer.object();
+        writer.key("string").value("quote\" backslash\\ slash/ tab\t newline\n control\u0001 unicodeé中");
+        writer.key("long").value(Long.MAX_VALUE);
+        writer.key("double").value(1.5);
+        writer.key("integralDouble").value(2.0);
+        writer.key("boolean").value(true);
+        writer.key("null").value(null);
+        writer.key("nullObject").value(JSONObject.NULL);
+        writer.key("json").value(new JSONArray().put(1).put("a"));
+        writer.key("jsonObject").value(new JSONObject()
+                .put("string", "quote\" slash/")
+                .put("double", 1.5)
+                .put("null", JSONObject.NULL)
+                .put("array", new JSONArray().put(true).put(new JSONObject()).put(new JSONArray()))
+                .put("object", new JSONObject().put("nested", new JSONArray().put(Long.MAX_VALUE))));
+        writer.key("array").array();
+        writer.value(1);
+        writer.array().endArray();
+        writer.object().endObject();
+        writer.object().key("nested").value(false).endObject();
+        writer.endArray();
+        writer.key("empty").object().endObject();
+        writer.key("date");
+        JSONDateUtils.write(writer, new Date(1499449436123L));
+        writer.key("outOfRangeDate");
+        JSONDateUtils.write(writer, new Date(JSONDateUtils.MAX_TIME));
+        writer.endObject();
+    }
+
+    @Test
+    public void sameOutputAsJSONStringer() throws JSONException {
+        JSONStringer expected = new JSONStringer();
+        write(expected);
+        StringWriter out = new StringWriter();
+        JSONStreamWriter writer = new JSONStreamWriter(out);
+        write(writer);
+        assertEquals(expected.toString(), out.toString());
+        assertNull(writer.toString());
+    }
+
+    @Test
+    public void sameLogOutputAsDefaultSerializer() throws JSONException, IOException {
+        MockLog log = AndroidTestUtils.generateMockLog();
+        LogSerializer serializer = new DefaultLogSerializer();
+        serializer.addLogFactory(MockLog.MOCK_LOG_TYPE, new MockLogFactory());
+        StringWriter out = new StringWriter();
+        serializer.serializeLog(log, out);
+        assertEquals(serializer.serializeLog(log), out.toString());
+    }
+
+    @Test(expected = JSONException.class)
+    public void nestingProblem() throws JSONException {
+        new JSONStreamWriter(new StringWriter()).object().endArray();
+    }
+
+    @Test
+    public void ioException() {
+        final IOException ioException = new IOException("mock");
+        JSONStreamWriter writer = new JSONStreamWriter(new Writer() {
+
+            @Override
+            public void write(char[] buffer, int offset, int count) throws IOException {
+                throw ioException;
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        try {
+            writer.object();
+            fail();
+        } catch (JSONException e) {
+            assertSame(ioException, e.getCause());
+        }
+    }
+}
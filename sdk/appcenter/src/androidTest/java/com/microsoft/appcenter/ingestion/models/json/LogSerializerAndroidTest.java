@@ -8,12 +8,15 @@ package com.microsoft.appcenter.ingestion.models.json;
 import com.microsoft.appcenter.AndroidTestUtils;
 import com.microsoft.appcenter.ingestion.models.Log;
 import com.microsoft.appcenter.ingestion.models.LogContainer;
+import com.microsoft.appcenter.ingestion.models.RawLog;
 import com.microsoft.appcenter.ingestion.models.StartServiceLog;
 
 import org.json.JSONException;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
@@ -54,6 +57,48 @@ public class LogSerializerAndroidTest {
         assertEquals(expectedContainer.hashCode(), actualContainer.hashCode());
     }
 
+    @Test
+    public void rawLogs() throws JSONException {
+        LogContainer expectedContainer = AndroidTestUtils.generateMockLogContainer();
+        LogSerializer serializer = new DefaultLogSerializer();
+        serializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        List<RawLog> rawLogs = new ArrayList<>();
+        for (Log log : expectedContainer.getLogs()) {
+            rawLogs.add(new RawLog(rawLogs.size(), log.getType(), serializer.serializeLog(log), null, null));
+        }
+        LogContainer rawContainer = new LogContainer();
+        rawContainer.setRawLogs(rawLogs);
+
+        /* Joining stored payloads must produce the same request body as serializing logs. */
+        String payload = serializer.serializeContainer(rawContainer);
+        assertEquals(serializer.serializeContainer(expectedContainer), payload);
+        assertEquals(expectedContainer, serializer.deserializeContainer(payload, null));
+    }
+
+    @Test
+    public void serializeContainerToWriter() throws JSONException, IOException {
+        LogContainer expectedContainer = AndroidTestUtils.generateMockLogContainer();
+        LogSerializer serializer = new DefaultLogSerializer();
+        serializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        String payload = serializer.serializeContainer(expectedContainer);
+
+        /* Streaming logs must produce the same request body. */
+        StringWriter writer = new StringWriter();
+        serializer.serializeContainer(expectedContainer, writer);
+        assertEquals(payload, writer.toString());
+
+        /* Same for stored payloads. */
+        List<RawLog> rawLogs = new ArrayList<>();
+        for (Log log : expectedContainer.getLogs()) {
+            rawLogs.add(new RawLog(rawLogs.size(), log.getType(), serializer.serializeLog(log), null, null));
+        }
+        LogContainer rawContainer = new LogContainer();
+        rawContainer.setRawLogs(rawLogs);
+        writer = new StringWriter();
+        serializer.serializeContainer(rawContainer, writer);
+        assertEquals(payload, writer.toString());
+    }
+
     @Test(expected = JSONException.class)
     public void deserializeUnknownType() throws JSONException {
         MockLog log = AndroidTestUtils.generateMockLog();
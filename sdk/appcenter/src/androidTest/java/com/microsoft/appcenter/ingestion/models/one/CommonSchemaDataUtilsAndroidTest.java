@@ -49,9 +49,44 @@ public class CommonSchemaDataUtilsAndroidTest {
     @Test
     public void nullProperties() {
         MockCommonSchemaLog log = new MockCommonSchemaLog();
-        CommonSchemaDataUtils.addCommonSchemaData(null, log);
+        CommonSchemaDataUtils.addCommonSchemaData((List<TypedProperty>) null, log);
         assertNull(log.getData());
         assertNull(log.getExt());
+        CommonSchemaDataUtils.addCommonSchemaData((CompiledCommonSchemaData) null, log);
+        assertNull(log.getData());
+        assertNull(log.getExt());
+        assertNull(CommonSchemaDataUtils.compile(null));
+    }
+
+    @Test
+    public void compiledPropertiesReused() throws JSONException {
+        List<TypedProperty> properties = new ArrayList<>();
+        properties.add(typedProperty("a.b", "1"));
+        properties.add(typedProperty("a..c.", "2"));
+        properties.add(typedProperty(".d", "3"));
+        properties.add(typedProperty(null, "4"));
+        LongTypedProperty longTypedProperty = new LongTypedProperty();
+        longTypedProperty.setName("a.e");
+        longTypedProperty.setValue(5);
+        properties.add(longTypedProperty);
+        CompiledCommonSchemaData compiled = CommonSchemaDataUtils.compile(properties);
+        assertNotNull(compiled);
+        assertEquals(4, compiled.getProperties().size());
+
+        /* Same result as converting the list, for each log. */
+        MockCommonSchemaLog expected = new MockCommonSchemaLog();
+        CommonSchemaDataUtils.addCommonSchemaData(properties, expected);
+        for (int i = 0; i < 2; i++) {
+            MockCommonSchemaLog log = new MockCommonSchemaLog();
+            CommonSchemaDataUtils.addCommonSchemaData(compiled, log);
+            assertEquals(expected.getData().getProperties().toString(), log.getData().getProperties().toString());
+            assertEquals(expected.getExt().getMetadata().getMetadata().toString(), log.getExt().getMetadata().getMetadata().toString());
+        }
+
+        /* Empty keys are kept when splitting. */
+        JSONObject a = expected.getData().getProperties().getJSONObject("a");
+        assertEquals("2", a.getJSONObject("").getJSONObject("c").getString(""));
+        assertEquals("3", expected.getData().getProperties().getJSONObject("").getString("d"));
     }
 
     @Test
@@ -22,6 +22,7 @@ import com.microsoft.appcenter.Constants;
 import com.microsoft.appcenter.Flags;
 import com.microsoft.appcenter.ingestion.models.Log;
 import com.microsoft.appcenter.ingestion.models.LogWithProperties;
+import com.microsoft.appcenter.ingestion.models.RawLog;
 import com.microsoft.appcenter.ingestion.models.json.DefaultLogSerializer;
 import com.microsoft.appcenter.ingestion.models.json.LogSerializer;
 import com.microsoft.appcenter.ingestion.models.json.MockLog;
@@ -66,13 +67,17 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 @SuppressWarnings("TryFinallyCanBeTryWithResources")
 @MediumTest
@@ -173,6 +178,203 @@ public class DatabasePersistenceAndroidTest {
         putLog(Flags.CRITICAL | 0x0300, Flags.CRITICAL);
     }
 
+    @Test
+    public void getRawLogs() throws PersistenceException, JSONException {
+
+        /* Initialize database persistence. */
+        DatabasePersistence persistence = new DatabasePersistence(sContext);
+
+        /* Set a mock log serializer. */
+        LogSerializer logSerializer = new DefaultLogSerializer();
+        logSerializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        persistence.setLogSerializer(logSerializer);
+        try {
+
+            /* Generate logs and persist. */
+            Log log1 = AndroidTestUtils.generateMockLog();
+            Log log2 = AndroidTestUtils.generateMockLog();
+            long id1 = persistence.putLog(log1, "test-p1", NORMAL);
+            persistence.putLog(log2, "test-p1", NORMAL);
+
+            /* Get stored payloads, they are the serialized logs. */
+            List<RawLog> outputLogs = new ArrayList<>();
+            String batchId = persistence.getRawLogs("test-p1", Collections.<String>emptyList(), 1, outputLogs);
+            assertNotNull(batchId);
+            assertEquals(1, outputLogs.size());
+            assertEquals(id1, outputLogs.get(0).getId());
+            assertEquals(MOCK_LOG_TYPE, outputLogs.get(0).getType());
+            assertEquals(logSerializer.serializeLog(log1), outputLogs.get(0).getPayload());
+            assertNull(outputLogs.get(0).getTargetToken());
+
+            /* Raw batch is pending like any other batch. */
+            List<Log> outputLogs2 = new ArrayList<>();
+            persistence.getLogs("test-p1", Collections.<String>emptyList(), 2, outputLogs2);
+            assertEquals(1, outputLogs2.size());
+            assertEquals(log2, outputLogs2.get(0));
+
+            /* Delete the raw batch. */
+            persistence.deleteLogs("test-p1", batchId);
+            assertEquals(1, persistence.countLogs("test-p1"));
+        } finally {
+            persistence.close();
+        }
+    }
+
+    @Test
+    public void compressedStorage() throws PersistenceException, JSONException {
+
+        /* Initialize database persistence. */
+        DatabasePersistence persistence = new DatabasePersistence(sContext);
+        LogSerializer logSerializer = new DefaultLogSerializer();
+        logSerializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        persistence.setLogSerializer(logSerializer);
+        persistence.setCompressedStorageEnabled(true);
+        try {
+
+            /* Logs are stored compressed. */
+            Log log1 = AndroidTestUtils.generateMockLog();
+            Log log2 = AndroidTestUtils.generateMockLog();
+            persistence.putLog(log1, "test-p1", NORMAL);
+            persistence.putLog(log2, "test-p1", NORMAL);
+            ContentValues values = getContentValues(persistence, "test-p1");
+            assertNull(values.getAsString(DatabasePersistence.COLUMN_LOG));
+            assertEquals((Integer) PayloadCodec.CODEC_DEFLATE, values.getAsInteger(DatabasePersistence.COLUMN_CODEC));
+            byte[] data = values.getAsByteArray(DatabasePersistence.COLUMN_LOG_DATA);
+            assertNotNull(data);
+            assertTrue(data.length < logSerializer.serializeLog(log1).length());
+
+            /* Stored payloads are the serialized logs, with the device restored. */
+            List<RawLog> outputRawLogs = new ArrayList<>();
+            persistence.getRawLogs("test-p1", Collections.<String>emptyList(), 1, outputRawLogs);
+            assertEquals(1, outputRawLogs.size());
+            assertEquals(logSerializer.serializeLog(log1), outputRawLogs.get(0).getPayload());
+            List<Log> outputLogs = new ArrayList<>();
+            persistence.getLogs("test-p1", Collections.<String>emptyList(), 1, outputLogs);
+            assertEquals(Collections.singletonList(log2), outputLogs);
+        } finally {
+            persistence.close();
+        }
+
+        /* Compressed logs are still read after restart when compression is disabled. */
+        persistence = new DatabasePersistence(sContext);
+        persistence.setLogSerializer(logSerializer);
+        try {
+            Log log3 = AndroidTestUtils.generateMockLog();
+            persistence.putLog(log3, "test-p2", NORMAL);
+            assertNotNull(getContentValues(persistence, "test-p2").getAsString(DatabasePersistence.COLUMN_LOG));
+            List<Log> outputLogs = new ArrayList<>();
+            persistence.getLogs("test-p1", Collections.<String>emptyList(), 2, outputLogs);
+            assertEquals(2, outputLogs.size());
+            outputLogs.clear();
+            persistence.getLogs("test-p2", Collections.<String>emptyList(), 1, outputLogs);
+            assertEquals(Collections.singletonList(log3), outputLogs);
+        } finally {
+            persistence.close();
+        }
+    }
+
+    @Test
+    public void enablingCompressionKeepsStoredLogs() throws PersistenceException {
+
+        /* Initialize database persistence with logs stored as JSON text. */
+        DatabasePersistence persistence = new DatabasePersistence(sContext);
+        LogSerializer logSerializer = new DefaultLogSerializer();
+        logSerializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        persistence.setLogSerializer(logSerializer);
+        try {
+            persistence.putLog(AndroidTestUtils.generateMockLog(), "test-p1", NORMAL);
+            persistence.putLog(AndroidTestUtils.generateMockLog(), "test-p1", NORMAL);
+            persistence.flush();
+
+            /* Enabling compression returns without rewriting them. */
+            persistence.setCompressedStorageEnabled(true);
+            assertEquals(0, getCompressedLogCount(persistence));
+            assertNotNull(getContentValues(persistence, "test-p1").getAsString(DatabasePersistence.COLUMN_LOG));
+
+            /* Only new logs are compressed on write. */
+            persistence.putLog(AndroidTestUtils.generateMockLog(), "test-p1", NORMAL);
+            persistence.flush();
+            assertEquals(1, getCompressedLogCount(persistence));
+
+            /* Stored logs are compressed page by page. */
+            assertTrue(persistence.compressStoredLogs(1));
+            assertEquals(2, getCompressedLogCount(persistence));
+            assertFalse(persistence.compressStoredLogs(10));
+            assertEquals(3, getCompressedLogCount(persistence));
+            assertFalse(persistence.compressStoredLogs(10));
+        } finally {
+            persistence.close();
+        }
+    }
+
+    @Test
+    public void corruptedCompressedLogIsDeleted() throws PersistenceException {
+
+        /* Initialize database persistence. */
+        DatabasePersistence persistence = new DatabasePersistence(sContext);
+        LogSerializer logSerializer = new DefaultLogSerializer();
+        logSerializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        persistence.setLogSerializer(logSerializer);
+        persistence.setCompressedStorageEnabled(true);
+        try {
+            long id = persistence.putLog(AndroidTestUtils.generateMockLog(), "test-p1", NORMAL);
+            ContentValues values = new ContentValues();
+            values.put(DatabasePersistence.COLUMN_LOG_DATA, new byte[]{1, 2, 3});
+            persistence.mDatabaseManager.update(Collections.singletonList(id), values);
+
+            /* The log cannot be read and is deleted. */
+            List<Log> outputLogs = new ArrayList<>();
+            assertNull(persistence.getLogs("test-p1", Collections.<String>emptyList(), 1, outputLogs));
+            assertEquals(0, persistence.countLogs("test-p1"));
+        } finally {
+            persistence.close();
+        }
+    }
+
+    @Test
+    public void putLargeLogAndDeleteBatch() throws PersistenceException {
+
+        /* Initialize database persistence. */
+        DatabasePersistence persistence = new DatabasePersistence(sContext);
+
+        /* Set a mock log serializer. */
+        LogSerializer logSerializer = new DefaultLogSerializer();
+        logSerializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        persistence.setLogSerializer(logSerializer);
+        try {
+
+            /* Generate a small and a large log and persist. */
+            persistence.putLog(AndroidTestUtils.generateMockLog(), "test-p1", NORMAL);
+            LogWithProperties log = AndroidTestUtils.generateMockLog();
+            int size = 2 * 1024 * 1024;
+            StringBuilder largeValue = new StringBuilder(size);
+            for (int i = 0; i < size; i++) {
+                largeValue.append("x");
+            }
+            Map<String, String> properties = new HashMap<>();
+            properties.put("key", largeValue.toString());
+            log.setProperties(properties);
+            long id = persistence.putLog(log, "test-p1", NORMAL);
+            File file = persistence.getLargePayloadFile(persistence.getLargePayloadGroupDirectory("test-p1"), id);
+            assertTrue(file.exists());
+
+            /* Get both logs, only the large one is indexed as having a file. */
+            List<Log> outputLogs = new ArrayList<>();
+            String batchId = persistence.getLogs("test-p1", Collections.<String>emptyList(), 2, outputLogs);
+            assertEquals(2, outputLogs.size());
+            assertNotNull(batchId);
+            assertEquals(Collections.singleton(id), persistence.mLargePayloadDbIdentifiers.get("test-p1"));
+
+            /* Delete the batch. */
+            persistence.deleteLogs("test-p1", batchId);
+            assertEquals(0, persistence.countLogs("test-p1"));
+            assertFalse(file.exists());
+            assertTrue(persistence.mLargePayloadDbIdentifiers.get("test-p1").isEmpty());
+        } finally {
+            persistence.close();
+        }
+    }
+
     @Test
     public void putLargeLogAndDeleteAll() throws PersistenceException {
 
@@ -766,6 +968,56 @@ public class DatabasePersistenceAndroidTest {
         }
     }
 
+    @Test
+    public void countLogsAfterEvictionAndRestart() throws PersistenceException {
+
+        /* Initialize database persistence. */
+        DatabasePersistence persistence = new DatabasePersistence(sContext);
+
+        /* Set a mock log serializer. */
+        LogSerializer logSerializer = new DefaultLogSerializer();
+        logSerializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        persistence.setLogSerializer(logSerializer);
+        try {
+
+            /* Load counts then add logs. */
+            assertEquals(0, persistence.countLogs("test-p1"));
+            persistence.putLog(AndroidTestUtils.generateMockLog(), "test-p1", NORMAL);
+            persistence.putLog(AndroidTestUtils.generateMockLog(), "test-p1", NORMAL);
+            persistence.putLog(AndroidTestUtils.generateMockLog(), "test-p2", NORMAL);
+            assertEquals(2, persistence.countLogs("test-p1"));
+            assertEquals(1, persistence.countLogs("test-p2"));
+
+            /* Counts are maintained when deleting a batch. */
+            List<Log> outputLogs = new ArrayList<>();
+            String batchId = persistence.getLogs("test-p1", Collections.<String>emptyList(), 1, outputLogs);
+            assertNotNull(batchId);
+            persistence.deleteLogs("test-p1", batchId);
+            assertEquals(1, persistence.countLogs("test-p1"));
+
+            /* Fill storage until eviction invalidates counts. */
+            assertTrue(persistence.setMaxStorageSize(MAX_STORAGE_SIZE_IN_BYTES));
+            for (int i = 0; persistence.mLogCounts != null; i++) {
+                persistence.putLog(AndroidTestUtils.generateMockLog(), "test-p1", NORMAL);
+
+                /* Fail if no eviction happens after a long time to avoid infinite loop on bug. */
+                assertTrue("No eviction is happening", i < 1000);
+            }
+            assertEquals(getLogCount(persistence, "test-p1"), persistence.countLogs("test-p1"));
+            assertEquals(getLogCount(persistence, "test-p2"), persistence.countLogs("test-p2"));
+        } finally {
+            persistence.close();
+        }
+
+        /* Counts are loaded again after restart. */
+        persistence = new DatabasePersistence(sContext);
+        try {
+            assertEquals(getLogCount(persistence, "test-p1"), persistence.countLogs("test-p1"));
+        } finally {
+            persistence.close();
+        }
+    }
+
     @Test
     public void deleteLogsForGroup() throws PersistenceException {
 
@@ -1052,6 +1304,42 @@ public class DatabasePersistenceAndroidTest {
         }
     }
 
+    @Test
+    public void getLogsFetchesAnotherPageWhenLogsFail() throws PersistenceException, JSONException {
+
+        /* Initialize database persistence. */
+        DatabasePersistence persistence = new DatabasePersistence(sContext);
+
+        /* Throw a JSON exception for the first log only. */
+        LogSerializer logSerializer = spy(new DefaultLogSerializer());
+        doThrow(new JSONException("JSON exception"))
+                .doReturn(AndroidTestUtils.generateMockLog())
+                .when(logSerializer).deserializeLog(anyString(), anyString());
+        persistence.setLogSerializer(logSerializer);
+        try {
+
+            /* Put 4 logs. */
+            for (int i = 0; i < 4; i++) {
+                persistence.putLog(AndroidTestUtils.generateMockLog(), "test", NORMAL);
+            }
+
+            /* The first page of 2 logs has a failed log, the missing log comes from the next page. */
+            List<Log> outputLogs = new ArrayList<>();
+            persistence.getLogs("test", Collections.<String>emptyList(), 2, outputLogs);
+            assertEquals(2, outputLogs.size());
+            assertEquals(3, persistence.mDatabaseManager.getRowCount());
+            verify(logSerializer, times(3)).deserializeLog(anyString(), anyString());
+
+            /* Pending logs are excluded by the query, only the last log is read. */
+            outputLogs.clear();
+            persistence.getLogs("test", Collections.<String>emptyList(), 2, outputLogs);
+            assertEquals(1, outputLogs.size());
+            verify(logSerializer, times(4)).deserializeLog(anyString(), anyString());
+        } finally {
+            persistence.close();
+        }
+    }
+
     @Test
     public void getLogsWithNullDate() throws PersistenceException {
 
@@ -1102,6 +1390,341 @@ public class DatabasePersistenceAndroidTest {
         }
     }
 
+    @Test
+    public void resumeClaimedBatchAfterRestart() throws PersistenceException {
+
+        /* Initialize database persistence. */
+        DatabasePersistence persistence = new DatabasePersistence(sContext);
+        LogSerializer logSerializer = new DefaultLogSerializer();
+        logSerializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        persistence.setLogSerializer(logSerializer);
+        List<Log> claimedLogs = new ArrayList<>();
+        String batchId;
+        try {
+
+            /* Put 3 logs and claim 2 of them. */
+            for (int i = 0; i < 3; i++) {
+                persistence.putLog(AndroidTestUtils.generateMockLog(), "test", NORMAL);
+            }
+            batchId = persistence.getLogs("test", Collections.<String>emptyList(), 2, claimedLogs);
+            assertNotNull(batchId);
+            assertEquals(batchId, getContentValues(persistence, "test").getAsString(DatabasePersistence.COLUMN_BATCH_ID));
+        } finally {
+
+            /* Simulate the process being killed while sending. */
+            persistence.close();
+        }
+
+        /* After restart, the claimed batch is resumed before any other log. */
+        persistence = new DatabasePersistence(sContext);
+        persistence.setLogSerializer(logSerializer);
+        try {
+            List<Log> outputLogs = new ArrayList<>();
+            String resumedBatchId = persistence.getLogs("test", Collections.<String>emptyList(), 5, outputLogs);
+            assertNotNull(resumedBatchId);
+            assertEquals(claimedLogs, outputLogs);
+
+            /* Then the other log. */
+            outputLogs.clear();
+            String otherBatchId = persistence.getLogs("test", Collections.<String>emptyList(), 5, outputLogs);
+            assertNotNull(otherBatchId);
+            assertEquals(1, outputLogs.size());
+            assertEquals(1, persistence.mReconciledGroups.size());
+
+            /* Deleting the resumed batch works like any batch. */
+            persistence.deleteLogs("test", resumedBatchId);
+            assertEquals(1, persistence.countLogs("test"));
+
+            /* Releasing claims makes the remaining log available again. */
+            persistence.clearPendingLogState();
+            assertNull(getContentValues(persistence, "test").getAsString(DatabasePersistence.COLUMN_BATCH_ID));
+            outputLogs.clear();
+            persistence.getLogs("test", Collections.<String>emptyList(), 5, outputLogs);
+            assertEquals(1, outputLogs.size());
+        } finally {
+            persistence.close();
+        }
+    }
+
+    @Test
+    public void releaseLogs() throws PersistenceException {
+
+        /* Initialize database persistence. */
+        DatabasePersistence persistence = new DatabasePersistence(sContext);
+        LogSerializer logSerializer = new DefaultLogSerializer();
+        logSerializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        persistence.setLogSerializer(logSerializer);
+        try {
+
+            /* Put 3 logs and claim them in 2 batches. */
+            for (int i = 0; i < 3; i++) {
+                persistence.putLog(AndroidTestUtils.generateMockLog(), "test", NORMAL);
+            }
+            List<Log> releasedLogs = new ArrayList<>();
+            String releasedBatchId = persistence.getLogs("test", Collections.<String>emptyList(), 2, releasedLogs);
+            List<Log> otherLogs = new ArrayList<>();
+            String otherBatchId = persistence.getLogs("test", Collections.<String>emptyList(), 2, otherLogs);
+            assertNotNull(releasedBatchId);
+            assertNotNull(otherBatchId);
+            assertEquals(1, otherLogs.size());
+
+            /* Released logs are returned again, the other batch is still claimed. */
+            persistence.releaseLogs("test", releasedBatchId);
+            assertEquals(1, persistence.mPendingDbIdentifiersGroups.size());
+            assertEquals(1, persistence.mPendingDbIdentifiers.size());
+            List<Log> outputLogs = new ArrayList<>();
+            String batchId = persistence.getLogs("test", Collections.<String>emptyList(), 5, outputLogs);
+            assertNotNull(batchId);
+            assertEquals(releasedLogs, outputLogs);
+
+            /* Releasing again has no effect, nothing was deleted. */
+            persistence.releaseLogs("test", releasedBatchId);
+            assertEquals(3, persistence.countLogs("test"));
+        } finally {
+            persistence.close();
+        }
+    }
+
+    @Test
+    public void logsReferenceSharedDeviceSnapshot() throws PersistenceException {
+
+        /* Initialize database persistence. */
+        DatabasePersistence persistence = new DatabasePersistence(sContext);
+        LogSerializer logSerializer = new DefaultLogSerializer();
+        logSerializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        persistence.setLogSerializer(logSerializer);
+        Log log1 = AndroidTestUtils.generateMockLog();
+        Log log2 = AndroidTestUtils.generateMockLog();
+        log2.setDevice(log1.getDevice());
+        Log log3 = AndroidTestUtils.generateMockLog();
+        try {
+
+            /* Logs with the same device share a single snapshot, the device is not in their payload. */
+            persistence.putLog(log1, "test", NORMAL);
+            persistence.putLog(log2, "test", NORMAL);
+            persistence.putLog(log3, "test", NORMAL);
+            assertEquals(2, getDeviceCount(persistence));
+            String payload = getContentValues(persistence, "test").getAsString(DatabasePersistence.COLUMN_LOG);
+            assertFalse(payload.contains("\"device\""));
+        } finally {
+            persistence.close();
+        }
+
+        /* After restart, logs get one instance per snapshot and an equal device is found by content hash. */
+        persistence = new DatabasePersistence(sContext);
+        persistence.setLogSerializer(logSerializer);
+        try {
+            Log log4 = AndroidTestUtils.generateMockLog();
+            List<Log> outputLogs = new ArrayList<>();
+            persistence.getLogs("test", Collections.<String>emptyList(), 3, outputLogs);
+            assertEquals(Arrays.asList(log1, log2, log3), outputLogs);
+            assertSame(outputLogs.get(0).getDevice(), outputLogs.get(1).getDevice());
+            assertNotSame(outputLogs.get(0).getDevice(), outputLogs.get(2).getDevice());
+            log4.setDevice(outputLogs.get(2).getDevice());
+            persistence.putLog(log4, "test", NORMAL);
+            assertEquals(2, getDeviceCount(persistence));
+        } finally {
+            persistence.close();
+        }
+    }
+
+    @Test
+    public void logsReferenceSharedTargetToken() throws PersistenceException {
+
+        /* Initialize database persistence. */
+        DatabasePersistence persistence = new DatabasePersistence(sContext);
+        LogSerializer logSerializer = new DefaultLogSerializer();
+        logSerializer.addLogFactory(MockCommonSchemaLog.TYPE, new MockCommonSchemaLogFactory());
+        persistence.setLogSerializer(logSerializer);
+        List<Log> logs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            MockCommonSchemaLog log = new MockCommonSchemaLog();
+            log.setName("test" + i);
+            log.setIKey("o:test");
+            log.setTimestamp(new Date());
+            log.setVer("3.0");
+            log.addTransmissionTarget("test-guid");
+            logs.add(log);
+        }
+        try {
+
+            /* Logs with the same target share a single encrypted token. */
+            for (Log log : logs) {
+                persistence.putLog(log, "test", NORMAL);
+            }
+            assertEquals(1, getTargetTokenCount(persistence));
+            assertNull(getContentValues(persistence, "test").getAsString(DatabasePersistence.COLUMN_TARGET_TOKEN));
+            assertEquals("test-guid", persistence.mTargetTokens.get("test"));
+
+            /* Clearing the cache does not prevent from reading logs. */
+            persistence.clearTargetTokenCache();
+            assertTrue(persistence.mTargetTokens.isEmpty());
+            List<Log> outputLogs = new ArrayList<>();
+            persistence.getLogs("test", Collections.<String>emptyList(), 3, outputLogs);
+            assertEquals(logs, outputLogs);
+            assertEquals("test-guid", persistence.mTargetTokens.get("test"));
+        } finally {
+            persistence.close();
+        }
+    }
+
+    private static ContentValues getTargetTokenValues(DatabasePersistence persistence) {
+        Cursor cursor = persistence.mDatabaseManager.getCursor(DatabasePersistence.TARGET_TOKENS_TABLE, null, null, null, null);
+        try {
+            return persistence.mDatabaseManager.nextValues(cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static int getTargetTokenCount(DatabasePersistence persistence) {
+        Cursor cursor = persistence.mDatabaseManager.getCursor(DatabasePersistence.TARGET_TOKENS_TABLE, null, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static int getCompressedLogCount(DatabasePersistence persistence) {
+        SQLiteQueryBuilder builder = SQLiteUtils.newSQLiteQueryBuilder();
+        builder.appendWhere(DatabasePersistence.COLUMN_CODEC + " = " + PayloadCodec.CODEC_DEFLATE + " AND " + DatabasePersistence.COLUMN_LOG + " IS NULL");
+        Cursor cursor = persistence.mDatabaseManager.getCursor(builder, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static int getLogCount(DatabasePersistence persistence, String group) {
+        SQLiteQueryBuilder builder = SQLiteUtils.newSQLiteQueryBuilder();
+        builder.appendWhere(DatabasePersistence.COLUMN_GROUP + " = ?");
+        Cursor cursor = persistence.mDatabaseManager.getCursor(builder, null, new String[]{group}, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static int getDeviceCount(DatabasePersistence persistence) {
+        Cursor cursor = persistence.mDatabaseManager.getCursor(DatabasePersistence.DEVICES_TABLE, null, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void upgradeFromVersion7to8() throws PersistenceException, JSONException {
+
+        /* Initialize database with the schema before the batch identifier column. */
+        String oldCreateLogsSql = "CREATE TABLE IF NOT EXISTS `logs`" +
+                "(`oid` INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "`target_token` TEXT," +
+                "`type` TEXT," +
+                "`priority` INTEGER," +
+                "`log` TEXT," +
+                "`persistence_group` TEXT," +
+                "`target_key` TEXT);";
+        LogSerializer logSerializer = new DefaultLogSerializer();
+        logSerializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        DatabaseManager databaseManager = new DatabaseManager(sContext, DatabasePersistence.DATABASE, DatabasePersistence.TABLE, DatabasePersistence.VERSION_BATCH_ID_COLUMN, new ContentValues(SCHEMA), oldCreateLogsSql, mock(DatabaseManager.Listener.class));
+        Log oldLog = AndroidTestUtils.generateMockLog();
+        try {
+            ContentValues contentValues = new ContentValues();
+            contentValues.put(DatabasePersistence.COLUMN_GROUP, "test");
+            contentValues.put(DatabasePersistence.COLUMN_LOG, logSerializer.serializeLog(oldLog));
+            contentValues.put(DatabasePersistence.COLUMN_PRIORITY, NORMAL);
+            databaseManager.put(contentValues, DatabasePersistence.COLUMN_PRIORITY);
+        } finally {
+            databaseManager.close();
+        }
+
+        /* Upgrade keeps the data and logs can be claimed. */
+        DatabasePersistence persistence = new DatabasePersistence(sContext);
+        persistence.setLogSerializer(logSerializer);
+        try {
+            assertEquals(1, persistence.countLogs("test"));
+            List<Log> outputLogs = new ArrayList<>();
+            String batchId = persistence.getLogs("test", Collections.<String>emptyList(), 1, outputLogs);
+            assertEquals(1, outputLogs.size());
+            assertEquals(oldLog, outputLogs.get(0));
+            assertEquals(batchId, getContentValues(persistence, "test").getAsString(DatabasePersistence.COLUMN_BATCH_ID));
+        } finally {
+            persistence.close();
+        }
+    }
+
+    @Test
+    public void upgradeFromVersion10to11() throws PersistenceException, JSONException {
+
+        /* Initialize database with the schema before the compressed log and codec columns. */
+        String oldCreateLogsSql = "CREATE TABLE IF NOT EXISTS `logs`" +
+                "(`oid` INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "`target_token` TEXT," +
+                "`type` TEXT," +
+                "`priority` INTEGER," +
+                "`log` TEXT," +
+                "`persistence_group` TEXT," +
+                "`target_key` TEXT," +
+                "`batch_id` TEXT," +
+                "`device_id` INTEGER," +
+                "`device_offset` INTEGER);";
+        LogSerializer logSerializer = new DefaultLogSerializer();
+        logSerializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        DatabaseManager databaseManager = new DatabaseManager(sContext, DatabasePersistence.DATABASE, DatabasePersistence.TABLE, DatabasePersistence.VERSION_LOG_DATA_COLUMN, new ContentValues(SCHEMA), oldCreateLogsSql, mock(DatabaseManager.Listener.class));
+        List<Log> oldLogs = new ArrayList<>();
+        try {
+            for (int i = 0; i < 3; i++) {
+                Log oldLog = AndroidTestUtils.generateMockLog();
+                ContentValues contentValues = new ContentValues();
+                contentValues.put(DatabasePersistence.COLUMN_GROUP, "test");
+                contentValues.put(DatabasePersistence.COLUMN_LOG, logSerializer.serializeLog(oldLog));
+                contentValues.put(DatabasePersistence.COLUMN_PRIORITY, NORMAL);
+                databaseManager.put(contentValues, DatabasePersistence.COLUMN_PRIORITY);
+                oldLogs.add(oldLog);
+            }
+        } finally {
+            databaseManager.close();
+        }
+
+        /* Upgrade keeps the logs as JSON text. */
+        DatabasePersistence persistence = new DatabasePersistence(sContext);
+        persistence.setLogSerializer(logSerializer);
+        try {
+            assertEquals(oldLogs.size(), persistence.countLogs("test"));
+            ContentValues values = getContentValues(persistence, "test");
+            assertNotNull(values.getAsString(DatabasePersistence.COLUMN_LOG));
+            assertNull(values.getAsInteger(DatabasePersistence.COLUMN_CODEC));
+
+            /* Enabling compression does not touch them. */
+            persistence.setCompressedStorageEnabled(true);
+            assertEquals(0, getCompressedLogCount(persistence));
+
+            /* Claimed logs are not rewritten when read. */
+            List<Log> outputLogs = new ArrayList<>();
+            persistence.getLogs("test", Collections.<String>emptyList(), 2, outputLogs);
+            assertEquals(oldLogs.subList(0, 2), outputLogs);
+            assertEquals(0, getCompressedLogCount(persistence));
+
+            /* Only the unclaimed log is compressed by a pass. */
+            assertFalse(persistence.compressStoredLogs(10));
+            assertEquals(1, getCompressedLogCount(persistence));
+
+            /* Text and compressed payloads are read together. */
+            persistence.clearPendingLogState();
+            outputLogs.clear();
+            persistence.getLogs("test", Collections.<String>emptyList(), oldLogs.size(), outputLogs);
+            assertEquals(oldLogs, outputLogs);
+            assertEquals(1, getCompressedLogCount(persistence));
+        } finally {
+            persistence.close();
+        }
+    }
+
     @Test
     public void upgradeFromVersion5to6() throws PersistenceException, JSONException {
 
@@ -1161,9 +1784,10 @@ public class DatabasePersistenceAndroidTest {
             assertEquals(1, outputLogs.size());
             assertEquals(commonSchemaLog, outputLogs.get(0));
 
-            /* Verify target token is encrypted. */
+            /* Verify target token is encrypted, once, in the target tokens table. */
             ContentValues values = getContentValues(persistence, "test/one");
-            String token = values.getAsString(DatabasePersistence.COLUMN_TARGET_TOKEN);
+            assertNull(values.getAsString(DatabasePersistence.COLUMN_TARGET_TOKEN));
+            String token = getTargetTokenValues(persistence).getAsString(DatabasePersistence.COLUMN_TARGET_TOKEN);
             assertNotNull(token);
             assertNotEquals("test-guid", token);
             assertEquals("test-guid", CryptoUtils.getInstance(sContext).decrypt(token).getDecryptedData());
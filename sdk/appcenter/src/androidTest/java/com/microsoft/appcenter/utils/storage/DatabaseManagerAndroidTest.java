@@ -248,6 +248,60 @@ public class DatabaseManagerAndroidTest {
         verify(listener).onCreate(any(SQLiteDatabase.class));
     }
 
+    @Test
+    public void databaseManagerTunedMode() {
+
+        /* Get instance to access database. */
+        DatabaseManager databaseManager = new DatabaseManager(sContext, DATABASE_NAME, "databaseManager", 1, mSchema, CREATE_TEST_SQL, mock(DatabaseManager.Listener.class));
+        databaseManager.setTunedModeEnabled(true);
+
+        //noinspection TryFinallyCanBeTryWithResources (try with resources statement is API >= 19)
+        try {
+            assertTrue(databaseManager.getDatabase().isWriteAheadLoggingEnabled());
+            runDatabaseManagerTest(databaseManager);
+
+            /* Schema columns missing from values are stored as null with the cached statement. */
+            ContentValues value = new ContentValues();
+            value.put("COL_STRING", "partial");
+            long id = databaseManager.put(value, "COL_INTEGER");
+            assertTrue(id >= 0);
+            ContentValues stored = get(databaseManager, id);
+            assertNotNull(stored);
+            assertEquals("partial", stored.getAsString("COL_STRING"));
+            assertNull(stored.get("COL_INTEGER"));
+        } finally {
+
+            /* Close. */
+            databaseManager.close();
+        }
+    }
+
+    @Test
+    public void sizeIncludesWriteAheadLog() {
+
+        /* Get instance to access database. */
+        DatabaseManager databaseManager = new DatabaseManager(sContext, DATABASE_NAME, "databaseManager", 1, mSchema, CREATE_TEST_SQL, mock(DatabaseManager.Listener.class));
+        databaseManager.setTunedModeEnabled(true);
+
+        //noinspection TryFinallyCanBeTryWithResources (try with resources statement is API >= 19)
+        try {
+
+            /* Pages not checkpointed yet are counted. */
+            long initialSize = databaseManager.getSize();
+            assertTrue(initialSize > 0);
+            for (int i = 0; i < 100; i++) {
+                databaseManager.put(generateContentValues(), "COL_INTEGER");
+            }
+            long size = databaseManager.getSize();
+            assertTrue(size > initialSize);
+            assertTrue(size >= sContext.getDatabasePath(DATABASE_NAME).length());
+        } finally {
+
+            /* Close. */
+            databaseManager.close();
+        }
+    }
+
     @Test
     public void setMaximumSize() {
 
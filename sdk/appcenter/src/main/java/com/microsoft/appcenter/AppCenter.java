@@ -134,6 +134,11 @@ public class AppCenter {
      */
     private String mLogUrl;
 
+    /**
+     * Channel settings to apply when the channel is created, if any.
+     */
+    private ChannelConfiguration mChannelConfiguration;
+
     /**
      * Application context.
      */
@@ -289,6 +294,16 @@ public class AppCenter {
         getInstance().setInstanceLogUrl(logUrl);
     }
 
+    /**
+     * Enable opt-in settings of the channel storing and sending logs.
+     * This may only be called before App Center is configured.
+     *
+     * @param configuration channel settings, null to use the defaults.
+     */
+    public static void setChannelConfiguration(ChannelConfiguration configuration) {
+        getInstance().setInstanceChannelConfiguration(configuration);
+    }
+
     /**
      * Set the two-letter ISO country code.
      *
@@ -647,6 +662,17 @@ public class AppCenter {
         return setMaxStorageSizeFuture;
     }
 
+    /**
+     * {@link #setChannelConfiguration(ChannelConfiguration)} implementation at instance level.
+     */
+    private synchronized void setInstanceChannelConfiguration(ChannelConfiguration configuration) {
+        if (isInstanceConfigured()) {
+            AppCenterLog.error(LOG_TAG, "setChannelConfiguration may not be called after App Center has been configured.");
+            return;
+        }
+        mChannelConfiguration = configuration;
+    }
+
     /**
      * {@link #isConfigured()} implementation at instance level.
      */
@@ -821,6 +847,36 @@ public class AppCenter {
         }
     }
 
+    /**
+     * Enable the opt-in channel settings, before any group is added.
+     *
+     * @param channel       channel.
+     * @param configuration channel settings.
+     */
+    private static void applyChannelConfiguration(DefaultChannel channel, ChannelConfiguration configuration) {
+        if (configuration.getWriteBehindMaxLogs() > 0) {
+            channel.setWriteBehind(configuration.getWriteBehindMaxLogs(), configuration.getWriteBehindDelay());
+        }
+        if (configuration.getFlushWindow() > 0) {
+            channel.setFlushWindow(configuration.getFlushWindow());
+        }
+        if (configuration.isRawPayloadsEnabled()) {
+            channel.setRawPayloadsEnabled(true);
+        }
+        if (configuration.isTunedStorageEnabled()) {
+            channel.setTunedStorageEnabled(true);
+        }
+        if (configuration.isCompressedStorageEnabled()) {
+            channel.setCompressedStorageEnabled(true);
+        }
+        if (configuration.isFailureIsolationEnabled()) {
+            channel.setFailureIsolationEnabled(true);
+        }
+        if (configuration.isAdaptiveBatchingEnabled()) {
+            channel.setAdaptiveBatchingEnabled(true);
+        }
+    }
+
     @WorkerThread
     private void finishConfiguration(boolean configureFromApp) {
 
@@ -845,13 +901,21 @@ public class AppCenter {
         /* Instantiate HTTP client if it doesn't exist as a dependency. */
         HttpClient httpClient = DependencyConfiguration.getHttpClient();
         if (httpClient == null) {
-            httpClient = createHttpClient(mApplication);
+            if (mChannelConfiguration != null && mChannelConfiguration.getMaxConcurrentHttpCalls() > 0) {
+                httpClient = createHttpClient(mApplication, true, mChannelConfiguration.getMaxConcurrentHttpCalls());
+            } else {
+                httpClient = createHttpClient(mApplication);
+            }
         }
 
         /* Init channel. */
         mLogSerializer = new DefaultLogSerializer();
         mLogSerializer.addLogFactory(StartServiceLog.TYPE, new StartServiceLogFactory());
-        mChannel = new DefaultChannel(mApplication, mAppSecret, mLogSerializer, httpClient, mHandler);
+        DefaultChannel channel = new DefaultChannel(mApplication, mAppSecret, mLogSerializer, httpClient, mHandler);
+        if (mChannelConfiguration != null) {
+            applyChannelConfiguration(channel, mChannelConfiguration);
+        }
+        mChannel = channel;
 
         /* Complete set maximum storage size future if starting from app. */
         if (configureFromApp) {
@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter;
+
+import androidx.annotation.IntRange;
+
+/**
+ * Opt-in settings of the channel storing and sending logs, to pass to
+ * {@link AppCenter#setChannelConfiguration(ChannelConfiguration)} before App Center is started.
+ * Every setting is disabled by default.
+ */
+public class ChannelConfiguration {
+
+    /**
+     * Maximum number of logs buffered in memory before being stored, 0 to store each log immediately.
+     */
+    private int mWriteBehindMaxLogs;
+
+    /**
+     * Maximum time in ms a log stays in the write buffer.
+     */
+    private long mWriteBehindDelay;
+
+    /**
+     * Whether batches are sent from stored payloads when possible.
+     */
+    private boolean mRawPayloadsEnabled;
+
+    /**
+     * Time in ms a batch can wait to be sent together with batches of other groups, 0 to disable.
+     */
+    private long mFlushWindow;
+
+    /**
+     * Whether storage settings tuned for throughput are used.
+     */
+    private boolean mTunedStorageEnabled;
+
+    /**
+     * Whether stored logs are compressed.
+     */
+    private boolean mCompressedStorageEnabled;
+
+    /**
+     * Whether a failed batch only affects its ingestion or group instead of suspending the channel.
+     */
+    private boolean mFailureIsolationEnabled;
+
+    /**
+     * Whether groups tune their batching from observed network conditions.
+     */
+    private boolean mAdaptiveBatchingEnabled;
+
+    /**
+     * Number of network calls running at the same time on a dedicated executor, 0 to use the shared executor.
+     */
+    private int mMaxConcurrentHttpCalls;
+
+    /**
+     * Get the maximum number of logs buffered in memory before being stored.
+     *
+     * @return maximum number of buffered logs, 0 if write-behind mode is disabled.
+     */
+    public int getWriteBehindMaxLogs() {
+        return mWriteBehindMaxLogs;
+    }
+
+    /**
+     * Get the maximum time a log stays in the write buffer.
+     *
+     * @return delay in ms.
+     */
+    public long getWriteBehindDelay() {
+        return mWriteBehindDelay;
+    }
+
+    /**
+     * Buffer logs in memory and store them in a single transaction once the buffer is full or
+     * after the given delay. Critical logs (such as crashes) are still stored immediately.
+     *
+     * @param maxBufferedLogs maximum number of buffered logs, 0 to disable write-behind mode.
+     * @param maxBufferDelay  maximum time in ms a log stays in the buffer.
+     */
+    public void setWriteBehind(@IntRange(from = 0) int maxBufferedLogs, @IntRange(from = 0) long maxBufferDelay) {
+        mWriteBehindMaxLogs = maxBufferedLogs;
+        mWriteBehindDelay = maxBufferDelay;
+    }
+
+    /**
+     * Check whether batches are sent from stored payloads when possible.
+     *
+     * @return true if enabled.
+     */
+    public boolean isRawPayloadsEnabled() {
+        return mRawPayloadsEnabled;
+    }
+
+    /**
+     * Send batches from stored payloads, without deserializing logs and serializing them again,
+     * for groups that do not need log objects when sending.
+     *
+     * @param rawPayloadsEnabled true to enable.
+     */
+    public void setRawPayloadsEnabled(boolean rawPayloadsEnabled) {
+        mRawPayloadsEnabled = rawPayloadsEnabled;
+    }
+
+    /**
+     * Get the time a batch can wait to be sent together with batches of other groups.
+     *
+     * @return flush window in ms, 0 if disabled.
+     */
+    public long getFlushWindow() {
+        return mFlushWindow;
+    }
+
+    /**
+     * Merge batches of groups sharing an ingestion that are ready within the given window into a single request.
+     *
+     * @param flushWindow time in ms a batch can wait for other batches, 0 to send every batch immediately.
+     */
+    public void setFlushWindow(@IntRange(from = 0) long flushWindow) {
+        mFlushWindow = flushWindow;
+    }
+
+    /**
+     * Check whether storage settings tuned for throughput are used.
+     *
+     * @return true if enabled.
+     */
+    public boolean isTunedStorageEnabled() {
+        return mTunedStorageEnabled;
+    }
+
+    /**
+     * Use storage settings tuned for throughput (such as write-ahead logging and cached statements).
+     *
+     * @param tunedStorageEnabled true to enable.
+     */
+    public void setTunedStorageEnabled(boolean tunedStorageEnabled) {
+        mTunedStorageEnabled = tunedStorageEnabled;
+    }
+
+    /**
+     * Check whether stored logs are compressed.
+     *
+     * @return true if enabled.
+     */
+    public boolean isCompressedStorageEnabled() {
+        return mCompressedStorageEnabled;
+    }
+
+    /**
+     * Compress stored logs, so that more logs fit in the maximum storage size.
+     *
+     * @param compressedStorageEnabled true to enable.
+     */
+    public void setCompressedStorageEnabled(boolean compressedStorageEnabled) {
+        mCompressedStorageEnabled = compressedStorageEnabled;
+    }
+
+    /**
+     * Check whether a failed batch only affects its ingestion or group.
+     *
+     * @return true if enabled.
+     */
+    public boolean isFailureIsolationEnabled() {
+        return mFailureIsolationEnabled;
+    }
+
+    /**
+     * Let a failed batch only stop sending to its ingestion or group for a while, instead of suspending the channel.
+     *
+     * @param failureIsolationEnabled true to enable.
+     */
+    public void setFailureIsolationEnabled(boolean failureIsolationEnabled) {
+        mFailureIsolationEnabled = failureIsolationEnabled;
+    }
+
+    /**
+     * Get the number of network calls running at the same time on a dedicated executor.
+     *
+     * @return maximum number of concurrent calls, 0 if the shared executor is used.
+     */
+    public int getMaxConcurrentHttpCalls() {
+        return mMaxConcurrentHttpCalls;
+    }
+
+    /**
+     * Run network calls on a dedicated executor instead of the executor shared with the application,
+     * and leave connections open for the platform to reuse them on the next calls.
+     * This has no effect when a custom HTTP client is set with {@link DependencyConfiguration}.
+     *
+     * @param maxConcurrentHttpCalls maximum number of concurrent calls, 0 to use the shared executor.
+     */
+    public void setMaxConcurrentHttpCalls(@IntRange(from = 0) int maxConcurrentHttpCalls) {
+        mMaxConcurrentHttpCalls = maxConcurrentHttpCalls;
+    }
+
+    /**
+     * Check whether groups tune their batching from observed network conditions.
+     *
+     * @return true if enabled.
+     */
+    public boolean isAdaptiveBatchingEnabled() {
+        return mAdaptiveBatchingEnabled;
+    }
+
+    /**
+     * Let every group tune its batch size, batch interval and number of parallel batches from
+     * observed network conditions, within the values it is added with.
+     *
+     * @param adaptiveBatchingEnabled true to enable.
+     */
+    public void setAdaptiveBatchingEnabled(boolean adaptiveBatchingEnabled) {
+        mAdaptiveBatchingEnabled = adaptiveBatchingEnabled;
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.channel;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.VisibleForTesting;
+
+/**
+ * Batching settings of a group tuned from observed network conditions.
+ * Healthy unmetered networks get bigger and less frequent batches, sent in parallel.
+ * Metered, slow or failing networks get smaller batches, so that a failed batch costs less to send again.
+ * Values always stay within the bounds given at construction.
+ */
+public class AdaptiveBatchPolicy {
+
+    /**
+     * Weight of the latest observation in moving averages.
+     */
+    @VisibleForTesting
+    static final double SMOOTHING_FACTOR = 0.3;
+
+    /**
+     * Latency in ms under which the network is considered fast.
+     */
+    @VisibleForTesting
+    static final long FAST_LATENCY = 500;
+
+    /**
+     * Failure rate above which batches are not sent in parallel anymore.
+     */
+    @VisibleForTesting
+    static final double MAX_PARALLEL_FAILURE_RATE = 0.25;
+
+    /**
+     * Target batch payload size in bytes on metered networks.
+     */
+    @VisibleForTesting
+    static final long METERED_BATCH_SIZE = 64 * 1024;
+
+    /**
+     * Target batch payload size in bytes on unmetered networks.
+     */
+    @VisibleForTesting
+    static final long UNMETERED_BATCH_SIZE = 512 * 1024;
+
+    /**
+     * Minimum number of logs per batch.
+     */
+    private final int mMinLogsPerBatch;
+
+    /**
+     * Maximum number of logs per batch.
+     */
+    private final int mMaxLogsPerBatch;
+
+    /**
+     * Minimum time to wait before 2 batches, in ms.
+     */
+    private final long mMinBatchTimeInterval;
+
+    /**
+     * Maximum time to wait before 2 batches, in ms.
+     */
+    private final long mMaxBatchTimeInterval;
+
+    /**
+     * Maximum number of batches in parallel.
+     */
+    private final int mMaxParallelBatches;
+
+    /**
+     * Moving average of send latency in ms, negative if nothing was sent yet.
+     */
+    private double mLatency = -1;
+
+    /**
+     * Moving average of failures, between 0 and 1.
+     */
+    private double mFailureRate;
+
+    /**
+     * Moving average of payload size per log in bytes, negative if unknown.
+     */
+    private double mLogSize = -1;
+
+    /**
+     * Whether the active network is metered.
+     */
+    private boolean mNetworkMetered;
+
+    /**
+     * Current number of logs per batch.
+     */
+    private int mLogsPerBatch;
+
+    /**
+     * Current time to wait before 2 batches, in ms.
+     */
+    private long mBatchTimeInterval;
+
+    /**
+     * Current number of batches in parallel.
+     */
+    private int mParallelBatches;
+
+    /**
+     * Init.
+     *
+     * @param minLogsPerBatch      minimum number of logs per batch.
+     * @param maxLogsPerBatch      maximum number of logs per batch.
+     * @param minBatchTimeInterval minimum time to wait before 2 batches, in ms.
+     * @param maxBatchTimeInterval maximum time to wait before 2 batches, in ms.
+     * @param maxParallelBatches   maximum number of batches in parallel.
+     */
+    public AdaptiveBatchPolicy(@IntRange(from = 1) int minLogsPerBatch, @IntRange(from = 1) int maxLogsPerBatch,
+                               @IntRange(from = 0) long minBatchTimeInterval, @IntRange(from = 0) long maxBatchTimeInterval,
+                               @IntRange(from = 1) int maxParallelBatches) {
+        if (minLogsPerBatch < 1 || maxLogsPerBatch < minLogsPerBatch) {
+            throw new IllegalArgumentException("Invalid batch size bounds.");
+        }
+        if (minBatchTimeInterval < 0 || maxBatchTimeInterval < minBatchTimeInterval) {
+            throw new IllegalArgumentException("Invalid batch interval bounds.");
+        }
+        if (maxParallelBatches < 1) {
+            throw new IllegalArgumentException("Invalid maximum number of parallel batches.");
+        }
+        mMinLogsPerBatch = minLogsPerBatch;
+        mMaxLogsPerBatch = maxLogsPerBatch;
+        mMinBatchTimeInterval = minBatchTimeInterval;
+        mMaxBatchTimeInterval = maxBatchTimeInterval;
+        mMaxParallelBatches = maxParallelBatches;
+        tune();
+    }
+
+    /**
+     * Update the type of the active network.
+     *
+     * @param metered true if the active network is metered (such as cellular), false otherwise (such as Wi-Fi).
+     */
+    public synchronized void setNetworkMetered(boolean metered) {
+        if (mNetworkMetered != metered) {
+            mNetworkMetered = metered;
+            tune();
+        }
+    }
+
+    /**
+     * Learn from the result of sending a batch.
+     *
+     * @param logCount    number of logs in the batch.
+     * @param payloadSize payload size in bytes, negative if unknown.
+     * @param latency     duration in ms of the HTTP call that sent the batch, negative if unknown.
+     * @param success     whether the batch was sent successfully.
+     */
+    public synchronized void onBatchSent(int logCount, long payloadSize, long latency, boolean success) {
+        mFailureRate = smooth(mFailureRate, success ? 0 : 1);
+
+        /* Latency and size of a failed call say nothing about the network. */
+        if (success) {
+            if (latency >= 0) {
+                mLatency = mLatency < 0 ? latency : smooth(mLatency, latency);
+            }
+            if (payloadSize >= 0 && logCount > 0) {
+                double logSize = (double) payloadSize / logCount;
+                mLogSize = mLogSize < 0 ? logSize : smooth(mLogSize, logSize);
+            }
+        }
+        tune();
+    }
+
+    /**
+     * @return current maximum number of logs per batch.
+     */
+    public synchronized int getMaxLogsPerBatch() {
+        return mLogsPerBatch;
+    }
+
+    /**
+     * @return current time to wait before 2 batches, in ms.
+     */
+    public synchronized long getBatchTimeInterval() {
+        return mBatchTimeInterval;
+    }
+
+    /**
+     * @return current maximum number of batches in parallel.
+     */
+    public synchronized int getMaxParallelBatches() {
+        return mParallelBatches;
+    }
+
+    /**
+     * @return moving average of send latency in ms, negative if nothing was sent yet.
+     */
+    public synchronized double getLatency() {
+        return mLatency;
+    }
+
+    /**
+     * @return moving average of failures, between 0 and 1.
+     */
+    public synchronized double getFailureRate() {
+        return mFailureRate;
+    }
+
+    /**
+     * @return whether the active network is metered.
+     */
+    public synchronized boolean isNetworkMetered() {
+        return mNetworkMetered;
+    }
+
+    private static double smooth(double average, double value) {
+        return average + SMOOTHING_FACTOR * (value - average);
+    }
+
+    /**
+     * Compute settings from the observations, 1 being the best network quality.
+     */
+    private void tune() {
+        double quality = 1 - mFailureRate;
+        if (mLatency > FAST_LATENCY) {
+            quality *= FAST_LATENCY / mLatency;
+        }
+        if (mNetworkMetered) {
+            quality *= 0.5;
+        }
+        int logsPerBatch = mMinLogsPerBatch + (int) Math.round((mMaxLogsPerBatch - mMinLogsPerBatch) * quality);
+
+        /* Cap batch payload size to what the network type can afford to send again. */
+        if (mLogSize > 0) {
+            long targetSize = mNetworkMetered ? METERED_BATCH_SIZE : UNMETERED_BATCH_SIZE;
+            logsPerBatch = (int) Math.min(logsPerBatch, Math.max(mMinLogsPerBatch, targetSize / mLogSize));
+        }
+        mLogsPerBatch = logsPerBatch;
+        mBatchTimeInterval = mMinBatchTimeInterval + Math.round((mMaxBatchTimeInterval - mMinBatchTimeInterval) * quality);
+        mParallelBatches = mFailureRate > MAX_PARALLEL_FAILURE_RATE ? 1 : mMaxParallelBatches;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "AdaptiveBatchPolicy{" +
+                "logsPerBatch=" + mLogsPerBatch +
+                ", batchTimeInterval=" + mBatchTimeInterval +
+                ", parallelBatches=" + mParallelBatches +
+                ", latency=" + mLatency +
+                ", failureRate=" + mFailureRate +
+                ", networkMetered=" + mNetworkMetered +
+                '}';
+    }
+}
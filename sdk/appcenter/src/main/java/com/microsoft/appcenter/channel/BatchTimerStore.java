@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.channel;
+
+import android.os.Handler;
+
+import androidx.annotation.NonNull;
+
+import com.microsoft.appcenter.utils.storage.SharedPreferencesManager;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Start times of custom interval batch timers, kept in memory and persisted so that a timer
+ * survives process restarts.
+ * Each group is read from storage once, then changes are written from a single task posted
+ * to the handler, so that multiple changes of the same group are coalesced in one write.
+ */
+class BatchTimerStore {
+
+    /**
+     * Storage key prefix.
+     */
+    private final String mKeyPrefix;
+
+    /**
+     * Handler used to write changes.
+     */
+    private final Handler mHandler;
+
+    /**
+     * Start time per group, 0 if timer is not started.
+     */
+    private final Map<String, Long> mStartTimes = new HashMap<>();
+
+    /**
+     * Groups with changes not written yet.
+     */
+    private final Set<String> mChangedGroups = new LinkedHashSet<>();
+
+    /**
+     * Is writing changes scheduled.
+     */
+    private boolean mFlushScheduled;
+
+    /**
+     * Runnable that writes changes.
+     */
+    private final Runnable mFlushRunnable = new Runnable() {
+
+        @Override
+        public void run() {
+            mFlushScheduled = false;
+            writeChanges();
+        }
+    };
+
+    /**
+     * Init.
+     *
+     * @param keyPrefix storage key prefix, group name is appended.
+     * @param handler   handler used to write changes, must be the one of the calling thread.
+     */
+    BatchTimerStore(@NonNull String keyPrefix, @NonNull Handler handler) {
+        mKeyPrefix = keyPrefix;
+        mHandler = handler;
+    }
+
+    /**
+     * Get timer start time.
+     *
+     * @param groupName group name.
+     * @return start time, 0 if timer is not started.
+     */
+    long getStartTime(@NonNull String groupName) {
+        Long startTime = mStartTimes.get(groupName);
+        if (startTime == null) {
+            startTime = SharedPreferencesManager.getLong(mKeyPrefix + groupName);
+            mStartTimes.put(groupName, startTime);
+        }
+        return startTime;
+    }
+
+    /**
+     * Start timer.
+     *
+     * @param groupName group name.
+     * @param startTime start time.
+     */
+    void setStartTime(@NonNull String groupName, long startTime) {
+        if (getStartTime(groupName) != startTime) {
+            mStartTimes.put(groupName, startTime);
+            onChanged(groupName);
+        }
+    }
+
+    /**
+     * Stop timer.
+     *
+     * @param groupName group name.
+     */
+    void remove(@NonNull String groupName) {
+        setStartTime(groupName, 0);
+    }
+
+    /**
+     * Write pending changes now, for example before the process exits.
+     */
+    void flush() {
+        if (mFlushScheduled) {
+            mFlushScheduled = false;
+            mHandler.removeCallbacks(mFlushRunnable);
+        }
+        writeChanges();
+    }
+
+    private void onChanged(String groupName) {
+        mChangedGroups.add(groupName);
+        if (!mFlushScheduled) {
+            mFlushScheduled = true;
+            mHandler.post(mFlushRunnable);
+        }
+    }
+
+    private void writeChanges() {
+        for (String groupName : mChangedGroups) {
+            long startTime = mStartTimes.get(groupName);
+            if (startTime == 0) {
+                SharedPreferencesManager.remove(mKeyPrefix + groupName);
+            } else {
+                SharedPreferencesManager.putLong(mKeyPrefix + groupName, startTime);
+            }
+        }
+        mChangedGroups.clear();
+    }
+}
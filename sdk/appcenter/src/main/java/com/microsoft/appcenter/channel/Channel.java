@@ -248,4 +248,19 @@ public interface Channel {
          */
         void onFailure(Log log, Exception e);
     }
+
+    /**
+     * Group listener that does not always need to be called for each log.
+     * While it does not, the channel can send batches of the group from their stored payloads
+     * without deserializing logs.
+     */
+    interface ConditionalGroupListener extends GroupListener {
+
+        /**
+         * Check whether the listener needs to be called with the logs of the next batch.
+         *
+         * @return true to be called for each log of the next batch, false otherwise.
+         */
+        boolean needsLogs();
+    }
 }
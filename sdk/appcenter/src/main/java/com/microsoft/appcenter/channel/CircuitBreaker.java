@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.channel;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops sending to an ingestion or for a group after failures, for an exponentially growing time.
+ * Once that time is over, the next request acts as a probe: success closes the breaker, failure opens it for longer.
+ * Failures reported while the breaker is already open (such as other batches that were sent in parallel) do not extend it.
+ */
+class CircuitBreaker {
+
+    /**
+     * Time to wait after the first failure, in ms.
+     */
+    @VisibleForTesting
+    static final long INITIAL_BACKOFF = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Maximum time to wait, in ms.
+     */
+    @VisibleForTesting
+    static final long MAX_BACKOFF = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * Random object for interval randomness.
+     */
+    private final Random mRandom = new Random();
+
+    /**
+     * Number of consecutive failures.
+     */
+    private int mFailureCount;
+
+    /**
+     * Time in ms until which nothing should be sent.
+     */
+    private long mOpenUntil;
+
+    /**
+     * Report a failure.
+     *
+     * @param now current time in ms.
+     * @return time to wait in ms before sending again.
+     */
+    long onFailure(long now) {
+        long remainingTime = getRemainingTime(now);
+        if (remainingTime > 0) {
+            return remainingTime;
+        }
+        mFailureCount++;
+        long backoff = INITIAL_BACKOFF << Math.min(mFailureCount - 1, 16);
+        backoff = Math.min(backoff, MAX_BACKOFF) / 2;
+        backoff += (long) (mRandom.nextDouble() * backoff);
+        mOpenUntil = now + backoff;
+        return backoff;
+    }
+
+    /**
+     * Report a success, closing the breaker.
+     */
+    void onSuccess() {
+        mFailureCount = 0;
+        mOpenUntil = 0;
+    }
+
+    /**
+     * Get the time to wait before sending again.
+     *
+     * @param now current time in ms.
+     * @return time to wait in ms, 0 if the breaker is closed or waiting for a probe.
+     */
+    long getRemainingTime(long now) {
+        return Math.max(mOpenUntil - now, 0);
+    }
+
+    /**
+     * @return number of consecutive failures.
+     */
+    int getFailureCount() {
+        return mFailureCount;
+    }
+}
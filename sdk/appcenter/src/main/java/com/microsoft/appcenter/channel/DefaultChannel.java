@@ -9,11 +9,13 @@ import android.content.Context;
 import android.os.Handler;
 import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
 
 import com.microsoft.appcenter.CancellationException;
 import com.microsoft.appcenter.http.HttpClient;
+import com.microsoft.appcenter.http.HttpException;
 import com.microsoft.appcenter.http.HttpResponse;
 import com.microsoft.appcenter.http.HttpUtils;
 import com.microsoft.appcenter.http.ServiceCallback;
@@ -22,6 +24,7 @@ import com.microsoft.appcenter.ingestion.Ingestion;
 import com.microsoft.appcenter.ingestion.models.Device;
 import com.microsoft.appcenter.ingestion.models.Log;
 import com.microsoft.appcenter.ingestion.models.LogContainer;
+import com.microsoft.appcenter.ingestion.models.RawLog;
 import com.microsoft.appcenter.ingestion.models.json.LogSerializer;
 import com.microsoft.appcenter.ingestion.models.one.PartAUtils;
 import com.microsoft.appcenter.persistence.DatabasePersistence;
@@ -29,16 +32,22 @@ import com.microsoft.appcenter.persistence.Persistence;
 import com.microsoft.appcenter.utils.AppCenterLog;
 import com.microsoft.appcenter.utils.DeviceInfoHelper;
 import com.microsoft.appcenter.utils.IdHelper;
-import com.microsoft.appcenter.utils.storage.SharedPreferencesManager;
+import com.microsoft.appcenter.utils.NetworkStateHelper;
+import com.microsoft.appcenter.utils.metrics.SdkMetrics;
+
+import org.json.JSONException;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -66,6 +75,31 @@ public class DefaultChannel implements Channel {
      */
     private static final long MINIMUM_TRANSMISSION_INTERVAL = 3000;
 
+    /**
+     * Number of stored logs checked by each compression pass.
+     */
+    @VisibleForTesting
+    static final int STORAGE_COMPRESSION_PAGE_SIZE = 50;
+
+    /**
+     * Delay in ms before each compression pass, or between passes while batches are being sent.
+     */
+    @VisibleForTesting
+    static final long STORAGE_COMPRESSION_DELAY = 1000;
+
+    /**
+     * Maximum number of logs in a request merging batches of the flush window.
+     */
+    @VisibleForTesting
+    static final int MAX_WINDOW_REQUEST_LOGS = 500;
+
+    /**
+     * Maximum size in bytes of a request merging batches of the flush window, estimated from
+     * stored payloads. Batches of deserialized logs are only limited by {@link #MAX_WINDOW_REQUEST_LOGS}.
+     */
+    @VisibleForTesting
+    static final long MAX_WINDOW_REQUEST_SIZE = 1024 * 1024;
+
     /**
      * Application context.
      */
@@ -111,6 +145,11 @@ public class DefaultChannel implements Channel {
      */
     private final Handler mAppCenterHandler;
 
+    /**
+     * Start times of custom interval timers.
+     */
+    private final BatchTimerStore mBatchTimerStore;
+
     /**
      * Is channel enabled?
      */
@@ -133,6 +172,95 @@ public class DefaultChannel implements Channel {
      */
     private int mCurrentState;
 
+    /**
+     * Whether batches of groups that do not need {@link Log} objects are sent from stored payloads.
+     */
+    private boolean mRawPayloadsEnabled;
+
+    /**
+     * Maximum time in ms logs stay in the persistence write buffer, 0 if write-behind mode is disabled.
+     */
+    private long mWriteBehindDelay;
+
+    /**
+     * Is persistence write buffer flush scheduled.
+     */
+    private boolean mFlushScheduled;
+
+    /**
+     * Runnable that writes buffered logs to persistence.
+     */
+    private final Runnable mFlushRunnable = new Runnable() {
+
+        @Override
+        public void run() {
+            mFlushScheduled = false;
+            mPersistence.flush();
+        }
+    };
+
+    /**
+     * Time in ms batches wait to be sent together with batches of other groups sharing the same ingestion, 0 if disabled.
+     */
+    private long mFlushWindow;
+
+    /**
+     * Batches waiting for the end of the flush window, per ingestion.
+     */
+    private final Map<Ingestion, List<WindowBatch>> mWindowBatches = new LinkedHashMap<>();
+
+    /**
+     * Is the end of the flush window scheduled.
+     */
+    private boolean mFlushWindowScheduled;
+
+    /**
+     * Runnable that sends batches waiting for the end of the flush window.
+     */
+    private final Runnable mFlushWindowRunnable = new Runnable() {
+
+        @Override
+        public void run() {
+            mFlushWindowScheduled = false;
+            sendWindowBatches();
+        }
+    };
+
+    /**
+     * Is a compression pass of stored logs scheduled.
+     */
+    private boolean mStorageCompressionScheduled;
+
+    /**
+     * Runnable that compresses logs stored before compression was enabled, one page at a time,
+     * when no batch is being sent.
+     */
+    private final Runnable mStorageCompressionRunnable = new Runnable() {
+
+        @Override
+        public void run() {
+            mStorageCompressionScheduled = false;
+            if (isSending() || mPersistence.compressStoredLogs(STORAGE_COMPRESSION_PAGE_SIZE)) {
+                scheduleStorageCompression();
+            }
+        }
+    };
+
+    /**
+     * Whether a failed batch only affects its ingestion or group instead of suspending the channel.
+     */
+    private boolean mFailureIsolationEnabled;
+
+    /**
+     * Whether groups get an adaptive batch policy when added.
+     */
+    private boolean mAdaptiveBatchingEnabled;
+
+    /**
+     * Circuit breakers of ingestions that failed with recoverable errors.
+     */
+    private final Map<Ingestion, CircuitBreaker> mCircuitBreakers = new HashMap<>();
+
     /**
      * Creates and initializes a new instance.
      *
@@ -167,6 +295,7 @@ public class DefaultChannel implements Channel {
         mIngestions = new HashSet<>();
         mIngestions.add(mIngestion);
         mAppCenterHandler = appCenterHandler;
+        mBatchTimerStore = new BatchTimerStore(START_TIMER_PREFIX, appCenterHandler);
         mEnabled = true;
     }
 
@@ -179,6 +308,161 @@ public class DefaultChannel implements Channel {
         return persistence;
     }
 
+    /**
+     * Enable or disable sending batches from the payloads as stored in persistence.
+     * When enabled, groups without listener, or with a {@link ConditionalGroupListener} that
+     * does not need logs, skip deserializing logs from storage and serializing them again.
+     *
+     * @param enabled true to send stored payloads when possible, false to always deserialize logs.
+     */
+    public void setRawPayloadsEnabled(boolean enabled) {
+        mRawPayloadsEnabled = enabled;
+    }
+
+    /**
+     * Enable or disable write-behind mode in persistence. When enabled, logs are buffered in memory
+     * and written in a single transaction once the buffer is full or after the given delay.
+     * Critical logs (such as crashes) are still written immediately.
+     *
+     * @param maxBufferedLogs maximum number of buffered logs, 0 to disable write-behind mode.
+     * @param maxBufferDelay  maximum time in ms a log stays in the buffer.
+     */
+    public void setWriteBehind(int maxBufferedLogs, long maxBufferDelay) {
+        mWriteBehindDelay = maxBufferedLogs > 0 ? maxBufferDelay : 0;
+        mPersistence.setWriteBufferSize(maxBufferedLogs);
+        if (maxBufferedLogs == 0) {
+            cancelFlush();
+        }
+    }
+
+    /**
+     * Set a flush window: batches ready within the window are merged with batches of other groups
+     * sharing the same ingestion and sent in a single request. Results are reported to every
+     * group as if their batches were sent separately.
+     *
+     * @param flushWindow time in ms a batch can wait for other batches, 0 to send every batch immediately.
+     */
+    public void setFlushWindow(long flushWindow) {
+        mFlushWindow = flushWindow;
+        if (flushWindow <= 0 && mFlushWindowScheduled) {
+            mFlushWindowScheduled = false;
+            mAppCenterHandler.removeCallbacks(mFlushWindowRunnable);
+            sendWindowBatches();
+        }
+    }
+
+    /**
+     * Enable or disable storage settings tuned for throughput in persistence.
+     *
+     * @param enabled true to use tuned storage settings.
+     */
+    public void setTunedStorageEnabled(boolean enabled) {
+        mPersistence.setTunedStorageEnabled(enabled);
+    }
+
+    /**
+     * Enable or disable compression of logs in persistence, so that more logs fit in the maximum storage size.
+     *
+     * @param enabled true to compress stored logs.
+     */
+    public void setCompressedStorageEnabled(boolean enabled) {
+        mPersistence.setCompressedStorageEnabled(enabled);
+        if (enabled) {
+            scheduleStorageCompression();
+        } else {
+            cancelStorageCompression();
+        }
+    }
+
+    /**
+     * Enable or disable failure isolation. When enabled, a failed batch no longer suspends the channel:
+     * <ul>
+     * <li>Recoverable errors stop sending to the ingestion of the batch for an exponentially growing time.</li>
+     * <li>Other errors about the request content (such as a bad request) split the batch in halves that are
+     * sent again until the logs causing the error are found, only these logs are dropped.</li>
+     * <li>Other errors (such as an invalid app secret) drop the batch and stop sending the group for an exponentially growing time.</li>
+     * </ul>
+     *
+     * @param enabled true to isolate failures, false to suspend the channel on failures.
+     */
+    public void setFailureIsolationEnabled(boolean enabled) {
+        mFailureIsolationEnabled = enabled;
+    }
+
+    /**
+     * Let a group tune its batch size, batch interval and number of parallel batches from
+     * observed network conditions instead of using the values it was added with.
+     * Groups with a custom transmission interval keep that interval.
+     *
+     * @param groupName the group name.
+     * @param policy    the policy, which exposes the chosen values, or null to use the values the group was added with.
+     */
+    public void setAdaptiveBatchPolicy(@NonNull String groupName, @Nullable AdaptiveBatchPolicy policy) {
+        GroupState groupState = mGroupStates.get(groupName);
+        if (groupState != null) {
+            groupState.mAdaptiveBatchPolicy = policy;
+        }
+    }
+
+    /**
+     * Enable or disable adaptive batching for groups added afterwards. Each group gets an
+     * {@link AdaptiveBatchPolicy} that never exceeds the batch size and parallel batches the group
+     * is added with, and waits between the batch time interval and twice that interval.
+     *
+     * @param enabled true to tune batching of groups added afterwards.
+     */
+    public void setAdaptiveBatchingEnabled(boolean enabled) {
+        mAdaptiveBatchingEnabled = enabled;
+    }
+
+    /**
+     * Schedule writing buffered logs to persistence if not already scheduled.
+     */
+    private void scheduleFlush() {
+        if (mWriteBehindDelay > 0 && !mFlushScheduled) {
+            mFlushScheduled = true;
+            mAppCenterHandler.postDelayed(mFlushRunnable, mWriteBehindDelay);
+        }
+    }
+
+    private void cancelFlush() {
+        if (mFlushScheduled) {
+            mFlushScheduled = false;
+            mAppCenterHandler.removeCallbacks(mFlushRunnable);
+        }
+    }
+
+    /**
+     * Schedule the next compression pass of stored logs if not already scheduled.
+     */
+    private void scheduleStorageCompression() {
+        if (!mStorageCompressionScheduled) {
+            mStorageCompressionScheduled = true;
+            mAppCenterHandler.postDelayed(mStorageCompressionRunnable, STORAGE_COMPRESSION_DELAY);
+        }
+    }
+
+    private void cancelStorageCompression() {
+        if (mStorageCompressionScheduled) {
+            mStorageCompressionScheduled = false;
+            mAppCenterHandler.removeCallbacks(mStorageCompressionRunnable);
+        }
+    }
+
+    /**
+     * Check whether any group has batches being sent.
+     *
+     * @return true if a batch is being sent.
+     */
+    private boolean isSending() {
+        for (GroupState groupState : mGroupStates.values()) {
+            if (!groupState.mSendingBatches.isEmpty() || !groupState.mSendingRawBatches.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @WorkerThread
     @Override
     public boolean setMaxStorageSize(long maxStorageSizeInBytes) {
@@ -220,10 +504,15 @@ public class DefaultChannel implements Channel {
     public void addGroup(final String groupName, int maxLogsPerBatch, long batchTimeInterval, int maxParallelBatches, Ingestion ingestion, GroupListener groupListener) {
 
         /* Init group. */
-        AppCenterLog.debug(LOG_TAG, "addGroup(" + groupName + ")");
+        if (AppCenterLog.isDebugEnabled()) {
+            AppCenterLog.debug(LOG_TAG, "addGroup(" + groupName + ")");
+        }
         ingestion = ingestion == null ? mIngestion : ingestion;
         mIngestions.add(ingestion);
         final GroupState groupState = new GroupState(groupName, maxLogsPerBatch, batchTimeInterval, maxParallelBatches, ingestion, groupListener);
+        if (mAdaptiveBatchingEnabled) {
+            groupState.mAdaptiveBatchPolicy = new AdaptiveBatchPolicy(1, maxLogsPerBatch, batchTimeInterval, batchTimeInterval * 2, maxParallelBatches);
+        }
         mGroupStates.put(groupName, groupState);
 
         /* Count pending logs. */
@@ -248,7 +537,9 @@ public class DefaultChannel implements Channel {
 
     @Override
     public void removeGroup(String groupName) {
-        AppCenterLog.debug(LOG_TAG, "removeGroup(" + groupName + ")");
+        if (AppCenterLog.isDebugEnabled()) {
+            AppCenterLog.debug(LOG_TAG, "removeGroup(" + groupName + ")");
+        }
         GroupState groupState = mGroupStates.remove(groupName);
         if (groupState != null) {
             cancelTimer(groupState);
@@ -267,10 +558,14 @@ public class DefaultChannel implements Channel {
             if (targetToken != null) {
                 String targetKey = PartAUtils.getTargetKey(targetToken);
                 if (groupState.mPausedTargetKeys.add(targetKey)) {
-                    AppCenterLog.debug(LOG_TAG, "pauseGroup(" + groupName + ", " + targetKey + ")");
+                    if (AppCenterLog.isDebugEnabled()) {
+                        AppCenterLog.debug(LOG_TAG, "pauseGroup(" + groupName + ", " + targetKey + ")");
+                    }
                 }
             } else if (!groupState.mPaused) {
-                AppCenterLog.debug(LOG_TAG, "pauseGroup(" + groupName + ")");
+                if (AppCenterLog.isDebugEnabled()) {
+                    AppCenterLog.debug(LOG_TAG, "pauseGroup(" + groupName + ")");
+                }
                 groupState.mPaused = true;
                 cancelTimer(groupState);
             }
@@ -297,12 +592,16 @@ public class DefaultChannel implements Channel {
                      * the log count does not exclude logs with paused keys, this would be an optimization
                      * that does not seem necessary for now.
                      */
-                    AppCenterLog.debug(LOG_TAG, "resumeGroup(" + groupName + ", " + targetKey + ")");
+                    if (AppCenterLog.isDebugEnabled()) {
+                        AppCenterLog.debug(LOG_TAG, "resumeGroup(" + groupName + ", " + targetKey + ")");
+                    }
                     groupState.mPendingLogCount = mPersistence.countLogs(groupName);
                     checkPendingLogs(groupState);
                 }
             } else if (groupState.mPaused) {
-                AppCenterLog.debug(LOG_TAG, "resumeGroup(" + groupName + ")");
+                if (AppCenterLog.isDebugEnabled()) {
+                    AppCenterLog.debug(LOG_TAG, "resumeGroup(" + groupName + ")");
+                }
                 groupState.mPaused = false;
                 checkPendingLogs(groupState);
             }
@@ -338,12 +637,14 @@ public class DefaultChannel implements Channel {
             for (Ingestion ingestion : mIngestions) {
                 ingestion.reopen();
             }
+            resetCircuitBreakers();
             for (GroupState groupState : mGroupStates.values()) {
                 checkPendingLogs(groupState);
             }
         } else {
             mEnabled = false;
             suspend(true, new CancellationException());
+            mPersistence.clearTargetTokenCache();
         }
 
         /* Notify listeners that channel state has changed. */
@@ -367,7 +668,9 @@ public class DefaultChannel implements Channel {
         if (!mGroupStates.containsKey(groupName)) {
             return;
         }
-        AppCenterLog.debug(LOG_TAG, "clear(" + groupName + ")");
+        if (AppCenterLog.isDebugEnabled()) {
+            AppCenterLog.debug(LOG_TAG, "clear(" + groupName + ")");
+        }
         mPersistence.deleteLogs(groupName);
 
         /* Call listeners so that they can react on group clearing. */
@@ -406,7 +709,23 @@ public class DefaultChannel implements Channel {
                     }
                 }
             }
+            groupState.mSendingRawBatches.clear();
+
+            /* Stop bisecting, the batch is released or deleted with other logs. */
+            Bisection bisection = groupState.mBisection;
+            if (bisection != null) {
+                groupState.mBisection = null;
+                if (deleteLogs) {
+                    if (bisection.mSendingPart != null) {
+                        notifyFailure(groupState, bisection.mSendingPart, exception);
+                    }
+                    for (LogContainer part : bisection.mParts) {
+                        notifyFailure(groupState, part, exception);
+                    }
+                }
+            }
         }
+        cancelFlushWindow();
         for (Ingestion ingestion : mIngestions) {
             try {
                 ingestion.close();
@@ -444,7 +763,7 @@ public class DefaultChannel implements Channel {
         if (groupState.mScheduled) {
             groupState.mScheduled = false;
             mAppCenterHandler.removeCallbacks(groupState.mRunnable);
-            SharedPreferencesManager.remove(START_TIMER_PREFIX + groupState.mName);
+            mBatchTimerStore.remove(groupState.mName);
         }
     }
 
@@ -464,14 +783,47 @@ public class DefaultChannel implements Channel {
             AppCenterLog.debug(LOG_TAG, "SDK is in offline mode.");
             return;
         }
+
+        /* A bisected batch is sent before any other batch of the group. */
+        if (groupState.mBisection != null) {
+            return;
+        }
+
+        /* Try again once circuit breakers let requests go through. */
+        long remainingTime = getCircuitBreakerRemainingTime(groupState);
+        if (remainingTime > 0) {
+            if (!groupState.mScheduled) {
+                if (AppCenterLog.isDebugEnabled()) {
+                    AppCenterLog.debug(LOG_TAG, "Sending logs of " + groupState.mName + " is blocked for " + remainingTime + " ms.");
+                }
+                groupState.mScheduled = true;
+                mAppCenterHandler.postDelayed(groupState.mRunnable, remainingTime);
+            }
+            return;
+        }
+        AdaptiveBatchPolicy adaptiveBatchPolicy = groupState.mAdaptiveBatchPolicy;
+        if (adaptiveBatchPolicy != null) {
+            adaptiveBatchPolicy.setNetworkMetered(NetworkStateHelper.getSharedInstance(mContext).isNetworkMetered());
+        }
         int pendingLogCount = groupState.mPendingLogCount;
-        int maxFetch = Math.min(pendingLogCount, groupState.mMaxLogsPerBatch);
-        AppCenterLog.debug(LOG_TAG, "triggerIngestion(" + groupState.mName + ") pendingLogCount=" + pendingLogCount);
+        int maxFetch = Math.min(pendingLogCount, groupState.getMaxLogsPerBatch());
+        if (AppCenterLog.isDebugEnabled()) {
+            AppCenterLog.debug(LOG_TAG, "triggerIngestion(" + groupState.mName + ") pendingLogCount=" + pendingLogCount);
+        }
         cancelTimer(groupState);
 
         /* Check if we have reached the maximum number of pending batches, log to LogCat and don't trigger another sending. */
-        if (groupState.mSendingBatches.size() == groupState.mMaxParallelBatches) {
-            AppCenterLog.debug(LOG_TAG, "Already sending " + groupState.mMaxParallelBatches + " batches of analytics data to the server.");
+        int maxParallelBatches = groupState.getMaxParallelBatches();
+        if (groupState.mSendingBatches.size() + groupState.mSendingRawBatches.size() >= maxParallelBatches) {
+            if (AppCenterLog.isDebugEnabled()) {
+                AppCenterLog.debug(LOG_TAG, "Already sending " + maxParallelBatches + " batches of analytics data to the server.");
+            }
+            return;
+        }
+
+        /* Send stored payloads if nobody needs the logs. */
+        if (canSendRawPayloads(groupState)) {
+            triggerRawIngestion(groupState, maxFetch);
             return;
         }
 
@@ -486,7 +838,9 @@ public class DefaultChannel implements Channel {
         if (batchId == null) {
             return;
         }
-        AppCenterLog.debug(LOG_TAG, "ingestLogs(" + groupState.mName + "," + batchId + ") pendingLogCount=" + groupState.mPendingLogCount);
+        if (AppCenterLog.isDebugEnabled()) {
+            AppCenterLog.debug(LOG_TAG, "ingestLogs(" + groupState.mName + "," + batchId + ") pendingLogCount=" + groupState.mPendingLogCount);
+        }
 
         /* Call group listener before sending logs to ingestion service. */
         if (groupState.mListener != null) {
@@ -497,7 +851,64 @@ public class DefaultChannel implements Channel {
 
         /* Remember this batch. */
         groupState.mSendingBatches.put(batchId, batch);
-        sendLogs(groupState, mCurrentState, batch, batchId);
+        if (mFlushWindow > 0) {
+            addWindowBatch(new WindowBatch(groupState, batchId, batch, null));
+            return;
+        }
+        LogContainer logContainer = new LogContainer();
+        logContainer.setLogs(batch);
+        sendLogs(groupState, mCurrentState, logContainer, batchId);
+    }
+
+    /**
+     * Check whether a batch of the group can be sent from stored payloads.
+     *
+     * @param groupState the group state.
+     * @return true if no listener needs the logs of the next batch.
+     */
+    private boolean canSendRawPayloads(@NonNull GroupState groupState) {
+        if (!mRawPayloadsEnabled) {
+            return false;
+        }
+        GroupListener groupListener = groupState.mListener;
+        if (groupListener == null) {
+            return true;
+        }
+        return groupListener instanceof ConditionalGroupListener && !((ConditionalGroupListener) groupListener).needsLogs();
+    }
+
+    /**
+     * Same as the end of {@link #triggerIngestion(GroupState)} but with logs as stored in persistence.
+     *
+     * @param groupState the group state.
+     * @param maxFetch   maximum number of logs in the batch.
+     */
+    private void triggerRawIngestion(@NonNull GroupState groupState, int maxFetch) {
+
+        /* Get a batch from Persistence. */
+        List<RawLog> batch = new ArrayList<>(maxFetch);
+        String batchId = mPersistence.getRawLogs(groupState.mName, groupState.mPausedTargetKeys, maxFetch, batch);
+
+        /* Decrement counter. */
+        groupState.mPendingLogCount -= maxFetch;
+
+        /* Nothing more to do if no logs. */
+        if (batchId == null) {
+            return;
+        }
+        if (AppCenterLog.isDebugEnabled()) {
+            AppCenterLog.debug(LOG_TAG, "ingestRawLogs(" + groupState.mName + "," + batchId + ") pendingLogCount=" + groupState.mPendingLogCount);
+        }
+
+        /* Remember this batch. */
+        groupState.mSendingRawBatches.put(batchId, batch);
+        if (mFlushWindow > 0) {
+            addWindowBatch(new WindowBatch(groupState, batchId, null, batch));
+            return;
+        }
+        LogContainer logContainer = new LogContainer();
+        logContainer.setRawLogs(batch);
+        sendLogs(groupState, mCurrentState, logContainer, batchId);
     }
 
     /**
@@ -505,23 +916,22 @@ public class DefaultChannel implements Channel {
      *
      * @param groupState   The group state.
      * @param currentState The current state.
-     * @param batch        The log batch.
+     * @param logContainer The log batch.
      * @param batchId      The batch ID.
      */
     @MainThread
-    private void sendLogs(final GroupState groupState, final int currentState, List<Log> batch, final String batchId) {
+    private void sendLogs(final GroupState groupState, final int currentState, final LogContainer logContainer, final String batchId) {
 
         /* Send logs. */
-        LogContainer logContainer = new LogContainer();
-        logContainer.setLogs(batch);
         groupState.mIngestion.sendAsync(mAppSecret, mInstallId, logContainer, new ServiceCallback() {
 
             @Override
-            public void onCallSucceeded(HttpResponse httpResponse) {
+            public void onCallSucceeded(final HttpResponse httpResponse) {
                 mAppCenterHandler.post(new Runnable() {
 
                     @Override
                     public void run() {
+                        onBatchSent(groupState, getLogCount(logContainer), httpResponse);
                         handleSendingSuccess(groupState, batchId);
                     }
                 });
@@ -533,6 +943,7 @@ public class DefaultChannel implements Channel {
 
                     @Override
                     public void run() {
+                        onBatchSent(groupState, getLogCount(logContainer), null);
                         handleSendingFailure(groupState, batchId, e);
                     }
                 });
@@ -549,6 +960,202 @@ public class DefaultChannel implements Channel {
         });
     }
 
+    /**
+     * Keep a batch until the end of the flush window, starting the window if needed.
+     *
+     * @param windowBatch the batch.
+     */
+    private void addWindowBatch(@NonNull final WindowBatch windowBatch) {
+        List<WindowBatch> windowBatches = mWindowBatches.get(windowBatch.mGroupState.mIngestion);
+        if (windowBatches == null) {
+            windowBatches = new ArrayList<>();
+            mWindowBatches.put(windowBatch.mGroupState.mIngestion, windowBatches);
+        }
+        windowBatches.add(windowBatch);
+
+        /* No need to wait for more batches if a request would already be full. */
+        int logCount = 0;
+        long size = 0;
+        for (WindowBatch batch : windowBatches) {
+            logCount += batch.mLogCount;
+            size += batch.mSize;
+        }
+        if (logCount >= MAX_WINDOW_REQUEST_LOGS || size >= MAX_WINDOW_REQUEST_SIZE) {
+            mWindowBatches.remove(windowBatch.mGroupState.mIngestion);
+            sendWindowBatches(windowBatch.mGroupState.mIngestion, windowBatches);
+        } else if (!mFlushWindowScheduled) {
+            mFlushWindowScheduled = true;
+            mAppCenterHandler.postDelayed(mFlushWindowRunnable, mFlushWindow);
+        }
+
+        /* Other batches of the group can join the same window. */
+        final int currentState = mCurrentState;
+        mAppCenterHandler.post(new Runnable() {
+
+            @Override
+            public void run() {
+                checkPendingLogsAfterPost(windowBatch.mGroupState, currentState);
+            }
+        });
+    }
+
+    /**
+     * Drop batches waiting for the end of the flush window, they are handled by {@link #suspend}.
+     */
+    private void cancelFlushWindow() {
+        mWindowBatches.clear();
+        if (mFlushWindowScheduled) {
+            mFlushWindowScheduled = false;
+            mAppCenterHandler.removeCallbacks(mFlushWindowRunnable);
+        }
+    }
+
+    /**
+     * Send batches waiting for the end of the flush window.
+     */
+    private void sendWindowBatches() {
+        for (Map.Entry<Ingestion, List<WindowBatch>> entry : mWindowBatches.entrySet()) {
+            sendWindowBatches(entry.getKey(), entry.getValue());
+        }
+        mWindowBatches.clear();
+    }
+
+    /**
+     * Send batches of the flush window sharing an ingestion, merged per payload kind.
+     *
+     * @param ingestion     the ingestion shared by the batches.
+     * @param windowBatches the batches.
+     */
+    private void sendWindowBatches(@NonNull Ingestion ingestion, @NonNull List<WindowBatch> windowBatches) {
+        List<WindowBatch> batches = new ArrayList<>();
+        List<WindowBatch> rawBatches = new ArrayList<>();
+        for (WindowBatch windowBatch : windowBatches) {
+            if (windowBatch.mLogs != null) {
+                batches.add(windowBatch);
+            } else {
+                rawBatches.add(windowBatch);
+            }
+        }
+        sendMergedBatches(ingestion, batches);
+        sendMergedBatches(ingestion, rawBatches);
+    }
+
+    /**
+     * Merge batches of the same payload kind into as few requests as the request limits allow.
+     * A batch is never split, a batch larger than the limits is sent alone.
+     *
+     * @param ingestion the ingestion shared by the batches.
+     * @param batches   the batches, all with logs or all with stored payloads.
+     */
+    private void sendMergedBatches(@NonNull Ingestion ingestion, @NonNull List<WindowBatch> batches) {
+        List<WindowBatch> requestBatches = new ArrayList<>();
+        int logCount = 0;
+        long size = 0;
+        for (WindowBatch windowBatch : batches) {
+            if (!requestBatches.isEmpty() &&
+                    (logCount + windowBatch.mLogCount > MAX_WINDOW_REQUEST_LOGS || size + windowBatch.mSize > MAX_WINDOW_REQUEST_SIZE)) {
+                sendMergedRequest(ingestion, requestBatches);
+                requestBatches = new ArrayList<>();
+                logCount = 0;
+                size = 0;
+            }
+            requestBatches.add(windowBatch);
+            logCount += windowBatch.mLogCount;
+            size += windowBatch.mSize;
+        }
+        if (!requestBatches.isEmpty()) {
+            sendMergedRequest(ingestion, requestBatches);
+        }
+    }
+
+    /**
+     * Build the request of merged batches and send it.
+     *
+     * @param ingestion the ingestion shared by the batches.
+     * @param batches   the batches, all with logs or all with stored payloads.
+     */
+    private void sendMergedRequest(@NonNull Ingestion ingestion, @NonNull List<WindowBatch> batches) {
+        LogContainer logContainer = new LogContainer();
+        if (batches.get(0).mLogs != null) {
+            List<Log> logs = new ArrayList<>();
+            for (WindowBatch windowBatch : batches) {
+                logs.addAll(windowBatch.mLogs);
+            }
+            logContainer.setLogs(logs);
+        } else {
+            List<RawLog> rawLogs = new ArrayList<>();
+            for (WindowBatch windowBatch : batches) {
+                rawLogs.addAll(windowBatch.mRawLogs);
+            }
+            logContainer.setRawLogs(rawLogs);
+        }
+        sendMergedRequest(ingestion, logContainer, batches);
+    }
+
+    /**
+     * Send merged batches in a single request and report the result to each group.
+     *
+     * @param ingestion    the ingestion shared by the groups.
+     * @param logContainer the logs of all batches.
+     * @param batches      the batches.
+     */
+    private void sendMergedRequest(@NonNull Ingestion ingestion, @NonNull LogContainer logContainer, @NonNull final List<WindowBatch> batches) {
+        if (AppCenterLog.isDebugEnabled()) {
+            AppCenterLog.debug(LOG_TAG, "Sending " + batches.size() + " batch(es) in a single request.");
+        }
+        final int logCount = getLogCount(logContainer);
+        ingestion.sendAsync(mAppSecret, mInstallId, logContainer, new ServiceCallback() {
+
+            @Override
+            public void onCallSucceeded(final HttpResponse httpResponse) {
+                mAppCenterHandler.post(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        for (WindowBatch windowBatch : batches) {
+                            onBatchSent(windowBatch.mGroupState, logCount, httpResponse);
+                            handleSendingSuccess(windowBatch.mGroupState, windowBatch.mBatchId);
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onCallFailed(final Exception e) {
+                mAppCenterHandler.post(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        for (WindowBatch windowBatch : batches) {
+                            onBatchSent(windowBatch.mGroupState, logCount, null);
+                            handleSendingFailure(windowBatch.mGroupState, windowBatch.mBatchId, e);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Report the result of sending a batch to the adaptive batch policy of its group, if any.
+     * Latency and size come from the HTTP call itself, so that retries and offline waits are not counted.
+     * A batch merged with others in the flush window reports the whole request.
+     *
+     * @param groupState   the group state.
+     * @param logCount     number of logs in the request.
+     * @param httpResponse the response, null if the batch could not be sent.
+     */
+    private static void onBatchSent(@NonNull GroupState groupState, int logCount, @Nullable HttpResponse httpResponse) {
+        AdaptiveBatchPolicy adaptiveBatchPolicy = groupState.mAdaptiveBatchPolicy;
+        if (adaptiveBatchPolicy != null) {
+            if (httpResponse != null) {
+                adaptiveBatchPolicy.onBatchSent(logCount, httpResponse.getRequestSize(), httpResponse.getDuration(), true);
+            } else {
+                adaptiveBatchPolicy.onBatchSent(logCount, -1, -1, false);
+            }
+        }
+    }
+
     private void checkPendingLogsAfterPost(@NonNull final GroupState groupState, int currentState) {
         if (checkStateDidNotChange(groupState, currentState)) {
             checkPendingLogs(groupState);
@@ -563,10 +1170,14 @@ public class DefaultChannel implements Channel {
      */
     private void handleSendingSuccess(@NonNull GroupState groupState, @NonNull String batchId) {
         List<Log> removedLogsForBatchId = groupState.mSendingBatches.remove(batchId);
-        if (removedLogsForBatchId != null) {
+        List<RawLog> removedRawLogsForBatchId = groupState.mSendingRawBatches.remove(batchId);
+        if (removedLogsForBatchId != null || removedRawLogsForBatchId != null) {
             mPersistence.deleteLogs(groupState.mName, batchId);
+            closeCircuitBreakers(groupState);
+            SdkMetrics.increment(SdkMetrics.Counter.BATCHES_SENT);
+            SdkMetrics.add(SdkMetrics.Counter.LOGS_SENT, removedLogsForBatchId != null ? removedLogsForBatchId.size() : removedRawLogsForBatchId.size());
             GroupListener groupListener = groupState.mListener;
-            if (groupListener != null) {
+            if (groupListener != null && removedLogsForBatchId != null) {
                 for (Log log : removedLogsForBatchId) {
                     groupListener.onSuccess(log);
                 }
@@ -587,14 +1198,23 @@ public class DefaultChannel implements Channel {
     private void handleSendingFailure(@NonNull GroupState groupState, @NonNull String batchId, @NonNull Exception e) {
         String groupName = groupState.mName;
         List<Log> removedLogsForBatchId = groupState.mSendingBatches.remove(batchId);
-        if (removedLogsForBatchId != null) {
+        List<RawLog> removedRawLogsForBatchId = groupState.mSendingRawBatches.remove(batchId);
+        if (removedLogsForBatchId != null || removedRawLogsForBatchId != null) {
             AppCenterLog.error(LOG_TAG, "Sending logs groupName=" + groupName + " id=" + batchId + " failed", e);
+            SdkMetrics.increment(SdkMetrics.Counter.BATCHES_FAILED);
+            if (mFailureIsolationEnabled) {
+                LogContainer logContainer = new LogContainer();
+                logContainer.setLogs(removedLogsForBatchId);
+                logContainer.setRawLogs(removedRawLogsForBatchId);
+                isolateSendingFailure(groupState, batchId, logContainer, e);
+                return;
+            }
             boolean recoverableError = HttpUtils.isRecoverableError(e);
             if (recoverableError) {
-                groupState.mPendingLogCount += removedLogsForBatchId.size();
+                groupState.mPendingLogCount += removedLogsForBatchId != null ? removedLogsForBatchId.size() : removedRawLogsForBatchId.size();
             } else {
                 GroupListener groupListener = groupState.mListener;
-                if (groupListener != null) {
+                if (groupListener != null && removedLogsForBatchId != null) {
                     for (Log log : removedLogsForBatchId) {
                         groupListener.onFailure(log, e);
                     }
@@ -605,6 +1225,237 @@ public class DefaultChannel implements Channel {
         }
     }
 
+    /**
+     * React to a failed batch without affecting other ingestions and groups.
+     *
+     * @param groupState   the group state.
+     * @param batchId      the batch ID.
+     * @param logContainer the batch.
+     * @param e            the exception.
+     */
+    private void isolateSendingFailure(@NonNull GroupState groupState, @NonNull String batchId, @NonNull LogContainer logContainer, @NonNull Exception e) {
+        if (HttpUtils.isRecoverableError(e)) {
+
+            /* Keep the logs for a later batch and stop sending to the ingestion for a while. */
+            groupState.mPendingLogCount += getLogCount(logContainer);
+            mPersistence.releaseLogs(groupState.mName, batchId);
+            long backoff = getCircuitBreaker(groupState.mIngestion).onFailure(System.currentTimeMillis());
+            AppCenterLog.warn(LOG_TAG, "Sending logs to the ingestion of " + groupState.mName + " is blocked for " + backoff + " ms.");
+            checkPendingLogs(groupState);
+        } else if (isContentError(e) && getLogCount(logContainer) > 1) {
+
+            /* Find the logs that cause the error. */
+            Bisection bisection = new Bisection(batchId);
+            groupState.mBisection = bisection;
+            bisect(bisection, logContainer);
+            sendNextPart(groupState, bisection);
+        } else {
+
+            /* Drop the batch and stop sending the group for a while. */
+            notifyFailure(groupState, logContainer, e);
+            mPersistence.deleteLogs(groupState.mName, batchId);
+            if (!isContentError(e)) {
+                long backoff = groupState.mCircuitBreaker.onFailure(System.currentTimeMillis());
+                AppCenterLog.warn(LOG_TAG, "Sending logs of " + groupState.mName + " is blocked for " + backoff + " ms.");
+            }
+            checkPendingLogs(groupState);
+        }
+    }
+
+    /**
+     * Check whether an error is caused by the content of the request, rather than the ingestion or its configuration.
+     * Only a bad request, a request too large or a log failing to serialize qualify, any other error
+     * goes through the circuit breaker.
+     *
+     * @param e non-recoverable error.
+     * @return true if the error is caused by the logs in the request.
+     */
+    private static boolean isContentError(@NonNull Exception e) {
+        if (e instanceof HttpException) {
+            int statusCode = ((HttpException) e).getHttpResponse().getStatusCode();
+            return statusCode == 400 || statusCode == 413;
+        }
+        return e instanceof JSONException;
+    }
+
+    /**
+     * Split a part of a bisected batch in halves, to be sent next.
+     *
+     * @param bisection the bisection.
+     * @param part      the part to split, with more than 1 log.
+     */
+    private static void bisect(@NonNull Bisection bisection, @NonNull LogContainer part) {
+        LogContainer firstHalf = new LogContainer();
+        LogContainer secondHalf = new LogContainer();
+        List<Log> logs = part.getLogs();
+        if (logs != null) {
+            int middle = logs.size() / 2;
+            firstHalf.setLogs(new ArrayList<>(logs.subList(0, middle)));
+            secondHalf.setLogs(new ArrayList<>(logs.subList(middle, logs.size())));
+        } else {
+            List<RawLog> rawLogs = part.getRawLogs();
+            int middle = rawLogs.size() / 2;
+            firstHalf.setRawLogs(new ArrayList<>(rawLogs.subList(0, middle)));
+            secondHalf.setRawLogs(new ArrayList<>(rawLogs.subList(middle, rawLogs.size())));
+        }
+        bisection.mParts.addFirst(secondHalf);
+        bisection.mParts.addFirst(firstHalf);
+    }
+
+    /**
+     * Send the next part of a bisected batch, or delete the batch from persistence if all parts were sent or dropped.
+     *
+     * @param groupState the group state.
+     * @param bisection  the bisection.
+     */
+    private void sendNextPart(@NonNull final GroupState groupState, @NonNull final Bisection bisection) {
+        final LogContainer part = bisection.mParts.poll();
+        if (part == null) {
+            groupState.mBisection = null;
+            mPersistence.deleteLogs(groupState.mName, bisection.mBatchId);
+            checkPendingLogs(groupState);
+            return;
+        }
+        if (AppCenterLog.isDebugEnabled()) {
+            AppCenterLog.debug(LOG_TAG, "Sending " + getLogCount(part) + " log(s) of bisected batch " + bisection.mBatchId);
+        }
+        bisection.mSendingPart = part;
+        final int currentState = mCurrentState;
+        groupState.mIngestion.sendAsync(mAppSecret, mInstallId, part, new ServiceCallback() {
+
+            @Override
+            public void onCallSucceeded(HttpResponse httpResponse) {
+                mAppCenterHandler.post(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        if (checkStateDidNotChange(groupState, currentState) && groupState.mBisection == bisection) {
+                            bisection.mSendingPart = null;
+                            closeCircuitBreakers(groupState);
+                            SdkMetrics.add(SdkMetrics.Counter.LOGS_SENT, getLogCount(part));
+                            GroupListener groupListener = groupState.mListener;
+                            if (groupListener != null && part.getLogs() != null) {
+                                for (Log log : part.getLogs()) {
+                                    groupListener.onSuccess(log);
+                                }
+                            }
+                            sendNextPart(groupState, bisection);
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onCallFailed(final Exception e) {
+                mAppCenterHandler.post(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        if (checkStateDidNotChange(groupState, currentState) && groupState.mBisection == bisection) {
+                            bisection.mSendingPart = null;
+                            handlePartFailure(groupState, bisection, part, e);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * React to not being able to send a part of a bisected batch.
+     *
+     * @param groupState the group state.
+     * @param bisection  the bisection.
+     * @param part       the part that failed.
+     * @param e          the exception.
+     */
+    private void handlePartFailure(@NonNull final GroupState groupState, @NonNull final Bisection bisection, @NonNull LogContainer part, @NonNull Exception e) {
+        if (HttpUtils.isRecoverableError(e)) {
+
+            /* Send the part again once the ingestion can be used. */
+            bisection.mParts.addFirst(part);
+            long backoff = getCircuitBreaker(groupState.mIngestion).onFailure(System.currentTimeMillis());
+            AppCenterLog.warn(LOG_TAG, "Sending logs to the ingestion of " + groupState.mName + " is blocked for " + backoff + " ms.", e);
+            final int currentState = mCurrentState;
+            mAppCenterHandler.postDelayed(new Runnable() {
+
+                @Override
+                public void run() {
+                    if (checkStateDidNotChange(groupState, currentState) && groupState.mBisection == bisection) {
+                        sendNextPart(groupState, bisection);
+                    }
+                }
+            }, backoff);
+            return;
+        }
+        if (isContentError(e) && getLogCount(part) > 1) {
+            bisect(bisection, part);
+        } else {
+            AppCenterLog.error(LOG_TAG, "Dropping " + getLogCount(part) + " log(s) of " + groupState.mName + " rejected by the ingestion.", e);
+            notifyFailure(groupState, part, e);
+        }
+        sendNextPart(groupState, bisection);
+    }
+
+    /**
+     * Call the group listener for logs that failed to be sent and will not be sent again.
+     *
+     * @param groupState   the group state.
+     * @param logContainer the logs, nothing is called for stored payloads.
+     * @param e            the exception.
+     */
+    private static void notifyFailure(@NonNull GroupState groupState, @NonNull LogContainer logContainer, @NonNull Exception e) {
+        GroupListener groupListener = groupState.mListener;
+        if (groupListener != null && logContainer.getLogs() != null) {
+            for (Log log : logContainer.getLogs()) {
+                groupListener.onFailure(log, e);
+            }
+        }
+    }
+
+    private static int getLogCount(@NonNull LogContainer logContainer) {
+        List<Log> logs = logContainer.getLogs();
+        return logs != null ? logs.size() : logContainer.getRawLogs().size();
+    }
+
+    @NonNull
+    private CircuitBreaker getCircuitBreaker(@NonNull Ingestion ingestion) {
+        CircuitBreaker circuitBreaker = mCircuitBreakers.get(ingestion);
+        if (circuitBreaker == null) {
+            circuitBreaker = new CircuitBreaker();
+            mCircuitBreakers.put(ingestion, circuitBreaker);
+        }
+        return circuitBreaker;
+    }
+
+    /**
+     * Get the time to wait before sending logs of a group, as decided by circuit breakers of the group and its ingestion.
+     *
+     * @param groupState the group state.
+     * @return time in ms, 0 if logs can be sent.
+     */
+    private long getCircuitBreakerRemainingTime(@NonNull GroupState groupState) {
+        long now = System.currentTimeMillis();
+        long remainingTime = groupState.mCircuitBreaker.getRemainingTime(now);
+        CircuitBreaker circuitBreaker = mCircuitBreakers.get(groupState.mIngestion);
+        if (circuitBreaker != null) {
+            remainingTime = Math.max(remainingTime, circuitBreaker.getRemainingTime(now));
+        }
+        return remainingTime;
+    }
+
+    private void closeCircuitBreakers(@NonNull GroupState groupState) {
+        groupState.mCircuitBreaker.onSuccess();
+        mCircuitBreakers.remove(groupState.mIngestion);
+    }
+
+    private void resetCircuitBreakers() {
+        mCircuitBreakers.clear();
+        for (GroupState groupState : mGroupStates.values()) {
+            groupState.mCircuitBreaker.onSuccess();
+        }
+    }
+
     @Override
     public void enqueue(@NonNull Log log, @NonNull final String groupName, int flags) {
 
@@ -614,6 +1465,7 @@ public class DefaultChannel implements Channel {
             AppCenterLog.error(LOG_TAG, "Invalid group name:" + groupName);
             return;
         }
+        SdkMetrics.increment(SdkMetrics.Counter.LOGS_ENQUEUED);
 
         /* Check if disabled with discarding logs. */
         if (mDiscardLogs) {
@@ -665,18 +1517,23 @@ public class DefaultChannel implements Channel {
 
         /* If filtered out, nothing more to do. */
         if (filteredOut) {
-            AppCenterLog.debug(LOG_TAG, "Log of type '" + log.getType() + "' was filtered out by listener(s)");
+            if (AppCenterLog.isDebugEnabled()) {
+                AppCenterLog.debug(LOG_TAG, "Log of type '" + log.getType() + "' was filtered out by listener(s)");
+            }
         } else {
             if (mAppSecret == null && groupState.mIngestion == mIngestion) {
 
                 /* Log was not filtered out but no app secret has been provided. Do nothing in this case. */
-                AppCenterLog.debug(LOG_TAG, "Log of type '" + log.getType() + "' was not filtered out by listener(s) but no app secret was provided. Not persisting/sending the log.");
+                if (AppCenterLog.isDebugEnabled()) {
+                    AppCenterLog.debug(LOG_TAG, "Log of type '" + log.getType() + "' was not filtered out by listener(s) but no app secret was provided. Not persisting/sending the log.");
+                }
                 return;
             }
             try {
 
                 /* Persist log. */
                 mPersistence.putLog(log, groupName, flags);
+                scheduleFlush();
             } catch (Persistence.PersistenceException e) {
                 AppCenterLog.error(LOG_TAG, "Error persisting log", e);
                 if (groupState.mListener != null) {
@@ -690,13 +1547,17 @@ public class DefaultChannel implements Channel {
             Iterator<String> targetKeys = log.getTransmissionTargetTokens().iterator();
             String targetKey = targetKeys.hasNext() ? PartAUtils.getTargetKey(targetKeys.next()) : null;
             if (groupState.mPausedTargetKeys.contains(targetKey)) {
-                AppCenterLog.debug(LOG_TAG, "Transmission target ikey=" + targetKey + " is paused.");
+                if (AppCenterLog.isDebugEnabled()) {
+                    AppCenterLog.debug(LOG_TAG, "Transmission target ikey=" + targetKey + " is paused.");
+                }
                 return;
             }
 
             /* Increment counters and schedule ingestion if we are enabled. */
             groupState.mPendingLogCount++;
-            AppCenterLog.debug(LOG_TAG, "enqueue(" + groupState.mName + ") pendingLogCount=" + groupState.mPendingLogCount);
+            if (AppCenterLog.isDebugEnabled()) {
+                AppCenterLog.debug(LOG_TAG, "enqueue(" + groupState.mName + ") pendingLogCount=" + groupState.mPendingLogCount);
+            }
             if (mEnabled) {
                 checkPendingLogs(groupState);
             } else {
@@ -712,8 +1573,10 @@ public class DefaultChannel implements Channel {
      */
     @VisibleForTesting
     void checkPendingLogs(@NonNull GroupState groupState) {
-        AppCenterLog.debug(LOG_TAG, String.format("checkPendingLogs(%s) pendingLogCount=%s batchTimeInterval=%s",
-                groupState.mName, groupState.mPendingLogCount, groupState.mBatchTimeInterval));
+        if (AppCenterLog.isDebugEnabled()) {
+            AppCenterLog.debug(LOG_TAG, String.format("checkPendingLogs(%s) pendingLogCount=%s batchTimeInterval=%s",
+                    groupState.mName, groupState.mPendingLogCount, groupState.mBatchTimeInterval));
+        }
         Long batchTimeInterval = resolveTriggerInterval(groupState);
 
         /* Check if there is no need to trigger ingestion. */
@@ -753,13 +1616,15 @@ public class DefaultChannel implements Channel {
     @WorkerThread
     private Long resolveCustomTriggerInterval(@NonNull GroupState groupState) {
         long now = System.currentTimeMillis();
-        long startTimer = SharedPreferencesManager.getLong(START_TIMER_PREFIX + groupState.mName);
+        long startTimer = mBatchTimerStore.getStartTime(groupState.mName);
         if (groupState.mPendingLogCount > 0) {
 
             /* The timer isn't started or has invalid value (start time in the future), so start it and store the current time. */
             if (startTimer == 0 || startTimer > now) {
-                SharedPreferencesManager.putLong(START_TIMER_PREFIX + groupState.mName, now);
-                AppCenterLog.debug(LOG_TAG, "The timer value for " + groupState.mName + " has been saved.");
+                mBatchTimerStore.setStartTime(groupState.mName, now);
+                if (AppCenterLog.isDebugEnabled()) {
+                    AppCenterLog.debug(LOG_TAG, "The timer value for " + groupState.mName + " has been saved.");
+                }
                 return groupState.mBatchTimeInterval;
             }
 
@@ -769,18 +1634,20 @@ public class DefaultChannel implements Channel {
 
             /* If the interval is over. */
             if (startTimer + groupState.mBatchTimeInterval < now) {
-                SharedPreferencesManager.remove(START_TIMER_PREFIX + groupState.mName);
-                AppCenterLog.debug(LOG_TAG, "The timer for " + groupState.mName + " channel finished.");
+                mBatchTimerStore.remove(groupState.mName);
+                if (AppCenterLog.isDebugEnabled()) {
+                    AppCenterLog.debug(LOG_TAG, "The timer for " + groupState.mName + " channel finished.");
+                }
             }
             return null;
         }
     }
 
     private Long resolveDefaultTriggerInterval(@NonNull GroupState groupState) {
-        if (groupState.mPendingLogCount >= groupState.mMaxLogsPerBatch) {
+        if (groupState.mPendingLogCount >= groupState.getMaxLogsPerBatch()) {
             return 0L;
         }
-        return groupState.mPendingLogCount > 0 ? groupState.mBatchTimeInterval : null;
+        return groupState.mPendingLogCount > 0 ? groupState.getBatchTimeInterval() : null;
     }
 
     @VisibleForTesting
@@ -802,12 +1669,19 @@ public class DefaultChannel implements Channel {
     public void shutdown() {
         mEnabled = false;
         suspend(false, new CancellationException());
+
+        /* Do not lose buffered logs and timers when the process is about to exit. */
+        cancelFlush();
+        cancelStorageCompression();
+        mPersistence.flush();
+        mBatchTimerStore.flush();
     }
 
     @Override
     public void setNetworkRequests(boolean isAllowed) {
         if (isAllowed) {
             mCurrentState++;
+            resetCircuitBreakers();
             for (GroupState groupState : mGroupStates.values()) {
                 checkPendingLogs(groupState);
             }
@@ -817,6 +1691,82 @@ public class DefaultChannel implements Channel {
         }
     }
 
+    /**
+     * A batch waiting for the end of the flush window.
+     */
+    private static class WindowBatch {
+
+        /**
+         * Group of the batch.
+         */
+        final GroupState mGroupState;
+
+        /**
+         * Batch identifier in persistence.
+         */
+        final String mBatchId;
+
+        /**
+         * Logs of the batch, null if sent from stored payloads.
+         */
+        final List<Log> mLogs;
+
+        /**
+         * Stored payloads of the batch, null if sent from logs.
+         */
+        final List<RawLog> mRawLogs;
+
+        /**
+         * Number of logs in the batch.
+         */
+        final int mLogCount;
+
+        /**
+         * Size of the stored payloads of the batch, 0 if sent from logs as their size is not known before serialization.
+         */
+        final long mSize;
+
+        WindowBatch(GroupState groupState, String batchId, List<Log> logs, List<RawLog> rawLogs) {
+            mGroupState = groupState;
+            mBatchId = batchId;
+            mLogs = logs;
+            mRawLogs = rawLogs;
+            long size = 0;
+            if (rawLogs != null) {
+                for (RawLog rawLog : rawLogs) {
+                    size += rawLog.getPayload().length();
+                }
+            }
+            mLogCount = logs != null ? logs.size() : rawLogs.size();
+            mSize = size;
+        }
+    }
+
+    /**
+     * A batch split in parts to find the logs the ingestion rejects.
+     */
+    private static class Bisection {
+
+        /**
+         * Batch identifier in persistence, deleted once all parts are sent or dropped.
+         */
+        final String mBatchId;
+
+        /**
+         * Parts to send, in order.
+         */
+        final Deque<LogContainer> mParts = new ArrayDeque<>();
+
+        /**
+         * Part being sent, null if none.
+         */
+        LogContainer mSendingPart;
+
+        Bisection(String batchId) {
+            mBatchId = batchId;
+        }
+    }
+
     /**
      * State for a specific log group.
      */
@@ -848,6 +1798,11 @@ public class DefaultChannel implements Channel {
          */
         final Map<String, List<Log>> mSendingBatches = new HashMap<>();
 
+        /**
+         * Batches being currently sent to ingestion from stored payloads.
+         */
+        final Map<String, List<RawLog>> mSendingRawBatches = new HashMap<>();
+
         /**
          * Ingestion for the group state.
          */
@@ -878,6 +1833,21 @@ public class DefaultChannel implements Channel {
          */
         final Collection<String> mPausedTargetKeys = new HashSet<>();
 
+        /**
+         * Policy tuning batching settings, null to use the values the group was added with.
+         */
+        AdaptiveBatchPolicy mAdaptiveBatchPolicy;
+
+        /**
+         * Circuit breaker for non-recoverable errors not caused by the logs, when failure isolation is enabled.
+         */
+        final CircuitBreaker mCircuitBreaker = new CircuitBreaker();
+
+        /**
+         * Batch being bisected, null if none.
+         */
+        Bisection mBisection;
+
         /**
          * Runnable that triggers ingestion of this group data
          * and triggers itself in {@link #mBatchTimeInterval} ms.
@@ -909,5 +1879,26 @@ public class DefaultChannel implements Channel {
             mIngestion = ingestion;
             mListener = listener;
         }
+
+        /**
+         * @return maximum log count per batch, as tuned by the adaptive batch policy if any.
+         */
+        int getMaxLogsPerBatch() {
+            return mAdaptiveBatchPolicy != null ? mAdaptiveBatchPolicy.getMaxLogsPerBatch() : mMaxLogsPerBatch;
+        }
+
+        /**
+         * @return time to wait before 2 batches in ms, as tuned by the adaptive batch policy if any.
+         */
+        long getBatchTimeInterval() {
+            return mAdaptiveBatchPolicy != null ? mAdaptiveBatchPolicy.getBatchTimeInterval() : mBatchTimeInterval;
+        }
+
+        /**
+         * @return maximum number of batches in parallel, as tuned by the adaptive batch policy if any.
+         */
+        int getMaxParallelBatches() {
+            return mAdaptiveBatchPolicy != null ? mAdaptiveBatchPolicy.getMaxParallelBatches() : mMaxParallelBatches;
+        }
     }
 }
@@ -11,7 +11,6 @@ import java.net.URL;
 import java.util.HashMap;
 import java.util.Map;
 
-import static android.util.Log.VERBOSE;
 import static com.microsoft.appcenter.AppCenter.LOG_TAG;
 import static com.microsoft.appcenter.Constants.APP_SECRET;
 
@@ -22,7 +21,7 @@ public abstract class AbstractAppCallTemplate implements HttpClient.CallTemplate
 
     @Override
     public void onBeforeCalling(URL url, Map<String, String> headers) {
-        if (AppCenterLog.getLogLevel() <= VERBOSE) {
+        if (AppCenterLog.isVerboseEnabled()) {
 
             /* Log url. */
             AppCenterLog.verbose(LOG_TAG, "Calling " + url + "...");
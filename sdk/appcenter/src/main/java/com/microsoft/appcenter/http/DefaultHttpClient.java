@@ -6,6 +6,7 @@
 package com.microsoft.appcenter.http;
 
 import android.os.AsyncTask;
+import androidx.annotation.IntRange;
 import androidx.annotation.VisibleForTesting;
 
 import com.microsoft.appcenter.utils.AppCenterLog;
@@ -14,7 +15,11 @@ import com.microsoft.appcenter.utils.HandlerUtils;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import static com.microsoft.appcenter.AppCenter.LOG_TAG;
 
@@ -68,6 +73,17 @@ public class DefaultHttpClient implements HttpClient, DefaultHttpClientCallTask.
      */
     static final String CONTENT_ENCODING_VALUE = "gzip";
 
+    /**
+     * Maximum number of calls waiting for a thread when using a dedicated executor.
+     */
+    @VisibleForTesting
+    static final int MAX_QUEUED_CALLS = 32;
+
+    /**
+     * Time in seconds before an idle thread of the dedicated executor is stopped.
+     */
+    private static final long THREAD_KEEP_ALIVE_TIME = 30;
+
     /**
      * List of ongoing call tasks.
      */
@@ -78,12 +94,41 @@ public class DefaultHttpClient implements HttpClient, DefaultHttpClientCallTask.
      */
     private final boolean mCompressionEnabled;
 
+    /**
+     * Executor to run calls on, the shared {@link AsyncTask#THREAD_POOL_EXECUTOR} if null.
+     */
+    private final ThreadPoolExecutor mExecutor;
+
+    /**
+     * Whether connections are left open after a complete response, see {@link DefaultHttpClientCallTask}.
+     */
+    private final boolean mKeepAliveEnabled;
+
     public DefaultHttpClient() {
         this(true);
     }
 
     public DefaultHttpClient(boolean compressionEnabled) {
+        this(compressionEnabled, 0);
+    }
+
+    /**
+     * Init.
+     *
+     * @param compressionEnabled true to compress request bodies.
+     * @param maxConcurrentCalls when positive, calls run on a dedicated executor with this number of
+     *                           threads and connections are left open for the platform to reuse them.
+     *                           0 to use the shared executor and disconnect after each call.
+     */
+    public DefaultHttpClient(boolean compressionEnabled, @IntRange(from = 0) int maxConcurrentCalls) {
         mCompressionEnabled = compressionEnabled;
+        if (maxConcurrentCalls > 0) {
+            mExecutor = new ThreadPoolExecutor(maxConcurrentCalls, maxConcurrentCalls, THREAD_KEEP_ALIVE_TIME, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(MAX_QUEUED_CALLS));
+            mExecutor.allowCoreThreadTimeOut(true);
+        } else {
+            mExecutor = null;
+        }
+        mKeepAliveEnabled = maxConcurrentCalls > 0;
     }
 
     @VisibleForTesting
@@ -93,9 +138,10 @@ public class DefaultHttpClient implements HttpClient, DefaultHttpClientCallTask.
 
     @Override
     public ServiceCall callAsync(String url, String method, Map<String, String> headers, CallTemplate callTemplate, final ServiceCallback serviceCallback) {
-        final DefaultHttpClientCallTask task = new DefaultHttpClientCallTask(url, method, headers, callTemplate, serviceCallback, this, mCompressionEnabled);
+        final DefaultHttpClientCallTask task = new DefaultHttpClientCallTask(url, method, headers, callTemplate, serviceCallback, this, mCompressionEnabled, mKeepAliveEnabled);
         try {
-            task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+            Executor executor = mExecutor != null ? mExecutor : AsyncTask.THREAD_POOL_EXECUTOR;
+            task.executeOnExecutor(executor);
         } catch (final RejectedExecutionException e) {
 
             /*
@@ -136,12 +182,16 @@ public class DefaultHttpClient implements HttpClient, DefaultHttpClientCallTask.
     @Override
     public synchronized void close() {
         if (mTasks.size() > 0) {
-            AppCenterLog.debug(LOG_TAG, "Cancelling " + mTasks.size() + " network call(s).");
+            if (AppCenterLog.isDebugEnabled()) {
+                AppCenterLog.debug(LOG_TAG, "Cancelling " + mTasks.size() + " network call(s).");
+            }
             for (DefaultHttpClientCallTask task : mTasks) {
                 task.cancel(true);
             }
             mTasks.clear();
         }
+
+        /* Idle threads of the dedicated executor and idle sockets of the platform pool time out by themselves. */
     }
 
     @Override
@@ -154,4 +204,14 @@ public class DefaultHttpClient implements HttpClient, DefaultHttpClientCallTask.
     boolean isCompressionEnabled() {
         return mCompressionEnabled;
     }
+
+    @VisibleForTesting
+    ThreadPoolExecutor getExecutor() {
+        return mExecutor;
+    }
+
+    @VisibleForTesting
+    boolean isKeepAliveEnabled() {
+        return mKeepAliveEnabled;
+    }
 }
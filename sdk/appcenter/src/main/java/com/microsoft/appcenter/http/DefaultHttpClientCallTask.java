@@ -7,18 +7,22 @@ package com.microsoft.appcenter.http;
 
 import android.net.TrafficStats;
 import android.os.AsyncTask;
-import android.util.Log;
+import android.os.SystemClock;
 
 import com.microsoft.appcenter.utils.AppCenterLog;
+import com.microsoft.appcenter.utils.metrics.SdkMetrics;
 
 import org.json.JSONObject;
 
 import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.Writer;
 import java.net.URL;
 import java.util.HashMap;
 import java.util.List;
@@ -91,7 +95,18 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
 
     private final boolean mCompressionEnabled;
 
+    /**
+     * Whether the connection is left open after a complete response. {@link HttpsURLConnection#disconnect()}
+     * closes the socket, skipping it is what lets the platform keep-alive pool reuse the socket
+     * (and its TLS session) for the next call to the same host. The platform closes idle sockets.
+     */
+    private final boolean mKeepAlive;
+
     DefaultHttpClientCallTask(String url, String method, Map<String, String> headers, HttpClient.CallTemplate callTemplate, ServiceCallback serviceCallback, Tracker tracker, boolean compressionEnabled) {
+        this(url, method, headers, callTemplate, serviceCallback, tracker, compressionEnabled, false);
+    }
+
+    DefaultHttpClientCallTask(String url, String method, Map<String, String> headers, HttpClient.CallTemplate callTemplate, ServiceCallback serviceCallback, Tracker tracker, boolean compressionEnabled, boolean keepAlive) {
         mUrl = url;
         mMethod = method;
         mHeaders = headers;
@@ -99,6 +114,7 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
         mServiceCallback = serviceCallback;
         mTracker = tracker;
         mCompressionEnabled = compressionEnabled;
+        mKeepAlive = keepAlive;
     }
 
     private static InputStream getInputStream(HttpsURLConnection httpsURLConnection) throws IOException {
@@ -122,6 +138,38 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
         }
     }
 
+    /**
+     * Write payload from the call template directly to the connection, in chunks.
+     *
+     * @return number of bytes written before compression.
+     */
+    private static long writeStreamingPayload(HttpsURLConnection httpsURLConnection, HttpClient.StreamingCallTemplate callTemplate, boolean shouldCompress) throws Exception {
+        httpsURLConnection.setDoOutput(true);
+
+        /* Use default chunk length. */
+        httpsURLConnection.setChunkedStreamingMode(0);
+        OutputStream out = httpsURLConnection.getOutputStream();
+        CountingOutputStream compressedOut = null;
+        if (shouldCompress) {
+            compressedOut = new CountingOutputStream(out);
+            out = new GZIPOutputStream(compressedOut, WRITE_BUFFER_SIZE);
+        }
+        CountingOutputStream countingOut = new CountingOutputStream(out);
+        Writer writer = new OutputStreamWriter(countingOut, CHARSET_NAME);
+
+        //noinspection TryFinallyCanBeTryWithResources
+        try {
+            callTemplate.writeRequestBody(writer);
+        } finally {
+            writer.close();
+        }
+        SdkMetrics.record(SdkMetrics.Histogram.REQUEST_SIZE, countingOut.mCount);
+        if (compressedOut != null) {
+            SdkMetrics.record(SdkMetrics.Histogram.COMPRESSED_REQUEST_SIZE, compressedOut.mCount);
+        }
+        return countingOut.mCount;
+    }
+
     /**
      * Dump response stream to a string.
      */
@@ -156,8 +204,10 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
      * Do http call.
      */
     private HttpResponse doHttpCall() throws Exception {
+        long startTime = SystemClock.elapsedRealtime();
         URL url = new URL(mUrl);
         HttpsURLConnection httpsURLConnection = createHttpsConnection(url);
+        boolean keepAlive = false;
         try {
 
             /* Build payload now if POST. */
@@ -165,8 +215,20 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
             String payload = null;
             byte[] binaryPayload = null;
             boolean shouldCompress = false;
+            long requestSize = -1;
             boolean isPost = mMethod.equals(METHOD_POST);
-            if (isPost && mCallTemplate != null) {
+
+            /*
+             * Stream the payload when it does not need to be logged: the size is unknown
+             * so it's always compressed if enabled.
+             */
+            boolean isStreaming = isPost && mCallTemplate instanceof HttpClient.StreamingCallTemplate && !AppCenterLog.isVerboseEnabled();
+            if (isStreaming) {
+                shouldCompress = mCompressionEnabled;
+                if (!mHeaders.containsKey(CONTENT_TYPE_KEY)) {
+                    mHeaders.put(CONTENT_TYPE_KEY, CONTENT_TYPE_VALUE);
+                }
+            } else if (isPost && mCallTemplate != null) {
 
                 /* Get bytes, check if large enough to compress. */
                 payload = mCallTemplate.buildRequestBody();
@@ -198,10 +260,12 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
             }
 
             /* Send payload. */
-            if (binaryPayload != null) {
+            if (isStreaming) {
+                requestSize = writeStreamingPayload(httpsURLConnection, (HttpClient.StreamingCallTemplate) mCallTemplate, shouldCompress);
+            } else if (binaryPayload != null) {
 
                 /* Log payload. */
-                if (AppCenterLog.getLogLevel() <= Log.VERBOSE) {
+                if (AppCenterLog.isVerboseEnabled()) {
                     if (payload.length() < MAX_PRETTIFY_LOG_LENGTH) {
                         payload = TOKEN_REGEX_URL_ENCODED.matcher(payload).replaceAll("token=***");
                         if (CONTENT_TYPE_VALUE.equals(mHeaders.get(CONTENT_TYPE_KEY))) {
@@ -212,12 +276,15 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
                 }
 
                 /* Compress payload if large enough to be worth it. */
+                requestSize = binaryPayload.length;
+                SdkMetrics.record(SdkMetrics.Histogram.REQUEST_SIZE, requestSize);
                 if (shouldCompress) {
                     ByteArrayOutputStream gzipBuffer = new ByteArrayOutputStream(binaryPayload.length);
                     GZIPOutputStream gzipStream = new GZIPOutputStream(gzipBuffer);
                     gzipStream.write(binaryPayload);
                     gzipStream.close();
                     binaryPayload = gzipBuffer.toByteArray();
+                    SdkMetrics.record(SdkMetrics.Histogram.COMPRESSED_REQUEST_SIZE, binaryPayload.length);
                 }
 
                 /* Send payload on the wire. */
@@ -239,7 +306,10 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
             /* Read response. */
             int status = httpsURLConnection.getResponseCode();
             String response = readResponse(httpsURLConnection);
-            if (AppCenterLog.getLogLevel() <= Log.VERBOSE) {
+
+            /* The connection can only be reused if the response was read entirely. */
+            keepAlive = mKeepAlive && !isCancelled();
+            if (AppCenterLog.isVerboseEnabled()) {
                 String contentType = httpsURLConnection.getHeaderField(CONTENT_TYPE_KEY);
                 String logPayload;
                 if (contentType == null || contentType.startsWith("text/") || contentType.startsWith("application/")) {
@@ -254,7 +324,8 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
             for (Map.Entry<String, List<String>> header : httpsURLConnection.getHeaderFields().entrySet()) {
                 responseHeaders.put(header.getKey(), header.getValue().iterator().next());
             }
-            HttpResponse httpResponse = new HttpResponse(status, response, responseHeaders);
+            long duration = SystemClock.elapsedRealtime() - startTime;
+            HttpResponse httpResponse = new HttpResponse(status, response, responseHeaders, duration, requestSize);
 
             /* Accept all 2xx codes. */
             if (status >= 200 && status < 300) {
@@ -265,8 +336,10 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
             throw new HttpException(httpResponse);
         } finally {
 
-            /* Release connection. */
-            httpsURLConnection.disconnect();
+            /* Release connection, unless left open for the platform to reuse its socket. */
+            if (!keepAlive) {
+                httpsURLConnection.disconnect();
+            }
         }
     }
 
@@ -275,11 +348,14 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
 
         /* Do tag socket to avoid strict mode issue. */
         TrafficStats.setThreadStatsTag(THREAD_STATS_TAG);
+        long startTime = System.nanoTime();
         try {
             return doHttpCall();
         } catch (Exception e) {
+            SdkMetrics.increment(SdkMetrics.Counter.HTTP_FAILURES);
             return e;
         } finally {
+            SdkMetrics.recordMicros(SdkMetrics.Histogram.HTTP_TIME, startTime);
             TrafficStats.clearThreadStatsTag();
         }
     }
@@ -311,6 +387,33 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
         }
     }
 
+    /**
+     * Counts bytes written to the underlying stream.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        /**
+         * Number of bytes written.
+         */
+        long mCount;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            mCount++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            mCount += len;
+        }
+    }
+
     /**
      * The callback used for maintain ongoing call tasks.
      */
@@ -8,6 +8,8 @@ package com.microsoft.appcenter.http;
 import org.json.JSONException;
 
 import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
 import java.net.URL;
 import java.util.Map;
 
@@ -50,6 +52,22 @@ public interface HttpClient extends Closeable {
         void onBeforeCalling(URL url, Map<String, String> headers);
     }
 
+    /**
+     * Call callbacks that can write the request body directly to the connection instead of
+     * building it in memory. {@link #buildRequestBody()} is still used when the body is logged.
+     */
+    interface StreamingCallTemplate extends CallTemplate {
+
+        /**
+         * Called when the method is POST to write request body.
+         *
+         * @param writer writer to the connection, possibly compressing, closed by the caller.
+         * @throws JSONException callback can throw this to make the call fail if a JSON error occurs.
+         * @throws IOException   if writing to the connection fails.
+         */
+        void writeRequestBody(Writer writer) throws JSONException, IOException;
+    }
+
     /**
      * Make this client active again after closing.
      */
@@ -11,6 +11,7 @@ import androidx.annotation.VisibleForTesting;
 
 import com.microsoft.appcenter.AppCenter;
 import com.microsoft.appcenter.utils.AppCenterLog;
+import com.microsoft.appcenter.utils.metrics.SdkMetrics;
 
 import java.net.UnknownHostException;
 import java.util.Map;
@@ -114,6 +115,7 @@ public class HttpClientRetryer extends HttpClientDecorator {
                     message += " (UnknownHostException)";
                 }
                 AppCenterLog.warn(AppCenter.LOG_TAG, message, e);
+                SdkMetrics.increment(SdkMetrics.Counter.HTTP_RETRIES);
                 mHandler.postDelayed(this, delay);
             } else {
                 mServiceCallback.onCallFailed(e);
@@ -30,6 +30,16 @@ public class HttpResponse {
      */
     private final Map<String, String> headers;
 
+    /**
+     * Duration in ms of the HTTP call that got this response, retries excluded.
+     */
+    private final long duration;
+
+    /**
+     * Size in bytes of the request body before compression.
+     */
+    private final long requestSize;
+
     /**
      * Init with empty response body.
      *
@@ -57,9 +67,24 @@ public class HttpResponse {
      * @param headers HTTP responseHeaders.
      */
     public HttpResponse(int status, @NonNull String payload, @NonNull Map<String, String> headers) {
+        this(status, payload, headers, -1, -1);
+    }
+
+    /**
+     * Init.
+     *
+     * @param status      HTTP status code.
+     * @param payload     HTTP payload.
+     * @param headers     HTTP responseHeaders.
+     * @param duration    duration in ms of the HTTP call, -1 if unknown.
+     * @param requestSize size in bytes of the request body before compression, -1 if unknown.
+     */
+    public HttpResponse(int status, @NonNull String payload, @NonNull Map<String, String> headers, long duration, long requestSize) {
         this.payload = payload;
         this.statusCode = status;
         this.headers = headers;
+        this.duration = duration;
+        this.requestSize = requestSize;
     }
 
     /**
@@ -91,6 +116,25 @@ public class HttpResponse {
         return headers;
     }
 
+    /**
+     * Get the duration of the HTTP call that got this response, from connecting to reading
+     * the response. Waiting before the call (such as between retries) is not included.
+     *
+     * @return duration in ms, -1 if unknown.
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Get the size of the request body before compression.
+     *
+     * @return size in bytes, -1 if unknown.
+     */
+    public long getRequestSize() {
+        return requestSize;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
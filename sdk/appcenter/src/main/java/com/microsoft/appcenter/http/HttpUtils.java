@@ -7,6 +7,7 @@ package com.microsoft.appcenter.http;
 
 import android.content.Context;
 import android.os.Build;
+import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
 import androidx.annotation.VisibleForTesting;
 
@@ -198,6 +199,20 @@ public class HttpUtils {
         return new HttpClientRetryer(createHttpClientWithoutRetryer(context, compressionEnabled));
     }
 
+    /**
+     * Create an HTTP client running calls on its own executor and reusing connections.
+     *
+     * @param context            context.
+     * @param compressionEnabled true to compress request bodies.
+     * @param maxConcurrentCalls number of calls that can run at the same time, 0 to use the shared executor without reusing connections.
+     * @return HTTP client with retry and network state decorators.
+     */
+    public static HttpClient createHttpClient(@NonNull Context context, boolean compressionEnabled, @IntRange(from = 0) int maxConcurrentCalls) {
+        HttpClient httpClient = new DefaultHttpClient(compressionEnabled, maxConcurrentCalls);
+        httpClient = new HttpClientNetworkStateHandler(httpClient, NetworkStateHelper.getSharedInstance(context));
+        return new HttpClientRetryer(httpClient);
+    }
+
     public static HttpClient createHttpClientWithoutRetryer(@NonNull Context context, boolean compressionEnabled) {
         HttpClient httpClient = new DefaultHttpClient(compressionEnabled);
         NetworkStateHelper networkStateHelper = NetworkStateHelper.getSharedInstance(context);
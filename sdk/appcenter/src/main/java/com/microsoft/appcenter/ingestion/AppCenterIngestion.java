@@ -18,6 +18,7 @@ import com.microsoft.appcenter.ingestion.models.json.LogSerializer;
 import org.json.JSONException;
 
 import java.io.IOException;
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
@@ -77,7 +78,7 @@ public class AppCenterIngestion extends AbstractAppCenterIngestion {
     /**
      * Inner class is used to be able to mock System.currentTimeMillis, does not work if using anonymous inner class...
      */
-    private static class IngestionCallTemplate extends AbstractAppCallTemplate {
+    private static class IngestionCallTemplate extends AbstractAppCallTemplate implements HttpClient.StreamingCallTemplate {
 
         private final LogSerializer mLogSerializer;
 
@@ -94,5 +95,10 @@ public class AppCenterIngestion extends AbstractAppCenterIngestion {
             /* Serialize payload. */
             return mLogSerializer.serializeContainer(mLogContainer);
         }
+
+        @Override
+        public void writeRequestBody(Writer writer) throws JSONException, IOException {
+            mLogSerializer.serializeContainer(mLogContainer, writer);
+        }
     }
 }
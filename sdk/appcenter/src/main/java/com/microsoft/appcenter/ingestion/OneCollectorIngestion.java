@@ -15,16 +15,20 @@ import com.microsoft.appcenter.http.ServiceCall;
 import com.microsoft.appcenter.http.ServiceCallback;
 import com.microsoft.appcenter.ingestion.models.Log;
 import com.microsoft.appcenter.ingestion.models.LogContainer;
+import com.microsoft.appcenter.ingestion.models.RawLog;
 import com.microsoft.appcenter.ingestion.models.json.LogSerializer;
 import com.microsoft.appcenter.ingestion.models.one.CommonSchemaLog;
 import com.microsoft.appcenter.utils.AppCenterLog;
 import com.microsoft.appcenter.utils.TicketCache;
 
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.io.Writer;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -32,7 +36,6 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
-import static android.util.Log.VERBOSE;
 import static com.microsoft.appcenter.AppCenter.LOG_TAG;
 import static com.microsoft.appcenter.http.DefaultHttpClient.CONTENT_TYPE_KEY;
 import static com.microsoft.appcenter.http.DefaultHttpClient.METHOD_POST;
@@ -87,6 +90,11 @@ public class OneCollectorIngestion extends AbstractAppCenterIngestion {
     @VisibleForTesting
     static final String UPLOAD_TIME_KEY = "Upload-Time";
 
+    /**
+     * Ticket keys property in a serialized common schema log, under ext.protocol.
+     */
+    private static final String TICKET_KEYS = "ticketKeys";
+
     /**
      * Log serializer.
      */
@@ -110,8 +118,17 @@ public class OneCollectorIngestion extends AbstractAppCenterIngestion {
         /* Gather API keys from logs. */
         Map<String, String> headers = new HashMap<>();
         Set<String> apiKeys = new LinkedHashSet<>();
-        for (Log log : logContainer.getLogs()) {
-            apiKeys.addAll(log.getTransmissionTargetTokens());
+        List<RawLog> rawLogs = logContainer.getRawLogs();
+        if (rawLogs != null) {
+            for (RawLog rawLog : rawLogs) {
+                if (rawLog.getTargetToken() != null) {
+                    apiKeys.add(rawLog.getTargetToken());
+                }
+            }
+        } else {
+            for (Log log : logContainer.getLogs()) {
+                apiKeys.addAll(log.getTransmissionTargetTokens());
+            }
         }
 
         /* Build the header. String.join with iterable is only API level 26+. */
@@ -126,8 +143,7 @@ public class OneCollectorIngestion extends AbstractAppCenterIngestion {
 
         /* Gather tokens from logs. */
         JSONObject tickets = new JSONObject();
-        for (Log log : logContainer.getLogs()) {
-            List<String> ticketKeys = ((CommonSchemaLog) log).getExt().getProtocol().getTicketKeys();
+        for (List<String> ticketKeys : getTicketKeys(logContainer)) {
             if (ticketKeys != null) {
                 for (String ticketKey : ticketKeys) {
                     String token = TicketCache.getTicket(ticketKey);
@@ -168,10 +184,60 @@ public class OneCollectorIngestion extends AbstractAppCenterIngestion {
         return getServiceCall(getLogUrl(), METHOD_POST, headers, callTemplate, serviceCallback);
     }
 
+    /**
+     * Get ticket keys of every log in the container.
+     *
+     * @param logContainer log container.
+     * @return ticket keys per log, with null items for logs that do not have any.
+     */
+    private static List<List<String>> getTicketKeys(LogContainer logContainer) {
+        List<List<String>> result = new ArrayList<>();
+        List<RawLog> rawLogs = logContainer.getRawLogs();
+        if (rawLogs != null) {
+
+            /* Only parse the payloads that can have tickets. */
+            for (RawLog rawLog : rawLogs) {
+                if (rawLog.getPayload().contains(TICKET_KEYS)) {
+                    result.add(readTicketKeys(rawLog.getPayload()));
+                }
+            }
+        } else {
+            for (Log log : logContainer.getLogs()) {
+                result.add(((CommonSchemaLog) log).getExt().getProtocol().getTicketKeys());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Read ticket keys from a serialized common schema log.
+     *
+     * @param payload serialized log.
+     * @return ticket keys or null if the log does not have any.
+     */
+    private static List<String> readTicketKeys(String payload) {
+        try {
+            JSONObject ext = new JSONObject(payload).optJSONObject("ext");
+            JSONObject protocol = ext != null ? ext.optJSONObject("protocol") : null;
+            JSONArray jTicketKeys = protocol != null ? protocol.optJSONArray(TICKET_KEYS) : null;
+            if (jTicketKeys == null) {
+                return null;
+            }
+            List<String> ticketKeys = new ArrayList<>(jTicketKeys.length());
+            for (int i = 0; i < jTicketKeys.length(); i++) {
+                ticketKeys.add(jTicketKeys.getString(i));
+            }
+            return ticketKeys;
+        } catch (JSONException e) {
+            AppCenterLog.error(LOG_TAG, "Cannot read ticket keys from a stored log", e);
+            return null;
+        }
+    }
+
     /**
      * Call template implementation for One Collector.
      */
-    private static class IngestionCallTemplate implements HttpClient.CallTemplate {
+    private static class IngestionCallTemplate implements HttpClient.StreamingCallTemplate {
 
         /**
          * Log serializer.
@@ -196,6 +262,13 @@ public class OneCollectorIngestion extends AbstractAppCenterIngestion {
 
             /* Serialize payload. */
             StringBuilder jsonStream = new StringBuilder();
+            List<RawLog> rawLogs = mLogContainer.getRawLogs();
+            if (rawLogs != null) {
+                for (RawLog rawLog : rawLogs) {
+                    jsonStream.append(rawLog.getPayload()).append('\n');
+                }
+                return jsonStream.toString();
+            }
             for (Log log : mLogContainer.getLogs()) {
                 jsonStream.append(mLogSerializer.serializeLog(log));
 
@@ -205,9 +278,25 @@ public class OneCollectorIngestion extends AbstractAppCenterIngestion {
             return jsonStream.toString();
         }
 
+        @Override
+        public void writeRequestBody(Writer writer) throws JSONException, IOException {
+            List<RawLog> rawLogs = mLogContainer.getRawLogs();
+            if (rawLogs != null) {
+                for (RawLog rawLog : rawLogs) {
+                    writer.write(rawLog.getPayload());
+                    writer.write('\n');
+                }
+                return;
+            }
+            for (Log log : mLogContainer.getLogs()) {
+                mLogSerializer.serializeLog(log, writer);
+                writer.write('\n');
+            }
+        }
+
         @Override
         public void onBeforeCalling(URL url, Map<String, String> headers) {
-            if (AppCenterLog.getLogLevel() <= VERBOSE) {
+            if (AppCenterLog.isVerboseEnabled()) {
 
                 /* Log url. */
                 AppCenterLog.verbose(LOG_TAG, "Calling " + url + "...");
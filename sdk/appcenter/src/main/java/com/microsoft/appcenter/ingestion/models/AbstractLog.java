@@ -162,7 +162,8 @@ public abstract class AbstractLog implements Log {
     @Override
     public void write(JSONStringer writer) throws JSONException {
         JSONUtils.write(writer, TYPE, getType());
-        writer.key(TIMESTAMP).value(JSONDateUtils.toString(getTimestamp()));
+        writer.key(TIMESTAMP);
+        JSONDateUtils.write(writer, getTimestamp());
         JSONUtils.write(writer, SID, getSid());
         JSONUtils.write(writer, DISTRIBUTION_GROUP_ID, getDistributionGroupId());
         JSONUtils.write(writer, USER_ID, getUserId());
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.ingestion.models;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * A log as it is stored in persistence: the serialized JSON payload and the few fields
+ * needed to send it, without deserializing it back to a {@link Log}.
+ */
+public class RawLog {
+
+    /**
+     * Persistence identifier.
+     */
+    private final long id;
+
+    /**
+     * Log type.
+     */
+    private final String type;
+
+    /**
+     * Serialized JSON payload of the log.
+     */
+    private final String payload;
+
+    /**
+     * Project identifier part of the target token in clear text, only for common schema logs.
+     */
+    private final String targetKey;
+
+    /**
+     * Target token, only for common schema logs.
+     */
+    private final String targetToken;
+
+    /**
+     * Init.
+     *
+     * @param id          persistence identifier.
+     * @param type        log type.
+     * @param payload     serialized JSON payload of the log.
+     * @param targetKey   target key, only for common schema logs.
+     * @param targetToken target token, only for common schema logs.
+     */
+    public RawLog(long id, String type, @NonNull String payload, @Nullable String targetKey, @Nullable String targetToken) {
+        this.id = id;
+        this.type = type;
+        this.payload = payload;
+        this.targetKey = targetKey;
+        this.targetToken = targetToken;
+    }
+
+    /**
+     * Get the persistence identifier.
+     *
+     * @return the persistence identifier.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Get the type value.
+     *
+     * @return the type value.
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Get the serialized JSON payload.
+     *
+     * @return the serialized JSON payload.
+     */
+    @NonNull
+    public String getPayload() {
+        return payload;
+    }
+
+    /**
+     * Get the target key.
+     *
+     * @return the target key or null if not a common schema log.
+     */
+    @Nullable
+    public String getTargetKey() {
+        return targetKey;
+    }
+
+    /**
+     * Get the target token.
+     *
+     * @return the target token or null if not a common schema log.
+     */
+    @Nullable
+    public String getTargetToken() {
+        return targetToken;
+    }
+
+    @SuppressWarnings("EqualsReplaceableByObjectsCall")
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        RawLog rawLog = (RawLog) o;
+
+        if (id != rawLog.id) return false;
+        if (type != null ? !type.equals(rawLog.type) : rawLog.type != null) return false;
+        if (!payload.equals(rawLog.payload)) return false;
+        if (targetKey != null ? !targetKey.equals(rawLog.targetKey) : rawLog.targetKey != null)
+            return false;
+        return targetToken != null ? targetToken.equals(rawLog.targetToken) : rawLog.targetToken == null;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (id ^ (id >>> 32));
+        result = 31 * result + (type != null ? type.hashCode() : 0);
+        result = 31 * result + payload.hashCode();
+        result = 31 * result + (targetKey != null ? targetKey.hashCode() : 0);
+        result = 31 * result + (targetToken != null ? targetToken.hashCode() : 0);
+        return result;
+    }
+}
@@ -9,6 +9,7 @@ import androidx.annotation.NonNull;
 
 import com.microsoft.appcenter.ingestion.models.Log;
 import com.microsoft.appcenter.ingestion.models.LogContainer;
+import com.microsoft.appcenter.ingestion.models.RawLog;
 import com.microsoft.appcenter.ingestion.models.one.CommonSchemaLog;
 
 import org.json.JSONArray;
@@ -16,6 +17,9 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -58,12 +62,23 @@ public class DefaultLogSerializer implements LogSerializer {
         return writeLog(new JSONStringer(), log).toString();
     }
 
+    @Override
+    public void serializeLog(@NonNull Log log, @NonNull Writer writer) throws JSONException, IOException {
+        writeLog(new JSONStreamWriter(writer), log);
+    }
+
     @NonNull
     @Override
     public Log deserializeLog(@NonNull String json, String type) throws JSONException {
         return readLog(new JSONObject(json), type);
     }
 
+    @NonNull
+    @Override
+    public Log deserializeLog(@NonNull Reader reader, String type) throws JSONException {
+        return readLog(JSONStreamReader.readObject(reader), type);
+    }
+
     @Override
     public Collection<CommonSchemaLog> toCommonSchemaLog(@NonNull Log log) {
         return mLogFactories.get(log.getType()).toCommonSchemaLogs(log);
@@ -73,6 +88,12 @@ public class DefaultLogSerializer implements LogSerializer {
     @Override
     public String serializeContainer(@NonNull LogContainer logContainer) throws JSONException {
 
+        /* Logs that are still serialized are joined as is, this is what JSONStringer would write for them. */
+        List<RawLog> rawLogs = logContainer.getRawLogs();
+        if (rawLogs != null) {
+            return serializeRawContainer(rawLogs);
+        }
+
         /* Init JSON serializer. */
         JSONStringer writer = new JSONStringer();
 
@@ -87,6 +108,51 @@ public class DefaultLogSerializer implements LogSerializer {
         return writer.toString();
     }
 
+    @Override
+    public void serializeContainer(@NonNull LogContainer logContainer, @NonNull Writer writer) throws JSONException, IOException {
+
+        /* Write logs one by one, the container is never held in memory as a whole. */
+        writer.write("{\"");
+        writer.write(LOGS);
+        writer.write("\":[");
+        List<RawLog> rawLogs = logContainer.getRawLogs();
+        if (rawLogs != null) {
+            for (int i = 0; i < rawLogs.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(rawLogs.get(i).getPayload());
+            }
+        } else {
+            List<Log> logs = logContainer.getLogs();
+            for (int i = 0; i < logs.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                serializeLog(logs.get(i), writer);
+            }
+        }
+        writer.write("]}");
+    }
+
+    @NonNull
+    private static String serializeRawContainer(@NonNull List<RawLog> rawLogs) {
+        int capacity = LOGS.length() + 8;
+        for (RawLog rawLog : rawLogs) {
+            capacity += rawLog.getPayload().length() + 1;
+        }
+        StringBuilder builder = new StringBuilder(capacity);
+        builder.append("{\"").append(LOGS).append("\":[");
+        for (int i = 0; i < rawLogs.size(); i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(rawLogs.get(i).getPayload());
+        }
+        builder.append("]}");
+        return builder.toString();
+    }
+
     @NonNull
     @Override
     public LogContainer deserializeContainer(@NonNull String json, String type) throws JSONException {
@@ -5,7 +5,11 @@
 
 package com.microsoft.appcenter.ingestion.models.json;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
 import org.json.JSONException;
+import org.json.JSONStringer;
 
 import java.text.DateFormat;
 import java.text.ParseException;
@@ -18,11 +22,47 @@ import java.util.TimeZone;
  * Utility to convert date to string and vice versa to use in JSON payloads.
  * The date format is using ISO 8601 and includes date and time to milliseconds accuracy.
  * It also always uses UTC timezone.
+ * Dates from year 1583 to 9999 are formatted and parsed by hand, other dates and strings
+ * not exactly in that format go through {@link SimpleDateFormat} so that results are the same.
  */
 public final class JSONDateUtils {
 
     /**
-     * Date formatter.
+     * Length of a formatted date, for example 2017-07-07T17:43:56.123Z.
+     */
+    @VisibleForTesting
+    static final int LENGTH = 24;
+
+    /**
+     * Milliseconds per day.
+     */
+    private static final long MILLIS_PER_DAY = 86400000L;
+
+    /**
+     * 1583-01-01T00:00:00.000Z, first year entirely in the Gregorian calendar.
+     * {@link SimpleDateFormat} uses the Julian calendar before.
+     */
+    @VisibleForTesting
+    static final long MIN_TIME = -12212553600000L;
+
+    /**
+     * 10000-01-01T00:00:00.000Z, first date with more than 4 digits in the year.
+     */
+    @VisibleForTesting
+    static final long MAX_TIME = 253402300800000L;
+
+    /**
+     * Days between 0000-03-01 and 1970-01-01 in the proleptic Gregorian calendar.
+     */
+    private static final long EPOCH_DAY_OFFSET = 719468;
+
+    /**
+     * Days in 400 years.
+     */
+    private static final long DAYS_PER_ERA = 146097;
+
+    /**
+     * Date formatter, used when a date is out of the range handled by hand.
      */
     private static final ThreadLocal<DateFormat> DATE_FORMAT = new ThreadLocal<DateFormat>() {
 
@@ -55,6 +95,10 @@ public final class JSONDateUtils {
      */
     public static String toString(Date date) throws JSONException {
         checkNull(date);
+        char[] buffer = new char[LENGTH];
+        if (format(date.getTime(), buffer)) {
+            return new String(buffer);
+        }
         return DATE_FORMAT.get().format(date);
     }
 
@@ -67,10 +111,157 @@ public final class JSONDateUtils {
      */
     public static Date toDate(String date) throws JSONException {
         checkNull(date);
+        long time = parse(date);
+        if (time != Long.MIN_VALUE) {
+            return new Date(time);
+        }
         try {
             return DATE_FORMAT.get().parse(date);
         } catch (ParseException e) {
             throw new JSONException(e.getMessage());
         }
     }
+
+    /**
+     * Write a date as a JSON string value. When writing to a {@link JSONStreamWriter},
+     * the date is formatted directly in its output.
+     *
+     * @param writer JSON writer.
+     * @param date   date.
+     * @throws JSONException if the date is null or cannot be written.
+     */
+    public static void write(JSONStringer writer, Date date) throws JSONException {
+        checkNull(date);
+        if (writer instanceof JSONStreamWriter) {
+            ((JSONStreamWriter) writer).value(date);
+        } else {
+            writer.value(toString(date));
+        }
+    }
+
+    /**
+     * Format a time if in the range handled by hand.
+     *
+     * @param time   time in milliseconds since epoch.
+     * @param buffer buffer of at least {@link #LENGTH} characters, filled from start.
+     * @return true if formatted, false if the time is out of range and buffer is unchanged.
+     */
+    static boolean format(long time, @NonNull char[] buffer) {
+        if (time < MIN_TIME || time >= MAX_TIME) {
+            return false;
+        }
+
+        /* Split days and time of day, rounding toward negative infinity for dates before 1970. */
+        long days = time / MILLIS_PER_DAY;
+        int millisOfDay = (int) (time % MILLIS_PER_DAY);
+        if (millisOfDay < 0) {
+            days--;
+            millisOfDay += MILLIS_PER_DAY;
+        }
+
+        /* Convert days to civil date with years starting in March, so that leap day is last. */
+        long shiftedDays = days + EPOCH_DAY_OFFSET;
+        long era = shiftedDays / DAYS_PER_ERA;
+        int dayOfEra = (int) (shiftedDays - era * DAYS_PER_ERA);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        int year = (int) (yearOfEra + era * 400) + (month <= 2 ? 1 : 0);
+
+        /* yyyy-MM-dd'T'HH:mm:ss.SSS'Z' */
+        writeDigits(buffer, 0, year, 4);
+        buffer[4] = '-';
+        writeDigits(buffer, 5, month, 2);
+        buffer[7] = '-';
+        writeDigits(buffer, 8, day, 2);
+        buffer[10] = 'T';
+        writeDigits(buffer, 11, millisOfDay / 3600000, 2);
+        buffer[13] = ':';
+        writeDigits(buffer, 14, millisOfDay / 60000 % 60, 2);
+        buffer[16] = ':';
+        writeDigits(buffer, 17, millisOfDay / 1000 % 60, 2);
+        buffer[19] = '.';
+        writeDigits(buffer, 20, millisOfDay % 1000, 3);
+        buffer[23] = 'Z';
+        return true;
+    }
+
+    /**
+     * Parse a time if exactly in the format and range handled by hand.
+     *
+     * @param date string to parse.
+     * @return time in milliseconds since epoch, or {@link Long#MIN_VALUE} if it must be parsed
+     * by {@link SimpleDateFormat}, which is lenient.
+     */
+    static long parse(@NonNull CharSequence date) {
+        if (date.length() != LENGTH
+                || date.charAt(4) != '-' || date.charAt(7) != '-' || date.charAt(10) != 'T'
+                || date.charAt(13) != ':' || date.charAt(16) != ':' || date.charAt(19) != '.'
+                || date.charAt(23) != 'Z') {
+            return Long.MIN_VALUE;
+        }
+        int year = readDigits(date, 0, 4);
+        int month = readDigits(date, 5, 2);
+        int day = readDigits(date, 8, 2);
+        int hour = readDigits(date, 11, 2);
+        int minute = readDigits(date, 14, 2);
+        int second = readDigits(date, 17, 2);
+        int millis = readDigits(date, 20, 3);
+        if ((year | month | day | hour | minute | second | millis) < 0
+                || year < 1583 || month < 1 || month > 12 || day < 1 || day > getDaysInMonth(year, month)
+                || hour > 23 || minute > 59 || second > 59) {
+            return Long.MIN_VALUE;
+        }
+
+        /* Convert civil date to days with years starting in March, so that leap day is last. */
+        int shiftedYear = month <= 2 ? year - 1 : year;
+        int era = shiftedYear / 400;
+        int yearOfEra = shiftedYear - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        long days = era * DAYS_PER_ERA + dayOfEra - EPOCH_DAY_OFFSET;
+        return days * MILLIS_PER_DAY + hour * 3600000L + minute * 60000L + second * 1000L + millis;
+    }
+
+    private static int getDaysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return year % 4 == 0 && (year % 100 != 0 || year % 400 == 0) ? 29 : 28;
+
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+
+            default:
+                return 31;
+        }
+    }
+
+    private static void writeDigits(char[] buffer, int offset, int value, int count) {
+        for (int i = offset + count - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    /**
+     * Read decimal digits.
+     *
+     * @return value, or a negative number if a character is not a digit.
+     */
+    private static int readDigits(CharSequence date, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int digit = date.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return Integer.MIN_VALUE;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
 }
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.ingestion.models.json;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import androidx.annotation.NonNull;
+
+import com.microsoft.appcenter.ingestion.models.Model;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads a JSON object token by token from a {@link Reader}, so that a payload (for example a file)
+ * does not have to be read as a whole string before being parsed. Values are converted the same
+ * way as {@link JSONObject#JSONObject(String)} does, so that any {@link Model#read(JSONObject)}
+ * implementation can read the result.
+ * Malformed JSON and I/O errors are reported as {@link JSONException} with the original exception as cause.
+ */
+public final class JSONStreamReader {
+
+    /**
+     * Maximum nesting depth of objects and arrays.
+     */
+    private static final int MAX_DEPTH = 64;
+
+    private JSONStreamReader() {
+    }
+
+    /**
+     * Reads a JSON document that must be a single object.
+     *
+     * @param in input to read JSON from, not closed by this method.
+     * @return the JSON object.
+     * @throws JSONException if the input cannot be read or is not a JSON object.
+     */
+    @NonNull
+    public static JSONObject readObject(@NonNull Reader in) throws JSONException {
+        JsonReader reader = new JsonReader(in);
+        try {
+            JSONObject object = readObject(reader, 1);
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new JSONException("Unexpected content after JSON object.");
+            }
+            return object;
+        } catch (IOException | IllegalStateException e) {
+            JSONException exception = new JSONException("Failed to read JSON: " + e.getMessage());
+            exception.initCause(e);
+            throw exception;
+        }
+    }
+
+    private static JSONObject readObject(JsonReader reader, int depth) throws IOException, JSONException {
+        checkDepth(depth);
+        JSONObject object = new JSONObject();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            object.put(name, readValue(reader, depth));
+        }
+        reader.endObject();
+        return object;
+    }
+
+    private static JSONArray readArray(JsonReader reader, int depth) throws IOException, JSONException {
+        checkDepth(depth);
+        JSONArray array = new JSONArray();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            array.put(readValue(reader, depth));
+        }
+        reader.endArray();
+        return array;
+    }
+
+    private static Object readValue(JsonReader reader, int depth) throws IOException, JSONException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                return readObject(reader, depth + 1);
+
+            case BEGIN_ARRAY:
+                return readArray(reader, depth + 1);
+
+            case BOOLEAN:
+                return reader.nextBoolean();
+
+            case NULL:
+                reader.nextNull();
+                return JSONObject.NULL;
+
+            case NUMBER:
+                return toNumber(reader.nextString());
+
+            case STRING:
+                return reader.nextString();
+
+            default:
+                throw new JSONException("Unexpected token " + reader.peek() + ".");
+        }
+    }
+
+    /**
+     * Converts a number literal like {@link org.json.JSONTokener} does: integers to
+     * {@link Integer} or {@link Long} when they fit, anything else to {@link Double}.
+     *
+     * @param literal the number literal.
+     * @return the number.
+     */
+    private static Object toNumber(String literal) {
+        if (literal.indexOf('.') < 0 && literal.indexOf('e') < 0 && literal.indexOf('E') < 0) {
+            try {
+                long longValue = Long.parseLong(literal);
+                if (longValue <= Integer.MAX_VALUE && longValue >= Integer.MIN_VALUE) {
+                    return (int) longValue;
+                }
+                return longValue;
+            } catch (NumberFormatException ignored) {
+
+                /* Too large for a long, parse as a double. */
+            }
+        }
+        return Double.valueOf(literal);
+    }
+
+    private static void checkDepth(int depth) throws JSONException {
+        if (depth > MAX_DEPTH) {
+            throw new JSONException("Nesting too deep");
+        }
+    }
+}
@@ -0,0 +1,359 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.ingestion.models.json;
+
+import androidx.annotation.NonNull;
+
+import com.microsoft.appcenter.ingestion.models.Model;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONStringer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Date;
+import java.util.Iterator;
+
+/**
+ * A {@link JSONStringer} that writes to a {@link Writer} as it goes instead of building a string,
+ * so that any {@link Model#write(JSONStringer)} implementation can stream its JSON (for example
+ * as UTF-8 bytes to an output stream). The output is the same as what {@link JSONStringer} builds.
+ * {@link #toString()} returns null as nothing is kept in memory.
+ * I/O errors are reported as {@link JSONException} with the {@link IOException} as cause.
+ */
+public class JSONStreamWriter extends JSONStringer {
+
+    /**
+     * Maximum nesting depth of objects and arrays.
+     */
+    private static final int MAX_DEPTH = 64;
+
+    /**
+     * Scope of an empty array.
+     */
+    private static final byte EMPTY_ARRAY = 1;
+
+    /**
+     * Scope of an array with at least one value.
+     */
+    private static final byte NONEMPTY_ARRAY = 2;
+
+    /**
+     * Scope of an empty object.
+     */
+    private static final byte EMPTY_OBJECT = 3;
+
+    /**
+     * Scope of an object whose last written token is a key.
+     */
+    private static final byte DANGLING_KEY = 4;
+
+    /**
+     * Scope of an object with at least one property.
+     */
+    private static final byte NONEMPTY_OBJECT = 5;
+
+    /**
+     * Output.
+     */
+    private final Writer mOut;
+
+    /**
+     * Scopes of the objects and arrays being written.
+     */
+    private final byte[] mScopes = new byte[MAX_DEPTH];
+
+    /**
+     * Number of scopes in {@link #mScopes}.
+     */
+    private int mDepth;
+
+    /**
+     * Buffer used to format dates.
+     */
+    private final char[] mDateBuffer = new char[JSONDateUtils.LENGTH];
+
+    /**
+     * Init.
+     *
+     * @param out output to write JSON to, not closed nor flushed by this class.
+     */
+    public JSONStreamWriter(@NonNull Writer out) {
+        mOut = out;
+    }
+
+    /**
+     * Writes a model as a JSON object.
+     *
+     * @param model the model.
+     * @return this writer.
+     * @throws JSONException if the model cannot be serialized or written.
+     */
+    public JSONStreamWriter model(@NonNull Model model) throws JSONException {
+        object();
+        model.write(this);
+        endObject();
+        return this;
+    }
+
+    /**
+     * Writes a date as a string value, formatted directly in the output.
+     *
+     * @param date the date.
+     * @return this writer.
+     * @throws JSONException if the date cannot be written.
+     */
+    public JSONStreamWriter value(@NonNull Date date) throws JSONException {
+        beforeValue();
+        if (JSONDateUtils.format(date.getTime(), mDateBuffer)) {
+
+            /* Formatted dates have no character to escape. */
+            write('"');
+            write(mDateBuffer);
+            write('"');
+        } else {
+            string(JSONDateUtils.toString(date));
+        }
+        return this;
+    }
+
+    @Override
+    public JSONStringer array() throws JSONException {
+        return open(EMPTY_ARRAY, '[');
+    }
+
+    @Override
+    public JSONStringer endArray() throws JSONException {
+        return close(EMPTY_ARRAY, NONEMPTY_ARRAY, ']');
+    }
+
+    @Override
+    public JSONStringer object() throws JSONException {
+        return open(EMPTY_OBJECT, '{');
+    }
+
+    @Override
+    public JSONStringer endObject() throws JSONException {
+        return close(EMPTY_OBJECT, NONEMPTY_OBJECT, '}');
+    }
+
+    @Override
+    public JSONStringer key(String name) throws JSONException {
+        if (name == null) {
+            throw new JSONException("Names must be non-null");
+        }
+        byte scope = peek();
+        if (scope == NONEMPTY_OBJECT) {
+            write(',');
+        } else if (scope != EMPTY_OBJECT) {
+            throw new JSONException("Nesting problem");
+        }
+        mScopes[mDepth - 1] = DANGLING_KEY;
+        string(name);
+        return this;
+    }
+
+    @Override
+    public JSONStringer value(Object value) throws JSONException {
+
+        /* Walk nested JSON values so that they are streamed as well. */
+        if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            object();
+            for (Iterator<String> keys = object.keys(); keys.hasNext(); ) {
+                String name = keys.next();
+                key(name);
+                value(object.opt(name));
+            }
+            return endObject();
+        }
+        if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            array();
+            for (int i = 0; i < array.length(); i++) {
+                value(array.opt(i));
+            }
+            return endArray();
+        }
+        beforeValue();
+        if (value == null || value == JSONObject.NULL) {
+            write("null");
+        } else if (value instanceof Boolean) {
+            write(value.toString());
+        } else if (value instanceof Number) {
+            write(JSONObject.numberToString((Number) value));
+        } else {
+            string(value.toString());
+        }
+        return this;
+    }
+
+    @Override
+    public JSONStringer value(boolean value) throws JSONException {
+        beforeValue();
+        write(value ? "true" : "false");
+        return this;
+    }
+
+    @Override
+    public JSONStringer value(double value) throws JSONException {
+        return value((Object) value);
+    }
+
+    @Override
+    public JSONStringer value(long value) throws JSONException {
+        beforeValue();
+        write(Long.toString(value));
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return null;
+    }
+
+    private JSONStringer open(byte scope, char openBracket) throws JSONException {
+        if (mDepth > 0) {
+            beforeValue();
+        }
+        if (mDepth == MAX_DEPTH) {
+            throw new JSONException("Nesting too deep");
+        }
+        mScopes[mDepth++] = scope;
+        write(openBracket);
+        return this;
+    }
+
+    private JSONStringer close(byte empty, byte nonempty, char closeBracket) throws JSONException {
+        byte scope = peek();
+        if (scope != nonempty && scope != empty) {
+            throw new JSONException("Nesting problem");
+        }
+        mDepth--;
+        write(closeBracket);
+        return this;
+    }
+
+    private byte peek() throws JSONException {
+        if (mDepth == 0) {
+            throw new JSONException("Nesting problem");
+        }
+        return mScopes[mDepth - 1];
+    }
+
+    private void beforeValue() throws JSONException {
+        if (mDepth == 0) {
+            return;
+        }
+        byte scope = mScopes[mDepth - 1];
+        if (scope == EMPTY_ARRAY) {
+            mScopes[mDepth - 1] = NONEMPTY_ARRAY;
+        } else if (scope == NONEMPTY_ARRAY) {
+            write(',');
+        } else if (scope == DANGLING_KEY) {
+            write(':');
+            mScopes[mDepth - 1] = NONEMPTY_OBJECT;
+        } else {
+            throw new JSONException("Nesting problem");
+        }
+    }
+
+    private void string(String value) throws JSONException {
+        try {
+            mOut.write('"');
+            int start = 0;
+            int length = value.length();
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                String replacement;
+                switch (c) {
+                    case '"':
+                        replacement = "\\\"";
+                        break;
+
+                    case '\\':
+                        replacement = "\\\\";
+                        break;
+
+                    case '/':
+                        replacement = "\\/";
+                        break;
+
+                    case '\t':
+                        replacement = "\\t";
+                        break;
+
+                    case '\b':
+                        replacement = "\\b";
+                        break;
+
+                    case '\n':
+                        replacement = "\\n";
+                        break;
+
+                    case '\r':
+                        replacement = "\\r";
+                        break;
+
+                    case '\f':
+                        replacement = "\\f";
+                        break;
+
+                    default:
+                        if (c > 0x1F) {
+                            continue;
+                        }
+                        replacement = String.format("\\u%04x", (int) c);
+                }
+
+                /* Write unescaped characters in a single call. */
+                if (start < i) {
+                    mOut.write(value, start, i - start);
+                }
+                mOut.write(replacement);
+                start = i + 1;
+            }
+            if (start < length) {
+                mOut.write(value, start, length - start);
+            }
+            mOut.write('"');
+        } catch (IOException e) {
+            throw getException(e);
+        }
+    }
+
+    private void write(char c) throws JSONException {
+        try {
+            mOut.write(c);
+        } catch (IOException e) {
+            throw getException(e);
+        }
+    }
+
+    private void write(char[] chars) throws JSONException {
+        try {
+            mOut.write(chars);
+        } catch (IOException e) {
+            throw getException(e);
+        }
+    }
+
+    private void write(String s) throws JSONException {
+        try {
+            mOut.write(s);
+        } catch (IOException e) {
+            throw getException(e);
+        }
+    }
+
+    private static JSONException getException(IOException e) {
+        JSONException exception = new JSONException("Failed to write JSON: " + e.getMessage());
+        exception.initCause(e);
+        return exception;
+    }
+}
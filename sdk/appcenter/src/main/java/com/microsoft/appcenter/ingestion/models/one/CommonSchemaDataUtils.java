@@ -19,6 +19,7 @@ import com.microsoft.appcenter.utils.AppCenterLog;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
@@ -51,6 +52,50 @@ public class CommonSchemaDataUtils {
      * @param dest       destination common schema log.
      */
     public static void addCommonSchemaData(List<TypedProperty> properties, CommonSchemaLog dest) {
+        addCommonSchemaData(compile(properties), dest);
+    }
+
+    /**
+     * Validate properties, split their names by dot and get their metadata types.
+     * Invalid properties are skipped with a warning.
+     *
+     * @param properties custom properties.
+     * @return compiled properties to use with {@link #addCommonSchemaData(CompiledCommonSchemaData, CommonSchemaLog)},
+     * or null if properties are null.
+     */
+    public static CompiledCommonSchemaData compile(List<TypedProperty> properties) {
+        if (properties == null) {
+            return null;
+        }
+        List<CompiledCommonSchemaData.Property> compiledProperties = new ArrayList<>(properties.size());
+        for (TypedProperty property : properties) {
+
+            /* Validate property and get type. */
+            Object value;
+            try {
+                value = validateProperty(property);
+            } catch (IllegalArgumentException e) {
+                AppCenterLog.warn(LOG_TAG, e.getMessage());
+                continue;
+            } catch (JSONException ignore) {
+
+                /* Can only happen with a null date, which public APIs do not allow. */
+                continue;
+            }
+
+            /* Get metadata type and split property name by dot. */
+            compiledProperties.add(new CompiledCommonSchemaData.Property(splitKey(property.getName()), value, getMetadataType(property)));
+        }
+        return new CompiledCommonSchemaData(compiledProperties);
+    }
+
+    /**
+     * Adds part B and part C properties to a log and Part A metadata.
+     *
+     * @param properties compiled custom properties as source of data.
+     * @param dest       destination common schema log.
+     */
+    public static void addCommonSchemaData(CompiledCommonSchemaData properties, CommonSchemaLog dest) {
         if (properties == null) {
             return;
         }
@@ -62,23 +107,8 @@ public class CommonSchemaDataUtils {
 
             /* We also build Part A metadata extension at the same time to reflect the data. */
             MetadataExtension metadata = new MetadataExtension();
-            for (TypedProperty property : properties) {
-
-                /* Validate property and get type. */
-                Object value;
-                try {
-                    value = validateProperty(property);
-                } catch (IllegalArgumentException e) {
-                    AppCenterLog.warn(LOG_TAG, e.getMessage());
-                    continue;
-                }
-
-                /* Get metadata type. */
-                Integer metadataType = getMetadataType(property);
-
-                /* Split property name by dot. */
-                String key = property.getName();
-                String[] keys = key.split("\\.", -1);
+            for (CompiledCommonSchemaData.Property property : properties.getProperties()) {
+                String[] keys = property.mKeys;
                 int lastIndex = keys.length - 1;
 
                 /* Handle all intermediate keys. */
@@ -109,10 +139,10 @@ public class CommonSchemaDataUtils {
                 if (destProperties.has(lastKey)) {
                     AppCenterLog.warn(LOG_TAG, "Property key '" + lastKey + "' already has a value, the old value will be overridden.");
                 }
-                destProperties.put(lastKey, value);
+                destProperties.put(lastKey, property.mValue);
 
                 /* Handle the last key for meta-data, the leaf. */
-                addLeafMetadata(metadataType, destMetadata, lastKey);
+                addLeafMetadata(property.mMetadataType, destMetadata, lastKey);
             }
 
             /* Warn/cleanup if baseData and baseType are not paired. */
@@ -205,6 +235,29 @@ public class CommonSchemaDataUtils {
         return value;
     }
 
+    /**
+     * Split a property name by dot, keeping empty keys like {@code key.split("\\.", -1)}
+     * but without using a regular expression.
+     *
+     * @param key property name.
+     * @return keys.
+     */
+    private static String[] splitKey(String key) {
+        int count = 1;
+        for (int i = key.indexOf('.'); i >= 0; i = key.indexOf('.', i + 1)) {
+            count++;
+        }
+        String[] keys = new String[count];
+        int start = 0;
+        for (int i = 0; i < count - 1; i++) {
+            int end = key.indexOf('.', start);
+            keys[i] = key.substring(start, end);
+            start = end + 1;
+        }
+        keys[count - 1] = key.substring(start);
+        return keys;
+    }
+
     /**
      * Get metadata type for the specified value.
      *
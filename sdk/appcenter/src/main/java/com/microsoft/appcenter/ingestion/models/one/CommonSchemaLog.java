@@ -295,7 +295,8 @@ public abstract class CommonSchemaLog extends AbstractLog {
         /* Part A. */
         writer.key(VER).value(getVer());
         writer.key(NAME).value(getName());
-        writer.key(TIME).value(JSONDateUtils.toString(getTimestamp()));
+        writer.key(TIME);
+        JSONDateUtils.write(writer, getTimestamp());
         JSONUtils.write(writer, POP_SAMPLE, getPopSample());
         JSONUtils.write(writer, IKEY, getIKey());
         JSONUtils.write(writer, FLAGS, getFlags());
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.ingestion.models.one;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Typed properties already validated, split by dot and typed for metadata, so that the same
+ * property set can populate the data of many common schema logs.
+ * Instances are immutable and created by {@link CommonSchemaDataUtils#compile(List)}.
+ */
+public final class CompiledCommonSchemaData {
+
+    /**
+     * Compiled properties, in the order they were given.
+     */
+    private final List<Property> mProperties;
+
+    CompiledCommonSchemaData(List<Property> properties) {
+        mProperties = Collections.unmodifiableList(new ArrayList<>(properties));
+    }
+
+    List<Property> getProperties() {
+        return mProperties;
+    }
+
+    /**
+     * A valid property.
+     */
+    static final class Property {
+
+        /**
+         * Property name split by dot, last key is the leaf.
+         */
+        final String[] mKeys;
+
+        /**
+         * JSON value.
+         */
+        final Object mValue;
+
+        /**
+         * Metadata type or null if the type is a default one.
+         */
+        final Integer mMetadataType;
+
+        Property(String[] keys, Object value, Integer metadataType) {
+            mKeys = keys;
+            mValue = value;
+            mMetadataType = metadataType;
+        }
+    }
+}
@@ -56,7 +56,8 @@ public class DateTimeTypedProperty extends TypedProperty {
     @Override
     public void write(JSONStringer writer) throws JSONException {
         super.write(writer);
-        writer.key(VALUE).value(JSONDateUtils.toString(getValue()));
+        writer.key(VALUE);
+        JSONDateUtils.write(writer, getValue());
     }
 
     @Override
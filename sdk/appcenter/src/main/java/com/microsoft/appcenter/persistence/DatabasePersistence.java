@@ -17,21 +17,33 @@ import androidx.annotation.VisibleForTesting;
 
 import com.microsoft.appcenter.Constants;
 import com.microsoft.appcenter.Flags;
+import com.microsoft.appcenter.ingestion.models.Device;
 import com.microsoft.appcenter.ingestion.models.Log;
+import com.microsoft.appcenter.ingestion.models.RawLog;
 import com.microsoft.appcenter.ingestion.models.one.CommonSchemaLog;
 import com.microsoft.appcenter.ingestion.models.one.PartAUtils;
 import com.microsoft.appcenter.utils.AppCenterLog;
+import com.microsoft.appcenter.utils.HashUtils;
+import com.microsoft.appcenter.utils.IdGenerator;
 import com.microsoft.appcenter.utils.crypto.CryptoUtils;
+import com.microsoft.appcenter.utils.metrics.SdkMetrics;
 import com.microsoft.appcenter.utils.storage.DatabaseManager;
 import com.microsoft.appcenter.utils.storage.FileManager;
 import com.microsoft.appcenter.utils.storage.SQLiteUtils;
 
 import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONStringer;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -39,7 +51,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.UUID;
+import java.util.zip.DataFormatException;
 
 import static com.microsoft.appcenter.AppCenter.LOG_TAG;
 import static com.microsoft.appcenter.utils.storage.DatabaseManager.PRIMARY_KEY;
@@ -80,10 +92,45 @@ public class DatabasePersistence extends Persistence {
     @VisibleForTesting
     static final int VERSION_TIMESTAMP_COLUMN = 5;
 
+    /**
+     * Version before the index on group, priority and identifier was added.
+     * Upgrading from this version only needs to create the index.
+     */
+    @VisibleForTesting
+    static final int VERSION_GROUP_INDEX = 6;
+
+    /**
+     * Version before the batch identifier column was added.
+     * Upgrading from this version only needs to add the column and its index.
+     */
+    @VisibleForTesting
+    static final int VERSION_BATCH_ID_COLUMN = 7;
+
+    /**
+     * Version before the devices table and the device identifier column were added.
+     * Upgrading from this version only needs to add them.
+     */
+    @VisibleForTesting
+    static final int VERSION_DEVICE_ID_COLUMN = 8;
+
+    /**
+     * Version before the target tokens table was added.
+     * Upgrading from this version only needs to create the table, existing logs keep their encrypted token.
+     */
+    @VisibleForTesting
+    static final int VERSION_TARGET_TOKENS_TABLE = 9;
+
+    /**
+     * Version before the compressed payload and codec columns were added.
+     * Upgrading from this version only needs to add the columns, existing logs are stored as JSON text.
+     */
+    @VisibleForTesting
+    static final int VERSION_LOG_DATA_COLUMN = 10;
+
     /**
      * Current version of the schema.
      */
-    private static final int VERSION = 6;
+    private static final int VERSION = 11;
 
     /**
      * Project identifier part of the target token in clear text (the target token key).
@@ -102,6 +149,66 @@ public class DatabasePersistence extends Persistence {
      */
     private static final String COLUMN_DATA_TYPE = "type";
 
+    /**
+     * Identifier of the batch a log is claimed by while being sent, null if not claimed.
+     */
+    @VisibleForTesting
+    static final String COLUMN_BATCH_ID = "batch_id";
+
+    /**
+     * Identifier of the device snapshot of a log in the devices table, null if embedded in the log.
+     */
+    @VisibleForTesting
+    static final String COLUMN_DEVICE_ID = "device_id";
+
+    /**
+     * Offset in the stored payload where the device snapshot was removed.
+     */
+    @VisibleForTesting
+    static final String COLUMN_DEVICE_OFFSET = "device_offset";
+
+    /**
+     * Name of compressed log column in the table, the log column is null when it is used.
+     */
+    @VisibleForTesting
+    static final String COLUMN_LOG_DATA = "log_data";
+
+    /**
+     * Codec of the compressed log column, null if the log is stored as JSON text.
+     */
+    @VisibleForTesting
+    static final String COLUMN_CODEC = "codec";
+
+    /**
+     * Devices table name.
+     */
+    @VisibleForTesting
+    static final String DEVICES_TABLE = "devices";
+
+    /**
+     * Name of the device snapshot content hash column in the devices table.
+     */
+    @VisibleForTesting
+    static final String COLUMN_DEVICE_HASH = "hash";
+
+    /**
+     * Name of the device snapshot JSON column in the devices table.
+     */
+    @VisibleForTesting
+    static final String COLUMN_DEVICE = "device";
+
+    /**
+     * Target tokens table name.
+     */
+    @VisibleForTesting
+    static final String TARGET_TOKENS_TABLE = "target_tokens";
+
+    /**
+     * Maximum number of decrypted target tokens kept in memory.
+     */
+    @VisibleForTesting
+    static final int MAX_CACHED_TARGET_TOKENS = 16;
+
     /**
      * Database name.
      */
@@ -112,13 +219,65 @@ public class DatabasePersistence extends Persistence {
      * Table schema for Persistence.
      */
     @VisibleForTesting
-    static final ContentValues SCHEMA = getContentValues("", "", "", "", "", 0);
+    static final ContentValues SCHEMA = getSchema();
 
     /**
      * Order by clause to select logs.
      */
     private static final String GET_SORT_ORDER = COLUMN_PRIORITY + " DESC, " + PRIMARY_KEY;
 
+    /**
+     * Columns needed to send logs, group and priority are only used to filter and sort.
+     */
+    @VisibleForTesting
+    static final String[] GET_COLUMNS = {PRIMARY_KEY, COLUMN_LOG, COLUMN_DATA_TYPE, COLUMN_TARGET_TOKEN, COLUMN_TARGET_KEY, COLUMN_DEVICE_ID, COLUMN_DEVICE_OFFSET, COLUMN_LOG_DATA, COLUMN_CODEC};
+
+    /**
+     * Columns to read a device snapshot.
+     */
+    private static final String[] GET_DEVICE_COLUMNS = {PRIMARY_KEY, COLUMN_DEVICE};
+
+    /**
+     * Columns to read an encrypted target token.
+     */
+    private static final String[] GET_TARGET_TOKEN_COLUMNS = {COLUMN_TARGET_TOKEN};
+
+    /**
+     * Selection of a target token by target key.
+     */
+    private static final String SELECT_TARGET_KEY = COLUMN_TARGET_KEY + " = ?";
+
+    /**
+     * Columns to look for batches claimed by a previous process.
+     */
+    @VisibleForTesting
+    static final String[] GET_CLAIMED_COLUMNS = {COLUMN_BATCH_ID};
+
+    /**
+     * Selection of logs not claimed by any batch.
+     */
+    private static final String SELECT_UNCLAIMED = COLUMN_BATCH_ID + " IS NULL";
+
+    /**
+     * Selection of logs claimed by any batch.
+     */
+    private static final String SELECT_CLAIMED = COLUMN_BATCH_ID + " IS NOT NULL";
+
+    /**
+     * Selection of logs claimed by a given batch.
+     */
+    private static final String SELECT_BATCH = COLUMN_BATCH_ID + " = ?";
+
+    /**
+     * Selection of unclaimed logs stored as JSON text in the database, after a given identifier.
+     */
+    private static final String SELECT_UNCLAIMED_TEXT = SELECT_UNCLAIMED + " AND " + COLUMN_CODEC + " IS NULL AND " + COLUMN_LOG + " IS NOT NULL AND " + PRIMARY_KEY + " > ?";
+
+    /**
+     * Columns to read a log stored as JSON text.
+     */
+    private static final String[] GET_TEXT_COLUMNS = {PRIMARY_KEY, COLUMN_LOG};
+
     /**
      * Size limit (in bytes) for a database row log payload.
      * A separate file is used if payload is larger.
@@ -146,7 +305,65 @@ public class DatabasePersistence extends Persistence {
             "`priority` INTEGER," +
             "`log` TEXT," +
             "`persistence_group` TEXT," +
-            "`target_key` TEXT);";
+            "`target_key` TEXT," +
+            "`batch_id` TEXT," +
+            "`device_id` INTEGER," +
+            "`device_offset` INTEGER," +
+            "`log_data` BLOB," +
+            "`codec` INTEGER);";
+
+    /**
+     * SQL command to add the batch identifier column when upgrading.
+     */
+    private static final String ADD_BATCH_ID_COLUMN_SQL = "ALTER TABLE `logs` ADD COLUMN `batch_id` TEXT";
+
+    /**
+     * SQL command to add the device identifier column when upgrading.
+     */
+    private static final String ADD_DEVICE_ID_COLUMN_SQL = "ALTER TABLE `logs` ADD COLUMN `device_id` INTEGER";
+
+    /**
+     * SQL command to add the device offset column when upgrading.
+     */
+    private static final String ADD_DEVICE_OFFSET_COLUMN_SQL = "ALTER TABLE `logs` ADD COLUMN `device_offset` INTEGER";
+
+    /**
+     * SQL command to add the compressed log column when upgrading.
+     */
+    private static final String ADD_LOG_DATA_COLUMN_SQL = "ALTER TABLE `logs` ADD COLUMN `log_data` BLOB";
+
+    /**
+     * SQL command to add the codec column when upgrading.
+     */
+    private static final String ADD_CODEC_COLUMN_SQL = "ALTER TABLE `logs` ADD COLUMN `codec` INTEGER";
+
+    /**
+     * SQL command to create the table of device snapshots referenced by logs.
+     */
+    @VisibleForTesting
+    static final String CREATE_DEVICES_SQL = "CREATE TABLE IF NOT EXISTS `devices`" +
+            "(`oid` INTEGER PRIMARY KEY AUTOINCREMENT," +
+            "`hash` TEXT UNIQUE," +
+            "`device` TEXT);";
+
+    /**
+     * Selection of device snapshots not referenced by any log.
+     */
+    private static final String SELECT_UNREFERENCED_DEVICES = PRIMARY_KEY + " NOT IN (SELECT `device_id` FROM `logs` WHERE `device_id` IS NOT NULL)";
+
+    /**
+     * SQL command to create the table of encrypted target tokens referenced by logs through their target key.
+     */
+    @VisibleForTesting
+    static final String CREATE_TARGET_TOKENS_SQL = "CREATE TABLE IF NOT EXISTS `target_tokens`" +
+            "(`oid` INTEGER PRIMARY KEY AUTOINCREMENT," +
+            "`target_key` TEXT UNIQUE," +
+            "`target_token` TEXT);";
+
+    /**
+     * Selection of target tokens not referenced by any log.
+     */
+    private static final String SELECT_UNREFERENCED_TARGET_TOKENS = COLUMN_TARGET_KEY + " NOT IN (SELECT `target_key` FROM `logs` WHERE `target_key` IS NOT NULL AND `target_token` IS NULL)";
 
     /**
      * SQL command to drop logs table
@@ -158,6 +375,16 @@ public class DatabasePersistence extends Persistence {
      */
     private static final String CREATE_PRIORITY_INDEX_LOGS = "CREATE INDEX `ix_logs_priority` ON logs (`priority`)";
 
+    /**
+     * SQL command to create index for selecting logs of a group in sending order.
+     */
+    private static final String CREATE_GROUP_INDEX_LOGS = "CREATE INDEX IF NOT EXISTS `ix_logs_group_priority_oid` ON logs (`persistence_group`, `priority`, `oid`)";
+
+    /**
+     * SQL command to create index for finding claimed logs of a group.
+     */
+    private static final String CREATE_BATCH_INDEX_LOGS = "CREATE INDEX IF NOT EXISTS `ix_logs_group_batch_id` ON logs (`persistence_group`, `batch_id`)";
+
     /**
      * Database manager instance to access Persistence database.
      */
@@ -176,6 +403,13 @@ public class DatabasePersistence extends Persistence {
     @VisibleForTesting
     final Set<Long> mPendingDbIdentifiers;
 
+    /**
+     * Database identifiers of logs known to have their payload in a file, per group.
+     * Filled when reading logs so that deleting a batch only touches files that exist.
+     */
+    @VisibleForTesting
+    final Map<String, Set<Long>> mLargePayloadDbIdentifiers;
+
     /**
      * Application context.
      */
@@ -186,6 +420,93 @@ public class DatabasePersistence extends Persistence {
      */
     private final File mLargePayloadDirectory;
 
+    /**
+     * Logs not written to the database yet in write-behind mode.
+     */
+    @VisibleForTesting
+    final List<ContentValues> mWriteBuffer;
+
+    /**
+     * Maximum number of logs in {@link #mWriteBuffer}, 0 if write-behind mode is disabled.
+     */
+    private int mMaxBufferedLogs;
+
+    /**
+     * Number of stored logs per group and per target key (null key for logs without target),
+     * including logs in {@link #mWriteBuffer}. Loaded with a single query on first use, then
+     * maintained incrementally. Null when it needs to be loaded again.
+     */
+    @VisibleForTesting
+    Map<String, Map<String, Integer>> mLogCounts;
+
+    /**
+     * Target keys of pending logs, to update counts when deleting a batch.
+     */
+    private final Map<Long, String> mPendingTargetKeys;
+
+    /**
+     * Groups for which batches claimed by a previous process were all resumed or released.
+     */
+    @VisibleForTesting
+    final Set<String> mReconciledGroups;
+
+    /**
+     * Device snapshot identifiers per content hash.
+     */
+    private final Map<String, Long> mDeviceIds;
+
+    /**
+     * Device snapshot JSON per identifier.
+     */
+    private final Map<Long, String> mDeviceJsons;
+
+    /**
+     * Shared device snapshot instances per identifier, a single instance is given to all logs read with the same snapshot.
+     */
+    @VisibleForTesting
+    final Map<Long, Device> mDevices;
+
+    /**
+     * Last device instance stored, logs usually share the same instance until device properties change.
+     */
+    private Device mLastDevice;
+
+    /**
+     * Identifier of {@link #mLastDevice}.
+     */
+    private long mLastDeviceId;
+
+    /**
+     * Whether device snapshots not referenced anymore were deleted by this process.
+     */
+    private boolean mDevicesCollected;
+
+    /**
+     * Decrypted target tokens per target key, least recently used are evicted beyond {@link #MAX_CACHED_TARGET_TOKENS}.
+     */
+    @VisibleForTesting
+    final Map<String, String> mTargetTokens;
+
+    /**
+     * Whether target tokens not referenced anymore were deleted by this process.
+     */
+    private boolean mTargetTokensCollected;
+
+    /**
+     * Whether new logs are stored compressed.
+     */
+    private boolean mCompressedStorageEnabled;
+
+    /**
+     * Codec of compressed logs, created on first use.
+     */
+    private PayloadCodec mPayloadCodec;
+
+    /**
+     * Highest database identifier already checked by {@link #compressStoredLogs(int)}.
+     */
+    private long mCompressedUpToId;
+
     /**
      * Initializes variables with default values.
      *
@@ -206,12 +527,30 @@ public class DatabasePersistence extends Persistence {
         mContext = context;
         mPendingDbIdentifiersGroups = new HashMap<>();
         mPendingDbIdentifiers = new HashSet<>();
+        mLargePayloadDbIdentifiers = new HashMap<>();
+        mWriteBuffer = new ArrayList<>();
+        mPendingTargetKeys = new HashMap<>();
+        mReconciledGroups = new HashSet<>();
+        mDeviceIds = new HashMap<>();
+        mDeviceJsons = new HashMap<>();
+        mDevices = new HashMap<>();
+        mTargetTokens = new LinkedHashMap<String, String>(MAX_CACHED_TARGET_TOKENS, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > MAX_CACHED_TARGET_TOKENS;
+            }
+        };
         mDatabaseManager = new DatabaseManager(context, DATABASE, TABLE, version, schema, CREATE_LOGS_SQL, new DatabaseManager.Listener() {
 
 
             @Override
             public void onCreate(SQLiteDatabase db) {
                 db.execSQL(CREATE_PRIORITY_INDEX_LOGS);
+                db.execSQL(CREATE_GROUP_INDEX_LOGS);
+                db.execSQL(CREATE_BATCH_INDEX_LOGS);
+                db.execSQL(CREATE_DEVICES_SQL);
+                db.execSQL(CREATE_TARGET_TOKENS_SQL);
             }
 
             @Override
@@ -223,9 +562,43 @@ public class DatabasePersistence extends Persistence {
                  * When adding a new column in a future version, update this code by something like
                  * if (oldVersion <= VERSION_TIMESTAMP_COLUMN) {drop/create} else {add missing columns}
                  */
-                db.execSQL(DROP_LOGS_SQL);
-                db.execSQL(CREATE_LOGS_SQL);
-                db.execSQL(CREATE_PRIORITY_INDEX_LOGS);
+                if (oldVersion <= VERSION_TIMESTAMP_COLUMN) {
+                    db.execSQL(DROP_LOGS_SQL);
+                    db.execSQL(CREATE_LOGS_SQL);
+                    db.execSQL(CREATE_PRIORITY_INDEX_LOGS);
+                } else {
+                    if (oldVersion <= VERSION_BATCH_ID_COLUMN) {
+                        db.execSQL(ADD_BATCH_ID_COLUMN_SQL);
+                    }
+                    if (oldVersion <= VERSION_DEVICE_ID_COLUMN) {
+                        db.execSQL(ADD_DEVICE_ID_COLUMN_SQL);
+                        db.execSQL(ADD_DEVICE_OFFSET_COLUMN_SQL);
+                    }
+                    if (oldVersion <= VERSION_LOG_DATA_COLUMN) {
+                        db.execSQL(ADD_LOG_DATA_COLUMN_SQL);
+                        db.execSQL(ADD_CODEC_COLUMN_SQL);
+                    }
+                }
+                db.execSQL(CREATE_GROUP_INDEX_LOGS);
+                db.execSQL(CREATE_BATCH_INDEX_LOGS);
+                db.execSQL(CREATE_DEVICES_SQL);
+                db.execSQL(CREATE_TARGET_TOKENS_SQL);
+            }
+        });
+        mDatabaseManager.setEvictionListener(new DatabaseManager.EvictionListener() {
+
+            @Override
+            public void onEvicted(long id) {
+
+                /* We don't know group of the evicted log, count again on next use. */
+                mLogCounts = null;
+            }
+        });
+        SdkMetrics.setSupplier(SdkMetrics.Gauge.DATABASE_SIZE, new SdkMetrics.GaugeSupplier() {
+
+            @Override
+            public long getValue() {
+                return mDatabaseManager.getSize();
             }
         });
         mLargePayloadDirectory = new File(Constants.FILES_PATH + PAYLOAD_LARGE_DIRECTORY);
@@ -255,50 +628,293 @@ public class DatabasePersistence extends Persistence {
         return values;
     }
 
+    /**
+     * Gets the schema of the logs table with a specimen value for each column type.
+     *
+     * @return The schema.
+     */
+    private static ContentValues getSchema() {
+        ContentValues schema = getContentValues("", "", "", "", "", 0);
+        schema.put(COLUMN_LOG_DATA, new byte[0]);
+        schema.put(COLUMN_CODEC, 0);
+        schema.put(COLUMN_BATCH_ID, "");
+        schema.put(COLUMN_DEVICE_ID, 0L);
+        schema.put(COLUMN_DEVICE_OFFSET, 0);
+        return schema;
+    }
+
     @Override
     public boolean setMaxStorageSize(long maxStorageSizeInBytes) {
         return mDatabaseManager.setMaxSize(maxStorageSizeInBytes);
     }
 
     @Override
-    public long putLog(@NonNull Log log, @NonNull String group, @IntRange(from = Flags.NORMAL, to = Flags.CRITICAL) int flags) throws PersistenceException {
+    public void setWriteBufferSize(@IntRange(from = 0) int maxBufferedLogs) {
+        mMaxBufferedLogs = maxBufferedLogs;
+        if (mWriteBuffer.size() >= maxBufferedLogs) {
+            flush();
+        }
+    }
 
-        /* Convert log to JSON string and put in the database. */
-        try {
-            AppCenterLog.debug(LOG_TAG, "Storing a log to the Persistence database for log type " + log.getType() + " with flags=" + flags);
-            String payload = getLogSerializer().serializeLog(log);
-            ContentValues contentValues;
+    @Override
+    public void flush() {
+        flushWriteBuffer();
+    }
 
-            //noinspection CharsetObjectCanBeUsed min API level 19 required to fix this warning.
-            int payloadSize = payload.getBytes("UTF-8").length;
-            boolean isLargePayload = payloadSize >= PAYLOAD_MAX_SIZE;
-            String targetKey;
-            String targetToken;
-            if (log instanceof CommonSchemaLog) {
-                if (isLargePayload) {
-                    throw new PersistenceException("Log is larger than " + PAYLOAD_MAX_SIZE + " bytes, cannot send to OneCollector.");
+    @Override
+    public void setTunedStorageEnabled(boolean enabled) {
+        mDatabaseManager.setTunedModeEnabled(enabled);
+    }
+
+    @Override
+    public void setCompressedStorageEnabled(boolean enabled) {
+        if (enabled && !mCompressedStorageEnabled) {
+            mCompressedUpToId = 0;
+        }
+        mCompressedStorageEnabled = enabled;
+    }
+
+    @Override
+    public boolean compressStoredLogs(@IntRange(from = 1) int limit) {
+        if (!mCompressedStorageEnabled) {
+            return false;
+        }
+
+        /* Read the next page of unclaimed text logs, claimed logs are about to be sent and deleted. */
+        Map<Long, ContentValues> compressedValues = new LinkedHashMap<>();
+        int rows = 0;
+        Cursor cursor = null;
+        try {
+            SQLiteQueryBuilder builder = SQLiteUtils.newSQLiteQueryBuilder();
+            builder.appendWhere(SELECT_UNCLAIMED_TEXT);
+            cursor = mDatabaseManager.getCursor(builder, GET_TEXT_COLUMNS, new String[]{String.valueOf(mCompressedUpToId)}, PRIMARY_KEY, String.valueOf(limit));
+            ContentValues values;
+            while ((values = mDatabaseManager.nextValues(cursor)) != null) {
+                rows++;
+                Long dbIdentifier = values.getAsLong(PRIMARY_KEY);
+                String payload = values.getAsString(COLUMN_LOG);
+                if (dbIdentifier == null) {
+                    continue;
+                }
+                mCompressedUpToId = dbIdentifier;
+                if (payload != null && !mPendingDbIdentifiers.contains(dbIdentifier)) {
+                    byte[] data = compressPayload(PayloadCodec.getBytes(payload));
+                    if (data != null) {
+                        ContentValues compressed = new ContentValues();
+                        putCompressedPayload(compressed, data);
+                        compressedValues.put(dbIdentifier, compressed);
+                    }
                 }
-                targetToken = log.getTransmissionTargetTokens().iterator().next();
-                targetKey = PartAUtils.getTargetKey(targetToken);
-                targetToken = CryptoUtils.getInstance(mContext).encrypt(targetToken);
-            } else {
-                targetKey = null;
-                targetToken = null;
             }
-            long maxSize = mDatabaseManager.getMaxSize();
-            if (maxSize == -1) {
-                throw new PersistenceException("Failed to store a log to the Persistence database.");
+        } catch (RuntimeException e) {
+            AppCenterLog.error(LOG_TAG, "Failed to read logs to compress: ", e);
+            return false;
+        } finally {
+            if (cursor != null) {
+                try {
+                    cursor.close();
+                } catch (RuntimeException ignore) {
+                }
             }
-            if (!isLargePayload && maxSize <= payloadSize) {
-                throw new PersistenceException("Log is too large (" + payloadSize + " bytes) to store in database. " +
-                        "Current maximum database size is " + maxSize + " bytes.");
+        }
+
+        /* Rewrite the page in a single transaction. */
+        if (!compressedValues.isEmpty()) {
+            int compressedCount = mDatabaseManager.update(compressedValues);
+            if (AppCenterLog.isDebugEnabled()) {
+                AppCenterLog.debug(LOG_TAG, "Compressed " + compressedCount + " log(s) stored as JSON text.");
             }
-            contentValues = getContentValues(group, isLargePayload ? null : payload, targetToken, log.getType(), targetKey, Flags.getPersistenceFlag(flags, false));
-            long databaseId = mDatabaseManager.put(contentValues, COLUMN_PRIORITY);
-            if (databaseId == -1) {
-                throw new PersistenceException("Failed to store a log to the Persistence database for log type " + log.getType() + ".");
+        }
+        return rows >= limit;
+    }
+
+    /**
+     * Compresses a payload if that makes it smaller.
+     *
+     * @param payload The UTF-8 encoded payload.
+     * @return The compressed payload, or null if it would not be smaller.
+     */
+    @Nullable
+    private byte[] compressPayload(@NonNull byte[] payload) {
+        byte[] data = getPayloadCodec().compress(payload);
+        return data.length < payload.length ? data : null;
+    }
+
+    @NonNull
+    private PayloadCodec getPayloadCodec() {
+        if (mPayloadCodec == null) {
+            mPayloadCodec = new PayloadCodec();
+        }
+        return mPayloadCodec;
+    }
+
+    /**
+     * Decompresses a payload stored in the database.
+     *
+     * @param codec The codec of the payload.
+     * @param data  The compressed payload.
+     * @return The JSON payload.
+     * @throws JSONException If the payload is missing, corrupted or uses an unknown codec.
+     */
+    @NonNull
+    private String decompressPayload(int codec, @Nullable byte[] data) throws JSONException {
+        if (codec != PayloadCodec.CODEC_DEFLATE) {
+            throw new JSONException("Unknown log payload codec " + codec + ".");
+        }
+        if (data == null) {
+            throw new JSONException("Compressed log payload is null.");
+        }
+        try {
+            return getPayloadCodec().decompress(data);
+        } catch (DataFormatException e) {
+            throw new JSONException("Cannot decompress log payload: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sets a compressed payload in place of the JSON text.
+     *
+     * @param values The values to update.
+     * @param data   The compressed payload.
+     */
+    private static void putCompressedPayload(@NonNull ContentValues values, @NonNull byte[] data) {
+        values.putNull(COLUMN_LOG);
+        values.put(COLUMN_LOG_DATA, data);
+        values.put(COLUMN_CODEC, PayloadCodec.CODEC_DEFLATE);
+    }
+
+    /**
+     * Writes buffered logs to the database in a single transaction.
+     *
+     * @return database identifiers of the buffered logs, in order, -1 for logs that could not be stored.
+     */
+    @NonNull
+    private long[] flushWriteBuffer() {
+        if (mWriteBuffer.isEmpty()) {
+            return new long[0];
+        }
+        long[] databaseIds = mDatabaseManager.put(mWriteBuffer, COLUMN_PRIORITY);
+        int failedCount = 0;
+        for (int i = 0; i < databaseIds.length; i++) {
+            if (databaseIds[i] == -1) {
+                ContentValues values = mWriteBuffer.get(i);
+                updateLogCount(values.getAsString(COLUMN_GROUP), values.getAsString(COLUMN_TARGET_KEY), -1);
+                failedCount++;
+            }
+        }
+        mWriteBuffer.clear();
+        if (AppCenterLog.isDebugEnabled()) {
+            AppCenterLog.debug(LOG_TAG, "Stored " + (databaseIds.length - failedCount) + " buffered log(s) to the Persistence database.");
+        }
+        if (failedCount > 0) {
+            AppCenterLog.error(LOG_TAG, "Failed to store " + failedCount + " buffered log(s) to the Persistence database.");
+        }
+        return databaseIds;
+    }
+
+    @Override
+    public long putLog(@NonNull Log log, @NonNull String group, @IntRange(from = Flags.NORMAL, to = Flags.CRITICAL) int flags) throws PersistenceException {
+
+        /* Convert log to JSON string and put in the database. */
+        long startTime = System.nanoTime();
+        try {
+            if (AppCenterLog.isDebugEnabled()) {
+                AppCenterLog.debug(LOG_TAG, "Storing a log to the Persistence database for log type " + log.getType() + " with flags=" + flags);
+            }
+
+            String payload = getLogSerializer().serializeLog(log);
+
+            /*
+             * Store the device snapshot once and reference it instead of embedding it in every log.
+             * The offset where it was removed is kept to restore the exact payload.
+             */
+            Long deviceId = null;
+            int deviceOffset = -1;
+            if (log.getDevice() != null && !(log instanceof CommonSchemaLog)) {
+                deviceId = getDeviceId(log.getDevice());
+                if (deviceId != null) {
+                    String deviceProperty = getDeviceProperty(mDeviceJsons.get(deviceId));
+                    deviceOffset = payload.indexOf(deviceProperty);
+                    if (deviceOffset > 0) {
+                        payload = payload.substring(0, deviceOffset) + payload.substring(deviceOffset + deviceProperty.length());
+                    } else {
+                        deviceId = null;
+                    }
+                }
+            }
+            ContentValues contentValues;
+
+            //noinspection CharsetObjectCanBeUsed min API level 19 required to fix this warning.
+            byte[] payloadBytes = payload.getBytes("UTF-8");
+            int payloadSize = payloadBytes.length;
+            boolean isLargePayload = payloadSize >= PAYLOAD_MAX_SIZE;
+
+            /* Payloads in files stay as JSON text, the size limit of logs sent to OneCollector applies to the JSON text. */
+            byte[] compressedPayload = null;
+            if (mCompressedStorageEnabled && !isLargePayload) {
+                compressedPayload = compressPayload(payloadBytes);
+                if (compressedPayload != null) {
+                    payloadSize = compressedPayload.length;
+                }
+            }
+            String targetKey;
+            String targetToken;
+            if (log instanceof CommonSchemaLog) {
+                if (isLargePayload) {
+                    throw new PersistenceException("Log is larger than " + PAYLOAD_MAX_SIZE + " bytes, cannot send to OneCollector.");
+                }
+                targetToken = log.getTransmissionTargetTokens().iterator().next();
+                targetKey = PartAUtils.getTargetKey(targetToken);
+                targetToken = putTargetToken(targetKey, targetToken);
+            } else {
+                targetKey = null;
+                targetToken = null;
+            }
+            long maxSize = mDatabaseManager.getMaxSize();
+            if (maxSize == -1) {
+                throw new PersistenceException("Failed to store a log to the Persistence database.");
+            }
+            if (!isLargePayload && maxSize <= payloadSize) {
+                throw new PersistenceException("Log is too large (" + payloadSize + " bytes) to store in database. " +
+                        "Current maximum database size is " + maxSize + " bytes.");
+            }
+            int priority = Flags.getPersistenceFlag(flags, false);
+            contentValues = getContentValues(group, isLargePayload ? null : payload, targetToken, log.getType(), targetKey, priority);
+            if (compressedPayload != null) {
+                putCompressedPayload(contentValues, compressedPayload);
+            }
+            if (deviceId != null) {
+                contentValues.put(COLUMN_DEVICE_ID, deviceId);
+                contentValues.put(COLUMN_DEVICE_OFFSET, deviceOffset);
+            }
+            long databaseId;
+            boolean isBuffered = mMaxBufferedLogs > 0 && !isLargePayload;
+            if (isBuffered) {
+
+                /* Buffer the log, critical logs are written immediately along with the buffer. */
+                mWriteBuffer.add(contentValues);
+                updateLogCount(group, targetKey, 1);
+                if (priority != Flags.CRITICAL && mWriteBuffer.size() < mMaxBufferedLogs) {
+                    if (AppCenterLog.isDebugEnabled()) {
+                        AppCenterLog.debug(LOG_TAG, "Buffered a log for log type " + log.getType() + ", buffer size=" + mWriteBuffer.size());
+                    }
+                    onLogPersisted(startTime);
+                    return 0;
+                }
+                long[] databaseIds = flushWriteBuffer();
+                databaseId = databaseIds[databaseIds.length - 1];
+            } else {
+
+                /* Keep insertion order with buffered logs. */
+                flushWriteBuffer();
+                databaseId = mDatabaseManager.put(contentValues, COLUMN_PRIORITY);
+            }
+            if (databaseId == -1) {
+                throw new PersistenceException("Failed to store a log to the Persistence database for log type " + log.getType() + ".");
+            }
+            if (AppCenterLog.isDebugEnabled()) {
+                AppCenterLog.debug(LOG_TAG, "Stored a log to the Persistence database for log type " + log.getType() + " with databaseId=" + databaseId);
             }
-            AppCenterLog.debug(LOG_TAG, "Stored a log to the Persistence database for log type " + log.getType() + " with databaseId=" + databaseId);
             if (isLargePayload) {
                 AppCenterLog.debug(LOG_TAG, "Payload is larger than what SQLite supports, storing payload in a separate file.");
                 File directory = getLargePayloadGroupDirectory(group);
@@ -314,8 +930,14 @@ public class DatabasePersistence extends Persistence {
                     mDatabaseManager.delete(databaseId);
                     throw e;
                 }
-                AppCenterLog.debug(LOG_TAG, "Payload written to " + payloadFile);
+                if (AppCenterLog.isDebugEnabled()) {
+                    AppCenterLog.debug(LOG_TAG, "Payload written to " + payloadFile);
+                }
             }
+            if (!isBuffered) {
+                updateLogCount(group, targetKey, 1);
+            }
+            onLogPersisted(startTime);
             return databaseId;
         } catch (JSONException e) {
             throw new PersistenceException("Cannot convert to JSON string.", e);
@@ -324,6 +946,11 @@ public class DatabasePersistence extends Persistence {
         }
     }
 
+    private static void onLogPersisted(long startTime) {
+        SdkMetrics.increment(SdkMetrics.Counter.LOGS_PERSISTED);
+        SdkMetrics.recordMicros(SdkMetrics.Histogram.PERSIST_TIME, startTime);
+    }
+
     @NonNull
     @VisibleForTesting
     File getLargePayloadGroupDirectory(String group) {
@@ -347,17 +974,43 @@ public class DatabasePersistence extends Persistence {
     public void deleteLogs(@NonNull String group, @NonNull String id) {
 
         /* Log. */
-        AppCenterLog.debug(LOG_TAG, "Deleting logs from the Persistence database for " + group + " with " + id);
-        AppCenterLog.debug(LOG_TAG, "The IDs for deleting log(s) is/are:");
+        if (AppCenterLog.isDebugEnabled()) {
+            AppCenterLog.debug(LOG_TAG, "Deleting logs from the Persistence database for " + group + " with " + id);
+            AppCenterLog.debug(LOG_TAG, "The IDs for deleting log(s) is/are:");
+        }
 
         /* Delete logs. */
         List<Long> dbIdentifiers = mPendingDbIdentifiersGroups.remove(group + id);
-        File directory = getLargePayloadGroupDirectory(group);
+        if (dbIdentifiers != null) {
+            File directory = getLargePayloadGroupDirectory(group);
+            Set<Long> largePayloadDbIdentifiers = mLargePayloadDbIdentifiers.get(group);
+            for (Long dbIdentifier : dbIdentifiers) {
+                if (AppCenterLog.isDebugEnabled()) {
+                    AppCenterLog.debug(LOG_TAG, "\t" + dbIdentifier);
+                }
+                if (largePayloadDbIdentifiers != null && largePayloadDbIdentifiers.remove(dbIdentifier)) {
+
+                    //noinspection ResultOfMethodCallIgnored SQLite delete does not have return type either.
+                    getLargePayloadFile(directory, dbIdentifier).delete();
+                }
+                mPendingDbIdentifiers.remove(dbIdentifier);
+                updateLogCount(group, mPendingTargetKeys.remove(dbIdentifier), -1);
+            }
+            mDatabaseManager.delete(dbIdentifiers);
+        }
+    }
+
+    @Override
+    public void releaseLogs(@NonNull String group, @NonNull String batchId) {
+        List<Long> dbIdentifiers = mPendingDbIdentifiersGroups.remove(group + batchId);
         if (dbIdentifiers != null) {
             for (Long dbIdentifier : dbIdentifiers) {
-                AppCenterLog.debug(LOG_TAG, "\t" + dbIdentifier);
-                deleteLog(directory, dbIdentifier);
                 mPendingDbIdentifiers.remove(dbIdentifier);
+                mPendingTargetKeys.remove(dbIdentifier);
+            }
+            mDatabaseManager.update(dbIdentifiers, getClaimValues(null));
+            if (AppCenterLog.isDebugEnabled()) {
+                AppCenterLog.debug(LOG_TAG, "Released " + dbIdentifiers.size() + " log(s) of " + group + " with " + batchId);
             }
         }
     }
@@ -366,7 +1019,9 @@ public class DatabasePersistence extends Persistence {
     public void deleteLogs(String group) {
 
         /* Log. */
-        AppCenterLog.debug(LOG_TAG, "Deleting all logs from the Persistence database for " + group);
+        if (AppCenterLog.isDebugEnabled()) {
+            AppCenterLog.debug(LOG_TAG, "Deleting all logs from the Persistence database for " + group);
+        }
 
         /* Delete large payload files. */
         File directory = getLargePayloadGroupDirectory(group);
@@ -381,10 +1036,21 @@ public class DatabasePersistence extends Persistence {
 
         //noinspection ResultOfMethodCallIgnored we are not checking SQLite result either.
         directory.delete();
+        mLargePayloadDbIdentifiers.remove(group);
+        if (mLogCounts != null) {
+            mLogCounts.remove(group);
+        }
 
-        /* Delete from database. */
+        /* Delete from write buffer and database. */
+        for (Iterator<ContentValues> iterator = mWriteBuffer.iterator(); iterator.hasNext(); ) {
+            if (group.equals(iterator.next().getAsString(COLUMN_GROUP))) {
+                iterator.remove();
+            }
+        }
         int deletedCount = mDatabaseManager.delete(COLUMN_GROUP, group);
-        AppCenterLog.debug(LOG_TAG, "Deleted " + deletedCount + " logs.");
+        if (AppCenterLog.isDebugEnabled()) {
+            AppCenterLog.debug(LOG_TAG, "Deleted " + deletedCount + " logs.");
+        }
 
         /* Delete from pending state. */
         for (Iterator<String> iterator = mPendingDbIdentifiersGroups.keySet().iterator(); iterator.hasNext(); ) {
@@ -398,132 +1064,318 @@ public class DatabasePersistence extends Persistence {
     @Override
     public int countLogs(@NonNull String group) {
 
-        /* Query database and get scanner. */
-        SQLiteQueryBuilder builder = SQLiteUtils.newSQLiteQueryBuilder();
-        builder.appendWhere(COLUMN_GROUP + " = ?");
+        /* Buffered logs are counted as stored. */
+        if (mLogCounts == null) {
+            flushWriteBuffer();
+            mLogCounts = loadLogCounts();
+            if (mLogCounts == null) {
+                return 0;
+            }
+        }
         int count = 0;
+        Map<String, Integer> groupCounts = mLogCounts.get(group);
+        if (groupCounts != null) {
+            for (Integer targetKeyCount : groupCounts.values()) {
+                count += targetKeyCount;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts stored logs per group and target key with a single query.
+     *
+     * @return log counts, or null if the query failed.
+     */
+    @Nullable
+    private Map<String, Map<String, Integer>> loadLogCounts() {
+        Map<String, Map<String, Integer>> logCounts = new HashMap<>();
         try {
-            Cursor cursor = mDatabaseManager.getCursor(builder, new String[]{"COUNT(*)"}, new String[]{group}, null);
+            Cursor cursor = mDatabaseManager.getGroupedCursor(new String[]{COLUMN_GROUP, COLUMN_TARGET_KEY, "COUNT(*)"}, COLUMN_GROUP + ", " + COLUMN_TARGET_KEY);
             try {
-                cursor.moveToNext();
-                count = cursor.getInt(0);
+                while (cursor.moveToNext()) {
+                    String group = cursor.getString(0);
+                    Map<String, Integer> groupCounts = logCounts.get(group);
+                    if (groupCounts == null) {
+                        groupCounts = new HashMap<>();
+                        logCounts.put(group, groupCounts);
+                    }
+                    groupCounts.put(cursor.isNull(1) ? null : cursor.getString(1), cursor.getInt(2));
+                }
             } finally {
                 cursor.close();
             }
         } catch (RuntimeException e) {
             AppCenterLog.error(LOG_TAG, "Failed to get logs count: ", e);
+            return null;
+        }
+        if (AppCenterLog.isDebugEnabled()) {
+            AppCenterLog.debug(LOG_TAG, "Loaded log counts for " + logCounts.size() + " group(s) from the Persistence database.");
+        }
+        return logCounts;
+    }
+
+    /**
+     * Updates the count of stored logs if already loaded.
+     *
+     * @param group     The group of the storage for logs.
+     * @param targetKey The target key, null for logs without target.
+     * @param delta     Number of logs added, negative if removed.
+     */
+    private void updateLogCount(String group, @Nullable String targetKey, int delta) {
+        if (mLogCounts == null) {
+            return;
+        }
+        Map<String, Integer> groupCounts = mLogCounts.get(group);
+        if (groupCounts == null) {
+            groupCounts = new HashMap<>();
+            mLogCounts.put(group, groupCounts);
+        }
+        Integer count = groupCounts.get(targetKey);
+        int newCount = (count == null ? 0 : count) + delta;
+        if (newCount > 0) {
+            groupCounts.put(targetKey, newCount);
+        } else {
+            groupCounts.remove(targetKey);
         }
-        return count;
     }
 
     @Override
     @Nullable
     public String getLogs(@NonNull String group, @NonNull Collection<String> pausedTargetKeys, @IntRange(from = 0) int limit, @NonNull List<Log> outLogs) {
+        long startTime = System.nanoTime();
+        String batchId = getLogs(group, pausedTargetKeys, limit, outLogs, null);
+        SdkMetrics.recordMicros(SdkMetrics.Histogram.BATCH_FETCH_TIME, startTime);
+        return batchId;
+    }
+
+    @Override
+    @Nullable
+    public String getRawLogs(@NonNull String group, @NonNull Collection<String> pausedTargetKeys, @IntRange(from = 0) int limit, @NonNull List<RawLog> outLogs) {
+        long startTime = System.nanoTime();
+        String batchId = getLogs(group, pausedTargetKeys, limit, null, outLogs);
+        SdkMetrics.recordMicros(SdkMetrics.Histogram.BATCH_FETCH_TIME, startTime);
+        return batchId;
+    }
+
+    /**
+     * Gets logs either deserialized or as stored, exactly one of the output lists must be non null.
+     *
+     * @param group            The group of the storage for logs.
+     * @param pausedTargetKeys List of target token keys to exclude from the log query.
+     * @param limit            The max number of logs to be returned.
+     * @param outLogs          A list to receive {@link Log} objects, or null.
+     * @param outRawLogs       A list to receive {@link RawLog} objects, or null.
+     * @return An ID for the batch. {@code null} if no logs exist.
+     */
+    @Nullable
+    private String getLogs(@NonNull String group, @NonNull Collection<String> pausedTargetKeys, @IntRange(from = 0) int limit, @Nullable List<Log> outLogs, @Nullable List<RawLog> outRawLogs) {
 
         /* Log. */
-        AppCenterLog.debug(LOG_TAG, "Trying to get " + limit + " logs from the Persistence database for " + group);
+        if (AppCenterLog.isDebugEnabled()) {
+            AppCenterLog.debug(LOG_TAG, "Trying to get " + limit + " logs from the Persistence database for " + group);
+        }
 
-        /* Query database. */
-        SQLiteQueryBuilder builder = SQLiteUtils.newSQLiteQueryBuilder();
-        builder.appendWhere(COLUMN_GROUP + " = ?");
-        List<String> selectionArgs = new ArrayList<>();
-        selectionArgs.add(group);
-        if (!pausedTargetKeys.isEmpty()) {
-            StringBuilder filter = new StringBuilder();
-            for (int i = 0; i < pausedTargetKeys.size(); i++) {
-                filter.append("?,");
+        /* Buffered logs must be visible to the query. */
+        flushWriteBuffer();
+
+        /* Select and claim in the same transaction so that no other write happens in between. */
+        boolean transaction = mDatabaseManager.beginTransaction();
+        try {
+            String batchId = readAndClaimLogs(group, pausedTargetKeys, limit, outLogs, outRawLogs);
+            if (transaction) {
+                mDatabaseManager.setTransactionSuccessful();
             }
-            filter.deleteCharAt(filter.length() - 1);
-            builder.appendWhere(" AND ");
-            builder.appendWhere(COLUMN_TARGET_KEY + " NOT IN (" + filter.toString() + ")");
-            selectionArgs.addAll(pausedTargetKeys);
+            return batchId;
+        } finally {
+            if (transaction) {
+                mDatabaseManager.endTransaction();
+            }
+        }
+    }
+
+    /**
+     * Reads logs and claims them with a new batch identifier, see {@link #getLogs(String, Collection, int, List, List)}.
+     *
+     * @param group            The group of the storage for logs.
+     * @param pausedTargetKeys List of target token keys to exclude from the log query.
+     * @param limit            The max number of logs to be returned.
+     * @param outLogs          A list to receive {@link Log} objects, or null.
+     * @param outRawLogs       A list to receive {@link RawLog} objects, or null.
+     * @return An ID for the batch. {@code null} if no logs exist or they could not be claimed.
+     */
+    @Nullable
+    private String readAndClaimLogs(@NonNull String group, @NonNull Collection<String> pausedTargetKeys, @IntRange(from = 0) int limit, @Nullable List<Log> outLogs, @Nullable List<RawLog> outRawLogs) {
+
+        /*
+         * Batches claimed by a previous process were interrupted while sending:
+         * send them again before any other log, keeping logs of a batch together.
+         */
+        String claimedBatchId = null;
+        if (!mReconciledGroups.contains(group)) {
+            claimedBatchId = getClaimedBatchId(group);
         }
 
-        /* Add logs to output parameter after deserialization if logs are not already sent. */
+        /*
+         * Query database by pages limited to the number of logs we still need.
+         * Pending logs are claimed so the unclaimed selection already skips them, only a resumed
+         * batch has to exclude them by identifier. Logs read by previous pages stay in place until
+         * the end of this call and are skipped with an offset. Another page is only needed
+         * when rows of a full page had to be skipped (corrupted or not deserializable).
+         */
         int count = 0;
         Map<Long, Log> candidates = new LinkedHashMap<>();
+        Map<Long, RawLog> rawCandidates = new LinkedHashMap<>();
         List<Long> failedDbIdentifiers = new ArrayList<>();
         File largePayloadGroupDirectory = getLargePayloadGroupDirectory(group);
-        String[] selectionArgsArray = selectionArgs.toArray(new String[0]);
-        Cursor cursor = null;
-        ContentValues values;
-        try {
-            cursor = mDatabaseManager.getCursor(builder, null, selectionArgsArray, GET_SORT_ORDER);
-        } catch (RuntimeException e) {
-            AppCenterLog.error(LOG_TAG, "Failed to get logs: ", e);
+        List<String> selectionArgs = new ArrayList<>();
+        SQLiteQueryBuilder builder;
+        if (claimedBatchId == null) {
+            builder = buildGetLogsQuery(group, pausedTargetKeys, Collections.<Long>emptySet(), SELECT_UNCLAIMED, null, selectionArgs);
+        } else {
+            builder = buildGetLogsQuery(group, pausedTargetKeys, mPendingDbIdentifiers, SELECT_BATCH, claimedBatchId, selectionArgs);
         }
-        while (cursor != null &&
-                (values = mDatabaseManager.nextValues(cursor)) != null &&
-                count < limit) {
-            Long dbIdentifier = values.getAsLong(PRIMARY_KEY);
+        String[] selectionArgsArray = selectionArgs.toArray(new String[0]);
+        int offset = 0;
+        boolean fullPage;
+        boolean progress;
+        do {
+            int pageLimit = limit - count;
+            int pageRows = 0;
+            progress = false;
+            Cursor cursor = null;
+            ContentValues values;
+            try {
+                cursor = mDatabaseManager.getCursor(builder, GET_COLUMNS, selectionArgsArray, GET_SORT_ORDER, offset + "," + pageLimit);
+            } catch (RuntimeException e) {
+                AppCenterLog.error(LOG_TAG, "Failed to get logs: ", e);
+            }
+            while (cursor != null &&
+                    (values = mDatabaseManager.nextValues(cursor)) != null &&
+                    count < limit) {
+                pageRows++;
+                Long dbIdentifier = values.getAsLong(PRIMARY_KEY);
 
-            /*
-             * When we can't even read the identifier (in this case ContentValues is most likely empty).
-             * That probably means it contained a record larger than 2MB (from a previous SDK version)
-             * and we hit the cursor limit.
-             * Get rid of first non pending log.
-             */
-            if (dbIdentifier == null) {
-                AppCenterLog.error(LOG_TAG, "Empty database record, probably content was larger than 2MB, need to delete as it's now corrupted.");
-                List<Long> corruptedIds = getLogsIds(builder, selectionArgsArray);
-                for (Long corruptedId : corruptedIds) {
-                    if (!mPendingDbIdentifiers.contains(corruptedId) && !candidates.containsKey(corruptedId)) {
-
-                        /* Found the record to delete that we could not read when selecting all fields. */
-                        deleteLog(largePayloadGroupDirectory, corruptedId);
-                        AppCenterLog.error(LOG_TAG, "Empty database corrupted empty record deleted, id=" + corruptedId);
-                        break;
+                /*
+                 * When we can't even read the identifier (in this case ContentValues is most likely empty).
+                 * That probably means it contained a record larger than 2MB (from a previous SDK version)
+                 * and we hit the cursor limit.
+                 * Get rid of first non pending log.
+                 */
+                if (dbIdentifier == null) {
+                    AppCenterLog.error(LOG_TAG, "Empty database record, probably content was larger than 2MB, need to delete as it's now corrupted.");
+                    List<Long> corruptedIds = getLogsIds(builder, selectionArgsArray);
+                    for (Long corruptedId : corruptedIds) {
+                        if (!mPendingDbIdentifiers.contains(corruptedId) && !candidates.containsKey(corruptedId) && !rawCandidates.containsKey(corruptedId)) {
+
+                            /* Found the record to delete that we could not read when selecting all fields. */
+                            deleteLog(largePayloadGroupDirectory, corruptedId);
+                            mLogCounts = null;
+                            progress = true;
+                            offset--;
+                            AppCenterLog.error(LOG_TAG, "Empty database corrupted empty record deleted, id=" + corruptedId);
+                            break;
+                        }
                     }
+                    continue;
                 }
-                continue;
-            }
 
-            /* If the log is already in pending state, then skip. Otherwise put the log to candidate container. */
-            if (!mPendingDbIdentifiers.contains(dbIdentifier)) {
-                try {
+                /* If the log is already in pending state or read, then skip. Otherwise put the log to candidate container. */
+                if (!mPendingDbIdentifiers.contains(dbIdentifier) && !candidates.containsKey(dbIdentifier) && !rawCandidates.containsKey(dbIdentifier) && !failedDbIdentifiers.contains(dbIdentifier)) {
+                    progress = true;
+                    try {
+
+                        /* Read JSON payload, a file is only read as a whole when it is sent as is. */
+                        String logPayload = null;
+                        File largePayloadFile = null;
+                        String databasePayload = values.getAsString(COLUMN_LOG);
+                        Integer codec = values.getAsInteger(COLUMN_CODEC);
+                        if (codec != null) {
+                            logPayload = decompressPayload(codec, values.getAsByteArray(COLUMN_LOG_DATA));
+                        } else if (databasePayload == null) {
+                            File file = getLargePayloadFile(largePayloadGroupDirectory, dbIdentifier);
+                            if (AppCenterLog.isDebugEnabled()) {
+                                AppCenterLog.debug(LOG_TAG, "Read payload file " + file);
+                            }
+                            if (outRawLogs != null) {
+                                logPayload = FileManager.read(file);
+                                if (logPayload == null) {
+                                    throw new JSONException("Log payload is null and not stored as a file.");
+                                }
+                            } else {
+                                largePayloadFile = file;
+                            }
+                            Set<Long> largePayloadDbIdentifiers = mLargePayloadDbIdentifiers.get(group);
+                            if (largePayloadDbIdentifiers == null) {
+                                largePayloadDbIdentifiers = new HashSet<>();
+                                mLargePayloadDbIdentifiers.put(group, largePayloadDbIdentifiers);
+                            }
+                            largePayloadDbIdentifiers.add(dbIdentifier);
+                        } else {
+                            logPayload = databasePayload;
+                        }
+                        String databasePayloadType = values.getAsString(COLUMN_DATA_TYPE);
+
+                        /* Restore target token, embedded in the log or referenced by target key. */
+                        String targetKey = values.getAsString(COLUMN_TARGET_KEY);
+                        String targetToken = values.getAsString(COLUMN_TARGET_TOKEN);
+                        if (targetToken != null) {
+                            CryptoUtils.DecryptedData data = CryptoUtils.getInstance(mContext).decrypt(targetToken);
+                            targetToken = data.getDecryptedData();
+                        } else if (targetKey != null) {
+                            targetToken = getTargetToken(targetKey);
+                            if (targetToken == null) {
+                                throw new JSONException("Target token not found for target key " + targetKey + ".");
+                            }
+                        }
 
-                    /* Deserialize JSON to Log. */
-                    String logPayload;
-                    String databasePayload = values.getAsString(COLUMN_LOG);
-                    if (databasePayload == null) {
-                        File file = getLargePayloadFile(largePayloadGroupDirectory, dbIdentifier);
-                        AppCenterLog.debug(LOG_TAG, "Read payload file " + file);
-                        logPayload = FileManager.read(file);
-                        if (logPayload == null) {
-                            throw new JSONException("Log payload is null and not stored as a file.");
+                        /* Keep the payload as is or deserialize JSON to Log, restoring the device snapshot. */
+                        Long deviceId = values.getAsLong(COLUMN_DEVICE_ID);
+                        if (outRawLogs != null) {
+                            Integer deviceOffset = values.getAsInteger(COLUMN_DEVICE_OFFSET);
+                            if (deviceId != null && deviceOffset != null) {
+                                logPayload = logPayload.substring(0, deviceOffset) + getDeviceProperty(getDeviceJson(deviceId)) + logPayload.substring(deviceOffset);
+                            }
+                            rawCandidates.put(dbIdentifier, new RawLog(dbIdentifier, databasePayloadType, logPayload, targetKey, targetToken));
+                        } else {
+                            Log log;
+                            if (largePayloadFile != null) {
+                                log = deserializeLargePayload(largePayloadFile, databasePayloadType);
+                            } else {
+                                log = getLogSerializer().deserializeLog(logPayload, databasePayloadType);
+                            }
+                            if (deviceId != null) {
+                                log.setDevice(getDevice(deviceId));
+                            }
+                            if (targetToken != null) {
+                                log.addTransmissionTarget(targetToken);
+                            }
+                            candidates.put(dbIdentifier, log);
                         }
-                    } else {
-                        logPayload = databasePayload;
-                    }
-                    String databasePayloadType = values.getAsString(COLUMN_DATA_TYPE);
-                    Log log = getLogSerializer().deserializeLog(logPayload, databasePayloadType);
-
-                    /* Restore target token. */
-                    String targetToken = values.getAsString(COLUMN_TARGET_TOKEN);
-                    if (targetToken != null) {
-                        CryptoUtils.DecryptedData data = CryptoUtils.getInstance(mContext).decrypt(targetToken);
-                        log.addTransmissionTarget(data.getDecryptedData());
-                    }
 
-                    /* Add log to list and count. */
-                    candidates.put(dbIdentifier, log);
-                    count++;
-                } catch (JSONException e) {
+                        /* Count log. */
+                        mPendingTargetKeys.put(dbIdentifier, targetKey);
+                        count++;
+                    } catch (JSONException e) {
 
-                    /* If it is not able to deserialize, delete and get another log. */
-                    AppCenterLog.error(LOG_TAG, "Cannot deserialize a log in the database", e);
+                        /* If it is not able to deserialize, delete and get another log. */
+                        AppCenterLog.error(LOG_TAG, "Cannot deserialize a log in the database", e);
 
-                    /* Put the failed identifier to delete. */
-                    failedDbIdentifiers.add(dbIdentifier);
+                        /* Put the failed identifier to delete. */
+                        failedDbIdentifiers.add(dbIdentifier);
+                        updateLogCount(group, values.getAsString(COLUMN_TARGET_KEY), -1);
+                    }
                 }
             }
-        }
-        if (cursor != null) {
-            try {
-                cursor.close();
-            } catch (RuntimeException ignore) {
+            if (cursor != null) {
+                try {
+                    cursor.close();
+                } catch (RuntimeException ignore) {
+                }
             }
-        }
+            offset += pageRows;
+            fullPage = pageRows >= pageLimit;
+        } while (fullPage && progress && count < limit);
 
         /* Delete any logs that cannot be de-serialized. */
         if (failedDbIdentifiers.size() > 0) {
@@ -533,50 +1385,500 @@ public class DatabasePersistence extends Persistence {
             AppCenterLog.warn(LOG_TAG, "Deleted logs that cannot be deserialized");
         }
 
+        /* The claimed batch could not be read, release what remains of it and look for other logs. */
+        if (count <= 0 && claimedBatchId != null) {
+            AppCenterLog.warn(LOG_TAG, "Could not resume batch " + claimedBatchId + ", releasing its logs.");
+            mDatabaseManager.update(getClaimValues(null), SELECT_BATCH, new String[]{claimedBatchId});
+            return readAndClaimLogs(group, pausedTargetKeys, limit, outLogs, outRawLogs);
+        }
+
         /* No logs found. */
-        if (candidates.size() <= 0) {
+        if (count <= 0) {
             AppCenterLog.debug(LOG_TAG, "No logs found in the Persistence database at the moment");
             return null;
         }
 
         /* Generate an ID. */
-        String id = UUID.randomUUID().toString();
+        String id = IdGenerator.generateId().toString();
+
+        /* Claim the logs in the database so that a restart can resume the batch. */
+        List<Long> pendingDbIdentifiersGroup = new ArrayList<>(candidates.keySet());
+        pendingDbIdentifiersGroup.addAll(rawCandidates.keySet());
+        int claimedCount = mDatabaseManager.update(pendingDbIdentifiersGroup, getClaimValues(id));
+        if (claimedCount != pendingDbIdentifiersGroup.size()) {
+
+            /* Logs were removed in the meantime or the update failed: do not send a batch that cannot be tracked. */
+            AppCenterLog.error(LOG_TAG, "Claimed " + claimedCount + " log(s) out of " + pendingDbIdentifiersGroup.size() + " for batch " + id + ", releasing them.");
+            mDatabaseManager.update(getClaimValues(null), SELECT_BATCH, new String[]{id});
+            for (Long dbIdentifier : pendingDbIdentifiersGroup) {
+                mPendingTargetKeys.remove(dbIdentifier);
+            }
+            return null;
+        }
 
         /* Log. */
-        AppCenterLog.debug(LOG_TAG, "Returning " + candidates.size() + " log(s) with an ID, " + id);
-        AppCenterLog.debug(LOG_TAG, "The SID/ID pairs for returning log(s) is/are:");
-        List<Long> pendingDbIdentifiersGroup = new ArrayList<>();
+        if (AppCenterLog.isDebugEnabled()) {
+            AppCenterLog.debug(LOG_TAG, "Returning " + count + " log(s) with an ID, " + id);
+            AppCenterLog.debug(LOG_TAG, "The SID/ID pairs for returning log(s) is/are:");
+        }
         for (Map.Entry<Long, Log> entry : candidates.entrySet()) {
             Long dbIdentifier = entry.getKey();
 
             /* Change a database identifier to pending state. */
             mPendingDbIdentifiers.add(dbIdentifier);
 
-            /* Store a database identifier to a group of the ID. */
-            pendingDbIdentifiersGroup.add(dbIdentifier);
-
             /* Add to output parameter. */
+            //noinspection ConstantConditions candidates are only filled when outLogs is not null.
             outLogs.add(entry.getValue());
 
             /* Log. */
-            AppCenterLog.debug(LOG_TAG, "\t" + entry.getValue().getSid() + " / " + dbIdentifier);
+            if (AppCenterLog.isDebugEnabled()) {
+                AppCenterLog.debug(LOG_TAG, "\t" + entry.getValue().getSid() + " / " + dbIdentifier);
+            }
+        }
+        for (Map.Entry<Long, RawLog> entry : rawCandidates.entrySet()) {
+            Long dbIdentifier = entry.getKey();
+            mPendingDbIdentifiers.add(dbIdentifier);
+
+            //noinspection ConstantConditions raw candidates are only filled when outRawLogs is not null.
+            outRawLogs.add(entry.getValue());
+
+            /* The session identifier is only in the payload, log type instead. */
+            if (AppCenterLog.isDebugEnabled()) {
+                AppCenterLog.debug(LOG_TAG, "\t" + entry.getValue().getType() + " / " + dbIdentifier);
+            }
         }
 
-        /* Update pending IDs. */
+        /* Store the database identifiers of the batch. */
         mPendingDbIdentifiersGroups.put(group + id, pendingDbIdentifiersGroup);
+        if (claimedBatchId != null) {
+            if (AppCenterLog.isDebugEnabled()) {
+                AppCenterLog.debug(LOG_TAG, "Resumed batch " + claimedBatchId + " as " + id);
+            }
+        }
         return id;
     }
 
+    /**
+     * Deserializes a log stored as a file, parsing the file as it is read.
+     *
+     * @param file The payload file.
+     * @param type The log type.
+     * @return The log.
+     * @throws JSONException If the file is missing or cannot be deserialized.
+     */
+    @NonNull
+    private Log deserializeLargePayload(@NonNull File file, String type) throws JSONException {
+        Reader reader;
+        try {
+            reader = new BufferedReader(new FileReader(file));
+        } catch (FileNotFoundException e) {
+            throw new JSONException("Log payload is null and not stored as a file.");
+        }
+        try {
+            return getLogSerializer().deserializeLog(reader, type);
+        } finally {
+            try {
+                reader.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    /**
+     * Gets a batch identifier claimed by a previous process for the given group.
+     * The group is marked as reconciled if there is none.
+     * Paused target keys are not filtered: if they are all that remains of a batch,
+     * the batch is released by the caller like any batch that cannot be read.
+     *
+     * @param group The group of the storage for logs.
+     * @return A claimed batch identifier or null if none.
+     */
+    @Nullable
+    private String getClaimedBatchId(@NonNull String group) {
+        List<String> selectionArgs = new ArrayList<>();
+        SQLiteQueryBuilder builder = buildGetLogsQuery(group, Collections.<String>emptyList(), mPendingDbIdentifiers, SELECT_CLAIMED, null, selectionArgs);
+        Cursor cursor;
+        try {
+            cursor = mDatabaseManager.getCursor(builder, GET_CLAIMED_COLUMNS, selectionArgs.toArray(new String[0]), null, "1");
+        } catch (RuntimeException e) {
+            AppCenterLog.error(LOG_TAG, "Failed to get claimed logs: ", e);
+            return null;
+        }
+        String batchId = null;
+        if (cursor != null) {
+            ContentValues values = mDatabaseManager.nextValues(cursor);
+            if (values != null) {
+                batchId = values.getAsString(COLUMN_BATCH_ID);
+            }
+            try {
+                cursor.close();
+            } catch (RuntimeException ignore) {
+            }
+        }
+
+        if (batchId == null) {
+            mReconciledGroups.add(group);
+        } else {
+            if (AppCenterLog.isDebugEnabled()) {
+                AppCenterLog.debug(LOG_TAG, "Found batch " + batchId + " claimed by a previous process for " + group);
+            }
+        }
+        return batchId;
+    }
+
+    /**
+     * Gets the identifier of a device snapshot, storing the snapshot if it is new.
+     *
+     * @param device The device snapshot.
+     * @return The device snapshot identifier, or null if it could not be stored.
+     * @throws JSONException If the device cannot be serialized.
+     */
+    @Nullable
+    private Long getDeviceId(@NonNull Device device) throws JSONException {
+        if (device == mLastDevice) {
+            return mLastDeviceId;
+        }
+        collectDevices();
+        String deviceJson = serializeDevice(device);
+        String hash = HashUtils.sha256(deviceJson);
+        Long deviceId = mDeviceIds.get(hash);
+        if (deviceId == null) {
+            deviceId = findDeviceId(hash);
+        }
+        if (deviceId == null) {
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_DEVICE_HASH, hash);
+            values.put(COLUMN_DEVICE, deviceJson);
+            long id = mDatabaseManager.put(DEVICES_TABLE, values);
+            if (id == -1) {
+
+                /* Embed the device in the log as a fallback. */
+                return null;
+            }
+            deviceId = id;
+            if (AppCenterLog.isDebugEnabled()) {
+                AppCenterLog.debug(LOG_TAG, "Stored a device snapshot with databaseId=" + deviceId);
+            }
+        }
+        mDeviceIds.put(hash, deviceId);
+        mDeviceJsons.put(deviceId, deviceJson);
+        mLastDevice = device;
+        mLastDeviceId = deviceId;
+        return deviceId;
+    }
+
+    /**
+     * Looks up a stored device snapshot by content hash.
+     *
+     * @param hash The content hash.
+     * @return The device snapshot identifier, or null if not found.
+     */
+    @Nullable
+    private Long findDeviceId(@NonNull String hash) {
+        SQLiteQueryBuilder builder = SQLiteUtils.newSQLiteQueryBuilder();
+        builder.appendWhere(COLUMN_DEVICE_HASH + " = ?");
+        ContentValues values = getDeviceValues(builder, new String[]{hash});
+        return values == null ? null : values.getAsLong(PRIMARY_KEY);
+    }
+
+    /**
+     * Gets the JSON of a stored device snapshot.
+     *
+     * @param deviceId The device snapshot identifier.
+     * @return The device JSON.
+     * @throws JSONException If the device snapshot is missing.
+     */
+    @NonNull
+    private String getDeviceJson(long deviceId) throws JSONException {
+        String deviceJson = mDeviceJsons.get(deviceId);
+        if (deviceJson != null) {
+            return deviceJson;
+        }
+        SQLiteQueryBuilder builder = SQLiteUtils.newSQLiteQueryBuilder();
+        builder.appendWhere(PRIMARY_KEY + " = ?");
+        ContentValues values = getDeviceValues(builder, new String[]{String.valueOf(deviceId)});
+        deviceJson = values == null ? null : values.getAsString(COLUMN_DEVICE);
+        if (deviceJson == null) {
+            throw new JSONException("Device snapshot " + deviceId + " not found.");
+        }
+        mDeviceJsons.put(deviceId, deviceJson);
+        return deviceJson;
+    }
+
+    /**
+     * Gets the shared instance of a stored device snapshot.
+     *
+     * @param deviceId The device snapshot identifier.
+     * @return The device.
+     * @throws JSONException If the device snapshot is missing or cannot be deserialized.
+     */
+    @NonNull
+    private Device getDevice(long deviceId) throws JSONException {
+        Device device = mDevices.get(deviceId);
+        if (device == null) {
+            device = new Device();
+            device.read(new JSONObject(getDeviceJson(deviceId)));
+            mDevices.put(deviceId, device);
+        }
+        return device;
+    }
+
+    /**
+     * Reads the first device snapshot matching a query.
+     *
+     * @param builder       The query builder.
+     * @param selectionArgs The selection arguments.
+     * @return The device snapshot values, or null if not found.
+     */
+    @Nullable
+    private ContentValues getDeviceValues(@NonNull SQLiteQueryBuilder builder, @NonNull String[] selectionArgs) {
+        Cursor cursor;
+        try {
+            cursor = mDatabaseManager.getCursor(DEVICES_TABLE, builder, GET_DEVICE_COLUMNS, selectionArgs, null);
+        } catch (RuntimeException e) {
+            AppCenterLog.error(LOG_TAG, "Failed to get device snapshot: ", e);
+            return null;
+        }
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            return mDatabaseManager.nextValues(cursor);
+        } finally {
+            try {
+                cursor.close();
+            } catch (RuntimeException ignore) {
+            }
+        }
+    }
+
+    /**
+     * Deletes device snapshots not referenced by any log, once per process before the first snapshot is used.
+     */
+    private void collectDevices() {
+        if (!mDevicesCollected) {
+            mDevicesCollected = true;
+            flushWriteBuffer();
+            int deletedCount = mDatabaseManager.delete(DEVICES_TABLE, SELECT_UNREFERENCED_DEVICES, null);
+            if (AppCenterLog.isDebugEnabled()) {
+                AppCenterLog.debug(LOG_TAG, "Deleted " + deletedCount + " unreferenced device snapshot(s).");
+            }
+        }
+    }
+
+    /**
+     * Serializes a device snapshot to JSON.
+     *
+     * @param device The device.
+     * @return The JSON string.
+     * @throws JSONException If the device cannot be serialized.
+     */
+    @NonNull
+    private static String serializeDevice(@NonNull Device device) throws JSONException {
+        JSONStringer writer = new JSONStringer();
+        writer.object();
+        device.write(writer);
+        writer.endObject();
+        return writer.toString();
+    }
+
+    /**
+     * Gets the device property as serialized in a log payload, following another property.
+     *
+     * @param deviceJson The device JSON.
+     * @return The device property JSON.
+     */
+    @NonNull
+    private static String getDeviceProperty(@NonNull String deviceJson) {
+        return ",\"device\":" + deviceJson;
+    }
+
+    /**
+     * Stores a target token once per target key, encrypted, so that logs can reference it by target key.
+     *
+     * @param targetKey   The target key.
+     * @param targetToken The target token in clear text.
+     * @return null if the log can reference the stored token, otherwise the encrypted token to embed in the log.
+     */
+    @Nullable
+    private String putTargetToken(@NonNull String targetKey, @NonNull String targetToken) {
+        String storedTargetToken = getTargetToken(targetKey);
+        if (storedTargetToken == null) {
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_TARGET_KEY, targetKey);
+            values.put(COLUMN_TARGET_TOKEN, CryptoUtils.getInstance(mContext).encrypt(targetToken));
+            if (mDatabaseManager.put(TARGET_TOKENS_TABLE, values) == -1) {
+
+                /* Embed the token in the log as a fallback. */
+                return values.getAsString(COLUMN_TARGET_TOKEN);
+            }
+            if (AppCenterLog.isDebugEnabled()) {
+                AppCenterLog.debug(LOG_TAG, "Stored target token for target key " + targetKey);
+            }
+            mTargetTokens.put(targetKey, targetToken);
+            return null;
+        }
+
+        /* Another token with the same target key can only be embedded in the log. */
+        if (!storedTargetToken.equals(targetToken)) {
+            return CryptoUtils.getInstance(mContext).encrypt(targetToken);
+        }
+        return null;
+    }
+
+    /**
+     * Gets a stored target token in clear text, decrypting it only if not already cached.
+     *
+     * @param targetKey The target key.
+     * @return The target token, or null if not stored.
+     */
+    @Nullable
+    private String getTargetToken(@NonNull String targetKey) {
+        String targetToken = mTargetTokens.get(targetKey);
+        if (targetToken != null) {
+            return targetToken;
+        }
+        collectTargetTokens();
+        String[] selectionArgs = new String[]{targetKey};
+        SQLiteQueryBuilder builder = SQLiteUtils.newSQLiteQueryBuilder();
+        builder.appendWhere(SELECT_TARGET_KEY);
+        Cursor cursor;
+        try {
+            cursor = mDatabaseManager.getCursor(TARGET_TOKENS_TABLE, builder, GET_TARGET_TOKEN_COLUMNS, selectionArgs, null);
+        } catch (RuntimeException e) {
+            AppCenterLog.error(LOG_TAG, "Failed to get target token: ", e);
+            return null;
+        }
+        if (cursor == null) {
+            return null;
+        }
+        ContentValues values;
+        try {
+            values = mDatabaseManager.nextValues(cursor);
+        } finally {
+            try {
+                cursor.close();
+            } catch (RuntimeException ignore) {
+            }
+        }
+        if (values == null) {
+            return null;
+        }
+        CryptoUtils.DecryptedData data = CryptoUtils.getInstance(mContext).decrypt(values.getAsString(COLUMN_TARGET_TOKEN));
+        targetToken = data.getDecryptedData();
+        if (targetToken == null) {
+            return null;
+        }
+
+        /* Store the token again if it was encrypted with an expired key. */
+        if (data.getNewEncryptedData() != null) {
+            ContentValues newValues = new ContentValues();
+            newValues.put(COLUMN_TARGET_TOKEN, data.getNewEncryptedData());
+            mDatabaseManager.update(TARGET_TOKENS_TABLE, newValues, SELECT_TARGET_KEY, selectionArgs);
+        }
+        mTargetTokens.put(targetKey, targetToken);
+        return targetToken;
+    }
+
+    /**
+     * Deletes target tokens not referenced by any log, once per process before the first token is used.
+     */
+    private void collectTargetTokens() {
+        if (!mTargetTokensCollected) {
+            mTargetTokensCollected = true;
+            flushWriteBuffer();
+            int deletedCount = mDatabaseManager.delete(TARGET_TOKENS_TABLE, SELECT_UNREFERENCED_TARGET_TOKENS, null);
+            if (AppCenterLog.isDebugEnabled()) {
+                AppCenterLog.debug(LOG_TAG, "Deleted " + deletedCount + " unreferenced target token(s).");
+            }
+        }
+    }
+
+    @Override
+    public void clearTargetTokenCache() {
+        mTargetTokens.clear();
+        AppCenterLog.debug(LOG_TAG, "Cleared cached target tokens");
+    }
+
+    /**
+     * Gets values to claim logs by a batch or to release them.
+     *
+     * @param batchId The batch identifier or null to release logs.
+     * @return The values to update.
+     */
+    private static ContentValues getClaimValues(@Nullable String batchId) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_BATCH_ID, batchId);
+        return values;
+    }
+
     @Override
     public void clearPendingLogState() {
         mPendingDbIdentifiers.clear();
         mPendingDbIdentifiersGroups.clear();
+        mPendingTargetKeys.clear();
+
+        /* Released logs can be sent in any other batch. */
+        mDatabaseManager.update(getClaimValues(null), SELECT_CLAIMED, null);
         AppCenterLog.debug(LOG_TAG, "Cleared pending log states");
     }
 
     @Override
     public void close() {
+        flushWriteBuffer();
+
+        /* Keep the last known size instead of opening the database again to compute it. */
+        SdkMetrics.setSupplier(SdkMetrics.Gauge.DATABASE_SIZE, null);
         mDatabaseManager.close();
+        if (mPayloadCodec != null) {
+            mPayloadCodec.close();
+            mPayloadCodec = null;
+        }
+    }
+
+    /**
+     * Build the query selecting logs of a group that are not paused nor excluded.
+     *
+     * @param group                 The group of the logs.
+     * @param pausedTargetKeys      Target keys of the logs to skip.
+     * @param excludedDbIdentifiers Database identifiers of the logs to skip.
+     * @param batchSelection        Selection on the batch identifier column.
+     * @param batchId               Selection argument for the batch identifier, if any.
+     * @param outSelectionArgs      Selection arguments matching the query, filled by this method.
+     * @return The query builder.
+     */
+    private static SQLiteQueryBuilder buildGetLogsQuery(@NonNull String group, @NonNull Collection<String> pausedTargetKeys, @NonNull Collection<Long> excludedDbIdentifiers, @NonNull String batchSelection, @Nullable String batchId, @NonNull List<String> outSelectionArgs) {
+        SQLiteQueryBuilder builder = SQLiteUtils.newSQLiteQueryBuilder();
+        builder.appendWhere(COLUMN_GROUP + " = ?");
+        outSelectionArgs.add(group);
+        if (!pausedTargetKeys.isEmpty()) {
+            StringBuilder filter = new StringBuilder();
+            for (int i = 0; i < pausedTargetKeys.size(); i++) {
+                filter.append("?,");
+            }
+            filter.deleteCharAt(filter.length() - 1);
+            builder.appendWhere(" AND ");
+            builder.appendWhere(COLUMN_TARGET_KEY + " NOT IN (" + filter.toString() + ")");
+            outSelectionArgs.addAll(pausedTargetKeys);
+        }
+        builder.appendWhere(" AND ");
+        builder.appendWhere(batchSelection);
+        if (batchId != null) {
+            outSelectionArgs.add(batchId);
+        }
+
+        /* Identifiers are numbers, inline them to not hit the SQL variables limit. */
+        if (!excludedDbIdentifiers.isEmpty()) {
+            StringBuilder filter = new StringBuilder();
+            for (Long id : excludedDbIdentifiers) {
+                filter.append(id).append(',');
+            }
+            filter.deleteCharAt(filter.length() - 1);
+            builder.appendWhere(" AND ");
+            builder.appendWhere(PRIMARY_KEY + " NOT IN (" + filter.toString() + ")");
+        }
+        return builder;
     }
 
     private List<Long> getLogsIds(SQLiteQueryBuilder builder, String[] selectionArgs) {
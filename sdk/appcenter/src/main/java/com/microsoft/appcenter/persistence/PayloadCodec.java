@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.persistence;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses log payloads stored in the database with deflate and a preset dictionary of the
+ * JSON fragments the SDK serializes in every log, so that even small payloads compress well.
+ * Not thread safe, deflater and inflater are reused between calls.
+ */
+class PayloadCodec {
+
+    /**
+     * Codec marker of payloads compressed with zlib and {@link #DICTIONARY}.
+     * Rows without marker store the payload as JSON text.
+     */
+    static final int CODEC_DEFLATE = 1;
+
+    /**
+     * Preset dictionary, fragments most likely to be repeated are at the end to be closer to the data.
+     * It must never change as stored payloads can only be decompressed with the exact same bytes:
+     * use a new codec marker for another dictionary.
+     */
+    @VisibleForTesting
+    static final byte[] DICTIONARY = getBytes("" +
+            "\"wrapperSdkName\":\"\",\"wrapperSdkVersion\":\"\",\"wrapperRuntimeVersion\":\"\"," +
+            "\"liveUpdateReleaseLabel\":\"\",\"liveUpdateDeploymentKey\":\"\",\"liveUpdatePackageHash\":\"\"," +
+            "\"minidumpFilePath\":\"\",\"innerExceptions\":[{\"parentProcessId\":,\"parentProcessName\":\"\"," +
+            "\"errorThreadId\":,\"errorThreadName\":\"\",\"errorId\":\"\",\"contentType\":\"\",\"fileName\":\"\"," +
+            "\"threads\":[{\"frames\":[{\"className\":\"\",\"methodName\":\"\",\"lineNumber\":,\"fileName\":\"\"}]}]," +
+            "\"exception\":{\"type\":\"java.lang.\",\"message\":\"\",\"stackTrace\":\"\"," +
+            "\"fatal\":false,\"appLaunchTimestamp\":\"\",\"architecture\":\"\",\"processId\":,\"processName\":\"\"," +
+            "{\"type\":\"startService\",\"services\":[\"Analytics\",\"Crashes\",\"Distribute\"]}" +
+            "{\"type\":\"startSession\",\"type\":\"handledError\",\"type\":\"managedError\",\"type\":\"errorAttachment\"," +
+            "\"type\":\"page\",\"type\":\"event\",\"properties\":{\"\":\"\"}," +
+            "\"protocol\":{\"ticketKeys\":[\"\"],\"devMake\":\"\",\"devModel\":\"\"},\"net\":{\"provider\":\"\"}," +
+            "\"os\":{\"name\":\"Android\",\"ver\":\"\"},\"app\":{\"id\":\"\",\"ver\":\"\",\"name\":\"\",\"locale\":\"en-US\",\"userId\":\"\"}," +
+            "\"user\":{\"localId\":\"c:\",\"locale\":\"\"},\"device\":{\"localId\":\"a:\"},\"loc\":{\"tz\":\"+00:00\"}," +
+            "\"sdk\":{\"libVer\":\"appcenter.android-\",\"epoch\":\"\",\"seq\":,\"installId\":\"\"}," +
+            "\"metadata\":{\"f\":{\"\":}},\"baseType\":\"\",\"baseData\":{},\"data\":{\"\":\"\"}}," +
+            "{\"ver\":\"3.0\",\"name\":\"\",\"time\":\"\",\"popSample\":100,\"iKey\":\"o:\",\"flags\":,\"cV\":\"\",\"ext\":{" +
+            "\"sdkName\":\"appcenter.android\",\"sdkVersion\":\"\",\"model\":\"\",\"oemName\":\"\",\"osName\":\"Android\"," +
+            "\"osVersion\":\"\",\"osBuild\":\"\",\"osApiLevel\":,\"locale\":\"en_US\",\"timeZoneOffset\":,\"screenSize\":\"\"," +
+            "\"appVersion\":\"\",\"carrierName\":\"\",\"carrierCountry\":\"\",\"appBuild\":\"\",\"appNamespace\":\"\"}" +
+            "\"distributionGroupId\":\"\",\"userId\":\"\",\"typedProperties\":[{\"type\":\"boolean\",\"name\":\"\",\"value\":true}," +
+            "{\"type\":\"dateTime\",\"name\":\"\",\"value\":\"\"},{\"type\":\"double\",\"name\":\"\",\"value\":}," +
+            "{\"type\":\"long\",\"name\":\"\",\"value\":},{\"type\":\"string\",\"name\":\"\",\"value\":\"\"}]," +
+            "{\"type\":\"event\",\"timestamp\":\"\",\"sid\":\"\",\"id\":\"\",\"name\":\"\",\"properties\":{\"");
+
+    /**
+     * Reused compressor.
+     */
+    private final Deflater mDeflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+
+    /**
+     * Reused decompressor.
+     */
+    private final Inflater mInflater = new Inflater();
+
+    /**
+     * Buffer to read compressor and decompressor output.
+     */
+    private final byte[] mBuffer = new byte[8192];
+
+    /**
+     * Encodes a payload in UTF-8.
+     *
+     * @param value payload.
+     * @return UTF-8 bytes.
+     */
+    @NonNull
+    static byte[] getBytes(@NonNull String value) {
+        try {
+
+            //noinspection CharsetObjectCanBeUsed min API level 19 required to fix this warning.
+            return value.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+
+            /* Never happens as every device has UTF-8 support. */
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Compresses a payload.
+     *
+     * @param payload UTF-8 encoded payload.
+     * @return compressed payload.
+     */
+    @NonNull
+    byte[] compress(@NonNull byte[] payload) {
+        mDeflater.reset();
+        mDeflater.setDictionary(DICTIONARY);
+        mDeflater.setInput(payload);
+        mDeflater.finish();
+        ByteArrayOutputStream output = new ByteArrayOutputStream(payload.length / 4 + 16);
+        while (!mDeflater.finished()) {
+            int length = mDeflater.deflate(mBuffer);
+            output.write(mBuffer, 0, length);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Decompresses a payload.
+     *
+     * @param data compressed payload.
+     * @return payload.
+     * @throws DataFormatException if data is corrupted or truncated.
+     */
+    @NonNull
+    String decompress(@NonNull byte[] data) throws DataFormatException {
+        mInflater.reset();
+        mInflater.setInput(data);
+        ByteArrayOutputStream output = new ByteArrayOutputStream(data.length * 4);
+        while (!mInflater.finished()) {
+            int length = mInflater.inflate(mBuffer);
+            if (length > 0) {
+                output.write(mBuffer, 0, length);
+            } else if (mInflater.needsDictionary()) {
+                mInflater.setDictionary(DICTIONARY);
+            } else if (mInflater.needsInput() && !mInflater.finished()) {
+                throw new DataFormatException("Compressed payload is truncated.");
+            }
+        }
+        try {
+            return output.toString("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+
+            /* Never happens as every device has UTF-8 support. */
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Releases native resources, the codec must not be used afterwards.
+     */
+    void close() {
+        mDeflater.end();
+        mInflater.end();
+    }
+}
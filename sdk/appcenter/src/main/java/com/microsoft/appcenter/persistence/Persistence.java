@@ -11,6 +11,7 @@ import androidx.annotation.Nullable;
 
 import com.microsoft.appcenter.Flags;
 import com.microsoft.appcenter.ingestion.models.Log;
+import com.microsoft.appcenter.ingestion.models.RawLog;
 import com.microsoft.appcenter.ingestion.models.json.LogSerializer;
 
 import java.io.Closeable;
@@ -34,12 +35,53 @@ public abstract class Persistence implements Closeable {
      * @param log   The log to be placed in the storage.
      * @param group The group of the storage for the log.
      * @param flags The persistence flags.
-     * @return Log identifier from persistence after saving.
+     * @return Log identifier from persistence after saving, 0 if the log is only buffered in memory
+     * (see {@link #setWriteBufferSize(int)}).
      * @throws PersistenceException Exception will be thrown if Persistence cannot write a log to the storage.
      */
     public abstract long putLog(@NonNull Log log, @NonNull String group,
                                 @IntRange(from = Flags.NORMAL, to = Flags.CRITICAL) int flags) throws PersistenceException;
 
+    /**
+     * Enables write-behind mode: logs are buffered in memory and written to the storage in a single
+     * transaction when the buffer is full, when {@link #flush()} is called, or before any read.
+     * Logs with {@link Flags#CRITICAL} persistence flag flush the buffer immediately.
+     *
+     * @param maxBufferedLogs maximum number of logs to buffer, 0 to write every log immediately (default).
+     */
+    public abstract void setWriteBufferSize(@IntRange(from = 0) int maxBufferedLogs);
+
+    /**
+     * Writes logs buffered in memory to the storage, if any.
+     */
+    public abstract void flush();
+
+    /**
+     * Enables or disables storage settings tuned for throughput (such as write-ahead logging and
+     * cached statements) instead of the default ones.
+     *
+     * @param enabled true to use tuned storage settings.
+     */
+    public abstract void setTunedStorageEnabled(boolean enabled);
+
+    /**
+     * Enables or disables compression of new logs in the storage. Logs already stored as JSON text
+     * are not rewritten by this call, see {@link #compressStoredLogs(int)}.
+     * Compressed logs remain readable when disabled.
+     *
+     * @param enabled true to compress stored logs.
+     */
+    public abstract void setCompressedStorageEnabled(boolean enabled);
+
+    /**
+     * Compresses the next logs stored as JSON text that are not claimed by a batch, if compression is enabled.
+     * Claimed logs are left as is since they are deleted once sent.
+     *
+     * @param limit The max number of logs to check.
+     * @return true if more logs may remain to be compressed, false otherwise.
+     */
+    public abstract boolean compressStoredLogs(@IntRange(from = 1) int limit);
+
     /**
      * Deletes a log with the give ID from the {@code group}.
      *
@@ -48,6 +90,14 @@ public abstract class Persistence implements Closeable {
      */
     public abstract void deleteLogs(@NonNull String group, @NonNull String batchId);
 
+    /**
+     * Makes logs with the given ID available to other batches again, without deleting them.
+     *
+     * @param group   The group of the storage for logs.
+     * @param batchId The ID for a set of logs.
+     */
+    public abstract void releaseLogs(@NonNull String group, @NonNull String batchId);
+
     /**
      * Deletes all logs for the given {@code group}.
      *
@@ -75,11 +125,29 @@ public abstract class Persistence implements Closeable {
     @Nullable
     public abstract String getLogs(@NonNull String group, @NonNull Collection<String> pausedTargetKeys, @IntRange(from = 0) int limit, @NonNull List<Log> outLogs);
 
+    /**
+     * Gets an array of logs for the given {@code group} without deserializing them.
+     * The returned batch is tracked exactly like one returned by {@link #getLogs(String, Collection, int, List)}.
+     *
+     * @param group            The group of the storage for logs.
+     * @param pausedTargetKeys List of target token keys to exclude from the log query.
+     * @param limit            The max number of logs to be returned.
+     * @param outLogs          A list to receive {@link RawLog} objects.
+     * @return An ID for {@code outLogs}. {@code null} if no logs exist.
+     */
+    @Nullable
+    public abstract String getRawLogs(@NonNull String group, @NonNull Collection<String> pausedTargetKeys, @IntRange(from = 0) int limit, @NonNull List<RawLog> outLogs);
+
     /**
      * Clears all associations between logs of the {@code group} and ids returned by {@link #getLogs(String, Collection, int, List)}}.
      */
     public abstract void clearPendingLogState();
 
+    /**
+     * Clears target tokens kept in memory in clear text, they are read again from the storage when needed.
+     */
+    public abstract void clearTargetTokenCache();
+
     /**
      * Gets a {@link LogSerializer}.
      *
@@ -82,6 +82,24 @@ public class AppCenterLog {
         sLogLevel = logLevel;
     }
 
+    /**
+     * Check if messages with level VERBOSE are logged. Use it to avoid building messages that would be filtered out.
+     *
+     * @return true if verbose logs are enabled.
+     */
+    public static boolean isVerboseEnabled() {
+        return sLogLevel <= Log.VERBOSE;
+    }
+
+    /**
+     * Check if messages with level DEBUG are logged. Use it to avoid building messages that would be filtered out.
+     *
+     * @return true if debug logs are enabled.
+     */
+    public static boolean isDebugEnabled() {
+        return sLogLevel <= Log.DEBUG;
+    }
+
     /**
      * Log a message with level VERBOSE
      *
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.utils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generate time-ordered identifiers (UUID version 7) for logs and batches.
+ * Unlike {@link UUID#randomUUID()}, generating an identifier does not lock the process-wide
+ * {@link SecureRandom}: it is only used once to seed a pseudo random generator per thread.
+ * Identifiers are not suitable for secrets.
+ */
+public class IdGenerator {
+
+    /**
+     * Increment between per-thread seeds, as in SplitMix64.
+     */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    /**
+     * Counter bits in the 12 bits following the version, incremented for identifiers generated
+     * in the same millisecond so that they stay ordered.
+     */
+    private static final int COUNTER_MASK = 0xfff;
+
+    /**
+     * Counter is initialized randomly in its lower half, to leave room for increments.
+     */
+    private static final int COUNTER_INITIAL_MASK = 0x7ff;
+
+    /**
+     * Seed of the next thread.
+     */
+    private static final AtomicLong sNextSeed = new AtomicLong(new SecureRandom().nextLong());
+
+    /**
+     * Generator state of each thread.
+     */
+    private static final ThreadLocal<State> sState = new ThreadLocal<State>() {
+
+        @Override
+        protected State initialValue() {
+            return new State(mix(sNextSeed.getAndAdd(GOLDEN_GAMMA)));
+        }
+    };
+
+    @VisibleForTesting
+    IdGenerator() {
+    }
+
+    /**
+     * Generate an identifier.
+     *
+     * @return new identifier.
+     */
+    @NonNull
+    public static UUID generateId() {
+        return sState.get().next(System.currentTimeMillis());
+    }
+
+    /**
+     * SplitMix64 finalizer.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Generator state of a thread.
+     */
+    @VisibleForTesting
+    static class State {
+
+        /**
+         * Random generator state.
+         */
+        private long mSeed;
+
+        /**
+         * Timestamp of the last identifier.
+         */
+        private long mLastTime = Long.MIN_VALUE;
+
+        /**
+         * Counter of the last identifier.
+         */
+        private int mCounter;
+
+        State(long seed) {
+            mSeed = seed;
+        }
+
+        private long nextLong() {
+            mSeed += GOLDEN_GAMMA;
+            return mix(mSeed);
+        }
+
+        /**
+         * Generate an identifier.
+         *
+         * @param now current time in milliseconds.
+         * @return new identifier, greater than the previous one of this state even if the clock went back.
+         */
+        UUID next(long now) {
+            long random = nextLong();
+            if (now > mLastTime) {
+                mLastTime = now;
+                mCounter = (int) nextLong() & COUNTER_INITIAL_MASK;
+            } else if (mCounter < COUNTER_MASK) {
+
+                /* Same millisecond or clock went back: keep last timestamp. */
+                mCounter++;
+            } else {
+
+                /* Counter overflow: borrow next millisecond to stay ordered. */
+                mLastTime++;
+                mCounter = (int) nextLong() & COUNTER_INITIAL_MASK;
+            }
+
+            /* 48 bits timestamp, 4 bits version, 12 bits counter. */
+            long mostSigBits = (mLastTime << 16) | 0x7000L | mCounter;
+
+            /* 2 bits variant, 62 random bits. */
+            long leastSigBits = (random & 0x3fffffffffffffffL) | 0x8000000000000000L;
+            return new UUID(mostSigBits, leastSigBits);
+        }
+    }
+}
@@ -55,6 +55,11 @@ public class NetworkStateHelper implements Closeable {
      */
     private final AtomicBoolean mConnected = new AtomicBoolean();
 
+    /**
+     * Whether the active network is metered, updated on network callbacks.
+     */
+    private final AtomicBoolean mMetered = new AtomicBoolean(true);
+
     /**
      * Init.
      *
@@ -108,8 +113,14 @@ public class NetworkStateHelper implements Closeable {
                 public void onLost(Network network) {
                     onNetworkLost(network);
                 }
+
+                @Override
+                public void onCapabilitiesChanged(Network network, NetworkCapabilities networkCapabilities) {
+                    updateNetworkMetered();
+                }
             };
             mConnectivityManager.registerNetworkCallback(request.build(), mNetworkCallback);
+            updateNetworkMetered();
         } catch (RuntimeException e) {
 
             /*
@@ -132,6 +143,30 @@ public class NetworkStateHelper implements Closeable {
         return mConnected.get() || isAnyNetworkConnected();
     }
 
+    /**
+     * Check whether the active network is metered, such as cellular networks usually are.
+     * The value is cached and updated when the network changes, so this is cheap to call.
+     *
+     * @return true if metered or unknown, false if unmetered (such as Wi-Fi usually is).
+     */
+    public boolean isNetworkMetered() {
+        return mMetered.get();
+    }
+
+    /**
+     * Query whether the active network is metered and cache the result.
+     */
+    private void updateNetworkMetered() {
+        boolean metered;
+        try {
+            metered = mConnectivityManager.isActiveNetworkMetered();
+        } catch (RuntimeException e) {
+            AppCenterLog.error(LOG_TAG, "Cannot access network state information.", e);
+            metered = true;
+        }
+        mMetered.set(metered);
+    }
+
     /**
      * Check if any network is connected.
      *
@@ -156,6 +191,7 @@ public class NetworkStateHelper implements Closeable {
      */
     private void onNetworkAvailable(Network network) {
         AppCenterLog.debug(LOG_TAG, "Network " + network + " is available.");
+        updateNetworkMetered();
         if (mConnected.compareAndSet(false, true)) {
             notifyNetworkStateUpdated(true);
         }
@@ -166,6 +202,7 @@ public class NetworkStateHelper implements Closeable {
      */
     private void onNetworkLost(Network network) {
         AppCenterLog.debug(LOG_TAG, "Network " + network + " is lost.");
+        updateNetworkMetered();
         Network[] networks = mConnectivityManager.getAllNetworks();
         boolean noNetwork = networks == null || networks.length == 0 ||
                 Arrays.equals(networks, new Network[]{network});
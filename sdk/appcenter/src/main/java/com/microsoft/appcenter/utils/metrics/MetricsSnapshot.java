@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.utils.metrics;
+
+import androidx.annotation.NonNull;
+
+import static com.microsoft.appcenter.utils.metrics.SdkMetrics.BUCKET_COUNT;
+
+/**
+ * Values of {@link SdkMetrics} at a point in time.
+ */
+public class MetricsSnapshot {
+
+    private final long[] mCounters;
+
+    private final long[] mGauges;
+
+    private final long[] mHistogramBuckets;
+
+    private final long[] mHistogramSums;
+
+    MetricsSnapshot(long[] counters, long[] gauges, long[] histogramBuckets, long[] histogramSums) {
+        mCounters = counters;
+        mGauges = gauges;
+        mHistogramBuckets = histogramBuckets;
+        mHistogramSums = histogramSums;
+    }
+
+    /**
+     * Get a counter value.
+     *
+     * @param counter the counter.
+     * @return the value.
+     */
+    public long getCounter(@NonNull SdkMetrics.Counter counter) {
+        return mCounters[counter.ordinal()];
+    }
+
+    /**
+     * Get a gauge value.
+     *
+     * @param gauge the gauge.
+     * @return the last known value, 0 if unknown.
+     */
+    public long getGauge(@NonNull SdkMetrics.Gauge gauge) {
+        return mGauges[gauge.ordinal()];
+    }
+
+    /**
+     * Get number of values recorded in a histogram.
+     *
+     * @param histogram the histogram.
+     * @return number of values.
+     */
+    public long getCount(@NonNull SdkMetrics.Histogram histogram) {
+        long count = 0;
+        int offset = histogram.ordinal() * BUCKET_COUNT;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += mHistogramBuckets[offset + i];
+        }
+        return count;
+    }
+
+    /**
+     * Get sum of values recorded in a histogram.
+     *
+     * @param histogram the histogram.
+     * @return sum of values.
+     */
+    public long getSum(@NonNull SdkMetrics.Histogram histogram) {
+        return mHistogramSums[histogram.ordinal()];
+    }
+
+    /**
+     * Get mean of values recorded in a histogram.
+     *
+     * @param histogram the histogram.
+     * @return mean, 0 if no value was recorded.
+     */
+    public double getMean(@NonNull SdkMetrics.Histogram histogram) {
+        long count = getCount(histogram);
+        return count == 0 ? 0 : (double) getSum(histogram) / count;
+    }
+
+    /**
+     * Get an approximate percentile of values recorded in a histogram.
+     *
+     * @param histogram  the histogram.
+     * @param percentile the percentile, between 0 and 100.
+     * @return upper bound of the bucket holding the percentile, at most twice the exact value. 0 if no value was recorded.
+     */
+    public long getPercentile(@NonNull SdkMetrics.Histogram histogram, double percentile) {
+        long count = getCount(histogram);
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        int offset = histogram.ordinal() * BUCKET_COUNT;
+        long seen = 0;
+        int bucket = 0;
+        for (; bucket < BUCKET_COUNT - 1; bucket++) {
+            seen += mHistogramBuckets[offset + bucket];
+            if (seen >= rank) {
+                break;
+            }
+        }
+        return bucket == BUCKET_COUNT - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("MetricsSnapshot{");
+        for (SdkMetrics.Counter counter : SdkMetrics.Counter.values()) {
+            builder.append(counter).append('=').append(getCounter(counter)).append(", ");
+        }
+        for (SdkMetrics.Gauge gauge : SdkMetrics.Gauge.values()) {
+            builder.append(gauge).append('=').append(getGauge(gauge)).append(", ");
+        }
+        for (SdkMetrics.Histogram histogram : SdkMetrics.Histogram.values()) {
+            builder.append(histogram).append("={count=").append(getCount(histogram))
+                    .append(", mean=").append(getMean(histogram))
+                    .append(", p50=").append(getPercentile(histogram, 50))
+                    .append(", p99=").append(getPercentile(histogram, 99))
+                    .append("}, ");
+        }
+        builder.setLength(builder.length() - 2);
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.utils.metrics;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Counters, gauges and histograms describing what the SDK does on the device, to monitor its overhead.
+ * Updates are lock-free and cost a few atomic operations, values are kept in memory for the process lifetime.
+ * Histograms count values in power of 2 buckets, so percentiles are approximated by bucket upper bounds.
+ */
+public class SdkMetrics {
+
+    /**
+     * Counters.
+     */
+    public enum Counter {
+
+        /**
+         * Logs passed to the channel by services.
+         */
+        LOGS_ENQUEUED,
+
+        /**
+         * Logs stored in persistence.
+         */
+        LOGS_PERSISTED,
+
+        /**
+         * Logs deleted to make room for new ones when storage is full.
+         */
+        LOGS_EVICTED,
+
+        /**
+         * Logs sent successfully.
+         */
+        LOGS_SENT,
+
+        /**
+         * Batches sent successfully.
+         */
+        BATCHES_SENT,
+
+        /**
+         * Batches that failed to be sent.
+         */
+        BATCHES_FAILED,
+
+        /**
+         * HTTP calls scheduled to be retried.
+         */
+        HTTP_RETRIES,
+
+        /**
+         * HTTP calls that failed, including attempts that are retried.
+         */
+        HTTP_FAILURES,
+
+        /**
+         * Events dropped because the Analytics event buffer was full.
+         */
+        EVENTS_DROPPED
+    }
+
+    /**
+     * Gauges, holding the last known value.
+     */
+    public enum Gauge {
+
+        /**
+         * Size of the logs database file in bytes.
+         */
+        DATABASE_SIZE,
+
+        /**
+         * Maximum size of the logs database in bytes.
+         */
+        DATABASE_MAX_SIZE
+    }
+
+    /**
+     * Histograms.
+     */
+    public enum Histogram {
+
+        /**
+         * Time to store a log in persistence, in microseconds.
+         */
+        PERSIST_TIME,
+
+        /**
+         * Time to get a batch from persistence, in microseconds.
+         */
+        BATCH_FETCH_TIME,
+
+        /**
+         * Time of an HTTP call, in microseconds.
+         */
+        HTTP_TIME,
+
+        /**
+         * Request body size before compression, in bytes.
+         */
+        REQUEST_SIZE,
+
+        /**
+         * Request body size after compression, in bytes, only for compressed requests.
+         */
+        COMPRESSED_REQUEST_SIZE
+    }
+
+    /**
+     * Number of buckets per histogram: bucket 0 counts 0 and negative values, bucket i counts values in [2^(i-1), 2^i).
+     */
+    static final int BUCKET_COUNT = 64;
+
+    /**
+     * Counter values, indexed by ordinal.
+     */
+    private static final AtomicLongArray sCounters = new AtomicLongArray(Counter.values().length);
+
+    /**
+     * Gauge values, indexed by ordinal.
+     */
+    private static final AtomicLongArray sGauges = new AtomicLongArray(Gauge.values().length);
+
+    /**
+     * Suppliers of gauges computed only when read, indexed by ordinal.
+     */
+    private static final AtomicReferenceArray<GaugeSupplier> sGaugeSuppliers = new AtomicReferenceArray<>(Gauge.values().length);
+
+    /**
+     * Histogram buckets, {@link #BUCKET_COUNT} per histogram indexed by ordinal.
+     */
+    private static final AtomicLongArray sHistogramBuckets = new AtomicLongArray(Histogram.values().length * BUCKET_COUNT);
+
+    /**
+     * Sum of histogram values, indexed by ordinal.
+     */
+    private static final AtomicLongArray sHistogramSums = new AtomicLongArray(Histogram.values().length);
+
+    @VisibleForTesting
+    SdkMetrics() {
+    }
+
+    /**
+     * Increment a counter.
+     *
+     * @param counter the counter.
+     */
+    public static void increment(@NonNull Counter counter) {
+        sCounters.incrementAndGet(counter.ordinal());
+    }
+
+    /**
+     * Add to a counter.
+     *
+     * @param counter the counter.
+     * @param delta   value to add.
+     */
+    public static void add(@NonNull Counter counter, long delta) {
+        sCounters.addAndGet(counter.ordinal(), delta);
+    }
+
+    /**
+     * Set a gauge.
+     *
+     * @param gauge the gauge.
+     * @param value the current value.
+     */
+    public static void set(@NonNull Gauge gauge, long value) {
+        sGauges.set(gauge.ordinal(), value);
+    }
+
+    /**
+     * Set a supplier to compute a gauge when a snapshot is taken, for values too costly to update on every change.
+     *
+     * @param gauge    the gauge.
+     * @param supplier the supplier, or null to keep the last known value.
+     */
+    public static void setSupplier(@NonNull Gauge gauge, @Nullable GaugeSupplier supplier) {
+        sGaugeSuppliers.set(gauge.ordinal(), supplier);
+    }
+
+    /**
+     * Record a value in a histogram.
+     *
+     * @param histogram the histogram.
+     * @param value     the value.
+     */
+    public static void record(@NonNull Histogram histogram, long value) {
+        int bucket = value > 0 ? Long.SIZE - Long.numberOfLeadingZeros(value) : 0;
+        sHistogramBuckets.incrementAndGet(histogram.ordinal() * BUCKET_COUNT + Math.min(bucket, BUCKET_COUNT - 1));
+        sHistogramSums.addAndGet(histogram.ordinal(), value);
+    }
+
+    /**
+     * Record the time elapsed since a start time in a histogram, in microseconds.
+     *
+     * @param histogram the histogram.
+     * @param startTime start time as returned by {@link System#nanoTime()}.
+     */
+    public static void recordMicros(@NonNull Histogram histogram, long startTime) {
+        record(histogram, (System.nanoTime() - startTime) / 1000);
+    }
+
+    /**
+     * Get a copy of all values. Values updated while copying may or may not be included.
+     *
+     * @return snapshot of all values.
+     */
+    @NonNull
+    public static MetricsSnapshot getSnapshot() {
+        long[] counters = new long[sCounters.length()];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = sCounters.get(i);
+        }
+        long[] gauges = new long[sGauges.length()];
+        for (int i = 0; i < gauges.length; i++) {
+            GaugeSupplier supplier = sGaugeSuppliers.get(i);
+            if (supplier != null) {
+                long value = supplier.getValue();
+                if (value >= 0) {
+                    sGauges.set(i, value);
+                }
+            }
+            gauges[i] = sGauges.get(i);
+        }
+        long[] buckets = new long[sHistogramBuckets.length()];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = sHistogramBuckets.get(i);
+        }
+        long[] sums = new long[sHistogramSums.length()];
+        for (int i = 0; i < sums.length; i++) {
+            sums[i] = sHistogramSums.get(i);
+        }
+        return new MetricsSnapshot(counters, gauges, buckets, sums);
+    }
+
+    /**
+     * Reset counters and histograms, for example after reporting a snapshot. Gauges are kept.
+     */
+    public static void reset() {
+        for (int i = 0; i < sCounters.length(); i++) {
+            sCounters.set(i, 0);
+        }
+        for (int i = 0; i < sHistogramBuckets.length(); i++) {
+            sHistogramBuckets.set(i, 0);
+        }
+        for (int i = 0; i < sHistogramSums.length(); i++) {
+            sHistogramSums.set(i, 0);
+        }
+    }
+
+    /**
+     * Computes the current value of a gauge.
+     */
+    public interface GaugeSupplier {
+
+        /**
+         * Get the current value.
+         *
+         * @return the current value, or a negative value to keep the last known one.
+         */
+        long getValue();
+    }
+}
@@ -13,15 +13,24 @@ import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteFullException;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
 import com.microsoft.appcenter.utils.AppCenterLog;
+import com.microsoft.appcenter.utils.metrics.SdkMetrics;
 
 import java.io.Closeable;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 import static com.microsoft.appcenter.utils.AppCenterLog.LOG_TAG;
 
@@ -40,6 +49,22 @@ public class DatabaseManager implements Closeable {
      */
     public static final String[] SELECT_PRIMARY_KEY = {PRIMARY_KEY};
 
+    /**
+     * Maximum number of host parameters in a single SQLite statement.
+     */
+    @VisibleForTesting
+    static final int MAX_SQL_VARIABLES = 999;
+
+    /**
+     * Statement to relax fsync in tuned mode, safe from corruption when using write-ahead logging.
+     */
+    private static final String SYNCHRONOUS_NORMAL_SQL = "PRAGMA synchronous = NORMAL";
+
+    /**
+     * Statement to get the number of pages of the database.
+     */
+    private static final String PAGE_COUNT_SQL = "PRAGMA page_count";
+
     /**
      * Application context instance.
      */
@@ -65,11 +90,41 @@ public class DatabaseManager implements Closeable {
      */
     private final Listener mListener;
 
+    /**
+     * Schema columns in the order they are bound in {@link #mInsertSql}, null without schema.
+     */
+    private final String[] mInsertColumns;
+
+    /**
+     * Insert statement of all schema columns, used in tuned mode, null without schema.
+     */
+    private final String mInsertSql;
+
     /**
      * SQLite helper instance.
      */
     private SQLiteOpenHelper mSQLiteOpenHelper;
 
+    /**
+     * Whether tuned mode is enabled: write-ahead logging, synchronous=NORMAL and cached statements.
+     */
+    private boolean mTunedMode;
+
+    /**
+     * Compiled statements by SQL, only used in tuned mode.
+     */
+    private final Map<String, SQLiteStatement> mStatements = new HashMap<>();
+
+    /**
+     * Database that cached statements were compiled for.
+     */
+    private SQLiteDatabase mStatementsDatabase;
+
+    /**
+     * Listener notified when entries are deleted to make room for new ones.
+     */
+    private EvictionListener mEvictionListener;
+
     /**
      * Initializes the table in the database.
      *
@@ -87,8 +142,34 @@ public class DatabaseManager implements Closeable {
         mDefaultTable = defaultTable;
         mSchema = schema;
         mListener = listener;
+        if (schema != null) {
+            List<String> columns = new ArrayList<>(schema.keySet());
+            Collections.sort(columns);
+            StringBuilder sql = new StringBuilder("INSERT INTO `").append(defaultTable).append("` (");
+            for (String column : columns) {
+                sql.append('`').append(column).append("`,");
+            }
+            sql.setCharAt(sql.length() - 1, ')');
+            sql.append(" VALUES (");
+            for (int i = 0; i < columns.size(); i++) {
+                sql.append("?,");
+            }
+            sql.setCharAt(sql.length() - 1, ')');
+            mInsertColumns = columns.toArray(new String[0]);
+            mInsertSql = sql.toString();
+        } else {
+            mInsertColumns = null;
+            mInsertSql = null;
+        }
         mSQLiteOpenHelper = new SQLiteOpenHelper(context, database, null, version) {
 
+            @Override
+            public void onConfigure(SQLiteDatabase db) {
+                if (mTunedMode) {
+                    db.execSQL(SYNCHRONOUS_NORMAL_SQL);
+                }
+            }
+
             @Override
             public void onCreate(SQLiteDatabase db) {
                 db.execSQL(sqlCreateCommand);
@@ -183,11 +264,12 @@ public class DatabaseManager implements Closeable {
         Long id = null;
         Cursor cursor = null;
         try {
+            SQLiteDatabase db = getDatabase();
             while (id == null) {
                 try {
 
                     /* Insert data. */
-                    id = getDatabase().insertOrThrow(mDefaultTable, null, values);
+                    id = insert(db, values);
                 } catch (SQLiteFullException e) {
 
                     /* Delete the oldest log. */
@@ -201,7 +283,13 @@ public class DatabaseManager implements Closeable {
                     if (cursor.moveToNext()) {
                         long deletedId = cursor.getLong(0);
                         delete(deletedId);
-                        AppCenterLog.debug(LOG_TAG, "Deleted log id=" + deletedId);
+                        SdkMetrics.increment(SdkMetrics.Counter.LOGS_EVICTED);
+                        if (AppCenterLog.isDebugEnabled()) {
+                            AppCenterLog.debug(LOG_TAG, "Deleted log id=" + deletedId);
+                        }
+                        if (mEvictionListener != null) {
+                            mEvictionListener.onEvicted(deletedId);
+                        }
                     } else {
                         throw e;
                     }
@@ -220,13 +308,369 @@ public class DatabaseManager implements Closeable {
         return id;
     }
 
+    /**
+     * Stores the entries to the table in a single transaction. If the transaction fails, for
+     * example because the table is full, the entries are stored one by one with
+     * {@link #put(ContentValues, String)} which discards the oldest logs until each new one can fit.
+     *
+     * @param valuesList     The entries to be stored.
+     * @param priorityColumn When storage full and deleting data, use this column to determine which entries to delete first.
+     * @return The database identifiers in the same order as the entries, -1 for entries that were not inserted.
+     */
+    @NonNull
+    public long[] put(@NonNull List<ContentValues> valuesList, @NonNull String priorityColumn) {
+        long[] ids = new long[valuesList.size()];
+        try {
+            SQLiteDatabase db = getDatabase();
+            db.beginTransaction();
+            try {
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = insert(db, valuesList.get(i));
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            return ids;
+        } catch (SQLiteFullException e) {
+            if (AppCenterLog.isDebugEnabled()) {
+                AppCenterLog.debug(LOG_TAG, "Storage is full, inserting " + ids.length + " entries one by one.");
+            }
+        } catch (RuntimeException e) {
+            AppCenterLog.warn(LOG_TAG, "Failed to insert " + ids.length + " entries in a transaction to database " + mDatabase + ", inserting them one by one.", e);
+        }
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = put(valuesList.get(i), priorityColumn);
+        }
+        return ids;
+    }
+
+    /**
+     * Stores an entry to another table than the default one. Nothing is discarded if storage is full.
+     *
+     * @param table  The table to perform the operation on.
+     * @param values The entry to be stored.
+     * @return If the entry was inserted, the database identifier. Otherwise -1.
+     */
+    public long put(@NonNull String table, @NonNull ContentValues values) {
+        try {
+            return getDatabase().insertOrThrow(table, null, values);
+        } catch (RuntimeException e) {
+            AppCenterLog.error(LOG_TAG, String.format("Failed to insert values (%s) to table %s of database %s.", values.toString(), table, mDatabase), e);
+            return -1;
+        }
+    }
+
+    /**
+     * Inserts an entry, with the cached insert statement of all schema columns in tuned mode.
+     * Schema columns missing from the entry are inserted as null, entries with columns outside
+     * of the schema use a regular insert.
+     *
+     * @param db     The database.
+     * @param values The entry to be stored.
+     * @return The database identifier.
+     * @throws RuntimeException If an error occurs.
+     */
+    private long insert(@NonNull SQLiteDatabase db, @NonNull ContentValues values) {
+        if (!mTunedMode || mInsertColumns == null) {
+            return db.insertOrThrow(mDefaultTable, null, values);
+        }
+        int schemaValueCount = 0;
+        for (String column : mInsertColumns) {
+            if (values.containsKey(column)) {
+                schemaValueCount++;
+            }
+        }
+        if (schemaValueCount != values.size()) {
+            return db.insertOrThrow(mDefaultTable, null, values);
+        }
+        SQLiteStatement statement = getStatement(db, mInsertSql);
+        synchronized (statement) {
+            try {
+                for (int i = 0; i < mInsertColumns.length; i++) {
+                    bind(statement, i + 1, values.get(mInsertColumns[i]));
+                }
+                return statement.executeInsert();
+            } finally {
+                statement.clearBindings();
+            }
+        }
+    }
+
+    /**
+     * Binds a value to a statement parameter according to its type.
+     *
+     * @param statement The statement.
+     * @param index     The 1-based parameter index.
+     * @param value     The value.
+     */
+    private static void bind(@NonNull SQLiteStatement statement, int index, @Nullable Object value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else if (value instanceof byte[]) {
+            statement.bindBlob(index, (byte[]) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            statement.bindDouble(index, ((Number) value).doubleValue());
+        } else if (value instanceof Number) {
+            statement.bindLong(index, ((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            statement.bindLong(index, (Boolean) value ? 1 : 0);
+        } else {
+            statement.bindString(index, value.toString());
+        }
+    }
+
+    /**
+     * Gets a compiled statement from the cache or compiles it.
+     *
+     * @param db  The database.
+     * @param sql The SQL statement.
+     * @return The compiled statement.
+     * @throws RuntimeException If an error occurs.
+     */
+    @NonNull
+    private synchronized SQLiteStatement getStatement(@NonNull SQLiteDatabase db, @NonNull String sql) {
+
+        /* Statements are bound to a database instance, drop them if database was reopened. */
+        if (db != mStatementsDatabase) {
+            clearStatements();
+            mStatementsDatabase = db;
+        }
+        SQLiteStatement statement = mStatements.get(sql);
+        if (statement == null) {
+            statement = db.compileStatement(sql);
+            mStatements.put(sql, statement);
+        }
+        return statement;
+    }
+
+    /**
+     * Releases cached statements.
+     */
+    private synchronized void clearStatements() {
+        for (SQLiteStatement statement : mStatements.values()) {
+            try {
+                statement.close();
+            } catch (RuntimeException ignore) {
+            }
+        }
+        mStatements.clear();
+        mStatementsDatabase = null;
+    }
+
+    /**
+     * Enables or disables tuned mode: write-ahead logging, {@code synchronous=NORMAL} and
+     * cached statements for insert and delete by identifier.
+     *
+     * @param enabled true to enable tuned mode, false to use default settings.
+     */
+    public void setTunedModeEnabled(boolean enabled) {
+        mTunedMode = enabled;
+        clearStatements();
+        try {
+            mSQLiteOpenHelper.setWriteAheadLoggingEnabled(enabled);
+
+            /* Apply to the current connection, next ones are configured when opening. */
+            if (enabled) {
+                getDatabase().execSQL(SYNCHRONOUS_NORMAL_SQL);
+            }
+        } catch (RuntimeException e) {
+            AppCenterLog.error(LOG_TAG, "Failed to configure database " + mDatabase + ".", e);
+        }
+    }
+
     /**
      * Deletes the entry by the identifier from the database.
      *
      * @param id The database identifier.
      */
     public void delete(@IntRange(from = 0) long id) {
-        delete(mDefaultTable, PRIMARY_KEY, id);
+        if (!mTunedMode) {
+            delete(mDefaultTable, PRIMARY_KEY, id);
+            return;
+        }
+        try {
+            SQLiteStatement statement = getStatement(getDatabase(), "DELETE FROM `" + mDefaultTable + "` WHERE `" + PRIMARY_KEY + "` = ?");
+            synchronized (statement) {
+                statement.bindLong(1, id);
+                statement.executeUpdateDelete();
+            }
+        } catch (RuntimeException e) {
+            AppCenterLog.error(LOG_TAG, String.format("Failed to delete value with id=%s from database %s.", id, mDatabase), e);
+        }
+    }
+
+    /**
+     * Deletes the entries by their identifiers from the database in a single transaction.
+     *
+     * @param ids The database identifiers.
+     * @return the number of rows affected.
+     */
+    public int delete(@NonNull Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        try {
+            SQLiteDatabase db = getDatabase();
+            db.beginTransaction();
+            try {
+                int deletedCount = 0;
+                Iterator<Long> iterator = ids.iterator();
+                while (iterator.hasNext()) {
+
+                    /* Split in chunks to not exceed the maximum number of parameters. */
+                    List<String> whereArgs = new ArrayList<>();
+                    StringBuilder filter = new StringBuilder();
+                    while (iterator.hasNext() && whereArgs.size() < MAX_SQL_VARIABLES) {
+                        whereArgs.add(String.valueOf(iterator.next()));
+                        filter.append("?,");
+                    }
+                    filter.deleteCharAt(filter.length() - 1);
+                    deletedCount += db.delete(mDefaultTable, PRIMARY_KEY + " IN (" + filter + ")", whereArgs.toArray(new String[0]));
+                }
+                db.setTransactionSuccessful();
+                return deletedCount;
+            } finally {
+                db.endTransaction();
+            }
+        } catch (RuntimeException e) {
+            AppCenterLog.error(LOG_TAG, String.format("Failed to delete %s entries from database %s.", ids.size(), mDatabase), e);
+            return 0;
+        }
+    }
+
+    /**
+     * Updates the entries by their identifiers in the database in a single transaction.
+     *
+     * @param ids    The database identifiers.
+     * @param values The new column values.
+     * @return the number of rows affected.
+     */
+    public int update(@NonNull Collection<Long> ids, @NonNull ContentValues values) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        try {
+            SQLiteDatabase db = getDatabase();
+            db.beginTransaction();
+            try {
+                int updatedCount = 0;
+                Iterator<Long> iterator = ids.iterator();
+                while (iterator.hasNext()) {
+
+                    /* Split in chunks to not exceed the maximum number of parameters. */
+                    List<String> whereArgs = new ArrayList<>();
+                    StringBuilder filter = new StringBuilder();
+                    while (iterator.hasNext() && whereArgs.size() < MAX_SQL_VARIABLES - values.size()) {
+                        whereArgs.add(String.valueOf(iterator.next()));
+                        filter.append("?,");
+                    }
+                    filter.deleteCharAt(filter.length() - 1);
+                    updatedCount += db.update(mDefaultTable, values, PRIMARY_KEY + " IN (" + filter + ")", whereArgs.toArray(new String[0]));
+                }
+                db.setTransactionSuccessful();
+                return updatedCount;
+            } finally {
+                db.endTransaction();
+            }
+        } catch (RuntimeException e) {
+            AppCenterLog.error(LOG_TAG, String.format("Failed to update %s entries in database %s.", ids.size(), mDatabase), e);
+            return 0;
+        }
+    }
+
+    /**
+     * Updates each entry by its identifier with its own values, in a single transaction.
+     *
+     * @param valuesById The new column values per database identifier.
+     * @return the number of rows affected.
+     */
+    public int update(@NonNull Map<Long, ContentValues> valuesById) {
+        if (valuesById.isEmpty()) {
+            return 0;
+        }
+        try {
+            SQLiteDatabase db = getDatabase();
+            db.beginTransaction();
+            try {
+                int updatedCount = 0;
+                for (Map.Entry<Long, ContentValues> entry : valuesById.entrySet()) {
+                    updatedCount += db.update(mDefaultTable, entry.getValue(), PRIMARY_KEY + " = ?", new String[]{String.valueOf(entry.getKey())});
+                }
+                db.setTransactionSuccessful();
+                return updatedCount;
+            } finally {
+                db.endTransaction();
+            }
+        } catch (RuntimeException e) {
+            AppCenterLog.error(LOG_TAG, String.format("Failed to update %s entries in database %s.", valuesById.size(), mDatabase), e);
+            return 0;
+        }
+    }
+
+    /**
+     * Begins a transaction so that the following operations of this instance are applied together,
+     * they use nested transactions that only commit with the outer one.
+     * Must be followed by {@link #endTransaction()} when this returns true.
+     *
+     * @return true if the transaction began, false if the database could not be opened.
+     */
+    public boolean beginTransaction() {
+        try {
+            getDatabase().beginTransaction();
+            return true;
+        } catch (RuntimeException e) {
+            AppCenterLog.error(LOG_TAG, String.format("Failed to begin transaction in database %s.", mDatabase), e);
+            return false;
+        }
+    }
+
+    /**
+     * Marks the current transaction as successful so that {@link #endTransaction()} commits it.
+     */
+    public void setTransactionSuccessful() {
+        getDatabase().setTransactionSuccessful();
+    }
+
+    /**
+     * Ends the current transaction, committing it if marked successful and rolling it back otherwise.
+     */
+    public void endTransaction() {
+        try {
+            getDatabase().endTransaction();
+        } catch (RuntimeException e) {
+            AppCenterLog.error(LOG_TAG, String.format("Failed to end transaction in database %s.", mDatabase), e);
+        }
+    }
+
+    /**
+     * Updates the entries that match the given condition.
+     *
+     * @param values      The new column values.
+     * @param whereClause The WHERE clause without WHERE itself, null for all entries.
+     * @param whereArgs   The values for the WHERE clause.
+     * @return the number of rows affected.
+     */
+    public int update(@NonNull ContentValues values, @Nullable String whereClause, @Nullable String[] whereArgs) {
+        return update(mDefaultTable, values, whereClause, whereArgs);
+    }
+
+    /**
+     * Updates the entries of a table that match the given condition.
+     *
+     * @param table       The table to perform the operation on.
+     * @param values      The new column values.
+     * @param whereClause The WHERE clause without WHERE itself, null for all entries.
+     * @param whereArgs   The values for the WHERE clause.
+     * @return the number of rows affected.
+     */
+    public int update(@NonNull String table, @NonNull ContentValues values, @Nullable String whereClause, @Nullable String[] whereArgs) {
+        try {
+            return getDatabase().update(table, values, whereClause, whereArgs);
+        } catch (RuntimeException e) {
+            AppCenterLog.error(LOG_TAG, String.format("Failed to update values that match condition=\"%s\" and values=\"%s\" in table %s of database %s.", whereClause, Arrays.toString(whereArgs), table, mDatabase), e);
+            return 0;
+        }
     }
 
     /**
@@ -258,6 +702,23 @@ public class DatabaseManager implements Closeable {
         }
     }
 
+    /**
+     * Deletes the entries of a table that match a where clause.
+     *
+     * @param table       The table to perform the operation on.
+     * @param whereClause The where clause, null to delete all entries.
+     * @param whereArgs   The where clause arguments.
+     * @return the number of rows affected.
+     */
+    public int delete(@NonNull String table, @Nullable String whereClause, @Nullable String[] whereArgs) {
+        try {
+            return getDatabase().delete(table, whereClause, whereArgs);
+        } catch (RuntimeException e) {
+            AppCenterLog.error(LOG_TAG, String.format("Failed to delete values that match condition=\"%s\" from table %s of database %s.", whereClause, table, mDatabase), e);
+            return 0;
+        }
+    }
+
     /**
      * Clears the table in the database.
      */
@@ -274,6 +735,7 @@ public class DatabaseManager implements Closeable {
      */
     @Override
     public void close() {
+        clearStatements();
         try {
 
             /* Close opened database (do not force open). */
@@ -308,7 +770,22 @@ public class DatabaseManager implements Closeable {
      * @throws RuntimeException If an error occurs.
      */
     public Cursor getCursor(@Nullable SQLiteQueryBuilder queryBuilder, String[] columns, @Nullable String[] selectionArgs, @Nullable String sortOrder) throws RuntimeException {
-        return getCursor(mDefaultTable, queryBuilder, columns, selectionArgs, sortOrder);
+        return getCursor(mDefaultTable, queryBuilder, columns, selectionArgs, sortOrder, null);
+    }
+
+    /**
+     * Gets a cursor for at most the given number of rows in the table.
+     *
+     * @param queryBuilder  The query builder that contains SQL query.
+     * @param columns       Columns to select, null for all.
+     * @param selectionArgs The array of values for selection.
+     * @param sortOrder     Sorting order (ORDER BY clause without ORDER BY itself).
+     * @param limit         Maximum number of rows to return (LIMIT clause without LIMIT itself), null for no limit.
+     * @return A cursor for the first rows that matches the given criteria.
+     * @throws RuntimeException If an error occurs.
+     */
+    public Cursor getCursor(@Nullable SQLiteQueryBuilder queryBuilder, String[] columns, @Nullable String[] selectionArgs, @Nullable String sortOrder, @Nullable String limit) throws RuntimeException {
+        return getCursor(mDefaultTable, queryBuilder, columns, selectionArgs, sortOrder, limit);
     }
 
     /**
@@ -322,12 +799,39 @@ public class DatabaseManager implements Closeable {
      * @return A cursor for all rows that matches the given criteria.
      * @throws RuntimeException If an error occurs.
      */
-    Cursor getCursor(@NonNull String table, @Nullable SQLiteQueryBuilder queryBuilder, String[] columns, @Nullable String[] selectionArgs, @Nullable String sortOrder) throws RuntimeException {
+    public Cursor getCursor(@NonNull String table, @Nullable SQLiteQueryBuilder queryBuilder, String[] columns, @Nullable String[] selectionArgs, @Nullable String sortOrder) throws RuntimeException {
+        return getCursor(table, queryBuilder, columns, selectionArgs, sortOrder, null);
+    }
+
+    private Cursor getCursor(@NonNull String table, @Nullable SQLiteQueryBuilder queryBuilder, String[] columns, @Nullable String[] selectionArgs, @Nullable String sortOrder, @Nullable String limit) throws RuntimeException {
         if (queryBuilder == null) {
             queryBuilder = SQLiteUtils.newSQLiteQueryBuilder();
         }
         queryBuilder.setTables(table);
-        return queryBuilder.query(getDatabase(), columns, null, selectionArgs, null, null, sortOrder);
+        return queryBuilder.query(getDatabase(), columns, null, selectionArgs, null, null, sortOrder, limit);
+    }
+
+    /**
+     * Gets a cursor for all rows in the table grouped by the given columns.
+     *
+     * @param columns Columns to select, usually the grouping columns and aggregate functions.
+     * @param groupBy GROUP BY clause without GROUP BY itself.
+     * @return A cursor with a row per group.
+     * @throws RuntimeException If an error occurs.
+     */
+    public Cursor getGroupedCursor(String[] columns, @NonNull String groupBy) throws RuntimeException {
+        SQLiteQueryBuilder queryBuilder = SQLiteUtils.newSQLiteQueryBuilder();
+        queryBuilder.setTables(mDefaultTable);
+        return queryBuilder.query(getDatabase(), columns, null, null, groupBy, null, null);
+    }
+
+    /**
+     * Sets a listener for entries deleted when storage is full.
+     *
+     * @param evictionListener The listener, or null to remove it.
+     */
+    public void setEvictionListener(@Nullable EvictionListener evictionListener) {
+        mEvictionListener = evictionListener;
     }
 
     /**
@@ -364,6 +868,7 @@ public class DatabaseManager implements Closeable {
      */
     @VisibleForTesting
     void setSQLiteOpenHelper(@NonNull SQLiteOpenHelper helper) {
+        clearStatements();
         mSQLiteOpenHelper.close();
         mSQLiteOpenHelper = helper;
     }
@@ -411,13 +916,30 @@ public class DatabaseManager implements Closeable {
      */
     public long getMaxSize() {
         try {
-            return getDatabase().getMaximumSize();
+            long maxSize = getDatabase().getMaximumSize();
+            SdkMetrics.set(SdkMetrics.Gauge.DATABASE_MAX_SIZE, maxSize);
+            return maxSize;
         } catch (RuntimeException e) {
             AppCenterLog.error(LOG_TAG, "Could not get maximum database size.", e);
             return -1;
         }
     }
 
+    /**
+     * Gets the current size of the database, including pages not yet checkpointed from the write-ahead log.
+     *
+     * @return The size of the database in bytes, or -1 if operation failed.
+     */
+    public long getSize() {
+        try {
+            SQLiteDatabase db = getDatabase();
+            return DatabaseUtils.longForQuery(db, PAGE_COUNT_SQL, null) * db.getPageSize();
+        } catch (RuntimeException e) {
+            AppCenterLog.warn(LOG_TAG, "Failed to get database size.", e);
+            return -1;
+        }
+    }
+
     /**
      * Database listener.
      */
@@ -442,4 +964,17 @@ public class DatabaseManager implements Closeable {
          */
         void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion);
     }
+
+    /**
+     * Listener for entries deleted to make room for new ones when storage is full.
+     */
+    public interface EvictionListener {
+
+        /**
+         * Called when an entry has been deleted to make room for a new one.
+         *
+         * @param id The database identifier of the deleted entry.
+         */
+        void onEvicted(long id);
+    }
 }
@@ -16,6 +16,7 @@ import android.os.HandlerThread;
 import android.os.Looper;
 
 import com.microsoft.appcenter.channel.DefaultChannel;
+import com.microsoft.appcenter.http.HttpUtils;
 import com.microsoft.appcenter.ingestion.models.StartServiceLog;
 import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
 import com.microsoft.appcenter.ingestion.models.json.LogFactory;
@@ -71,7 +72,8 @@ import static org.powermock.api.mockito.PowerMockito.whenNew;
         ShutdownHelper.class,
         InstrumentationRegistryHelper.class,
         NetworkStateHelper.class,
-        JSONUtils.class
+        JSONUtils.class,
+        HttpUtils.class
 })
 public class AbstractAppCenterTest {
 
@@ -175,6 +177,8 @@ public class AbstractAppCenterTest {
         whenNew(DatabaseManager.class).withAnyArguments().thenReturn(databaseManager);
         when(databaseManager.getCursor(any(SQLiteQueryBuilder.class), any(String[].class), any(String[].class), anyString()))
                 .thenReturn(mock(Cursor.class));
+        when(databaseManager.getCursor(any(SQLiteQueryBuilder.class), any(String[].class), any(String[].class), anyString(), anyString()))
+                .thenReturn(mock(Cursor.class));
 
         /* Mock network state helper. */
         when(NetworkStateHelper.getSharedInstance(any(Context.class))).thenReturn(mNetworkStateHelper);
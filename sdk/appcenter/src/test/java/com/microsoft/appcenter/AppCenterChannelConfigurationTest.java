@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter;
+
+import com.microsoft.appcenter.http.DefaultHttpClient;
+
+import org.junit.Test;
+
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.powermock.api.mockito.PowerMockito.verifyNew;
+import static org.powermock.api.mockito.PowerMockito.whenNew;
+
+public class AppCenterChannelConfigurationTest extends AbstractAppCenterTest {
+
+    @Test
+    public void configurationIsAppliedToChannel() {
+        ChannelConfiguration configuration = new ChannelConfiguration();
+        configuration.setWriteBehind(50, 2000);
+        configuration.setFlushWindow(1000);
+        configuration.setRawPayloadsEnabled(true);
+        configuration.setTunedStorageEnabled(true);
+        configuration.setCompressedStorageEnabled(true);
+        configuration.setFailureIsolationEnabled(true);
+        configuration.setAdaptiveBatchingEnabled(true);
+        AppCenter.setChannelConfiguration(configuration);
+        AppCenter.start(mApplication, DUMMY_APP_SECRET, DummyService.class);
+        verify(mChannel).setWriteBehind(50, 2000);
+        verify(mChannel).setFlushWindow(1000);
+        verify(mChannel).setRawPayloadsEnabled(true);
+        verify(mChannel).setTunedStorageEnabled(true);
+        verify(mChannel).setCompressedStorageEnabled(true);
+        verify(mChannel).setFailureIsolationEnabled(true);
+        verify(mChannel).setAdaptiveBatchingEnabled(true);
+    }
+
+    @Test
+    public void dedicatedHttpExecutor() throws Exception {
+        whenNew(DefaultHttpClient.class).withArguments(true, 3).thenReturn(mock(DefaultHttpClient.class));
+        ChannelConfiguration configuration = new ChannelConfiguration();
+        configuration.setMaxConcurrentHttpCalls(3);
+        AppCenter.setChannelConfiguration(configuration);
+        AppCenter.start(mApplication, DUMMY_APP_SECRET, DummyService.class);
+        verifyNew(DefaultHttpClient.class).withArguments(true, 3);
+    }
+
+    @Test
+    public void defaultConfigurationKeepsChannelDefaults() {
+        AppCenter.setChannelConfiguration(new ChannelConfiguration());
+        AppCenter.start(mApplication, DUMMY_APP_SECRET, DummyService.class);
+        verifyChannelNotConfigured();
+    }
+
+    @Test
+    public void cannotConfigureAfterStart() {
+        AppCenter.start(mApplication, DUMMY_APP_SECRET, DummyService.class);
+        ChannelConfiguration configuration = new ChannelConfiguration();
+        configuration.setTunedStorageEnabled(true);
+        AppCenter.setChannelConfiguration(configuration);
+        verify(mChannel, never()).setTunedStorageEnabled(anyBoolean());
+    }
+
+    private void verifyChannelNotConfigured() {
+        verify(mChannel, never()).setWriteBehind(anyInt(), anyLong());
+        verify(mChannel, never()).setFlushWindow(anyLong());
+        verify(mChannel, never()).setRawPayloadsEnabled(anyBoolean());
+        verify(mChannel, never()).setTunedStorageEnabled(anyBoolean());
+        verify(mChannel, never()).setCompressedStorageEnabled(anyBoolean());
+        verify(mChannel, never()).setFailureIsolationEnabled(anyBoolean());
+        verify(mChannel, never()).setAdaptiveBatchingEnabled(anyBoolean());
+    }
+}
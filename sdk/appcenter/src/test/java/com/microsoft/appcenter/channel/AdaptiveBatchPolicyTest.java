@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.channel;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveBatchPolicyTest {
+
+    private static AdaptiveBatchPolicy newPolicy() {
+        return new AdaptiveBatchPolicy(10, 100, 1000, 6000, 3);
+    }
+
+    @Test
+    public void initialValues() {
+        AdaptiveBatchPolicy policy = newPolicy();
+        assertEquals(100, policy.getMaxLogsPerBatch());
+        assertEquals(6000, policy.getBatchTimeInterval());
+        assertEquals(3, policy.getMaxParallelBatches());
+        assertEquals(-1, policy.getLatency(), 0);
+        assertEquals(0, policy.getFailureRate(), 0);
+        assertFalse(policy.isNetworkMetered());
+        assertNotNull(policy.toString());
+    }
+
+    @Test
+    public void meteredNetwork() {
+        AdaptiveBatchPolicy policy = newPolicy();
+        policy.setNetworkMetered(true);
+        assertTrue(policy.isNetworkMetered());
+        assertEquals(55, policy.getMaxLogsPerBatch());
+        assertEquals(3500, policy.getBatchTimeInterval());
+        assertEquals(3, policy.getMaxParallelBatches());
+
+        /* Setting the same value does not change anything. */
+        policy.setNetworkMetered(true);
+        assertEquals(55, policy.getMaxLogsPerBatch());
+
+        /* Back to unmetered. */
+        policy.setNetworkMetered(false);
+        assertEquals(100, policy.getMaxLogsPerBatch());
+        assertEquals(6000, policy.getBatchTimeInterval());
+    }
+
+    @Test
+    public void slowNetwork() {
+        AdaptiveBatchPolicy policy = newPolicy();
+        policy.onBatchSent(100, -1, AdaptiveBatchPolicy.FAST_LATENCY * 2, true);
+        assertEquals(AdaptiveBatchPolicy.FAST_LATENCY * 2, policy.getLatency(), 0);
+        assertEquals(55, policy.getMaxLogsPerBatch());
+        assertEquals(3500, policy.getBatchTimeInterval());
+        assertEquals(3, policy.getMaxParallelBatches());
+
+        /* Latency is smoothed. */
+        policy.onBatchSent(100, -1, AdaptiveBatchPolicy.FAST_LATENCY, true);
+        assertEquals(AdaptiveBatchPolicy.FAST_LATENCY * (2 - AdaptiveBatchPolicy.SMOOTHING_FACTOR), policy.getLatency(), 0.001);
+    }
+
+    @Test
+    public void unknownLatencyIsIgnored() {
+        AdaptiveBatchPolicy policy = newPolicy();
+        policy.onBatchSent(100, -1, -1, true);
+        assertEquals(-1, policy.getLatency(), 0);
+        assertEquals(100, policy.getMaxLogsPerBatch());
+
+        /* Does not reset a measured latency either. */
+        policy.onBatchSent(100, -1, AdaptiveBatchPolicy.FAST_LATENCY * 2, true);
+        policy.onBatchSent(100, -1, -1, true);
+        assertEquals(AdaptiveBatchPolicy.FAST_LATENCY * 2, policy.getLatency(), 0);
+    }
+
+    @Test
+    public void failingNetwork() {
+        AdaptiveBatchPolicy policy = newPolicy();
+        policy.onBatchSent(100, -1, 0, false);
+
+        /* Failed calls do not measure latency. */
+        assertEquals(-1, policy.getLatency(), 0);
+        assertEquals(AdaptiveBatchPolicy.SMOOTHING_FACTOR, policy.getFailureRate(), 0.001);
+        assertTrue(policy.getMaxLogsPerBatch() < 100);
+        assertTrue(policy.getBatchTimeInterval() < 6000);
+        assertEquals(1, policy.getMaxParallelBatches());
+
+        /* Recover after successful calls. */
+        for (int i = 0; i < 20; i++) {
+            policy.onBatchSent(100, -1, 0, true);
+        }
+        assertTrue(policy.getFailureRate() < AdaptiveBatchPolicy.MAX_PARALLEL_FAILURE_RATE);
+        assertEquals(3, policy.getMaxParallelBatches());
+        assertEquals(100, policy.getMaxLogsPerBatch());
+    }
+
+    @Test
+    public void batchSizeCappedByPayloadSize() {
+        AdaptiveBatchPolicy policy = newPolicy();
+
+        /* Big logs on a metered network. */
+        policy.setNetworkMetered(true);
+        policy.onBatchSent(10, 10 * 2048, 0, true);
+        assertEquals(AdaptiveBatchPolicy.METERED_BATCH_SIZE / 2048, policy.getMaxLogsPerBatch());
+
+        /* Never below minimum. */
+        policy.onBatchSent(1, AdaptiveBatchPolicy.UNMETERED_BATCH_SIZE * 100, 0, true);
+        assertEquals(10, policy.getMaxLogsPerBatch());
+
+        /* Unknown or empty payloads do not change the estimate. */
+        int logsPerBatch = policy.getMaxLogsPerBatch();
+        policy.onBatchSent(0, 0, 0, true);
+        policy.onBatchSent(10, -1, 0, true);
+        assertEquals(logsPerBatch, policy.getMaxLogsPerBatch());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidMinLogsPerBatch() {
+        new AdaptiveBatchPolicy(0, 100, 1000, 6000, 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidMaxLogsPerBatch() {
+        new AdaptiveBatchPolicy(10, 5, 1000, 6000, 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidMinBatchTimeInterval() {
+        new AdaptiveBatchPolicy(10, 100, -1, 6000, 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidMaxBatchTimeInterval() {
+        new AdaptiveBatchPolicy(10, 100, 1000, 500, 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidMaxParallelBatches() {
+        new AdaptiveBatchPolicy(10, 100, 1000, 6000, 0);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.channel;
+
+import android.os.Handler;
+
+import com.microsoft.appcenter.utils.storage.SharedPreferencesManager;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.rule.PowerMockRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.verifyStatic;
+
+@PrepareForTest(SharedPreferencesManager.class)
+public class BatchTimerStoreTest {
+
+    private static final String PREFIX = "prefix.";
+
+    private static final String GROUP = "group";
+
+    @Rule
+    public PowerMockRule mPowerMockRule = new PowerMockRule();
+
+    @Mock
+    private Handler mHandler;
+
+    private BatchTimerStore mBatchTimerStore;
+
+    @Before
+    public void setUp() {
+        mockStatic(SharedPreferencesManager.class);
+        mBatchTimerStore = new BatchTimerStore(PREFIX, mHandler);
+    }
+
+    private Runnable captureFlushRunnable() {
+        ArgumentCaptor<Runnable> runnable = ArgumentCaptor.forClass(Runnable.class);
+        verify(mHandler).post(runnable.capture());
+        return runnable.getValue();
+    }
+
+    @Test
+    public void readStorageOnce() {
+        when(SharedPreferencesManager.getLong(PREFIX + GROUP)).thenReturn(1000L);
+        assertEquals(1000, mBatchTimerStore.getStartTime(GROUP));
+        assertEquals(1000, mBatchTimerStore.getStartTime(GROUP));
+        assertEquals(0, mBatchTimerStore.getStartTime("other"));
+        verifyStatic();
+        SharedPreferencesManager.getLong(PREFIX + GROUP);
+        verify(mHandler, never()).post(any(Runnable.class));
+    }
+
+    @Test
+    public void coalesceChanges() {
+
+        /* Changes are not written synchronously. */
+        mBatchTimerStore.setStartTime(GROUP, 1000);
+        mBatchTimerStore.remove(GROUP);
+        mBatchTimerStore.setStartTime(GROUP, 2000);
+        assertEquals(2000, mBatchTimerStore.getStartTime(GROUP));
+        verifyStatic(never());
+        SharedPreferencesManager.putLong(anyString(), anyLong());
+
+        /* Only the last value is written once. */
+        captureFlushRunnable().run();
+        verifyStatic();
+        SharedPreferencesManager.putLong(PREFIX + GROUP, 2000);
+        verifyStatic(never());
+        SharedPreferencesManager.remove(anyString());
+
+        /* No write if value is not changed. */
+        mBatchTimerStore.setStartTime(GROUP, 2000);
+        verify(mHandler).post(any(Runnable.class));
+
+        /* Removing is written as well. */
+        mBatchTimerStore.remove(GROUP);
+        mBatchTimerStore.remove(GROUP);
+        verify(mHandler, times(2)).post(any(Runnable.class));
+        mBatchTimerStore.flush();
+        verify(mHandler).removeCallbacks(any(Runnable.class));
+        verifyStatic();
+        SharedPreferencesManager.remove(PREFIX + GROUP);
+
+        /* Nothing more to write. */
+        mBatchTimerStore.flush();
+        verifyStatic();
+        SharedPreferencesManager.remove(PREFIX + GROUP);
+        verifyStatic();
+        SharedPreferencesManager.putLong(eq(PREFIX + GROUP), anyLong());
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.channel;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CircuitBreakerTest {
+
+    private static void assertBackoff(long expectedBackoff, long backoff) {
+        assertTrue(backoff >= expectedBackoff / 2);
+        assertTrue(backoff <= expectedBackoff);
+    }
+
+    @Test
+    public void exponentialBackoff() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker();
+        assertEquals(0, circuitBreaker.getRemainingTime(0));
+
+        /* First failure. */
+        long backoff = circuitBreaker.onFailure(0);
+        assertBackoff(CircuitBreaker.INITIAL_BACKOFF, backoff);
+        assertEquals(backoff, circuitBreaker.getRemainingTime(0));
+        assertEquals(backoff - 10, circuitBreaker.getRemainingTime(10));
+
+        /* Failures while open do not extend the backoff. */
+        assertEquals(backoff - 10, circuitBreaker.onFailure(10));
+        assertEquals(1, circuitBreaker.getFailureCount());
+
+        /* Failed probe doubles the backoff. */
+        long now = backoff;
+        assertEquals(0, circuitBreaker.getRemainingTime(now));
+        assertBackoff(CircuitBreaker.INITIAL_BACKOFF * 2, circuitBreaker.onFailure(now));
+        assertEquals(2, circuitBreaker.getFailureCount());
+
+        /* Backoff is capped. */
+        for (int i = 0; i < 100; i++) {
+            now += circuitBreaker.getRemainingTime(now);
+            backoff = circuitBreaker.onFailure(now);
+        }
+        assertBackoff(CircuitBreaker.MAX_BACKOFF, backoff);
+
+        /* Success closes the breaker. */
+        circuitBreaker.onSuccess();
+        assertEquals(0, circuitBreaker.getRemainingTime(now));
+        assertEquals(0, circuitBreaker.getFailureCount());
+        assertBackoff(CircuitBreaker.INITIAL_BACKOFF, circuitBreaker.onFailure(now));
+    }
+}
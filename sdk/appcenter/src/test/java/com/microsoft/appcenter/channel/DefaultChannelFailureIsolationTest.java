@@ -0,0 +1,317 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.channel;
+
+import android.content.Context;
+
+import com.microsoft.appcenter.Flags;
+import com.microsoft.appcenter.http.HttpException;
+import com.microsoft.appcenter.http.HttpResponse;
+import com.microsoft.appcenter.http.ServiceCallback;
+import com.microsoft.appcenter.ingestion.AppCenterIngestion;
+import com.microsoft.appcenter.ingestion.Ingestion;
+import com.microsoft.appcenter.ingestion.models.Log;
+import com.microsoft.appcenter.ingestion.models.LogContainer;
+import com.microsoft.appcenter.persistence.Persistence;
+
+import org.json.JSONException;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DefaultChannelFailureIsolationTest extends AbstractDefaultChannelTest {
+
+    private static final String OTHER_GROUP = TEST_GROUP + "2";
+
+    private static final String BATCH_ID = "batch";
+
+    private static final long NOW = 1000;
+
+    private static Answer<String> getGetLogsAnswer(final List<Log> logs) {
+        return new Answer<String>() {
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public String answer(InvocationOnMock invocation) {
+                ((List<Log>) invocation.getArguments()[3]).addAll(logs);
+                return BATCH_ID;
+            }
+        };
+    }
+
+    private static Answer<Object> getRejectingSendAsyncAnswer(final Log poisonLog) {
+        return new Answer<Object>() {
+
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                LogContainer logContainer = (LogContainer) invocation.getArguments()[2];
+                ServiceCallback serviceCallback = (ServiceCallback) invocation.getArguments()[3];
+                if (logContainer.getLogs().contains(poisonLog)) {
+                    serviceCallback.onCallFailed(new HttpException(new HttpResponse(400)));
+                } else {
+                    serviceCallback.onCallSucceeded(new HttpResponse(200, ""));
+                }
+                return null;
+            }
+        };
+    }
+
+    private static void assertBackoff(long backoff) {
+        assertTrue(backoff >= CircuitBreaker.INITIAL_BACKOFF / 2);
+        assertTrue(backoff <= CircuitBreaker.INITIAL_BACKOFF);
+    }
+
+    @Test
+    public void recoverableFailureOnlyBlocksIngestion() throws Exception {
+        when(System.currentTimeMillis()).thenReturn(NOW);
+        Persistence mockPersistence = mock(Persistence.class);
+        AppCenterIngestion mockIngestion = mock(AppCenterIngestion.class);
+        Ingestion failingIngestion = mock(Ingestion.class);
+        when(mockIngestion.isEnabled()).thenReturn(true);
+        when(mockPersistence.getLogs(anyString(), anyListOf(String.class), anyInt(), anyListOf(Log.class))).then(getGetLogsAnswer());
+        when(mockIngestion.sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class))).then(getSendAsyncAnswer());
+        when(failingIngestion.sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class)))
+                .then(getSendAsyncAnswer(new HttpException(new HttpResponse(503))));
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, mockIngestion, mAppCenterHandler);
+        channel.setFailureIsolationEnabled(true);
+        channel.addGroup(TEST_GROUP, 1, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, failingIngestion, null);
+        channel.addGroup(OTHER_GROUP, 1, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+
+        /* Failed batch is released and the group waits for the ingestion to be usable. */
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        DefaultChannel.GroupState groupState = channel.getGroupState(TEST_GROUP);
+        verify(mockPersistence).releaseLogs(eq(TEST_GROUP), anyString());
+        ArgumentCaptor<Long> backoff = ArgumentCaptor.forClass(Long.class);
+        verify(mAppCenterHandler).postDelayed(eq(groupState.mRunnable), backoff.capture());
+        assertBackoff(backoff.getValue());
+        assertEquals(1, groupState.mPendingLogCount);
+        assertTrue(channel.isEnabled());
+        verify(mockPersistence, never()).clearPendingLogState();
+        verify(failingIngestion, never()).close();
+
+        /* Other ingestion is not affected. */
+        channel.enqueue(mock(Log.class), OTHER_GROUP, Flags.DEFAULTS);
+        verify(mockIngestion).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        verify(mockPersistence).deleteLogs(eq(OTHER_GROUP), anyString());
+
+        /* Nothing is sent to the failing ingestion before the end of the backoff. */
+        groupState.mRunnable.run();
+        verify(failingIngestion).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        verify(mAppCenterHandler, times(2)).postDelayed(eq(groupState.mRunnable), anyLong());
+
+        /* Send again once the ingestion works. */
+        when(failingIngestion.sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class))).then(getSendAsyncAnswer());
+        when(System.currentTimeMillis()).thenReturn(NOW + CircuitBreaker.INITIAL_BACKOFF);
+        groupState.mRunnable.run();
+        verify(failingIngestion, times(2)).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        verify(mockPersistence).deleteLogs(eq(TEST_GROUP), anyString());
+        assertEquals(0, groupState.mPendingLogCount);
+    }
+
+    @Test
+    public void poisonLogsAreBisected() throws Exception {
+        Log log1 = mock(Log.class);
+        Log log2 = mock(Log.class);
+        Log poisonLog = mock(Log.class);
+        Log log4 = mock(Log.class);
+        Persistence mockPersistence = mock(Persistence.class);
+        AppCenterIngestion mockIngestion = mock(AppCenterIngestion.class);
+        GroupListener mockListener = mock(GroupListener.class);
+        when(mockIngestion.isEnabled()).thenReturn(true);
+        when(mockPersistence.getLogs(anyString(), anyListOf(String.class), anyInt(), anyListOf(Log.class)))
+                .then(getGetLogsAnswer(Arrays.asList(log1, log2, poisonLog, log4)));
+        when(mockIngestion.sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class))).then(getRejectingSendAsyncAnswer(poisonLog));
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, mockIngestion, mAppCenterHandler);
+        channel.setFailureIsolationEnabled(true);
+        channel.addGroup(TEST_GROUP, 4, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, mockListener);
+        for (int i = 0; i < 4; i++) {
+            channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        }
+
+        /* Batch, then halves, then quarters of the second half. */
+        verify(mockIngestion, times(5)).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        verify(mockListener).onSuccess(log1);
+        verify(mockListener).onSuccess(log2);
+        verify(mockListener).onSuccess(log4);
+        verify(mockListener).onFailure(eq(poisonLog), any(HttpException.class));
+        verify(mockListener, never()).onFailure(eq(log1), any(Exception.class));
+        verify(mockPersistence).deleteLogs(TEST_GROUP, BATCH_ID);
+        verify(mockPersistence, never()).deleteLogs(TEST_GROUP);
+        assertNull(channel.getGroupState(TEST_GROUP).mBisection);
+        assertTrue(channel.isEnabled());
+    }
+
+    @Test
+    public void bisectionWaitsForIngestion() throws Exception {
+        when(System.currentTimeMillis()).thenReturn(NOW);
+        Log log1 = mock(Log.class);
+        Log poisonLog = mock(Log.class);
+        Persistence mockPersistence = mock(Persistence.class);
+        AppCenterIngestion mockIngestion = mock(AppCenterIngestion.class);
+        when(mockIngestion.isEnabled()).thenReturn(true);
+        when(mockPersistence.getLogs(anyString(), anyListOf(String.class), anyInt(), anyListOf(Log.class)))
+                .then(getGetLogsAnswer(Arrays.asList(log1, poisonLog)))
+                .thenReturn(null);
+        when(mockIngestion.sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class)))
+                .then(getSendAsyncAnswer(new HttpException(new HttpResponse(400))))
+                .then(getSendAsyncAnswer(new HttpException(new HttpResponse(503))))
+                .then(getRejectingSendAsyncAnswer(poisonLog));
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, mockIngestion, mAppCenterHandler);
+        channel.setFailureIsolationEnabled(true);
+        channel.addGroup(TEST_GROUP, 2, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+
+        /* First half failed with a recoverable error: wait. */
+        verify(mockIngestion, times(2)).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        ArgumentCaptor<Runnable> runnable = ArgumentCaptor.forClass(Runnable.class);
+        ArgumentCaptor<Long> backoff = ArgumentCaptor.forClass(Long.class);
+        verify(mAppCenterHandler, times(2)).postDelayed(runnable.capture(), backoff.capture());
+        assertBackoff(backoff.getValue());
+
+        /* Other logs of the group wait for the bisection. */
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        verify(mockPersistence).getLogs(anyString(), anyListOf(String.class), anyInt(), anyListOf(Log.class));
+
+        /* Resume bisection. */
+        runnable.getValue().run();
+        verify(mockIngestion, times(4)).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        verify(mockPersistence).deleteLogs(TEST_GROUP, BATCH_ID);
+        assertNull(channel.getGroupState(TEST_GROUP).mBisection);
+    }
+
+    @Test
+    public void groupErrorOnlyBlocksGroup() throws Exception {
+        when(System.currentTimeMillis()).thenReturn(NOW);
+        Persistence mockPersistence = mock(Persistence.class);
+        AppCenterIngestion mockIngestion = mock(AppCenterIngestion.class);
+        GroupListener mockListener = mock(GroupListener.class);
+        when(mockIngestion.isEnabled()).thenReturn(true);
+        when(mockPersistence.getLogs(anyString(), anyListOf(String.class), anyInt(), anyListOf(Log.class))).then(getGetLogsAnswer());
+        when(mockIngestion.sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class)))
+                .then(getSendAsyncAnswer(new HttpException(new HttpResponse(403))))
+                .then(getSendAsyncAnswer());
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, mockIngestion, mAppCenterHandler);
+        channel.setFailureIsolationEnabled(true);
+        channel.addGroup(TEST_GROUP, 1, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, mockListener);
+        channel.addGroup(OTHER_GROUP, 1, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+
+        /* Batch is dropped without bisecting it and the group is blocked. */
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        verify(mockListener).onFailure(any(Log.class), any(HttpException.class));
+        verify(mockPersistence).deleteLogs(eq(TEST_GROUP), anyString());
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        DefaultChannel.GroupState groupState = channel.getGroupState(TEST_GROUP);
+        ArgumentCaptor<Long> backoff = ArgumentCaptor.forClass(Long.class);
+        verify(mAppCenterHandler).postDelayed(eq(groupState.mRunnable), backoff.capture());
+        assertBackoff(backoff.getValue());
+        verify(mockIngestion).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+
+        /* Other group using the same ingestion is not affected. */
+        channel.enqueue(mock(Log.class), OTHER_GROUP, Flags.DEFAULTS);
+        verify(mockIngestion, times(2)).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        verify(mockPersistence).deleteLogs(eq(OTHER_GROUP), anyString());
+        assertTrue(channel.isEnabled());
+    }
+
+    @Test
+    public void serializationErrorIsBisected() throws Exception {
+        Log log1 = mock(Log.class);
+        Log log2 = mock(Log.class);
+        Persistence mockPersistence = mock(Persistence.class);
+        AppCenterIngestion mockIngestion = mock(AppCenterIngestion.class);
+        when(mockIngestion.isEnabled()).thenReturn(true);
+        when(mockPersistence.getLogs(anyString(), anyListOf(String.class), anyInt(), anyListOf(Log.class)))
+                .then(getGetLogsAnswer(Arrays.asList(log1, log2)));
+        when(mockIngestion.sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class)))
+                .then(getSendAsyncAnswer(new JSONException("mock")))
+                .then(getSendAsyncAnswer());
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, mockIngestion, mAppCenterHandler);
+        channel.setFailureIsolationEnabled(true);
+        channel.addGroup(TEST_GROUP, 2, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+
+        /* Batch, then both halves. */
+        verify(mockIngestion, times(3)).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        verify(mockPersistence).deleteLogs(TEST_GROUP, BATCH_ID);
+        assertNull(channel.getGroupState(TEST_GROUP).mBisection);
+    }
+
+    @Test
+    public void unexpectedErrorIsNotBisected() throws Exception {
+        when(System.currentTimeMillis()).thenReturn(NOW);
+        Persistence mockPersistence = mock(Persistence.class);
+        AppCenterIngestion mockIngestion = mock(AppCenterIngestion.class);
+        GroupListener mockListener = mock(GroupListener.class);
+        when(mockIngestion.isEnabled()).thenReturn(true);
+        when(mockPersistence.getLogs(anyString(), anyListOf(String.class), anyInt(), anyListOf(Log.class))).then(getGetLogsAnswer(2));
+        when(mockIngestion.sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class)))
+                .then(getSendAsyncAnswer(new IllegalStateException("mock")));
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, mockIngestion, mAppCenterHandler);
+        channel.setFailureIsolationEnabled(true);
+        channel.addGroup(TEST_GROUP, 2, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, mockListener);
+
+        /* Batch is dropped without bisecting it and the group is blocked. */
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        verify(mockIngestion).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        verify(mockListener, times(2)).onFailure(any(Log.class), any(IllegalStateException.class));
+        verify(mockPersistence).deleteLogs(eq(TEST_GROUP), anyString());
+        DefaultChannel.GroupState groupState = channel.getGroupState(TEST_GROUP);
+        assertNull(groupState.mBisection);
+        assertBackoff(groupState.mCircuitBreaker.getRemainingTime(NOW));
+        assertTrue(channel.isEnabled());
+    }
+
+    @Test
+    public void disablingStopsBisection() throws Exception {
+        Log log1 = mock(Log.class);
+        Log poisonLog = mock(Log.class);
+        Persistence mockPersistence = mock(Persistence.class);
+        AppCenterIngestion mockIngestion = mock(AppCenterIngestion.class);
+        GroupListener mockListener = mock(GroupListener.class);
+        when(mockIngestion.isEnabled()).thenReturn(true);
+        when(mockPersistence.getLogs(anyString(), anyListOf(String.class), anyInt(), anyListOf(Log.class)))
+                .then(getGetLogsAnswer(Arrays.asList(log1, poisonLog)))
+                .thenReturn(null);
+        when(mockIngestion.sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class)))
+                .then(getSendAsyncAnswer(new HttpException(new HttpResponse(400))))
+                .thenReturn(null);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, mockIngestion, mAppCenterHandler);
+        channel.setFailureIsolationEnabled(true);
+        channel.addGroup(TEST_GROUP, 2, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, mockListener);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+
+        /* Disable while sending the first half: all logs of the bisection fail. */
+        channel.setEnabled(false);
+        verify(mockListener).onFailure(eq(log1), any(Exception.class));
+        verify(mockListener).onFailure(eq(poisonLog), any(Exception.class));
+        assertNull(channel.getGroupState(TEST_GROUP).mBisection);
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.channel;
+
+import android.content.Context;
+
+import com.microsoft.appcenter.Flags;
+import com.microsoft.appcenter.http.HttpException;
+import com.microsoft.appcenter.http.HttpResponse;
+import com.microsoft.appcenter.http.ServiceCallback;
+import com.microsoft.appcenter.ingestion.AppCenterIngestion;
+import com.microsoft.appcenter.ingestion.models.Log;
+import com.microsoft.appcenter.ingestion.models.LogContainer;
+import com.microsoft.appcenter.ingestion.models.RawLog;
+import com.microsoft.appcenter.persistence.Persistence;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DefaultChannelFlushWindowTest extends AbstractDefaultChannelTest {
+
+    private static final String OTHER_GROUP = TEST_GROUP + "2";
+
+    private static final long FLUSH_WINDOW = 3000;
+
+    @Test
+    public void batchesOfGroupsSharingIngestionAreMerged() throws Exception {
+        Persistence mockPersistence = mock(Persistence.class);
+        AppCenterIngestion mockIngestion = mock(AppCenterIngestion.class);
+        when(mockIngestion.isEnabled()).thenReturn(true);
+        when(mockPersistence.getLogs(anyString(), anyListOf(String.class), anyInt(), anyListOf(Log.class))).then(getGetLogsAnswer());
+        when(mockIngestion.sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class))).then(getSendAsyncAnswer());
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, mockIngestion, mAppCenterHandler);
+        channel.setFlushWindow(FLUSH_WINDOW);
+        channel.addGroup(TEST_GROUP, 1, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        channel.addGroup(OTHER_GROUP, 1, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+
+        /* Trigger a batch in each group. */
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        channel.enqueue(mock(Log.class), OTHER_GROUP, Flags.DEFAULTS);
+
+        /* Nothing is sent before the end of the window, which is scheduled once. */
+        verify(mockIngestion, never()).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        ArgumentCaptor<Runnable> runnable = ArgumentCaptor.forClass(Runnable.class);
+        verify(mAppCenterHandler).postDelayed(runnable.capture(), eq(FLUSH_WINDOW));
+        assertEquals(1, channel.getGroupState(TEST_GROUP).mSendingBatches.size());
+        assertEquals(1, channel.getGroupState(OTHER_GROUP).mSendingBatches.size());
+
+        /* End the window: a single request holds both batches. */
+        runnable.getValue().run();
+        ArgumentCaptor<LogContainer> container = ArgumentCaptor.forClass(LogContainer.class);
+        verify(mockIngestion).sendAsync(anyString(), any(UUID.class), container.capture(), any(ServiceCallback.class));
+        assertEquals(2, container.getValue().getLogs().size());
+
+        /* Each group deleted its own batch. */
+        verify(mockPersistence).deleteLogs(eq(TEST_GROUP), anyString());
+        verify(mockPersistence).deleteLogs(eq(OTHER_GROUP), anyString());
+        assertEquals(0, channel.getGroupState(TEST_GROUP).mSendingBatches.size());
+        assertEquals(0, channel.getGroupState(OTHER_GROUP).mSendingBatches.size());
+    }
+
+    @Test
+    public void mergedBatchesRecoverableFailure() throws Exception {
+        Persistence mockPersistence = mock(Persistence.class);
+        AppCenterIngestion mockIngestion = mock(AppCenterIngestion.class);
+        when(mockIngestion.isEnabled()).thenReturn(true);
+        when(mockPersistence.getLogs(anyString(), anyListOf(String.class), anyInt(), anyListOf(Log.class))).then(getGetLogsAnswer());
+        when(mockIngestion.sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class)))
+                .then(getSendAsyncAnswer(new HttpException(new HttpResponse(503))));
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, mockIngestion, mAppCenterHandler);
+        channel.setFlushWindow(FLUSH_WINDOW);
+        channel.addGroup(TEST_GROUP, 1, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        channel.addGroup(OTHER_GROUP, 1, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        channel.enqueue(mock(Log.class), OTHER_GROUP, Flags.DEFAULTS);
+
+        /* End the window. */
+        ArgumentCaptor<Runnable> runnable = ArgumentCaptor.forClass(Runnable.class);
+        verify(mAppCenterHandler).postDelayed(runnable.capture(), eq(FLUSH_WINDOW));
+        runnable.getValue().run();
+
+        /* Nothing deleted, channel suspended and batches released. */
+        verify(mockPersistence, never()).deleteLogs(anyString(), anyString());
+        verify(mockPersistence).clearPendingLogState();
+        assertEquals(0, channel.getGroupState(TEST_GROUP).mSendingBatches.size());
+        assertEquals(0, channel.getGroupState(OTHER_GROUP).mSendingBatches.size());
+    }
+
+    @Test
+    public void disablingFlushWindowSendsWaitingBatches() throws Exception {
+        Persistence mockPersistence = mock(Persistence.class);
+        AppCenterIngestion mockIngestion = mock(AppCenterIngestion.class);
+        when(mockIngestion.isEnabled()).thenReturn(true);
+        when(mockPersistence.getLogs(anyString(), anyListOf(String.class), anyInt(), anyListOf(Log.class))).then(getGetLogsAnswer());
+        when(mockIngestion.sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class))).then(getSendAsyncAnswer());
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, mockIngestion, mAppCenterHandler);
+        channel.setFlushWindow(FLUSH_WINDOW);
+        channel.addGroup(TEST_GROUP, 1, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+
+        /* Disable window: batch is sent right away. */
+        ArgumentCaptor<Runnable> runnable = ArgumentCaptor.forClass(Runnable.class);
+        verify(mAppCenterHandler).postDelayed(runnable.capture(), eq(FLUSH_WINDOW));
+        channel.setFlushWindow(0);
+        verify(mAppCenterHandler).removeCallbacks(runnable.getValue());
+        verify(mockIngestion).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        verify(mockPersistence).deleteLogs(eq(TEST_GROUP), anyString());
+    }
+
+    @Test
+    public void mergedRequestIsCappedByLogCount() throws Exception {
+        Persistence mockPersistence = mock(Persistence.class);
+        AppCenterIngestion mockIngestion = mock(AppCenterIngestion.class);
+        when(mockIngestion.isEnabled()).thenReturn(true);
+        when(mockPersistence.getLogs(anyString(), anyListOf(String.class), anyInt(), anyListOf(Log.class))).then(getGetLogsAnswer());
+        when(mockIngestion.sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class))).then(getSendAsyncAnswer());
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, mockIngestion, mAppCenterHandler);
+        channel.setFlushWindow(FLUSH_WINDOW);
+        int batchSize = DefaultChannel.MAX_WINDOW_REQUEST_LOGS / 2 + 1;
+        channel.addGroup(TEST_GROUP, batchSize, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        channel.addGroup(OTHER_GROUP, batchSize, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+
+        /* The first batch waits for the window. */
+        for (int i = 0; i < batchSize; i++) {
+            channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        }
+        verify(mockIngestion, never()).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+
+        /* The second batch fills the window: both are sent right away, in separate requests. */
+        for (int i = 0; i < batchSize; i++) {
+            channel.enqueue(mock(Log.class), OTHER_GROUP, Flags.DEFAULTS);
+        }
+        ArgumentCaptor<LogContainer> container = ArgumentCaptor.forClass(LogContainer.class);
+        verify(mockIngestion, times(2)).sendAsync(anyString(), any(UUID.class), container.capture(), any(ServiceCallback.class));
+        for (LogContainer logContainer : container.getAllValues()) {
+            assertEquals(batchSize, logContainer.getLogs().size());
+        }
+        verify(mockPersistence).deleteLogs(eq(TEST_GROUP), anyString());
+        verify(mockPersistence).deleteLogs(eq(OTHER_GROUP), anyString());
+
+        /* End of the window has nothing left to send. */
+        ArgumentCaptor<Runnable> runnable = ArgumentCaptor.forClass(Runnable.class);
+        verify(mAppCenterHandler).postDelayed(runnable.capture(), eq(FLUSH_WINDOW));
+        runnable.getValue().run();
+        verify(mockIngestion, times(2)).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+    }
+
+    @Test
+    public void mergedRequestIsCappedBySize() throws Exception {
+        final String payload = new String(new char[(int) (DefaultChannel.MAX_WINDOW_REQUEST_SIZE / 2 + 1)]).replace('\0', 'a');
+        Persistence mockPersistence = mock(Persistence.class);
+        AppCenterIngestion mockIngestion = mock(AppCenterIngestion.class);
+        when(mockIngestion.isEnabled()).thenReturn(true);
+        when(mockPersistence.getRawLogs(anyString(), anyListOf(String.class), anyInt(), anyListOf(RawLog.class))).then(new Answer<String>() {
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public String answer(InvocationOnMock invocation) {
+                ((List<RawLog>) invocation.getArguments()[3]).add(new RawLog(1, "mock", payload, null, null));
+                return UUID.randomUUID().toString();
+            }
+        });
+        when(mockIngestion.sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class))).then(getSendAsyncAnswer());
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, mockIngestion, mAppCenterHandler);
+        channel.setRawPayloadsEnabled(true);
+        channel.setFlushWindow(FLUSH_WINDOW);
+        channel.addGroup(TEST_GROUP, 1, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        channel.addGroup(OTHER_GROUP, 1, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+
+        /* Two large batches do not fit in a request together. */
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        verify(mockIngestion, never()).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        channel.enqueue(mock(Log.class), OTHER_GROUP, Flags.DEFAULTS);
+        ArgumentCaptor<LogContainer> container = ArgumentCaptor.forClass(LogContainer.class);
+        verify(mockIngestion, times(2)).sendAsync(anyString(), any(UUID.class), container.capture(), any(ServiceCallback.class));
+        for (LogContainer logContainer : container.getAllValues()) {
+            assertEquals(1, logContainer.getRawLogs().size());
+        }
+        verify(mockPersistence).deleteLogs(eq(TEST_GROUP), anyString());
+        verify(mockPersistence).deleteLogs(eq(OTHER_GROUP), anyString());
+    }
+}
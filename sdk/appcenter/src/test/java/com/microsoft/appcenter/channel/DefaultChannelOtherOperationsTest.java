@@ -8,18 +8,30 @@ package com.microsoft.appcenter.channel;
 import android.content.Context;
 
 import com.microsoft.appcenter.Flags;
+import com.microsoft.appcenter.http.HttpResponse;
+import com.microsoft.appcenter.http.ServiceCallback;
 import com.microsoft.appcenter.ingestion.AppCenterIngestion;
 import com.microsoft.appcenter.ingestion.Ingestion;
 import com.microsoft.appcenter.ingestion.models.Log;
+import com.microsoft.appcenter.ingestion.models.LogContainer;
 import com.microsoft.appcenter.persistence.Persistence;
+import com.microsoft.appcenter.utils.AppCenterLog;
+import com.microsoft.appcenter.utils.NetworkStateHelper;
 
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Matchers;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.UUID;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
@@ -31,10 +43,12 @@ import static org.mockito.Matchers.notNull;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 import static org.powermock.api.mockito.PowerMockito.spy;
+import static org.powermock.api.mockito.PowerMockito.verifyStatic;
 
 public class DefaultChannelOtherOperationsTest extends AbstractDefaultChannelTest {
 
@@ -74,6 +88,23 @@ public class DefaultChannelOtherOperationsTest extends AbstractDefaultChannelTes
         verifyNoMoreInteractions(listener);
     }
 
+    @Test
+    public void enqueueDoesNotBuildDebugMessagesWhenFiltered() {
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mock(Persistence.class), mock(AppCenterIngestion.class), mAppCenterHandler);
+        channel.addGroup(TEST_GROUP, 50, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+
+        /* Debug logs are disabled by the mock, as with the default log level. */
+        for (int i = 0; i < 10; i++) {
+            channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        }
+
+        /* No message was built for the logger. */
+        verifyStatic(never());
+        AppCenterLog.debug(anyString(), anyString());
+        verifyStatic(never());
+        AppCenterLog.verbose(anyString(), anyString());
+    }
+
     @Test
     public void clear() {
         Persistence mockPersistence = mock(Persistence.class);
@@ -110,6 +141,82 @@ public class DefaultChannelOtherOperationsTest extends AbstractDefaultChannelTes
         verify(mockPersistence).clearPendingLogState();
     }
 
+    @Test
+    public void writeBehind() throws Persistence.PersistenceException {
+        Persistence mockPersistence = mock(Persistence.class);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, mock(AppCenterIngestion.class), mAppCenterHandler);
+        channel.addGroup(TEST_GROUP, 50, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        channel.setWriteBehind(20, 1000);
+        verify(mockPersistence).setWriteBufferSize(20);
+
+        /* Flush is scheduled only once for several logs. */
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        verify(mockPersistence, times(2)).putLog(any(Log.class), eq(TEST_GROUP), eq(Flags.DEFAULTS));
+        ArgumentCaptor<Runnable> flushRunnable = ArgumentCaptor.forClass(Runnable.class);
+        verify(mAppCenterHandler).postDelayed(flushRunnable.capture(), eq(1000L));
+
+        /* Timer flushes the buffer. */
+        flushRunnable.getValue().run();
+        verify(mockPersistence).flush();
+
+        /* Shutdown cancels a scheduled flush and flushes immediately. */
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        channel.shutdown();
+        verify(mAppCenterHandler).removeCallbacks(flushRunnable.getValue());
+        verify(mockPersistence, times(2)).flush();
+
+        /* Disabling write-behind mode. */
+        channel.setWriteBehind(0, 1000);
+        verify(mockPersistence).setWriteBufferSize(0);
+    }
+
+    @Test
+    public void compressedStorageCompressesStoredLogsInPages() {
+        Persistence mockPersistence = mock(Persistence.class);
+        when(mockPersistence.compressStoredLogs(anyInt())).thenReturn(true).thenReturn(false);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, mock(AppCenterIngestion.class), mAppCenterHandler);
+        channel.setCompressedStorageEnabled(true);
+        verify(mockPersistence).setCompressedStorageEnabled(true);
+        ArgumentCaptor<Runnable> compressionRunnable = ArgumentCaptor.forClass(Runnable.class);
+        verify(mAppCenterHandler).postDelayed(compressionRunnable.capture(), eq(DefaultChannel.STORAGE_COMPRESSION_DELAY));
+        verify(mockPersistence, never()).compressStoredLogs(anyInt());
+
+        /* A pass that may have left logs schedules another one. */
+        compressionRunnable.getValue().run();
+        verify(mockPersistence).compressStoredLogs(DefaultChannel.STORAGE_COMPRESSION_PAGE_SIZE);
+        verify(mAppCenterHandler, times(2)).postDelayed(compressionRunnable.getValue(), DefaultChannel.STORAGE_COMPRESSION_DELAY);
+
+        /* The last pass stops. */
+        compressionRunnable.getValue().run();
+        verify(mockPersistence, times(2)).compressStoredLogs(DefaultChannel.STORAGE_COMPRESSION_PAGE_SIZE);
+        verify(mAppCenterHandler, times(2)).postDelayed(compressionRunnable.getValue(), DefaultChannel.STORAGE_COMPRESSION_DELAY);
+
+        /* Disabling compression cancels a scheduled pass. */
+        channel.setCompressedStorageEnabled(true);
+        channel.setCompressedStorageEnabled(false);
+        verify(mAppCenterHandler).removeCallbacks(compressionRunnable.getValue());
+    }
+
+    @Test
+    public void storageCompressionWaitsForBatchesBeingSent() {
+        Persistence mockPersistence = mock(Persistence.class);
+        when(mockPersistence.getLogs(eq(TEST_GROUP), anyListOf(String.class), anyInt(), anyListOf(Log.class))).then(getGetLogsAnswer(1));
+        AppCenterIngestion mockIngestion = mock(AppCenterIngestion.class);
+        when(mockIngestion.isEnabled()).thenReturn(true);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, mockIngestion, mAppCenterHandler);
+        channel.addGroup(TEST_GROUP, 1, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        channel.setCompressedStorageEnabled(true);
+        ArgumentCaptor<Runnable> compressionRunnable = ArgumentCaptor.forClass(Runnable.class);
+        verify(mAppCenterHandler).postDelayed(compressionRunnable.capture(), eq(DefaultChannel.STORAGE_COMPRESSION_DELAY));
+
+        /* The batch is never acknowledged, the pass is postponed. */
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        compressionRunnable.getValue().run();
+        verify(mockPersistence, never()).compressStoredLogs(anyInt());
+        verify(mAppCenterHandler, times(2)).postDelayed(compressionRunnable.getValue(), DefaultChannel.STORAGE_COMPRESSION_DELAY);
+    }
+
     @Test
     public void filter() throws Persistence.PersistenceException {
 
@@ -214,4 +321,50 @@ public class DefaultChannelOtherOperationsTest extends AbstractDefaultChannelTes
         assertTrue(channel.setMaxStorageSize(20480));
         assertFalse(channel.setMaxStorageSize(2));
     }
+
+    @Test
+    public void adaptiveBatchingAppliesToGroupsAddedAfterwards() {
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mock(Persistence.class), mock(Ingestion.class), mAppCenterHandler);
+        channel.addGroup(TEST_GROUP, 50, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        channel.setAdaptiveBatchingEnabled(true);
+        channel.addGroup(TEST_GROUP + "2", 50, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        assertNull(channel.getGroupState(TEST_GROUP).mAdaptiveBatchPolicy);
+        DefaultChannel.GroupState groupState = channel.getGroupState(TEST_GROUP + "2");
+        assertNotNull(groupState.mAdaptiveBatchPolicy);
+
+        /* Values stay within what the group was added with. */
+        assertTrue(groupState.getMaxLogsPerBatch() <= 50);
+        assertTrue(groupState.getBatchTimeInterval() >= BATCH_TIME_INTERVAL);
+        assertTrue(groupState.getBatchTimeInterval() <= BATCH_TIME_INTERVAL * 2);
+        assertTrue(groupState.getMaxParallelBatches() <= MAX_PARALLEL_BATCHES);
+    }
+
+    @Test
+    public void adaptiveBatchingLearnsFromHttpCall() {
+        Persistence mockPersistence = mock(Persistence.class);
+        when(mockPersistence.getLogs(eq(TEST_GROUP), anyListOf(String.class), anyInt(), anyListOf(Log.class))).then(getGetLogsAnswer(1));
+        AppCenterIngestion mockIngestion = mock(AppCenterIngestion.class);
+        when(mockIngestion.isEnabled()).thenReturn(true);
+        when(mockIngestion.sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class))).then(new Answer<Object>() {
+
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                ((ServiceCallback) invocation.getArguments()[3]).onCallSucceeded(new HttpResponse(200, "", new HashMap<String, String>(), 1234, 2048));
+                return null;
+            }
+        });
+        try {
+            DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, mockIngestion, mAppCenterHandler);
+            channel.setAdaptiveBatchingEnabled(true);
+            channel.addGroup(TEST_GROUP, 1, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+            channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+
+            /* Latency is the duration of the HTTP call itself, not the time the channel waited. */
+            AdaptiveBatchPolicy policy = channel.getGroupState(TEST_GROUP).mAdaptiveBatchPolicy;
+            assertEquals(1234, policy.getLatency(), 0);
+            assertEquals(0, policy.getFailureRate(), 0);
+        } finally {
+            NetworkStateHelper.unsetInstance();
+        }
+    }
 }
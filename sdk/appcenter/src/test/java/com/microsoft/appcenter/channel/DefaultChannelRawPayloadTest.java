@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.channel;
+
+import android.content.Context;
+
+import com.microsoft.appcenter.Flags;
+import com.microsoft.appcenter.http.HttpException;
+import com.microsoft.appcenter.http.HttpResponse;
+import com.microsoft.appcenter.http.ServiceCallback;
+import com.microsoft.appcenter.ingestion.AppCenterIngestion;
+import com.microsoft.appcenter.ingestion.models.Log;
+import com.microsoft.appcenter.ingestion.models.LogContainer;
+import com.microsoft.appcenter.ingestion.models.RawLog;
+import com.microsoft.appcenter.persistence.Persistence;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DefaultChannelRawPayloadTest extends AbstractDefaultChannelTest {
+
+    private static Answer<String> getGetRawLogsAnswer() {
+        return new Answer<String>() {
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public String answer(InvocationOnMock invocation) {
+                Object[] args = invocation.getArguments();
+                int length = (int) args[2];
+                List<RawLog> logs = (List<RawLog>) args[3];
+                for (int i = 0; i < length; i++) {
+                    logs.add(new RawLog(i, "mock", "{}", null, null));
+                }
+                return length > 0 ? UUID.randomUUID().toString() : null;
+            }
+        };
+    }
+
+    @Test
+    public void sendRawPayloadsWithoutGroupListener() throws Exception {
+        Persistence mockPersistence = mock(Persistence.class);
+        AppCenterIngestion mockIngestion = mock(AppCenterIngestion.class);
+        when(mockIngestion.isEnabled()).thenReturn(true);
+        when(mockPersistence.getRawLogs(anyString(), anyListOf(String.class), anyInt(), anyListOf(RawLog.class))).then(getGetRawLogsAnswer());
+        when(mockIngestion.sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class))).then(getSendAsyncAnswer());
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, mockIngestion, mAppCenterHandler);
+        channel.setRawPayloadsEnabled(true);
+        channel.addGroup(TEST_GROUP, 1, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+
+        /* Enqueue a log to trigger a batch. */
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+
+        /* Verify logs were not deserialized and container holds stored payloads. */
+        verify(mockPersistence, never()).getLogs(anyString(), anyListOf(String.class), anyInt(), anyListOf(Log.class));
+        ArgumentCaptor<LogContainer> container = ArgumentCaptor.forClass(LogContainer.class);
+        verify(mockIngestion).sendAsync(anyString(), any(UUID.class), container.capture(), any(ServiceCallback.class));
+        assertNull(container.getValue().getLogs());
+        assertEquals(1, container.getValue().getRawLogs().size());
+
+        /* Batch deleted after success. */
+        verify(mockPersistence).deleteLogs(eq(TEST_GROUP), anyString());
+        assertEquals(0, channel.getGroupState(TEST_GROUP).mSendingRawBatches.size());
+    }
+
+    @Test
+    public void sendLogsWhenGroupListenerNeedsThem() throws Exception {
+        Persistence mockPersistence = mock(Persistence.class);
+        AppCenterIngestion mockIngestion = mock(AppCenterIngestion.class);
+        when(mockIngestion.isEnabled()).thenReturn(true);
+        when(mockPersistence.getLogs(anyString(), anyListOf(String.class), anyInt(), anyListOf(Log.class))).then(getGetLogsAnswer());
+        when(mockIngestion.sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class))).then(getSendAsyncAnswer());
+        Channel.ConditionalGroupListener mockListener = mock(Channel.ConditionalGroupListener.class);
+        when(mockListener.needsLogs()).thenReturn(true);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, mockIngestion, mAppCenterHandler);
+        channel.setRawPayloadsEnabled(true);
+        channel.addGroup(TEST_GROUP, 1, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, mockListener);
+
+        /* Enqueue a log to trigger a batch. */
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+
+        /* Verify logs were deserialized for the listener. */
+        verify(mockPersistence, never()).getRawLogs(anyString(), anyListOf(String.class), anyInt(), anyListOf(RawLog.class));
+        verify(mockListener).onBeforeSending(any(Log.class));
+        verify(mockListener).onSuccess(any(Log.class));
+    }
+
+    @Test
+    public void rawPayloadsRecoverableFailure() throws Exception {
+        Persistence mockPersistence = mock(Persistence.class);
+        AppCenterIngestion mockIngestion = mock(AppCenterIngestion.class);
+        when(mockIngestion.isEnabled()).thenReturn(true);
+        when(mockPersistence.getRawLogs(anyString(), anyListOf(String.class), anyInt(), anyListOf(RawLog.class))).then(getGetRawLogsAnswer());
+        when(mockIngestion.sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class)))
+                .then(getSendAsyncAnswer(new HttpException(new HttpResponse(503))));
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, mockIngestion, mAppCenterHandler);
+        channel.setRawPayloadsEnabled(true);
+        channel.addGroup(TEST_GROUP, 1, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+
+        /* Enqueue a log to trigger a batch. */
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+
+        /* Log is pending again and nothing was deleted. */
+        assertEquals(1, channel.getGroupState(TEST_GROUP).mPendingLogCount);
+        verify(mockPersistence, never()).deleteLogs(anyString(), anyString());
+        verify(mockPersistence).clearPendingLogState();
+    }
+}
@@ -34,6 +34,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.Writer;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
@@ -47,6 +48,7 @@ import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 import javax.net.ssl.HttpsURLConnection;
@@ -57,6 +59,7 @@ import static com.microsoft.appcenter.http.DefaultHttpClient.METHOD_POST;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyMapOf;
@@ -117,7 +120,8 @@ public class DefaultHttpClientTest {
                         (HttpClient.CallTemplate) invocation.getArguments()[3],
                         (ServiceCallback) invocation.getArguments()[4],
                         (DefaultHttpClientCallTask.Tracker) invocation.getArguments()[5],
-                        (boolean) invocation.getArguments()[6]));
+                        (boolean) invocation.getArguments()[6],
+                        invocation.getArguments().length > 7 && (boolean) invocation.getArguments()[7]));
                 when(call.executeOnExecutor(any(Executor.class))).then(new Answer<DefaultHttpClientCallTask>() {
 
                     @Override
@@ -196,6 +200,7 @@ public class DefaultHttpClientTest {
         /* Mock related to pretty json logging. */
         mockStatic(AppCenterLog.class);
         when(AppCenterLog.getLogLevel()).thenReturn(Log.VERBOSE);
+        when(AppCenterLog.isVerboseEnabled()).thenReturn(true);
         JSONObject jsonObject = mock(JSONObject.class);
         whenNew(JSONObject.class).withAnyArguments().thenReturn(jsonObject);
         String prettyString = "{\n" +
@@ -333,6 +338,59 @@ public class DefaultHttpClientTest {
         httpClient.close();
     }
 
+    @Test
+    public void get200WithDedicatedExecutorKeepsConnectionAlive() throws Exception {
+
+        /* Configure mock HTTPS. */
+        String urlString = "https://mock/get";
+        HttpsURLConnection urlConnection = mockConnection(urlString);
+        when(urlConnection.getResponseCode()).thenReturn(200);
+        when(urlConnection.getInputStream()).thenReturn(new ByteArrayInputStream("OK".getBytes()));
+
+        /* Configure API client with its own executor. */
+        DefaultHttpClient httpClient = new DefaultHttpClient(true, 2);
+        assertTrue(httpClient.isKeepAliveEnabled());
+        assertNotNull(httpClient.getExecutor());
+        assertEquals(2, httpClient.getExecutor().getMaximumPoolSize());
+        final AtomicReference<DefaultHttpClientCallTask> callTask = new AtomicReference<>();
+        mockCall(new Consumer<DefaultHttpClientCallTask>() {
+
+            @Override
+            public void accept(DefaultHttpClientCallTask call) {
+                callTask.set(call);
+            }
+        });
+
+        /* Test calling code. */
+        ServiceCallback serviceCallback = mock(ServiceCallback.class);
+        httpClient.callAsync(urlString, METHOD_GET, new HashMap<String, String>(), mock(HttpClient.CallTemplate.class), serviceCallback);
+        verify(serviceCallback).onCallSucceeded(new HttpResponse(200, "OK", Collections.<String, String>emptyMap()));
+        verify(callTask.get()).executeOnExecutor(httpClient.getExecutor());
+
+        /* The connection is not disconnected so that the platform can reuse its socket, even after closing. */
+        httpClient.close();
+        verify(urlConnection, never()).disconnect();
+    }
+
+    @Test
+    public void failedCallWithDedicatedExecutorDisconnects() throws Exception {
+
+        /* Configure mock HTTPS failing to read the response. */
+        String urlString = "https://mock/get";
+        HttpsURLConnection urlConnection = mockConnection(urlString);
+        when(urlConnection.getResponseCode()).thenReturn(200);
+        when(urlConnection.getInputStream()).thenThrow(new IOException("mock"));
+
+        /* Test calling code. */
+        DefaultHttpClient httpClient = new DefaultHttpClient(true, 2);
+        ServiceCallback serviceCallback = mock(ServiceCallback.class);
+        mockCall();
+        httpClient.callAsync(urlString, METHOD_GET, new HashMap<String, String>(), mock(HttpClient.CallTemplate.class), serviceCallback);
+        verify(serviceCallback).onCallFailed(any(IOException.class));
+        verify(urlConnection).disconnect();
+        httpClient.close();
+    }
+
     @Test
     public void get2xx() throws Exception {
 
@@ -430,6 +488,7 @@ public class DefaultHttpClientTest {
         /* Set log level to verbose to test shorter app secret as well. */
         mockStatic(AppCenterLog.class);
         when(AppCenterLog.getLogLevel()).thenReturn(Log.VERBOSE);
+        when(AppCenterLog.isVerboseEnabled()).thenReturn(true);
 
         /* Configure mock HTTPS. */
         String urlString = "https://mock/get";
@@ -490,6 +549,7 @@ public class DefaultHttpClientTest {
         /* Set log level to verbose to test shorter app secret as well. */
         mockStatic(AppCenterLog.class);
         when(AppCenterLog.getLogLevel()).thenReturn(Log.VERBOSE);
+        when(AppCenterLog.isVerboseEnabled()).thenReturn(true);
 
         /* Configure mock HTTPS. */
         String urlString = "https://mock/get";
@@ -537,6 +597,7 @@ public class DefaultHttpClientTest {
         /* Mock verbose logs. */
         mockStatic(AppCenterLog.class);
         when(AppCenterLog.getLogLevel()).thenReturn(Log.VERBOSE);
+        when(AppCenterLog.isVerboseEnabled()).thenReturn(true);
 
         /* Configure mock HTTPS. */
         String urlString = "https://mock/get";
@@ -592,6 +653,7 @@ public class DefaultHttpClientTest {
         /* Mock verbose logs. */
         mockStatic(AppCenterLog.class);
         when(AppCenterLog.getLogLevel()).thenReturn(Log.VERBOSE);
+        when(AppCenterLog.isVerboseEnabled()).thenReturn(true);
 
         /* Configure mock HTTPS. */
         String urlString = "https://mock/get";
@@ -1074,12 +1136,100 @@ public class DefaultHttpClientTest {
         }));
     }
 
+    @Test
+    public void sendStreamingGzipWithoutVerboseLogging() throws Exception {
+
+        /* Mock no verbose logging. */
+        mockStatic(AppCenterLog.class);
+        when(AppCenterLog.getLogLevel()).thenReturn(Log.DEBUG);
+
+        /* Configure mock HTTPS. */
+        String urlString = "https://mock";
+        HttpsURLConnection urlConnection = mockConnection(urlString);
+        when(urlConnection.getResponseCode()).thenReturn(200);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        when(urlConnection.getOutputStream()).thenReturn(buffer);
+        when(urlConnection.getInputStream()).thenReturn(new ByteArrayInputStream("OK".getBytes()));
+
+        /* Configure API client with a template writing a short payload. */
+        final String payload = "{\"a\":1}";
+        HttpClient.StreamingCallTemplate callTemplate = mock(HttpClient.StreamingCallTemplate.class);
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                ((Writer) invocation.getArguments()[0]).write(payload);
+                return null;
+            }
+        }).when(callTemplate).writeRequestBody(any(Writer.class));
+        DefaultHttpClient httpClient = new DefaultHttpClient();
+
+        /* Test calling code. */
+        ServiceCallback serviceCallback = mock(ServiceCallback.class);
+        mockCall();
+        httpClient.callAsync(urlString, METHOD_POST, new HashMap<String, String>(), callTemplate, serviceCallback);
+        verify(serviceCallback).onCallSucceeded(new HttpResponse(200, "OK", Collections.<String, String>emptyMap()));
+        verify(urlConnection).setRequestProperty("Content-Type", "application/json");
+        verify(urlConnection).setRequestProperty("Content-Encoding", "gzip");
+        verify(urlConnection).setDoOutput(true);
+        verify(urlConnection).setChunkedStreamingMode(0);
+        verify(urlConnection, never()).setFixedLengthStreamingMode(anyInt());
+        verify(callTemplate).onBeforeCalling(any(URL.class), anyMapOf(String.class, String.class));
+        verify(callTemplate, never()).buildRequestBody();
+        httpClient.close();
+
+        /* Even a short payload is compressed as its size is not known in advance. */
+        InputStream gzipStream = new GZIPInputStream(new ByteArrayInputStream(buffer.toByteArray()));
+        ByteArrayOutputStream uncompressed = new ByteArrayOutputStream();
+        int read;
+        while ((read = gzipStream.read()) != -1) {
+            uncompressed.write(read);
+        }
+        assertEquals(payload, uncompressed.toString("UTF-8"));
+    }
+
+    @Test
+    public void sendStreamingTemplateAsStringWithVerboseLogging() throws Exception {
+
+        /* Mock verbose logging. */
+        mockStatic(AppCenterLog.class);
+        when(AppCenterLog.getLogLevel()).thenReturn(Log.VERBOSE);
+        when(AppCenterLog.isVerboseEnabled()).thenReturn(true);
+
+        /* Configure mock HTTPS. */
+        String urlString = "https://mock";
+        HttpsURLConnection urlConnection = mockConnection(urlString);
+        when(urlConnection.getResponseCode()).thenReturn(200);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        when(urlConnection.getOutputStream()).thenReturn(buffer);
+        when(urlConnection.getInputStream()).thenReturn(new ByteArrayInputStream("OK".getBytes()));
+
+        /* Configure API client. */
+        String payload = "{\"a\":1}";
+        HttpClient.StreamingCallTemplate callTemplate = mock(HttpClient.StreamingCallTemplate.class);
+        when(callTemplate.buildRequestBody()).thenReturn(payload);
+        DefaultHttpClient httpClient = new DefaultHttpClient();
+
+        /* The body is built as a string to be logged. */
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", "custom");
+        ServiceCallback serviceCallback = mock(ServiceCallback.class);
+        mockCall();
+        httpClient.callAsync(urlString, METHOD_POST, headers, callTemplate, serviceCallback);
+        verify(serviceCallback).onCallSucceeded(new HttpResponse(200, "OK", Collections.<String, String>emptyMap()));
+        verify(callTemplate, never()).writeRequestBody(any(Writer.class));
+        verify(urlConnection).setFixedLengthStreamingMode(payload.length());
+        httpClient.close();
+        assertEquals(payload, buffer.toString("UTF-8"));
+    }
+
     @Test
     public void sendNoGzipWhenCompressionDisabled() throws Exception {
 
         /* Mock verbose logging. */
         mockStatic(AppCenterLog.class);
         when(AppCenterLog.getLogLevel()).thenReturn(Log.VERBOSE);
+        when(AppCenterLog.isVerboseEnabled()).thenReturn(true);
 
         /* Configure mock HTTP. */
         String urlString = "https://mock";
@@ -1142,6 +1292,7 @@ public class DefaultHttpClientTest {
         /* Mock verbose logging. */
         mockStatic(AppCenterLog.class);
         when(AppCenterLog.getLogLevel()).thenReturn(Log.VERBOSE);
+        when(AppCenterLog.isVerboseEnabled()).thenReturn(true);
 
         /* Configure mock HTTPS. */
         String urlString = "https://mock";
@@ -1204,6 +1355,7 @@ public class DefaultHttpClientTest {
         /* Mock verbose logging. */
         mockStatic(AppCenterLog.class);
         when(AppCenterLog.getLogLevel()).thenReturn(Log.VERBOSE);
+        when(AppCenterLog.isVerboseEnabled()).thenReturn(true);
 
         /* Configure mock HTTPS. */
         String urlString = "https://mock";
@@ -12,6 +12,7 @@ import org.junit.Test;
 import static com.microsoft.appcenter.http.HttpUtils.MAX_CHARACTERS_DISPLAYED_FOR_SECRET;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 
@@ -98,6 +99,16 @@ public class HttpUtilsTest {
         assertFalse(defaultHttpClient.isCompressionEnabled());
     }
 
+    @Test
+    public void dedicatedExecutorSettings() {
+        HttpClient httpClient = HttpUtils.createHttpClient(mock(Context.class), true, 3);
+        assertTrue(httpClient instanceof HttpClientRetryer);
+        DefaultHttpClient defaultHttpClient = getDefaultHttpClient((HttpClientDecorator) httpClient);
+        assertEquals(3, defaultHttpClient.getExecutor().getMaximumPoolSize());
+        assertTrue(defaultHttpClient.isKeepAliveEnabled());
+        assertNull(getDefaultHttpClient((HttpClientDecorator) HttpUtils.createHttpClient(mock(Context.class))).getExecutor());
+    }
+
     private DefaultHttpClient getDefaultHttpClient(HttpClientDecorator httpClientDecorator) {
         httpClientDecorator = (HttpClientDecorator) httpClientDecorator.getDecoratedApi();
         return (DefaultHttpClient) httpClientDecorator.getDecoratedApi();
@@ -186,6 +186,7 @@ public class AppCenterIngestionTest {
         HttpClient.CallTemplate callTemplate = getCallTemplate(appSecret);
         AppCenterLog.setLogLevel(android.util.Log.VERBOSE);
         mockStatic(AppCenterLog.class);
+        when(AppCenterLog.isVerboseEnabled()).thenReturn(true);
 
         /* Call onBeforeCalling with parameters. */
         callTemplate.onBeforeCalling(url, headers);
@@ -13,6 +13,7 @@ import com.microsoft.appcenter.http.ServiceCall;
 import com.microsoft.appcenter.http.ServiceCallback;
 import com.microsoft.appcenter.ingestion.models.Log;
 import com.microsoft.appcenter.ingestion.models.LogContainer;
+import com.microsoft.appcenter.ingestion.models.RawLog;
 import com.microsoft.appcenter.ingestion.models.json.LogSerializer;
 import com.microsoft.appcenter.ingestion.models.one.CommonSchemaLog;
 import com.microsoft.appcenter.ingestion.models.one.Extensions;
@@ -182,6 +183,38 @@ public class OneCollectorIngestionTest {
         verify(mHttpClient).reopen();
     }
 
+    @Test
+    public void sendRawLogsAsync() throws Exception {
+
+        /* Mock time. */
+        mockStatic(System.class);
+        when(System.currentTimeMillis()).thenReturn(1234L);
+
+        /* Build some payload from stored logs. */
+        LogContainer container = new LogContainer();
+        container.setRawLogs(Arrays.asList(
+                new RawLog(1, "common", "mockPayload1", "key1", "token1"),
+                new RawLog(2, "common", "mockPayload2", "key2", "token2"),
+                new RawLog(3, "common", "mockPayload3", "key1", "token1")));
+        LogSerializer serializer = mock(LogSerializer.class);
+
+        /* Configure mock HTTP. */
+        ServiceCall call = mock(ServiceCall.class);
+        ArgumentCaptor<HttpClient.CallTemplate> callTemplate = ArgumentCaptor.forClass(HttpClient.CallTemplate.class);
+        when(mHttpClient.callAsync(anyString(), anyString(), mHeadersCaptor.capture(), callTemplate.capture(), any(ServiceCallback.class))).thenReturn(call);
+
+        /* Test calling code. */
+        OneCollectorIngestion ingestion = new OneCollectorIngestion(mHttpClient, serializer);
+        ServiceCallback serviceCallback = mock(ServiceCallback.class);
+        assertEquals(call, ingestion.sendAsync(null, null, container, serviceCallback));
+
+        /* Verify API keys and payload come from stored logs without serializing. */
+        assertEquals("token1,token2", mHeadersCaptor.getValue().get(OneCollectorIngestion.API_KEY));
+        assertNull(mHeadersCaptor.getValue().get(TICKETS));
+        assertEquals("mockPayload1\nmockPayload2\nmockPayload3\n", callTemplate.getValue().buildRequestBody());
+        verify(serializer, never()).serializeLog(any(Log.class));
+    }
+
     @Test
     public void passTicketsDebug() {
         Constants.APPLICATION_DEBUGGABLE = true;
@@ -337,6 +370,7 @@ public class OneCollectorIngestionTest {
         HttpClient.CallTemplate callTemplate = getCallTemplate();
         AppCenterLog.setLogLevel(android.util.Log.VERBOSE);
         mockStatic(AppCenterLog.class);
+        when(AppCenterLog.isVerboseEnabled()).thenReturn(true);
 
         /* Call onBeforeCalling with parameters. */
         callTemplate.onBeforeCalling(url, headers);
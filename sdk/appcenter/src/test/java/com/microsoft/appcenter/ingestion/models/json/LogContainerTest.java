@@ -8,6 +8,7 @@ package com.microsoft.appcenter.ingestion.models.json;
 import com.microsoft.appcenter.ingestion.models.AbstractLog;
 import com.microsoft.appcenter.ingestion.models.Log;
 import com.microsoft.appcenter.ingestion.models.LogContainer;
+import com.microsoft.appcenter.ingestion.models.RawLog;
 import com.microsoft.appcenter.test.TestUtils;
 
 import org.junit.Test;
@@ -53,4 +54,25 @@ public class LogContainerTest {
         TestUtils.compareSelfNullClass(container1);
         TestUtils.checkNotEquals(container1, container2);
     }
+
+    @Test
+    public void compareRawLogContainer() {
+        LogContainer container1 = new LogContainer();
+        LogContainer container2 = new LogContainer();
+        RawLog rawLog1 = new RawLog(1, "type", "{}", null, null);
+        RawLog rawLog2 = new RawLog(2, "type", "{}", "key", "token");
+        TestUtils.compareSelfNullClass(rawLog1);
+        TestUtils.checkNotEquals(rawLog1, rawLog2);
+        TestUtils.checkEquals(rawLog1, new RawLog(1, "type", "{}", null, null));
+
+        container1.setRawLogs(Collections.singletonList(rawLog1));
+        TestUtils.compareSelfNullClass(container1);
+        TestUtils.checkNotEquals(container1, container2);
+
+        container2.setRawLogs(Collections.singletonList(rawLog1));
+        TestUtils.checkEquals(container1, container2);
+
+        container2.setRawLogs(Collections.singletonList(rawLog2));
+        TestUtils.checkNotEquals(container1, container2);
+    }
 }
@@ -22,28 +22,37 @@ import com.microsoft.appcenter.utils.storage.DatabaseManager;
 import org.json.JSONException;
 import org.junit.Rule;
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.rule.PowerMockRule;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
+import static com.microsoft.appcenter.Flags.CRITICAL;
 import static com.microsoft.appcenter.Flags.NORMAL;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isNotNull;
 import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
@@ -57,6 +66,16 @@ public class DatabasePersistenceTest {
     @Rule
     public PowerMockRule mPowerMockRule = new PowerMockRule();
 
+    private static void mockClaimAll(DatabaseManager databaseManager) {
+        when(databaseManager.update(anyCollectionOf(Long.class), any(ContentValues.class))).then(new Answer<Integer>() {
+
+            @Override
+            public Integer answer(InvocationOnMock invocation) {
+                return ((Collection<?>) invocation.getArguments()[0]).size();
+            }
+        });
+    }
+
     @Test
     public void countLogsWithGetCountException() throws Exception {
 
@@ -84,6 +103,46 @@ public class DatabasePersistenceTest {
         AppCenterLog.error(eq(AppCenter.LOG_TAG), anyString(), any(RuntimeException.class));
     }
 
+    @Test
+    public void countLogsLoadedOnceAndMaintained() throws Exception {
+
+        /* Mock instances. */
+        mockStatic(AppCenterLog.class);
+        DatabaseManager mockDatabaseManager = mock(DatabaseManager.class);
+        whenNew(DatabaseManager.class).withAnyArguments().thenReturn(mockDatabaseManager);
+        when(mockDatabaseManager.getMaxSize()).thenReturn(1024 * 1024L);
+        when(mockDatabaseManager.put(any(ContentValues.class), anyString())).thenReturn(3L);
+
+        /* Mock a reconciliation query result with 2 rows for group 1 and 1 row for group 2. */
+        Cursor mockCursor = mock(Cursor.class);
+        when(mockCursor.moveToNext()).thenReturn(true, true, true, false);
+        when(mockCursor.getString(0)).thenReturn("test-p1", "test-p1", "test-p2");
+        when(mockCursor.isNull(1)).thenReturn(true, false, true);
+        when(mockCursor.getString(1)).thenReturn("key");
+        when(mockCursor.getInt(2)).thenReturn(2, 3, 4);
+        when(mockDatabaseManager.getGroupedCursor(any(String[].class), anyString())).thenReturn(mockCursor);
+        DatabasePersistence persistence = new DatabasePersistence(mock(Context.class), 1, DatabasePersistence.SCHEMA);
+        LogSerializer logSerializer = mock(LogSerializer.class);
+        when(logSerializer.serializeLog(any(Log.class))).thenReturn("mock");
+        persistence.setLogSerializer(logSerializer);
+
+        /* Counts are loaded with a single query. */
+        assertEquals(5, persistence.countLogs("test-p1"));
+        assertEquals(4, persistence.countLogs("test-p2"));
+        assertEquals(0, persistence.countLogs("test-p3"));
+        verify(mockDatabaseManager).getGroupedCursor(any(String[].class), anyString());
+        verify(mockDatabaseManager, never()).getCursor(any(SQLiteQueryBuilder.class), any(String[].class), any(String[].class), anyString());
+
+        /* Storing a log updates the count. */
+        persistence.putLog(mock(Log.class), "test-p3", NORMAL);
+        assertEquals(1, persistence.countLogs("test-p3"));
+
+        /* Deleting a group resets its count. */
+        persistence.deleteLogs("test-p1");
+        assertEquals(0, persistence.countLogs("test-p1"));
+        verify(mockDatabaseManager).getGroupedCursor(any(String[].class), anyString());
+    }
+
     @Test
     public void clearPendingLogState() throws Exception {
 
@@ -108,11 +167,12 @@ public class DatabasePersistenceTest {
         DatabaseManager mockDatabaseManager = mock(DatabaseManager.class);
         whenNew(DatabaseManager.class).withAnyArguments().thenReturn(mockDatabaseManager);
         when(mockDatabaseManager.nextValues(any(Cursor.class))).thenCallRealMethod();
+        mockClaimAll(mockDatabaseManager);
 
         for (int i = 0; i < groupCount; i++) {
             MockCursor mockCursor = new MockCursor(list.get(i));
             mockCursor.mockBuildValues(mockDatabaseManager);
-            when(mockDatabaseManager.getCursor(any(SQLiteQueryBuilder.class), any(String[].class), eq(new String[]{String.valueOf(i)}), anyString()))
+            when(mockDatabaseManager.getCursor(any(SQLiteQueryBuilder.class), eq(DatabasePersistence.GET_COLUMNS), eq(new String[]{String.valueOf(i)}), anyString(), anyString()))
                     .thenReturn(mockCursor);
         }
 
@@ -146,7 +206,7 @@ public class DatabasePersistenceTest {
         DatabaseManager databaseManager = mock(DatabaseManager.class);
         whenNew(DatabaseManager.class).withAnyArguments().thenReturn(databaseManager);
         when(databaseManager.nextValues(any(Cursor.class))).thenCallRealMethod();
-        when(databaseManager.getCursor(any(SQLiteQueryBuilder.class), any(String[].class), any(String[].class), anyString())).thenThrow(new RuntimeException());
+        when(databaseManager.getCursor(any(SQLiteQueryBuilder.class), any(String[].class), any(String[].class), anyString(), anyString())).thenThrow(new RuntimeException());
         DatabasePersistence persistence = new DatabasePersistence(mock(Context.class), 1, DatabasePersistence.SCHEMA);
 
         /* Try to get logs. */
@@ -169,7 +229,7 @@ public class DatabasePersistenceTest {
         when(databaseManager.nextValues(any(Cursor.class))).thenCallRealMethod();
         Cursor mockCursor = mock(Cursor.class);
         when(mockCursor.moveToNext()).thenThrow(new RuntimeException());
-        when(databaseManager.getCursor(any(SQLiteQueryBuilder.class), any(String[].class), any(String[].class), anyString())).thenReturn(mockCursor);
+        when(databaseManager.getCursor(any(SQLiteQueryBuilder.class), any(String[].class), any(String[].class), anyString(), anyString())).thenReturn(mockCursor);
         DatabasePersistence persistence = new DatabasePersistence(mock(Context.class), 1, DatabasePersistence.SCHEMA);
 
         /* Try to get logs. */
@@ -203,7 +263,7 @@ public class DatabasePersistenceTest {
         /* Mock log sequence retrieved from cursor. */
         MockCursor mockCursor = new MockCursor(fieldValues);
         mockCursor.mockBuildValues(databaseManager);
-        when(databaseManager.getCursor(any(SQLiteQueryBuilder.class), isNull(String[].class), any(String[].class), anyString())).thenReturn(mockCursor);
+        when(databaseManager.getCursor(any(SQLiteQueryBuilder.class), eq(DatabasePersistence.GET_COLUMNS), any(String[].class), anyString(), anyString())).thenReturn(mockCursor);
 
         /* Mock second cursor with identifiers only. */
         Cursor failingCursor = mock(Cursor.class);
@@ -230,6 +290,8 @@ public class DatabasePersistenceTest {
         whenNew(DatabaseManager.class).withAnyArguments().thenReturn(databaseManager);
         when(databaseManager.nextValues(any(Cursor.class))).thenCallRealMethod();
 
+        mockClaimAll(databaseManager);
+
         /* Make 3 logs, the second one will be corrupted. */
         List<ContentValues> fieldValues = new ArrayList<>(logCount);
         {
@@ -256,7 +318,7 @@ public class DatabasePersistenceTest {
         /* Mock log sequence retrieved from cursor. */
         MockCursor mockCursor = new MockCursor(fieldValues);
         mockCursor.mockBuildValues(databaseManager);
-        when(databaseManager.getCursor(any(SQLiteQueryBuilder.class), isNull(String[].class), any(String[].class), anyString())).thenReturn(mockCursor);
+        when(databaseManager.getCursor(any(SQLiteQueryBuilder.class), eq(DatabasePersistence.GET_COLUMNS), any(String[].class), anyString(), anyString())).thenReturn(mockCursor);
 
         /* Mock second cursor with identifiers only. */
         List<ContentValues> idValues = new ArrayList<>(logCount);
@@ -345,7 +407,7 @@ public class DatabasePersistenceTest {
             }
         };
         mockCursor.mockBuildValues(databaseManager);
-        when(databaseManager.getCursor(any(SQLiteQueryBuilder.class), isNull(String[].class), any(String[].class), anyString())).thenReturn(mockCursor);
+        when(databaseManager.getCursor(any(SQLiteQueryBuilder.class), eq(DatabasePersistence.GET_COLUMNS), any(String[].class), anyString(), anyString())).thenReturn(mockCursor);
         idValues = new ArrayList<>(4);
 
         /* Here the id cursor will also skip the new corrupted log which id would be 3. */
@@ -376,6 +438,80 @@ public class DatabasePersistenceTest {
         verify(databaseManager).delete(anyLong());
     }
 
+    @Test
+    public void getLogsSelectsAndClaimsInTransaction() throws Exception {
+
+        /* Mock instances. */
+        DatabaseManager databaseManager = mock(DatabaseManager.class);
+        whenNew(DatabaseManager.class).withAnyArguments().thenReturn(databaseManager);
+        when(databaseManager.nextValues(any(Cursor.class))).thenCallRealMethod();
+        when(databaseManager.beginTransaction()).thenReturn(true);
+        mockClaimAll(databaseManager);
+        ContentValues contentValues = mock(ContentValues.class);
+        when(contentValues.getAsLong(DatabaseManager.PRIMARY_KEY)).thenReturn(1L);
+        when(contentValues.getAsString(DatabasePersistence.COLUMN_LOG)).thenReturn("{}");
+        MockCursor mockCursor = new MockCursor(Collections.singletonList(contentValues));
+        mockCursor.mockBuildValues(databaseManager);
+        when(databaseManager.getCursor(any(SQLiteQueryBuilder.class), eq(DatabasePersistence.GET_COLUMNS), any(String[].class), anyString(), anyString())).thenReturn(mockCursor);
+        LogSerializer logSerializer = mock(LogSerializer.class);
+        when(logSerializer.deserializeLog(anyString(), anyString())).thenReturn(mock(Log.class));
+        DatabasePersistence persistence = new DatabasePersistence(mock(Context.class));
+        persistence.setLogSerializer(logSerializer);
+
+        /* Get logs. */
+        ArrayList<Log> outLogs = new ArrayList<>();
+        assertNotNull(persistence.getLogs("mock", Collections.<String>emptyList(), 50, outLogs));
+        assertEquals(1, outLogs.size());
+
+        /* Verify the logs are read and claimed in the same transaction. */
+        InOrder inOrder = inOrder(databaseManager);
+        inOrder.verify(databaseManager).beginTransaction();
+        inOrder.verify(databaseManager).getCursor(any(SQLiteQueryBuilder.class), eq(DatabasePersistence.GET_COLUMNS), any(String[].class), anyString(), anyString());
+        inOrder.verify(databaseManager).update(eq(Collections.singletonList(1L)), any(ContentValues.class));
+        inOrder.verify(databaseManager).setTransactionSuccessful();
+        inOrder.verify(databaseManager).endTransaction();
+    }
+
+    @Test
+    public void getLogsReleasesIncompleteClaim() throws Exception {
+
+        /* Mock instances, one of the logs is gone when claiming. */
+        mockStatic(AppCenterLog.class);
+        DatabaseManager databaseManager = mock(DatabaseManager.class);
+        whenNew(DatabaseManager.class).withAnyArguments().thenReturn(databaseManager);
+        when(databaseManager.nextValues(any(Cursor.class))).thenCallRealMethod();
+        when(databaseManager.beginTransaction()).thenReturn(true);
+        when(databaseManager.update(anyCollectionOf(Long.class), any(ContentValues.class))).thenReturn(1);
+        List<ContentValues> fieldValues = new ArrayList<>();
+        for (long i = 1; i <= 2; i++) {
+            ContentValues contentValues = mock(ContentValues.class);
+            when(contentValues.getAsLong(DatabaseManager.PRIMARY_KEY)).thenReturn(i);
+            when(contentValues.getAsString(DatabasePersistence.COLUMN_LOG)).thenReturn("{}");
+            fieldValues.add(contentValues);
+        }
+        MockCursor mockCursor = new MockCursor(fieldValues);
+        mockCursor.mockBuildValues(databaseManager);
+        when(databaseManager.getCursor(any(SQLiteQueryBuilder.class), eq(DatabasePersistence.GET_COLUMNS), any(String[].class), anyString(), anyString())).thenReturn(mockCursor);
+        LogSerializer logSerializer = mock(LogSerializer.class);
+        when(logSerializer.deserializeLog(anyString(), anyString())).thenReturn(mock(Log.class));
+        DatabasePersistence persistence = new DatabasePersistence(mock(Context.class));
+        persistence.setLogSerializer(logSerializer);
+
+        /* No batch is returned and the logs are not pending. */
+        ArrayList<Log> outLogs = new ArrayList<>();
+        assertNull(persistence.getLogs("mock", Collections.<String>emptyList(), 50, outLogs));
+        assertEquals(0, outLogs.size());
+        assertEquals(0, persistence.mPendingDbIdentifiers.size());
+        assertEquals(0, persistence.mPendingDbIdentifiersGroups.size());
+
+        /* The partial claim is released. */
+        verify(databaseManager).update(any(ContentValues.class), eq(DatabasePersistence.COLUMN_BATCH_ID + " = ?"), any(String[].class));
+        verify(databaseManager).setTransactionSuccessful();
+        verify(databaseManager).endTransaction();
+        verifyStatic();
+        AppCenterLog.error(eq(AppCenter.LOG_TAG), anyString());
+    }
+
     @Test
     public void checkSetStorageSizeForwarding() throws Exception {
 
@@ -423,6 +559,48 @@ public class DatabasePersistenceTest {
         persistence.putLog(mock(Log.class), "test-p1", NORMAL);
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void putLogWithWriteBuffer() throws Exception {
+        DatabaseManager databaseManager = mock(DatabaseManager.class);
+        whenNew(DatabaseManager.class).withAnyArguments().thenReturn(databaseManager);
+        when(databaseManager.getMaxSize()).thenReturn(1024 * 1024L);
+        when(databaseManager.put(any(List.class), anyString())).thenReturn(new long[]{1, 2}).thenReturn(new long[]{3});
+        DatabasePersistence persistence = new DatabasePersistence(mock(Context.class));
+        persistence.setWriteBufferSize(2);
+
+        /* Set a mock log serializer. */
+        LogSerializer logSerializer = mock(LogSerializer.class);
+        when(logSerializer.serializeLog(any(Log.class))).thenReturn("mock");
+        persistence.setLogSerializer(logSerializer);
+
+        /* First log is only buffered. */
+        assertEquals(0, persistence.putLog(mock(Log.class), "test-p1", NORMAL));
+        assertEquals(1, persistence.mWriteBuffer.size());
+        verify(databaseManager, never()).put(any(ContentValues.class), anyString());
+        verify(databaseManager, never()).put(any(List.class), anyString());
+
+        /* Buffer is written when full. */
+        assertEquals(2, persistence.putLog(mock(Log.class), "test-p1", NORMAL));
+        assertEquals(0, persistence.mWriteBuffer.size());
+        verify(databaseManager).put(any(List.class), eq(DatabasePersistence.COLUMN_PRIORITY));
+
+        /* Critical logs are written immediately. */
+        assertEquals(3, persistence.putLog(mock(Log.class), "test-p1", CRITICAL));
+        verify(databaseManager, times(2)).put(any(List.class), eq(DatabasePersistence.COLUMN_PRIORITY));
+
+        /* Buffered logs of a deleted group are discarded. */
+        persistence.putLog(mock(Log.class), "test-p1", NORMAL);
+        persistence.deleteLogs("test-p1");
+        assertEquals(0, persistence.mWriteBuffer.size());
+
+        /* Buffered logs are written before counting. */
+        persistence.putLog(mock(Log.class), "test-p1", NORMAL);
+        persistence.countLogs("test-p1");
+        verify(databaseManager, times(3)).put(any(List.class), eq(DatabasePersistence.COLUMN_PRIORITY));
+        verify(databaseManager, never()).put(any(ContentValues.class), anyString());
+    }
+
     private static class MockCursor extends CursorWrapper {
 
         private final List<ContentValues> mList;
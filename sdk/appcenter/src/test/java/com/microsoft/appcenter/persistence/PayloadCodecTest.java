@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.persistence;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PayloadCodecTest {
+
+    private static final String EVENT_PAYLOAD = "{\"type\":\"event\",\"timestamp\":\"2026-10-17T10:11:12.123Z\"," +
+            "\"sid\":\"0192f1a2-3b4c-7d5e-8f60-112233445566\",\"id\":\"0192f1a2-3b4c-7d5e-8f60-112233445567\"," +
+            "\"name\":\"Button clicked\",\"properties\":{\"screen\":\"home\",\"variant\":\"\u00e9t\u00e9\"}}";
+
+    private final PayloadCodec mCodec = new PayloadCodec();
+
+    @After
+    public void tearDown() {
+        mCodec.close();
+    }
+
+    @Test
+    public void roundTrip() throws DataFormatException {
+        for (String payload : new String[]{"", "{}", EVENT_PAYLOAD, EVENT_PAYLOAD + EVENT_PAYLOAD + EVENT_PAYLOAD}) {
+            byte[] data = mCodec.compress(PayloadCodec.getBytes(payload));
+            assertEquals(payload, mCodec.decompress(data));
+        }
+    }
+
+    @Test
+    public void largePayloadRoundTrip() throws DataFormatException {
+        StringBuilder payload = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            payload.append(EVENT_PAYLOAD).append(i);
+        }
+        byte[] data = mCodec.compress(PayloadCodec.getBytes(payload.toString()));
+        assertEquals(payload.toString(), mCodec.decompress(data));
+    }
+
+    @Test
+    public void dictionaryMakesSmallPayloadsSmaller() {
+        byte[] payload = PayloadCodec.getBytes(EVENT_PAYLOAD);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        deflater.setInput(payload);
+        deflater.finish();
+        byte[] buffer = new byte[payload.length * 2];
+        int withoutDictionary = deflater.deflate(buffer);
+        deflater.end();
+        int withDictionary = mCodec.compress(payload).length;
+        assertTrue(withDictionary + " >= " + withoutDictionary, withDictionary < withoutDictionary);
+        assertTrue(withDictionary < payload.length);
+    }
+
+    @Test
+    public void compressedWithDictionary() throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(mCodec.compress(PayloadCodec.getBytes(EVENT_PAYLOAD)));
+            assertEquals(0, inflater.inflate(new byte[1]));
+            assertTrue(inflater.needsDictionary());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    @Test(expected = DataFormatException.class)
+    public void truncatedData() throws DataFormatException {
+        byte[] data = mCodec.compress(PayloadCodec.getBytes(EVENT_PAYLOAD));
+        mCodec.decompress(Arrays.copyOf(data, data.length - 4));
+    }
+
+    @Test(expected = DataFormatException.class)
+    public void corruptedData() throws DataFormatException {
+        mCodec.decompress(PayloadCodec.getBytes(EVENT_PAYLOAD));
+    }
+
+    @Test
+    public void reusedAfterError() throws DataFormatException {
+        try {
+            mCodec.decompress(new byte[]{1, 2, 3});
+        } catch (DataFormatException ignore) {
+        }
+        assertEquals(EVENT_PAYLOAD, mCodec.decompress(mCodec.compress(PayloadCodec.getBytes(EVENT_PAYLOAD))));
+    }
+}
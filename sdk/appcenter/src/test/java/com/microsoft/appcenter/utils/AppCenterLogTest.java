@@ -19,6 +19,8 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
@@ -111,6 +113,19 @@ public class AppCenterLogTest {
         when(Log.getStackTraceString(any(Throwable.class))).thenReturn("mock stack trace");
     }
 
+    @Test
+    public void levelChecks() {
+        AppCenter.setLogLevel(Log.ASSERT);
+        assertFalse(AppCenterLog.isVerboseEnabled());
+        assertFalse(AppCenterLog.isDebugEnabled());
+        AppCenter.setLogLevel(Log.DEBUG);
+        assertFalse(AppCenterLog.isVerboseEnabled());
+        assertTrue(AppCenterLog.isDebugEnabled());
+        AppCenter.setLogLevel(Log.VERBOSE);
+        assertTrue(AppCenterLog.isVerboseEnabled());
+        assertTrue(AppCenterLog.isDebugEnabled());
+    }
+
     @Test
     public void none() {
         AppCenter.setLogLevel(AppCenterLog.NONE);
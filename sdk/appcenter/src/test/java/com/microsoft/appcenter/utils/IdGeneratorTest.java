@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.utils;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IdGeneratorTest {
+
+    private static void assertOrdered(UUID previous, UUID next) {
+        assertTrue(previous + " >= " + next, Long.compareUnsigned(previous.getMostSignificantBits(), next.getMostSignificantBits()) < 0);
+    }
+
+    @Test
+    public void init() {
+        new IdGenerator();
+    }
+
+    @Test
+    public void versionAndVariant() {
+        UUID id = IdGenerator.generateId();
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+        assertNotEquals(id, IdGenerator.generateId());
+    }
+
+    @Test
+    public void timestamp() {
+        UUID id = new IdGenerator.State(42).next(0x123456789abL);
+        assertEquals(0x123456789abL, id.getMostSignificantBits() >>> 16);
+    }
+
+    @Test
+    public void orderedInSameMillisecond() {
+        IdGenerator.State state = new IdGenerator.State(42);
+        UUID previous = state.next(1000);
+        for (int i = 0; i < 10000; i++) {
+            UUID next = state.next(1000);
+            assertOrdered(previous, next);
+            previous = next;
+        }
+    }
+
+    @Test
+    public void orderedWhenClockGoesBack() {
+        IdGenerator.State state = new IdGenerator.State(42);
+        UUID first = state.next(2000);
+        UUID second = state.next(1000);
+        assertOrdered(first, second);
+        assertEquals(2000, second.getMostSignificantBits() >>> 16);
+
+        /* Clock moving forward again is used. */
+        UUID third = state.next(3000);
+        assertOrdered(second, third);
+        assertEquals(3000, third.getMostSignificantBits() >>> 16);
+    }
+
+    @Test
+    public void uniqueAcrossThreads() throws InterruptedException {
+        final int threadCount = 4;
+        final int idCount = 10000;
+        final Set<UUID> ids = Collections.synchronizedSet(new HashSet<UUID>());
+        final CountDownLatch latch = new CountDownLatch(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            new Thread() {
+
+                @Override
+                public void run() {
+                    for (int j = 0; j < idCount; j++) {
+                        ids.add(IdGenerator.generateId());
+                    }
+                    latch.countDown();
+                }
+            }.start();
+        }
+        latch.await();
+        assertEquals(threadCount * idCount, ids.size());
+    }
+}
@@ -158,6 +158,43 @@ public class NetworkStateHelperTestFromLollipop extends AbstractNetworkStateHelp
         verify(mContext, never()).unregisterReceiver(any(BroadcastReceiver.class));
     }
 
+    @Test
+    public void meteredStateIsCachedAndUpdatedOnCallbacks() {
+        when(mConnectivityManager.isActiveNetworkMetered()).thenReturn(false);
+        NetworkStateHelper helper = new NetworkStateHelper(mContext);
+        ArgumentCaptor<ConnectivityManager.NetworkCallback> callback = ArgumentCaptor.forClass(ConnectivityManager.NetworkCallback.class);
+        verify(mConnectivityManager).registerNetworkCallback(any(NetworkRequest.class), callback.capture());
+        verify(mConnectivityManager).isActiveNetworkMetered();
+
+        /* Reading the state does not query the connectivity manager again. */
+        assertFalse(helper.isNetworkMetered());
+        assertFalse(helper.isNetworkMetered());
+        verify(mConnectivityManager).isActiveNetworkMetered();
+
+        /* Capabilities change, e.g. Wi-Fi switched to a metered hotspot. */
+        Network network = mock(Network.class);
+        when(mConnectivityManager.isActiveNetworkMetered()).thenReturn(true);
+        callback.getValue().onCapabilitiesChanged(network, mock(NetworkCapabilities.class));
+        assertTrue(helper.isNetworkMetered());
+
+        /* Network switch. */
+        when(mConnectivityManager.isActiveNetworkMetered()).thenReturn(false);
+        callback.getValue().onAvailable(network);
+        assertFalse(helper.isNetworkMetered());
+        when(mConnectivityManager.isActiveNetworkMetered()).thenReturn(true);
+        callback.getValue().onLost(network);
+        assertTrue(helper.isNetworkMetered());
+        verify(mConnectivityManager, times(4)).isActiveNetworkMetered();
+
+        /* Treat as metered if state cannot be read. */
+        when(mConnectivityManager.isActiveNetworkMetered()).thenReturn(false);
+        callback.getValue().onAvailable(network);
+        assertFalse(helper.isNetworkMetered());
+        when(mConnectivityManager.isActiveNetworkMetered()).thenThrow(new SecurityException());
+        callback.getValue().onCapabilitiesChanged(network, mock(NetworkCapabilities.class));
+        assertTrue(helper.isNetworkMetered());
+    }
+
     @Test
     public void verifyRequestedCapabilitiesBeforeAndroidM() throws Exception {
         NetworkRequest.Builder builder = mock(NetworkRequest.Builder.class);
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.utils.metrics;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static com.microsoft.appcenter.utils.metrics.SdkMetrics.Counter.HTTP_RETRIES;
+import static com.microsoft.appcenter.utils.metrics.SdkMetrics.Counter.LOGS_ENQUEUED;
+import static com.microsoft.appcenter.utils.metrics.SdkMetrics.Counter.LOGS_SENT;
+import static com.microsoft.appcenter.utils.metrics.SdkMetrics.Gauge.DATABASE_MAX_SIZE;
+import static com.microsoft.appcenter.utils.metrics.SdkMetrics.Gauge.DATABASE_SIZE;
+import static com.microsoft.appcenter.utils.metrics.SdkMetrics.Histogram.HTTP_TIME;
+import static com.microsoft.appcenter.utils.metrics.SdkMetrics.Histogram.PERSIST_TIME;
+import static com.microsoft.appcenter.utils.metrics.SdkMetrics.Histogram.REQUEST_SIZE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class SdkMetricsTest {
+
+    @Before
+    @After
+    public void resetMetrics() {
+        SdkMetrics.reset();
+        SdkMetrics.setSupplier(DATABASE_SIZE, null);
+        SdkMetrics.set(DATABASE_SIZE, 0);
+        SdkMetrics.set(DATABASE_MAX_SIZE, 0);
+    }
+
+    @Test
+    public void init() {
+        new SdkMetrics();
+    }
+
+    @Test
+    public void countersAndGauges() {
+        SdkMetrics.increment(LOGS_ENQUEUED);
+        SdkMetrics.increment(LOGS_ENQUEUED);
+        SdkMetrics.add(LOGS_SENT, 10);
+        SdkMetrics.set(DATABASE_SIZE, 4096);
+        SdkMetrics.set(DATABASE_SIZE, 8192);
+        MetricsSnapshot snapshot = SdkMetrics.getSnapshot();
+        assertEquals(2, snapshot.getCounter(LOGS_ENQUEUED));
+        assertEquals(10, snapshot.getCounter(LOGS_SENT));
+        assertEquals(0, snapshot.getCounter(HTTP_RETRIES));
+        assertEquals(8192, snapshot.getGauge(DATABASE_SIZE));
+
+        /* Snapshot is not updated. */
+        SdkMetrics.increment(LOGS_ENQUEUED);
+        assertEquals(2, snapshot.getCounter(LOGS_ENQUEUED));
+
+        /* Reset keeps gauges. */
+        SdkMetrics.reset();
+        snapshot = SdkMetrics.getSnapshot();
+        assertEquals(0, snapshot.getCounter(LOGS_ENQUEUED));
+        assertEquals(8192, snapshot.getGauge(DATABASE_SIZE));
+    }
+
+    @Test
+    public void gaugeSupplier() {
+        final long[] value = {4096};
+        SdkMetrics.setSupplier(DATABASE_SIZE, new SdkMetrics.GaugeSupplier() {
+
+            @Override
+            public long getValue() {
+                return value[0];
+            }
+        });
+
+        /* Computed when read. */
+        assertEquals(4096, SdkMetrics.getSnapshot().getGauge(DATABASE_SIZE));
+        value[0] = 8192;
+        assertEquals(8192, SdkMetrics.getSnapshot().getGauge(DATABASE_SIZE));
+
+        /* Last known value is kept when it cannot be computed or without supplier. */
+        value[0] = -1;
+        assertEquals(8192, SdkMetrics.getSnapshot().getGauge(DATABASE_SIZE));
+        SdkMetrics.setSupplier(DATABASE_SIZE, null);
+        value[0] = 0;
+        assertEquals(8192, SdkMetrics.getSnapshot().getGauge(DATABASE_SIZE));
+    }
+
+    @Test
+    public void histograms() {
+        MetricsSnapshot snapshot = SdkMetrics.getSnapshot();
+        assertEquals(0, snapshot.getCount(HTTP_TIME));
+        assertEquals(0, snapshot.getMean(HTTP_TIME), 0);
+        assertEquals(0, snapshot.getPercentile(HTTP_TIME, 50));
+
+        /* 0, then 1, then 2 and 3 share a bucket, then 100 in [64, 128). */
+        for (long value : new long[]{0, 1, 2, 3, 100, -1}) {
+            SdkMetrics.record(HTTP_TIME, value);
+        }
+        SdkMetrics.record(REQUEST_SIZE, Long.MAX_VALUE);
+        snapshot = SdkMetrics.getSnapshot();
+        assertEquals(6, snapshot.getCount(HTTP_TIME));
+        assertEquals(105, snapshot.getSum(HTTP_TIME));
+        assertEquals(17.5, snapshot.getMean(HTTP_TIME), 0);
+        assertEquals(0, snapshot.getPercentile(HTTP_TIME, 0));
+        assertEquals(0, snapshot.getPercentile(HTTP_TIME, 30));
+        assertEquals(1, snapshot.getPercentile(HTTP_TIME, 50));
+        assertEquals(3, snapshot.getPercentile(HTTP_TIME, 80));
+        assertEquals(127, snapshot.getPercentile(HTTP_TIME, 99));
+        assertEquals(127, snapshot.getPercentile(HTTP_TIME, 100));
+        assertEquals(1, snapshot.getCount(REQUEST_SIZE));
+        assertEquals(Long.MAX_VALUE, snapshot.getPercentile(REQUEST_SIZE, 50));
+        assertEquals(0, snapshot.getCount(PERSIST_TIME));
+        assertNotNull(snapshot.toString());
+    }
+
+    @Test
+    public void recordMicros() {
+        SdkMetrics.recordMicros(PERSIST_TIME, System.nanoTime() - 5000000);
+        MetricsSnapshot snapshot = SdkMetrics.getSnapshot();
+        assertEquals(1, snapshot.getCount(PERSIST_TIME));
+        assertTrue(snapshot.getSum(PERSIST_TIME) >= 5000);
+    }
+
+    @Test
+    public void concurrentUpdates() throws InterruptedException {
+        final int threadCount = 4;
+        final int updateCount = 10000;
+        final CountDownLatch latch = new CountDownLatch(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            new Thread() {
+
+                @Override
+                public void run() {
+                    for (int j = 0; j < updateCount; j++) {
+                        SdkMetrics.increment(LOGS_ENQUEUED);
+                        SdkMetrics.record(HTTP_TIME, j);
+                    }
+                    latch.countDown();
+                }
+            }.start();
+        }
+        latch.await();
+        MetricsSnapshot snapshot = SdkMetrics.getSnapshot();
+        assertEquals(threadCount * updateCount, snapshot.getCounter(LOGS_ENQUEUED));
+        assertEquals(threadCount * updateCount, snapshot.getCount(HTTP_TIME));
+    }
+}
@@ -13,6 +13,7 @@ import android.database.sqlite.SQLiteDiskIOException;
 import android.database.sqlite.SQLiteFullException;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 
 import com.microsoft.appcenter.AppCenter;
 import com.microsoft.appcenter.utils.AppCenterLog;
@@ -24,15 +25,28 @@ import org.mockito.internal.stubbing.answers.Returns;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.startsWith;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
@@ -100,6 +114,14 @@ public class DatabaseManagerTest {
         AppCenterLog.error(eq(AppCenter.LOG_TAG), anyString(), any(RuntimeException.class));
     }
 
+    @Test
+    public void getSizeFailed() {
+        DatabaseManager databaseManagerMock = getDatabaseManagerMock();
+        assertEquals(-1, databaseManagerMock.getSize());
+        verifyStatic();
+        AppCenterLog.warn(eq(AppCenter.LOG_TAG), anyString(), any(RuntimeException.class));
+    }
+
     @Test
     public void setMaxSizeFailed() {
         DatabaseManager databaseManagerMock = getDatabaseManagerMock();
@@ -231,4 +253,264 @@ public class DatabaseManagerTest {
         long id = databaseManager.put(mock(ContentValues.class), "priority");
         assertEquals(1, id);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void putListInTransaction() {
+
+        /* Mocking instances. */
+        Context contextMock = mock(Context.class);
+        SQLiteOpenHelper helperMock = mock(SQLiteOpenHelper.class);
+        SQLiteDatabase sqLiteDatabase = mock(SQLiteDatabase.class);
+        when(helperMock.getWritableDatabase()).thenReturn(sqLiteDatabase);
+        when(sqLiteDatabase.insertOrThrow(anyString(), anyString(), any(ContentValues.class))).thenReturn(1L).thenReturn(2L);
+
+        /* Instantiate real instance for DatabaseManager. */
+        DatabaseManager databaseManager = new DatabaseManager(contextMock, "database", "table", 1, null, null, null);
+        databaseManager.setSQLiteOpenHelper(helperMock);
+
+        /* Both entries are inserted in a single transaction. */
+        long[] ids = databaseManager.put(Arrays.asList(mock(ContentValues.class), mock(ContentValues.class)), "priority");
+        assertArrayEquals(new long[]{1, 2}, ids);
+        verify(sqLiteDatabase).beginTransaction();
+        verify(sqLiteDatabase).setTransactionSuccessful();
+        verify(sqLiteDatabase).endTransaction();
+    }
+
+    @Test
+    public void putListFallsBackToSinglePutWhenFull() {
+
+        /* Mocking instances. */
+        Context contextMock = mock(Context.class);
+        SQLiteOpenHelper helperMock = mock(SQLiteOpenHelper.class);
+        SQLiteDatabase sqLiteDatabase = mock(SQLiteDatabase.class);
+        when(helperMock.getWritableDatabase()).thenReturn(sqLiteDatabase);
+
+        /* Mock the select cursor we are using to find logs to evict. */
+        mockStatic(SQLiteUtils.class);
+        Cursor cursor = mock(Cursor.class);
+        when(cursor.moveToNext()).thenReturn(true).thenReturn(false);
+        SQLiteQueryBuilder sqLiteQueryBuilder = mock(SQLiteQueryBuilder.class, new Returns(cursor));
+        when(SQLiteUtils.newSQLiteQueryBuilder()).thenReturn(sqLiteQueryBuilder);
+
+        /* Simulate that database is full in the transaction and for the first single insert. */
+        when(sqLiteDatabase.insertOrThrow(anyString(), anyString(), any(ContentValues.class)))
+                .thenThrow(new SQLiteFullException())
+                .thenThrow(new SQLiteFullException())
+                .thenReturn(3L)
+                .thenReturn(4L);
+
+        /* Instantiate real instance for DatabaseManager. */
+        DatabaseManager databaseManager = new DatabaseManager(contextMock, "database", "table", 1, null, null, null);
+        databaseManager.setSQLiteOpenHelper(helperMock);
+
+        /* Transaction is rolled back and entries inserted one by one after eviction. */
+        long[] ids = databaseManager.put(Arrays.asList(mock(ContentValues.class), mock(ContentValues.class)), "priority");
+        assertArrayEquals(new long[]{3, 4}, ids);
+        verify(sqLiteDatabase, never()).setTransactionSuccessful();
+        verify(sqLiteDatabase).endTransaction();
+    }
+
+    @Test
+    public void deleteIdsInTransaction() {
+
+        /* Mocking instances. */
+        Context contextMock = mock(Context.class);
+        SQLiteOpenHelper helperMock = mock(SQLiteOpenHelper.class);
+        SQLiteDatabase sqLiteDatabase = mock(SQLiteDatabase.class);
+        when(helperMock.getWritableDatabase()).thenReturn(sqLiteDatabase);
+        when(sqLiteDatabase.delete(anyString(), anyString(), any(String[].class))).thenReturn(DatabaseManager.MAX_SQL_VARIABLES).thenReturn(1);
+
+        /* Instantiate real instance for DatabaseManager. */
+        DatabaseManager databaseManager = new DatabaseManager(contextMock, "database", "table", 1, null, null, null);
+        databaseManager.setSQLiteOpenHelper(helperMock);
+
+        /* Nothing to delete. */
+        assertEquals(0, databaseManager.delete(Collections.<Long>emptyList()));
+        verify(sqLiteDatabase, never()).beginTransaction();
+
+        /* Delete more ids than parameters allowed in a statement. */
+        List<Long> ids = new ArrayList<>();
+        for (long id = 0; id <= DatabaseManager.MAX_SQL_VARIABLES; id++) {
+            ids.add(id);
+        }
+        assertEquals(DatabaseManager.MAX_SQL_VARIABLES + 1, databaseManager.delete(ids));
+        verify(sqLiteDatabase).beginTransaction();
+        verify(sqLiteDatabase, times(2)).delete(eq("table"), startsWith(DatabaseManager.PRIMARY_KEY + " IN ("), any(String[].class));
+        verify(sqLiteDatabase).delete("table", DatabaseManager.PRIMARY_KEY + " IN (?)", new String[]{String.valueOf(DatabaseManager.MAX_SQL_VARIABLES)});
+        verify(sqLiteDatabase).setTransactionSuccessful();
+        verify(sqLiteDatabase).endTransaction();
+    }
+
+    @Test
+    public void deleteIdsFailed() {
+        DatabaseManager databaseManagerMock = getDatabaseManagerMock();
+        assertEquals(0, databaseManagerMock.delete(Arrays.asList(1L, 2L)));
+        verifyStatic();
+        AppCenterLog.error(eq(AppCenter.LOG_TAG), anyString(), any(RuntimeException.class));
+    }
+
+    @Test
+    public void updateIdsInTransaction() {
+
+        /* Mocking instances. */
+        Context contextMock = mock(Context.class);
+        SQLiteOpenHelper helperMock = mock(SQLiteOpenHelper.class);
+        SQLiteDatabase sqLiteDatabase = mock(SQLiteDatabase.class);
+        when(helperMock.getWritableDatabase()).thenReturn(sqLiteDatabase);
+        ContentValues values = mock(ContentValues.class);
+        when(values.size()).thenReturn(1);
+        when(sqLiteDatabase.update(anyString(), any(ContentValues.class), anyString(), any(String[].class))).thenReturn(DatabaseManager.MAX_SQL_VARIABLES - 1).thenReturn(1);
+
+        /* Instantiate real instance for DatabaseManager. */
+        DatabaseManager databaseManager = new DatabaseManager(contextMock, "database", "table", 1, null, null, null);
+        databaseManager.setSQLiteOpenHelper(helperMock);
+
+        /* Nothing to update. */
+        assertEquals(0, databaseManager.update(Collections.<Long>emptyList(), values));
+        verify(sqLiteDatabase, never()).beginTransaction();
+
+        /* Update as many ids as parameters allowed in a statement, keeping one for the value. */
+        List<Long> ids = new ArrayList<>();
+        for (long id = 0; id < DatabaseManager.MAX_SQL_VARIABLES; id++) {
+            ids.add(id);
+        }
+        assertEquals(DatabaseManager.MAX_SQL_VARIABLES, databaseManager.update(ids, values));
+        verify(sqLiteDatabase).beginTransaction();
+        verify(sqLiteDatabase, times(2)).update(eq("table"), eq(values), startsWith(DatabaseManager.PRIMARY_KEY + " IN ("), any(String[].class));
+        verify(sqLiteDatabase).update("table", values, DatabaseManager.PRIMARY_KEY + " IN (?)", new String[]{String.valueOf(DatabaseManager.MAX_SQL_VARIABLES - 1)});
+        verify(sqLiteDatabase).setTransactionSuccessful();
+        verify(sqLiteDatabase).endTransaction();
+    }
+
+    @Test
+    public void updateEachIdInTransaction() {
+
+        /* Mocking instances. */
+        Context contextMock = mock(Context.class);
+        SQLiteOpenHelper helperMock = mock(SQLiteOpenHelper.class);
+        SQLiteDatabase sqLiteDatabase = mock(SQLiteDatabase.class);
+        when(helperMock.getWritableDatabase()).thenReturn(sqLiteDatabase);
+        when(sqLiteDatabase.update(anyString(), any(ContentValues.class), anyString(), any(String[].class))).thenReturn(1);
+
+        /* Instantiate real instance for DatabaseManager. */
+        DatabaseManager databaseManager = new DatabaseManager(contextMock, "database", "table", 1, null, null, null);
+        databaseManager.setSQLiteOpenHelper(helperMock);
+
+        /* Nothing to update. */
+        assertEquals(0, databaseManager.update(Collections.<Long, ContentValues>emptyMap()));
+        verify(sqLiteDatabase, never()).beginTransaction();
+
+        /* Each entry is updated with its own values. */
+        Map<Long, ContentValues> valuesById = new LinkedHashMap<>();
+        ContentValues values1 = mock(ContentValues.class);
+        ContentValues values2 = mock(ContentValues.class);
+        valuesById.put(1L, values1);
+        valuesById.put(2L, values2);
+        assertEquals(2, databaseManager.update(valuesById));
+        verify(sqLiteDatabase).beginTransaction();
+        verify(sqLiteDatabase).update("table", values1, DatabaseManager.PRIMARY_KEY + " = ?", new String[]{"1"});
+        verify(sqLiteDatabase).update("table", values2, DatabaseManager.PRIMARY_KEY + " = ?", new String[]{"2"});
+        verify(sqLiteDatabase).setTransactionSuccessful();
+        verify(sqLiteDatabase).endTransaction();
+    }
+
+    @Test
+    public void transaction() {
+
+        /* Mocking instances. */
+        Context contextMock = mock(Context.class);
+        SQLiteOpenHelper helperMock = mock(SQLiteOpenHelper.class);
+        SQLiteDatabase sqLiteDatabase = mock(SQLiteDatabase.class);
+        when(helperMock.getWritableDatabase()).thenReturn(sqLiteDatabase);
+
+        /* Instantiate real instance for DatabaseManager. */
+        DatabaseManager databaseManager = new DatabaseManager(contextMock, "database", "table", 1, null, null, null);
+        databaseManager.setSQLiteOpenHelper(helperMock);
+
+        /* Calls are forwarded to the database. */
+        assertTrue(databaseManager.beginTransaction());
+        databaseManager.setTransactionSuccessful();
+        databaseManager.endTransaction();
+        verify(sqLiteDatabase).beginTransaction();
+        verify(sqLiteDatabase).setTransactionSuccessful();
+        verify(sqLiteDatabase).endTransaction();
+
+        /* Commit failure is logged. */
+        doThrow(new SQLiteFullException()).when(sqLiteDatabase).endTransaction();
+        databaseManager.endTransaction();
+        verifyStatic();
+        AppCenterLog.error(eq(AppCenter.LOG_TAG), anyString(), any(SQLiteFullException.class));
+    }
+
+    @Test
+    public void beginTransactionFailed() {
+        DatabaseManager databaseManagerMock = getDatabaseManagerMock();
+        assertFalse(databaseManagerMock.beginTransaction());
+        verifyStatic();
+        AppCenterLog.error(eq(AppCenter.LOG_TAG), anyString(), any(RuntimeException.class));
+    }
+
+    @Test
+    public void updateFailed() {
+        DatabaseManager databaseManagerMock = getDatabaseManagerMock();
+        assertEquals(0, databaseManagerMock.update(Arrays.asList(1L, 2L), mock(ContentValues.class)));
+        assertEquals(0, databaseManagerMock.update(mock(ContentValues.class), "key IS NOT NULL", null));
+        assertEquals(0, databaseManagerMock.update(Collections.singletonMap(1L, mock(ContentValues.class))));
+        verifyStatic(times(3));
+        AppCenterLog.error(eq(AppCenter.LOG_TAG), anyString(), any(RuntimeException.class));
+    }
+
+    @Test
+    public void tunedModeUsesCachedStatements() {
+
+        /* Mocking instances. */
+        Context contextMock = mock(Context.class);
+        SQLiteOpenHelper helperMock = mock(SQLiteOpenHelper.class);
+        SQLiteDatabase sqLiteDatabase = mock(SQLiteDatabase.class);
+        when(helperMock.getWritableDatabase()).thenReturn(sqLiteDatabase);
+        SQLiteStatement statement = mock(SQLiteStatement.class);
+        when(sqLiteDatabase.compileStatement(anyString())).thenReturn(statement);
+        when(statement.executeInsert()).thenReturn(1L).thenReturn(2L);
+        ContentValues schema = mock(ContentValues.class);
+        when(schema.keySet()).thenReturn(new LinkedHashSet<>(Arrays.asList("priority", "key", "extra")));
+
+        /* Instantiate real instance for DatabaseManager. */
+        DatabaseManager databaseManager = new DatabaseManager(contextMock, "database", "table", 1, schema, null, null);
+        databaseManager.setSQLiteOpenHelper(helperMock);
+        databaseManager.setTunedModeEnabled(true);
+        verify(helperMock).setWriteAheadLoggingEnabled(true);
+        verify(sqLiteDatabase).execSQL("PRAGMA synchronous = NORMAL");
+
+        /* Insert statement of all schema columns in sorted order is compiled once. */
+        ContentValues values = mock(ContentValues.class);
+        when(values.containsKey("key")).thenReturn(true);
+        when(values.containsKey("priority")).thenReturn(true);
+        when(values.get("key")).thenReturn("value");
+        when(values.get("priority")).thenReturn(1);
+        when(values.size()).thenReturn(2);
+        assertEquals(1, databaseManager.put(values, "priority"));
+        assertEquals(2, databaseManager.put(values, "priority"));
+        verify(sqLiteDatabase).compileStatement("INSERT INTO `table` (`extra`,`key`,`priority`) VALUES (?,?,?)");
+        verify(statement, times(2)).bindNull(1);
+        verify(statement, times(2)).bindString(2, "value");
+        verify(statement, times(2)).bindLong(3, 1);
+        verify(sqLiteDatabase, never()).insertOrThrow(anyString(), anyString(), any(ContentValues.class));
+
+        /* Columns outside of the schema use a regular insert. */
+        ContentValues unknownValues = mock(ContentValues.class);
+        when(unknownValues.containsKey("key")).thenReturn(true);
+        when(unknownValues.size()).thenReturn(2);
+        when(sqLiteDatabase.insertOrThrow("table", null, unknownValues)).thenReturn(3L);
+        assertEquals(3, databaseManager.put(unknownValues, "priority"));
+
+        /* Delete. */
+        databaseManager.delete(1);
+        databaseManager.delete(2);
+        verify(sqLiteDatabase).compileStatement("DELETE FROM `table` WHERE `oid` = ?");
+        verify(statement, times(2)).executeUpdateDelete();
+
+        /* Statements are released on close. */
+        databaseManager.close();
+        verify(statement, times(2)).close();
+    }
+}